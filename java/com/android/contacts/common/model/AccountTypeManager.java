@@ -187,6 +187,7 @@ class AccountTypeManagerImpl extends AccountTypeManager
 
   private static final int MESSAGE_LOAD_DATA = 0;
   private static final int MESSAGE_PROCESS_BROADCAST_INTENT = 1;
+  private static final int MESSAGE_RESTORE_SNAPSHOT = 2;
   private static final Comparator<AccountWithDataSet> ACCOUNT_COMPARATOR =
       new Comparator<AccountWithDataSet>() {
         @Override
@@ -241,12 +242,11 @@ class AccountTypeManagerImpl extends AccountTypeManager
       };
   private AccountManager mAccountManager;
   private AccountType mFallbackAccountType;
-  private List<AccountWithDataSet> mAccounts = new ArrayList<>();
-  private List<AccountWithDataSet> mContactWritableAccounts = new ArrayList<>();
-  private List<AccountWithDataSet> mGroupWritableAccounts = new ArrayList<>();
-  private Map<AccountTypeWithDataSet, AccountType> mAccountTypesWithDataSets = new ArrayMap<>();
-  private Map<AccountTypeWithDataSet, AccountType> mInvitableAccountTypes =
-      EMPTY_UNMODIFIABLE_ACCOUNT_TYPE_MAP;
+  /**
+   * The accounts and account types, replaced as a whole after every load. Until the first load
+   * completes it is the snapshot persisted by the last process, if any.
+   */
+  private volatile AccountTypeSnapshot mSnapshot;
   private HandlerThread mListenerThread;
   private Handler mListenerHandler;
   private BroadcastReceiver mBroadcastReceiver =
@@ -258,7 +258,10 @@ class AccountTypeManagerImpl extends AccountTypeManager
           mListenerHandler.sendMessage(msg);
         }
       };
-  /* A latch that ensures that asynchronous initialization completes before data is used */
+  /*
+   * A latch that ensures that a snapshot is restored or the asynchronous initialization completes
+   * before data is used
+   */
   private volatile CountDownLatch mInitializationLatch = new CountDownLatch(1);
 
   /** Internal constructor that only performs initial parsing. */
@@ -275,6 +278,9 @@ class AccountTypeManagerImpl extends AccountTypeManager
           @Override
           public void handleMessage(Message msg) {
             switch (msg.what) {
+              case MESSAGE_RESTORE_SNAPSHOT:
+                restoreSnapshot();
+                break;
               case MESSAGE_LOAD_DATA:
                 loadAccountsInBackground();
                 break;
@@ -307,6 +313,10 @@ class AccountTypeManagerImpl extends AccountTypeManager
 
     ContentResolver.addStatusChangeListener(ContentResolver.SYNC_OBSERVER_TYPE_SETTINGS, this);
 
+    // Reading the persisted snapshot and creating its account types again is much faster than
+    // querying the account manager and the package manager, so callers waiting for the accounts
+    // don't wait for the load.
+    mListenerHandler.sendEmptyMessage(MESSAGE_RESTORE_SNAPSHOT);
     mListenerHandler.sendEmptyMessage(MESSAGE_LOAD_DATA);
   }
 
@@ -375,8 +385,8 @@ class AccountTypeManagerImpl extends AccountTypeManager
   }
 
   /**
-   * Returns instantly if accounts and account types have already been loaded. Otherwise waits for
-   * the background thread to complete the loading.
+   * Returns instantly if accounts and account types have already been loaded or restored from the
+   * persisted snapshot. Otherwise waits for the background thread to complete the loading.
    */
   void ensureAccountsLoaded() {
     CountDownLatch latch = mInitializationLatch;
@@ -393,6 +403,34 @@ class AccountTypeManagerImpl extends AccountTypeManager
     }
   }
 
+  /**
+   * Serves the snapshot persisted by the last process until the accounts are loaded. Always called
+   * on the background thread, before the first load, as its account types are created again while
+   * it is read.
+   */
+  private void restoreSnapshot() {
+    AccountTypeSnapshot snapshot = AccountTypeSnapshot.read(mContext);
+    if (snapshot == null || mInitializationLatch == null) {
+      return;
+    }
+    Log.i(
+        TAG,
+        "Restored meta-data for "
+            + snapshot.getAccountTypeCount()
+            + " account types, "
+            + snapshot.getAccounts(false).size()
+            + " accounts");
+    mSnapshot = snapshot;
+    releaseInitializationLatch();
+  }
+
+  private void releaseInitializationLatch() {
+    if (mInitializationLatch != null) {
+      mInitializationLatch.countDown();
+      mInitializationLatch = null;
+    }
+  }
+
   /**
    * Loads account list and corresponding account types (potentially with data sets). Always called
    * on a background thread.
@@ -413,6 +451,9 @@ class AccountTypeManagerImpl extends AccountTypeManager
     // type string may have multiple AccountType entries.
     final Map<String, List<AccountType>> accountTypesByType = new ArrayMap<>();
 
+    // How each account type was created, so a persisted snapshot can create them again.
+    final List<AccountTypeSnapshot.Source> sources = new ArrayList<>();
+
     final List<AccountWithDataSet> allAccounts = new ArrayList<>();
     final List<AccountWithDataSet> contactWritableAccounts = new ArrayList<>();
     final List<AccountWithDataSet> groupWritableAccounts = new ArrayList<>();
@@ -439,18 +480,21 @@ class AccountTypeManagerImpl extends AccountTypeManager
         continue;
       }
 
-      AccountType accountType;
+      int kind;
       if (GoogleAccountType.ACCOUNT_TYPE.equals(type)) {
-        accountType = new GoogleAccountType(mContext, auth.packageName);
+        kind = AccountTypeSnapshot.KIND_GOOGLE;
       } else if (ExchangeAccountType.isExchangeType(type)) {
-        accountType = new ExchangeAccountType(mContext, auth.packageName, type);
+        kind = AccountTypeSnapshot.KIND_EXCHANGE;
       } else if (SamsungAccountType.isSamsungAccountType(mContext, type, auth.packageName)) {
-        accountType = new SamsungAccountType(mContext, auth.packageName, type);
+        kind = AccountTypeSnapshot.KIND_SAMSUNG;
       } else {
         Log.d(
             TAG, "Registering external account type=" + type + ", packageName=" + auth.packageName);
-        accountType = new ExternalAccountType(mContext, auth.packageName, false);
+        kind = AccountTypeSnapshot.KIND_EXTERNAL;
       }
+      AccountType accountType =
+          AccountTypeSnapshot.Source.newSyncAdapterAccountType(
+              mContext, kind, auth.packageName, type);
       if (!accountType.isInitialized()) {
         if (accountType.isEmbedded()) {
           throw new IllegalStateException(
@@ -466,6 +510,7 @@ class AccountTypeManagerImpl extends AccountTypeManager
       accountType.iconRes = auth.iconId;
 
       addAccountType(accountType, accountTypesByTypeAndDataSet, accountTypesByType);
+      sources.add(new AccountTypeSnapshot.Source(kind, accountType));
 
       // Check to see if the account type knows of any other non-sync-adapter packages
       // that may provide other data sets of contact data.
@@ -510,6 +555,8 @@ class AccountTypeManagerImpl extends AccountTypeManager
                 + extensionPackage);
 
         addAccountType(accountType, accountTypesByTypeAndDataSet, accountTypesByType);
+        sources.add(
+            new AccountTypeSnapshot.Source(AccountTypeSnapshot.KIND_EXTENSION, accountType));
       }
     }
     timings.addSplit("Loaded account types");
@@ -545,14 +592,18 @@ class AccountTypeManagerImpl extends AccountTypeManager
 
     timings.addSplit("Loaded accounts");
 
-    synchronized (this) {
-      mAccountTypesWithDataSets = accountTypesByTypeAndDataSet;
-      mAccounts = allAccounts;
-      mContactWritableAccounts = contactWritableAccounts;
-      mGroupWritableAccounts = groupWritableAccounts;
-      mInvitableAccountTypes =
-          findAllInvitableAccountTypes(mContext, allAccounts, accountTypesByTypeAndDataSet);
-    }
+    AccountTypeSnapshot snapshot =
+        new AccountTypeSnapshot(
+            mContext,
+            sources,
+            accountTypesByTypeAndDataSet,
+            allAccounts,
+            contactWritableAccounts,
+            groupWritableAccounts);
+    mSnapshot = snapshot;
+    snapshot.write();
+
+    timings.addSplit("Saved snapshot");
 
     timings.dumpToLog();
     final long endTimeWall = SystemClock.elapsedRealtime();
@@ -561,19 +612,16 @@ class AccountTypeManagerImpl extends AccountTypeManager
     Log.i(
         TAG,
         "Loaded meta-data for "
-            + mAccountTypesWithDataSets.size()
+            + accountTypesByTypeAndDataSet.size()
             + " account types, "
-            + mAccounts.size()
+            + allAccounts.size()
             + " accounts in "
             + (endTimeWall - startTimeWall)
             + "ms(wall) "
             + (endTime - startTime)
             + "ms(cpu)");
 
-    if (mInitializationLatch != null) {
-      mInitializationLatch.countDown();
-      mInitializationLatch = null;
-    }
+    releaseInitializationLatch();
     if (Log.isLoggable(Constants.PERFORMANCE_TAG, Log.DEBUG)) {
       Log.d(Constants.PERFORMANCE_TAG, "AccountTypeManager.loadAccountsInBackground finish");
     }
@@ -601,13 +649,13 @@ class AccountTypeManagerImpl extends AccountTypeManager
   @Override
   public List<AccountWithDataSet> getAccounts(boolean contactWritableOnly) {
     ensureAccountsLoaded();
-    return contactWritableOnly ? mContactWritableAccounts : mAccounts;
+    return mSnapshot.getAccounts(contactWritableOnly);
   }
 
   /** Return the list of all known, group writable {@link AccountWithDataSet}'s. */
   public List<AccountWithDataSet> getGroupWritableAccounts() {
     ensureAccountsLoaded();
-    return mGroupWritableAccounts;
+    return mSnapshot.getGroupWritableAccounts();
   }
 
   /**
@@ -643,10 +691,8 @@ class AccountTypeManagerImpl extends AccountTypeManager
   @Override
   public AccountType getAccountType(AccountTypeWithDataSet accountTypeWithDataSet) {
     ensureAccountsLoaded();
-    synchronized (this) {
-      AccountType type = mAccountTypesWithDataSets.get(accountTypeWithDataSet);
-      return type != null ? type : mFallbackAccountType;
-    }
+    AccountType type = mSnapshot.getAccountType(accountTypeWithDataSet);
+    return type != null ? type : mFallbackAccountType;
   }
 
   /**
@@ -656,7 +702,7 @@ class AccountTypeManagerImpl extends AccountTypeManager
    */
   private Map<AccountTypeWithDataSet, AccountType> getAllInvitableAccountTypes() {
     ensureAccountsLoaded();
-    return mInvitableAccountTypes;
+    return mSnapshot.getInvitableAccountTypes();
   }
 
   @Override
@@ -742,11 +788,9 @@ class AccountTypeManagerImpl extends AccountTypeManager
   public List<AccountType> getAccountTypes(boolean contactWritableOnly) {
     ensureAccountsLoaded();
     final List<AccountType> accountTypes = new ArrayList<>();
-    synchronized (this) {
-      for (AccountType type : mAccountTypesWithDataSets.values()) {
-        if (!contactWritableOnly || type.areContactsWritable()) {
-          accountTypes.add(type);
-        }
+    for (AccountType type : mSnapshot.getAccountTypes()) {
+      if (!contactWritableOnly || type.areContactsWritable()) {
+        accountTypes.add(type);
       }
     }
     return accountTypes;
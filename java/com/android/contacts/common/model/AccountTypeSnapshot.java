@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.common.model;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.UserManager;
+import android.support.annotation.Nullable;
+import android.util.ArrayMap;
+import android.util.Log;
+import com.android.contacts.common.model.account.AccountType;
+import com.android.contacts.common.model.account.AccountTypeWithDataSet;
+import com.android.contacts.common.model.account.AccountWithDataSet;
+import com.android.contacts.common.model.account.ExchangeAccountType;
+import com.android.contacts.common.model.account.ExternalAccountType;
+import com.android.contacts.common.model.account.GoogleAccountType;
+import com.android.contacts.common.model.account.SamsungAccountType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The account types and accounts loaded by {@link AccountTypeManagerImpl}, swapped in as a whole
+ * after every load.
+ *
+ * <p>Snapshots are persisted, so the next process can serve reads from the last one while the
+ * accounts are loaded again. Only the way each {@link AccountType} was created is persisted, a
+ * snapshot creates them again while it is read, on the background thread of {@link
+ * AccountTypeManagerImpl}. Account types of other packages are parsed from their XML, which
+ * callers on the UI thread must not wait for.
+ */
+@ThreadSafe
+final class AccountTypeSnapshot {
+
+  private static final String TAG = "AccountTypeSnapshot";
+
+  private static final String PREFERENCES_NAME = "account_type_snapshot";
+  private static final String KEY_SNAPSHOT = "snapshot";
+
+  /** Version of the persisted format, snapshots of other versions are ignored. */
+  private static final int VERSION = 1;
+
+  static final int KIND_GOOGLE = 0;
+  static final int KIND_EXCHANGE = 1;
+  static final int KIND_SAMSUNG = 2;
+  static final int KIND_EXTERNAL = 3;
+  static final int KIND_EXTENSION = 4;
+
+  private final Context mContext;
+  private final Map<AccountTypeWithDataSet, Source> mSources;
+  private final List<AccountWithDataSet> mAccounts;
+  private final List<AccountWithDataSet> mContactWritableAccounts;
+  private final List<AccountWithDataSet> mGroupWritableAccounts;
+  private final Map<AccountTypeWithDataSet, AccountType> mAccountTypes;
+
+  @GuardedBy("this")
+  private Map<AccountTypeWithDataSet, AccountType> mInvitableAccountTypes;
+
+  /** Creates a snapshot of account types which were created from {@code sources}. */
+  AccountTypeSnapshot(
+      Context context,
+      List<Source> sources,
+      Map<AccountTypeWithDataSet, AccountType> accountTypes,
+      List<AccountWithDataSet> accounts,
+      List<AccountWithDataSet> contactWritableAccounts,
+      List<AccountWithDataSet> groupWritableAccounts) {
+    mContext = context;
+    mSources = new ArrayMap<>();
+    for (Source source : sources) {
+      mSources.put(source.getAccountTypeWithDataSet(), source);
+    }
+    mAccounts = Collections.unmodifiableList(accounts);
+    mContactWritableAccounts = Collections.unmodifiableList(contactWritableAccounts);
+    mGroupWritableAccounts = Collections.unmodifiableList(groupWritableAccounts);
+    mAccountTypes = new ArrayMap<>(accountTypes);
+  }
+
+  List<AccountWithDataSet> getAccounts(boolean contactWritableOnly) {
+    return contactWritableOnly ? mContactWritableAccounts : mAccounts;
+  }
+
+  List<AccountWithDataSet> getGroupWritableAccounts() {
+    return mGroupWritableAccounts;
+  }
+
+  int getAccountTypeCount() {
+    return mSources.size();
+  }
+
+  /** Returns the account type, or null if it is unknown or could not be restored. */
+  @Nullable
+  AccountType getAccountType(AccountTypeWithDataSet accountTypeWithDataSet) {
+    return mAccountTypes.get(accountTypeWithDataSet);
+  }
+
+  Collection<AccountType> getAccountTypes() {
+    return new ArrayList<>(mAccountTypes.values());
+  }
+
+  /** See {@link AccountTypeManagerImpl#findAllInvitableAccountTypes}. */
+  synchronized Map<AccountTypeWithDataSet, AccountType> getInvitableAccountTypes() {
+    if (mInvitableAccountTypes == null) {
+      Map<AccountTypeWithDataSet, AccountType> accountTypes = new ArrayMap<>();
+      for (AccountType accountType : getAccountTypes()) {
+        accountTypes.put(accountType.getAccountTypeAndDataSet(), accountType);
+      }
+      mInvitableAccountTypes =
+          AccountTypeManagerImpl.findAllInvitableAccountTypes(mContext, mAccounts, accountTypes);
+    }
+    return mInvitableAccountTypes;
+  }
+
+  /** Persists the snapshot unless it is the one already persisted. */
+  void write() {
+    SharedPreferences preferences = getPreferences(mContext);
+    if (preferences == null) {
+      return;
+    }
+    String json;
+    try {
+      json = toJson().toString();
+    } catch (JSONException e) {
+      Log.e(TAG, "Failed to serialize snapshot", e);
+      return;
+    }
+    if (!json.equals(preferences.getString(KEY_SNAPSHOT, null))) {
+      preferences.edit().putString(KEY_SNAPSHOT, json).apply();
+    }
+  }
+
+  /** Returns the last persisted snapshot, or null if there is none. */
+  @Nullable
+  static AccountTypeSnapshot read(Context context) {
+    SharedPreferences preferences = getPreferences(context);
+    String json = preferences == null ? null : preferences.getString(KEY_SNAPSHOT, null);
+    if (json == null) {
+      return null;
+    }
+    try {
+      return fromJson(context, new JSONObject(json));
+    } catch (JSONException | IllegalArgumentException e) {
+      Log.e(TAG, "Ignoring invalid snapshot", e);
+      return null;
+    }
+  }
+
+  /** Returns the preferences of the snapshot, or null if they can't be accessed yet. */
+  @Nullable
+  private static SharedPreferences getPreferences(Context context) {
+    // Credential encrypted storage is not available before the user unlocks the device.
+    if (!context.getSystemService(UserManager.class).isUserUnlocked()) {
+      return null;
+    }
+    return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+  }
+
+  private JSONObject toJson() throws JSONException {
+    JSONArray sources = new JSONArray();
+    for (Source source : mSources.values()) {
+      sources.put(source.toJson());
+    }
+    return new JSONObject()
+        .put("version", VERSION)
+        .put("sources", sources)
+        .put("accounts", AccountWithDataSet.stringifyList(mAccounts))
+        .put("contactWritableAccounts", AccountWithDataSet.stringifyList(mContactWritableAccounts))
+        .put("groupWritableAccounts", AccountWithDataSet.stringifyList(mGroupWritableAccounts));
+  }
+
+  @Nullable
+  private static AccountTypeSnapshot fromJson(Context context, JSONObject json)
+      throws JSONException {
+    if (json.getInt("version") != VERSION) {
+      return null;
+    }
+    JSONArray jsonSources = json.getJSONArray("sources");
+    List<Source> sources = new ArrayList<>();
+    Map<AccountTypeWithDataSet, AccountType> accountTypes = new ArrayMap<>();
+    for (int i = 0; i < jsonSources.length(); i++) {
+      Source source = Source.fromJson(jsonSources.getJSONObject(i));
+      sources.add(source);
+      AccountType accountType = source.restore(context);
+      if (accountType != null) {
+        accountTypes.put(source.getAccountTypeWithDataSet(), accountType);
+      }
+    }
+    return new AccountTypeSnapshot(
+        context,
+        sources,
+        accountTypes,
+        AccountWithDataSet.unstringifyList(json.getString("accounts")),
+        AccountWithDataSet.unstringifyList(json.getString("contactWritableAccounts")),
+        AccountWithDataSet.unstringifyList(json.getString("groupWritableAccounts")));
+  }
+
+  /** How an {@link AccountType} was created, so it can be created again. */
+  static final class Source {
+
+    private final int mKind;
+    private final String mPackageName;
+    private final String mAccountType;
+    @Nullable private final String mDataSet;
+    private final int mTitleRes;
+    private final int mIconRes;
+
+    /**
+     * @param kind one of the KIND constants, the class {@code accountType} was created with
+     */
+    Source(int kind, AccountType accountType) {
+      this(
+          kind,
+          accountType.syncAdapterPackageName,
+          accountType.accountType,
+          accountType.dataSet,
+          accountType.titleRes,
+          accountType.iconRes);
+    }
+
+    private Source(
+        int kind,
+        String packageName,
+        String accountType,
+        @Nullable String dataSet,
+        int titleRes,
+        int iconRes) {
+      mKind = kind;
+      mPackageName = packageName;
+      mAccountType = accountType;
+      mDataSet = dataSet;
+      mTitleRes = titleRes;
+      mIconRes = iconRes;
+    }
+
+    AccountTypeWithDataSet getAccountTypeWithDataSet() {
+      return AccountTypeWithDataSet.get(mAccountType, mDataSet);
+    }
+
+    /**
+     * Creates the account type of a sync adapter. Its {@link AccountType#accountType}, {@link
+     * AccountType#titleRes} and {@link AccountType#iconRes} are set by the caller.
+     */
+    static AccountType newSyncAdapterAccountType(
+        Context context, int kind, String packageName, String type) {
+      switch (kind) {
+        case KIND_GOOGLE:
+          return new GoogleAccountType(context, packageName);
+        case KIND_EXCHANGE:
+          return new ExchangeAccountType(context, packageName, type);
+        case KIND_SAMSUNG:
+          return new SamsungAccountType(context, packageName, type);
+        case KIND_EXTERNAL:
+          return new ExternalAccountType(context, packageName, false);
+        default:
+          throw new IllegalArgumentException("Not a sync adapter kind: " + kind);
+      }
+    }
+
+    /** Returns the account type created again, or null if that failed. */
+    @Nullable
+    AccountType restore(Context context) {
+      AccountType accountType;
+      if (mKind == KIND_EXTENSION) {
+        accountType = new ExternalAccountType(context, mPackageName, true);
+      } else {
+        accountType = newSyncAdapterAccountType(context, mKind, mPackageName, mAccountType);
+        accountType.accountType = mAccountType;
+        accountType.titleRes = mTitleRes;
+        accountType.iconRes = mIconRes;
+      }
+      if (!accountType.isInitialized()
+          || !Objects.equals(accountType.getAccountTypeAndDataSet(), getAccountTypeWithDataSet())) {
+        Log.w(TAG, "Can't restore account type " + mAccountType + " of " + mPackageName);
+        return null;
+      }
+      return accountType;
+    }
+
+    private JSONObject toJson() throws JSONException {
+      return new JSONObject()
+          .put("kind", mKind)
+          .put("packageName", mPackageName)
+          .put("accountType", mAccountType)
+          .put("dataSet", mDataSet)
+          .put("titleRes", mTitleRes)
+          .put("iconRes", mIconRes);
+    }
+
+    private static Source fromJson(JSONObject json) throws JSONException {
+      return new Source(
+          json.getInt("kind"),
+          json.getString("packageName"),
+          json.getString("accountType"),
+          json.optString("dataSet", null),
+          json.getInt("titleRes"),
+          json.getInt("iconRes"));
+    }
+  }
+}
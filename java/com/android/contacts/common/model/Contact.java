@@ -181,6 +181,7 @@ public class Contact {
     mGroups = from.mGroups;
 
     mPhotoBinaryData = from.mPhotoBinaryData;
+    mThumbnailPhotoBinaryData = from.mThumbnailPhotoBinaryData;
     mSendToVoicemail = from.mSendToVoicemail;
     mCustomRingtone = from.mCustomRingtone;
     mIsUserProfile = from.mIsUserProfile;
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.contacts.common.model;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.ContactsContract;
+import android.provider.ContactsContract.Contacts;
+import android.provider.ContactsContract.Directory;
+import android.provider.ContactsContract.RawContacts;
+import android.support.annotation.Nullable;
+import android.util.ArrayMap;
+import android.util.LruCache;
+import com.google.common.collect.ImmutableList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Process wide cache of the contacts parsed by {@link ContactLoader}, so loading a contact again,
+ * e.g. in call details, quick contact and the in-call UI, only queries the versions of its raw
+ * contacts. Entries are keyed by the lookup key of the requested URI and are valid as long as the
+ * contact consists of the same raw contacts with the same {@link RawContacts#VERSION}s.
+ */
+@ThreadSafe
+final class ContactCache {
+
+  private static final int MAX_ENTRIES = 16;
+
+  private static final LruCache<String, Contact> sContacts = new LruCache<>(MAX_ENTRIES);
+
+  private ContactCache() {}
+
+  /**
+   * Returns the lookup key of {@code contactUri}, or null if its contact can't be cached, e.g.
+   * because it is from a remote directory or isn't requested by lookup key.
+   */
+  @Nullable
+  static String getLookupKey(Uri contactUri) {
+    if (!ContactsContract.AUTHORITY.equals(contactUri.getAuthority())) {
+      return null;
+    }
+    String directory = contactUri.getQueryParameter(ContactsContract.DIRECTORY_PARAM_KEY);
+    if (directory != null && !String.valueOf(Directory.DEFAULT).equals(directory)) {
+      return null;
+    }
+    List<String> segments = contactUri.getPathSegments();
+    Uri lookupBase = Contacts.CONTENT_LOOKUP_URI;
+    if (segments.size() < 3
+        || !segments.get(0).equals(lookupBase.getPathSegments().get(0))
+        || !segments.get(1).equals(lookupBase.getPathSegments().get(1))) {
+      return null;
+    }
+    return segments.get(2);
+  }
+
+  /**
+   * Returns a copy of the cached contact, which the caller may change, e.g. by formatting its phone
+   * numbers, without affecting other loaders.
+   */
+  @Nullable
+  static Contact get(String lookupKey) {
+    Contact contact = sContacts.get(lookupKey);
+    return contact == null ? null : copyOf(contact);
+  }
+
+  /**
+   * Caches a copy of {@code contact} without the data which is not covered by the versions of its
+   * raw contacts, i.e. the group meta-data and the invitable account types.
+   */
+  static void put(String lookupKey, Contact contact) {
+    Contact copy = copyOf(contact);
+    copy.setGroupMetaData(null);
+    copy.setInvitableAccountTypes(null);
+    sContacts.put(lookupKey, copy);
+  }
+
+  /** Copies {@code contact} with its own raw contacts and data items. */
+  private static Contact copyOf(Contact contact) {
+    // Loaders copy the cached contact again with their own requested URI.
+    Contact copy = new Contact(contact.getLookupUri(), contact);
+    ImmutableList.Builder<RawContact> rawContacts = ImmutableList.builder();
+    for (RawContact rawContact : contact.getRawContacts()) {
+      rawContacts.add(rawContact.copy());
+    }
+    copy.setRawContacts(rawContacts.build());
+    return copy;
+  }
+
+  static void remove(String lookupKey) {
+    sContacts.remove(lookupKey);
+  }
+
+  /**
+   * Returns the ids of the raw contacts of {@code contact} which changed since it was loaded, or
+   * null if it no longer consists of the same raw contacts.
+   */
+  @Nullable
+  static Set<Long> findChangedRawContactIds(ContentResolver resolver, Contact contact) {
+    Map<Long, Long> versions = new ArrayMap<>();
+    try (Cursor cursor =
+        resolver.query(
+            RawContacts.CONTENT_URI,
+            new String[] {RawContacts._ID, RawContacts.VERSION},
+            RawContacts.CONTACT_ID + "=? AND " + RawContacts.DELETED + "=0",
+            new String[] {String.valueOf(contact.getId())},
+            null)) {
+      if (cursor == null) {
+        return null;
+      }
+      while (cursor.moveToNext()) {
+        versions.put(cursor.getLong(0), cursor.getLong(1));
+      }
+    }
+    if (versions.size() != contact.getRawContacts().size()) {
+      return null;
+    }
+    Set<Long> changed = new HashSet<>();
+    for (RawContact rawContact : contact.getRawContacts()) {
+      Long id = rawContact.getId();
+      if (!versions.containsKey(id)) {
+        return null;
+      }
+      if (!Objects.equals(
+          versions.get(id), rawContact.getValues().getAsLong(RawContacts.VERSION))) {
+        changed.add(id);
+      }
+    }
+    return changed;
+  }
+}
@@ -228,18 +228,35 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
       // Is this the same Uri as what we had before already? In that case, reuse that result
       final Contact result;
       final boolean resultIsCached;
+      String lookupKey = null;
       if (cachedResult != null && UriUtils.areEqual(cachedResult.getLookupUri(), mLookupUri)) {
         // We are using a cached result from earlier. Below, we should make sure
         // we are not doing any more network or disc accesses
         result = new Contact(mRequestedUri, cachedResult);
         resultIsCached = true;
+      } else if (uriCurrentFormat.getLastPathSegment().equals(Constants.LOOKUP_URI_ENCODED)) {
+        result = loadEncodedContactEntity(uriCurrentFormat, mLookupUri);
+        resultIsCached = false;
       } else {
-        if (uriCurrentFormat.getLastPathSegment().equals(Constants.LOOKUP_URI_ENCODED)) {
-          result = loadEncodedContactEntity(uriCurrentFormat, mLookupUri);
-        } else {
+        // Loaded by any loader before? Reuse it as far as its raw contacts didn't change.
+        lookupKey = ContactCache.getLookupKey(uriCurrentFormat);
+        final Contact sharedResult = lookupKey == null ? null : ContactCache.get(lookupKey);
+        final Set<Long> changedRawContactIds =
+            sharedResult == null
+                ? null
+                : ContactCache.findChangedRawContactIds(resolver, sharedResult);
+        if (changedRawContactIds == null) {
           result = loadContactEntity(resolver, uriCurrentFormat);
+          resultIsCached = false;
+        } else if (changedRawContactIds.isEmpty()) {
+          result = new Contact(mRequestedUri, sharedResult);
+          resultIsCached = true;
+        } else {
+          result =
+              loadChangedRawContacts(
+                  resolver, uriCurrentFormat, sharedResult, changedRawContactIds);
+          resultIsCached = false;
         }
-        resultIsCached = false;
       }
       if (result.isLoaded()) {
         if (result.isDirectoryEntry()) {
@@ -256,12 +273,17 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
         }
         if (!resultIsCached) {
           loadPhotoBinaryData(result);
+          if (lookupKey != null) {
+            ContactCache.put(lookupKey, result);
+          }
         }
 
         // Note ME profile should never have "Add connection"
         if (mLoadInvitableAccountTypes && result.getInvitableAccountTypes() == null) {
           loadInvitableAccountTypes(result);
         }
+      } else if (lookupKey != null) {
+        ContactCache.remove(lookupKey);
       }
       return result;
     } catch (Exception e) {
@@ -271,9 +293,50 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
   }
 
   private Contact loadContactEntity(ContentResolver resolver, Uri contactUri) {
+    return loadContactEntity(resolver, contactUri, null);
+  }
+
+  /**
+   * Loads the contact with only the raw contacts in {@code changedRawContactIds} parsed again, the
+   * other raw contacts are reused from {@code previous}.
+   */
+  private Contact loadChangedRawContacts(
+      ContentResolver resolver, Uri contactUri, Contact previous, Set<Long> changedRawContactIds) {
+    final Contact contact =
+        loadContactEntity(
+            resolver,
+            contactUri,
+            Contacts.Entity.RAW_CONTACT_ID
+                + " IN ("
+                + TextUtils.join(",", changedRawContactIds)
+                + ")");
+    if (!contact.isLoaded()) {
+      return contact;
+    }
+    final Map<Long, RawContact> changedRawContacts = Maps.newHashMap();
+    for (RawContact rawContact : contact.getRawContacts()) {
+      changedRawContacts.put(rawContact.getId(), rawContact);
+    }
+    final ImmutableList.Builder<RawContact> rawContactsBuilder = new ImmutableList.Builder<>();
+    for (RawContact rawContact : previous.getRawContacts()) {
+      final RawContact changedRawContact = changedRawContacts.get(rawContact.getId());
+      rawContactsBuilder.add(changedRawContact != null ? changedRawContact : rawContact);
+    }
+    contact.setRawContacts(rawContactsBuilder.build());
+    LogUtil.v(
+        TAG,
+        "parsed %d of %d raw contacts again",
+        changedRawContactIds.size(),
+        previous.getRawContacts().size());
+    return contact;
+  }
+
+  /** @param selection selects the raw contacts to load, null to load all of them */
+  private Contact loadContactEntity(ContentResolver resolver, Uri contactUri, String selection) {
     Uri entityUri = Uri.withAppendedPath(contactUri, Contacts.Entity.CONTENT_DIRECTORY);
     Cursor cursor =
-        resolver.query(entityUri, ContactQuery.COLUMNS, null, null, Contacts.Entity.RAW_CONTACT_ID);
+        resolver.query(
+            entityUri, ContactQuery.COLUMNS, selection, null, Contacts.Entity.RAW_CONTACT_ID);
     if (cursor == null) {
       LogUtil.e(TAG, "No cursor returned in loadContactEntity");
       return Contact.forNotFound(mRequestedUri);
@@ -510,11 +573,8 @@ public class ContactLoader extends AsyncTaskLoader<Contact> {
     cursorColumnToContentValues(cursor, cv, ContactQuery.DATA13);
     cursorColumnToContentValues(cursor, cv, ContactQuery.DATA14);
     cursorColumnToContentValues(cursor, cv, ContactQuery.DATA15);
-    cursorColumnToContentValues(cursor, cv, ContactQuery.DATA_SYNC1);
-    cursorColumnToContentValues(cursor, cv, ContactQuery.DATA_SYNC2);
-    cursorColumnToContentValues(cursor, cv, ContactQuery.DATA_SYNC3);
-    cursorColumnToContentValues(cursor, cv, ContactQuery.DATA_SYNC4);
-    cursorColumnToContentValues(cursor, cv, ContactQuery.DATA_VERSION);
+    // The sync columns and the data version are only used by sync adapters and are not kept, as
+    // loaded contacts are shared by all loaders.
     cursorColumnToContentValues(cursor, cv, ContactQuery.IS_PRIMARY);
     cursorColumnToContentValues(cursor, cv, ContactQuery.IS_SUPERPRIMARY);
     cursorColumnToContentValues(cursor, cv, ContactQuery.MIMETYPE);
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.contacts.common.model;
+
+import android.content.ContentValues;
+import android.provider.ContactsContract.CommonDataKinds.Email;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.Data;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures the heap used by the data items of a synthetic contact with many phone numbers and
+ * emails, once held as the {@link ContentValues} loaded from the provider and once as the {@link
+ * com.android.contacts.common.model.dataitem.DataRow DataRows} {@link RawContact} keeps.
+ *
+ * <p>The heap is measured like {@link com.android.dialer.metrics.LocalMetrics#recordMemory} does,
+ * after a garbage collection, so other threads allocating meanwhile skew the result.
+ */
+public final class ContactMemoryBenchmark {
+
+  private static final String TAG = "ContactMemoryBenchmark";
+
+  /** Enough copies of the contact for the delta to stand out from the noise of the heap. */
+  private static final int CONTACTS = 20;
+
+  private ContactMemoryBenchmark() {}
+
+  /** @return a report of the heap used by the contacts with {@code items} phones and emails. */
+  @WorkerThread
+  public static String run(int items) {
+    StringBuilder report = new StringBuilder();
+    List<List<ContentValues>> loadedRows = new ArrayList<>(CONTACTS);
+    long before = getUsedHeapBytes();
+    for (int i = 0; i < CONTACTS; i++) {
+      loadedRows.add(buildRows(i, items));
+    }
+    appendResult(report, "content values", getUsedHeapBytes() - before, items);
+
+    List<RawContact> rawContacts = new ArrayList<>(CONTACTS);
+    before = getUsedHeapBytes();
+    for (List<ContentValues> rows : loadedRows) {
+      RawContact rawContact = new RawContact();
+      for (ContentValues row : rows) {
+        rawContact.addDataItemValues(row);
+      }
+      rawContacts.add(rawContact);
+    }
+    // The rows are only needed to build the raw contacts, like the cursor of ContactLoader.
+    loadedRows.clear();
+    appendResult(report, "data rows", getUsedHeapBytes() - before, items);
+
+    Log.i(TAG, report.toString() + rawContacts.size() + " contacts kept");
+    return report.toString();
+  }
+
+  private static List<ContentValues> buildRows(int contact, int items) {
+    List<ContentValues> rows = new ArrayList<>(2 * items);
+    for (int i = 0; i < items; i++) {
+      ContentValues phone = buildRow(contact, 2 * i, Phone.CONTENT_ITEM_TYPE);
+      phone.put(Phone.NUMBER, String.format(Locale.US, "+1 650-555-%04d", i % 10_000));
+      phone.put(Phone.NORMALIZED_NUMBER, String.format(Locale.US, "+1650555%04d", i % 10_000));
+      phone.put(Phone.TYPE, Phone.TYPE_MOBILE);
+      rows.add(phone);
+
+      ContentValues email = buildRow(contact, 2 * i + 1, Email.CONTENT_ITEM_TYPE);
+      email.put(Email.ADDRESS, "contact" + contact + ".email" + i + "@example.com");
+      email.put(Email.TYPE, Email.TYPE_CUSTOM);
+      email.put(Email.LABEL, "Work");
+      rows.add(email);
+    }
+    return rows;
+  }
+
+  private static ContentValues buildRow(int contact, int item, String mimeType) {
+    ContentValues row = new ContentValues();
+    row.put(Data._ID, (long) contact * 100_000 + item);
+    row.put(Data.RAW_CONTACT_ID, (long) contact);
+    // Every row of a cursor holds its own copy of the MIME type.
+    row.put(Data.MIMETYPE, new String(mimeType));
+    row.put(Data.IS_PRIMARY, 0);
+    row.put(Data.IS_SUPER_PRIMARY, 0);
+    row.put(Data.DATA_VERSION, 1);
+    return row;
+  }
+
+  private static long getUsedHeapBytes() {
+    Runtime runtime = Runtime.getRuntime();
+    runtime.gc();
+    runtime.runFinalization();
+    runtime.gc();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static void appendResult(StringBuilder report, String name, long bytes, int items) {
+    report.append(
+        String.format(
+            Locale.US,
+            "%s: %d contacts of %d phones and emails, %d KB, %d bytes/item%n",
+            name,
+            CONTACTS,
+            items,
+            bytes / 1024,
+            items == 0 ? 0 : bytes / (CONTACTS * 2L * items)));
+  }
+}
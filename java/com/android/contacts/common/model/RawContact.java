@@ -28,6 +28,7 @@ import android.provider.ContactsContract.RawContacts;
 import com.android.contacts.common.model.account.AccountType;
 import com.android.contacts.common.model.account.AccountWithDataSet;
 import com.android.contacts.common.model.dataitem.DataItem;
+import com.android.contacts.common.model.dataitem.DataRow;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -83,6 +84,15 @@ public final class RawContact implements Parcelable {
     parcel.readTypedList(mDataItems, NamedDataItem.CREATOR);
   }
 
+  /** Returns a copy of the raw contact, whose data items can be changed independently. */
+  public RawContact copy() {
+    final RawContact copy = new RawContact(new ContentValues(mValues));
+    for (NamedDataItem dataItem : mDataItems) {
+      copy.mDataItems.add(new NamedDataItem(dataItem.mUri, dataItem.mRow.copy()));
+    }
+    return copy;
+  }
+
   public static RawContact createFrom(Entity entity) {
     final ContentValues values = entity.getEntityValues();
     final ArrayList<Entity.NamedContentValues> subValues = entity.getSubValues();
@@ -220,22 +230,26 @@ public final class RawContact implements Parcelable {
     setAccount(null, null, null);
   }
 
-  /** Creates and inserts a DataItem object that wraps the content values, and returns it. */
+  /**
+   * Creates and inserts a DataItem object that holds the content values, which are not used
+   * afterwards.
+   */
   public void addDataItemValues(ContentValues values) {
     addNamedDataItemValues(Data.CONTENT_URI, values);
   }
 
   public NamedDataItem addNamedDataItemValues(Uri uri, ContentValues values) {
-    final NamedDataItem namedItem = new NamedDataItem(uri, values);
+    final NamedDataItem namedItem = new NamedDataItem(uri, DataRow.of(values));
     mDataItems.add(namedItem);
     return namedItem;
   }
 
+  /** Returns a copy of the columns of each data item, changes to them are not stored. */
   public ArrayList<ContentValues> getContentValues() {
     final ArrayList<ContentValues> list = new ArrayList<>(mDataItems.size());
     for (NamedDataItem dataItem : mDataItems) {
       if (Data.CONTENT_URI.equals(dataItem.mUri)) {
-        list.add(dataItem.mContentValues);
+        list.add(dataItem.mRow.toContentValues());
       }
     }
     return list;
@@ -245,7 +259,7 @@ public final class RawContact implements Parcelable {
     final ArrayList<DataItem> list = new ArrayList<>(mDataItems.size());
     for (NamedDataItem dataItem : mDataItems) {
       if (Data.CONTENT_URI.equals(dataItem.mUri)) {
-        list.add(DataItem.createFrom(dataItem.mContentValues));
+        list.add(DataItem.createFrom(dataItem.mRow));
       }
     }
     return list;
@@ -256,7 +270,7 @@ public final class RawContact implements Parcelable {
     sb.append("RawContact: ").append(mValues);
     for (RawContact.NamedDataItem namedDataItem : mDataItems) {
       sb.append("\n  ").append(namedDataItem.mUri);
-      sb.append("\n  -> ").append(namedDataItem.mContentValues);
+      sb.append("\n  -> ").append(namedDataItem.mRow);
     }
     return sb.toString();
   }
@@ -306,16 +320,21 @@ public final class RawContact implements Parcelable {
     // (this will also make the classes easier to use).
     // Since instanceof is used later anyways, having a list of Objects won't hurt and is no
     // worse than having a DataItem.
-    public final ContentValues mContentValues;
+    //
+    // The columns are kept in a DataRow, as loaded contacts are cached, and ContentValues are
+    // only created when they are asked for.
+    public final DataRow mRow;
 
-    public NamedDataItem(Uri uri, ContentValues values) {
+    public NamedDataItem(Uri uri, DataRow row) {
       this.mUri = uri;
-      this.mContentValues = values;
+      this.mRow = row;
     }
 
     public NamedDataItem(Parcel parcel) {
       this.mUri = parcel.readParcelable(Uri.class.getClassLoader());
-      this.mContentValues = parcel.readParcelable(ContentValues.class.getClassLoader());
+      this.mRow =
+          DataRow.of(
+              (ContentValues) parcel.readParcelable(ContentValues.class.getClassLoader()));
     }
 
     @Override
@@ -326,12 +345,12 @@ public final class RawContact implements Parcelable {
     @Override
     public void writeToParcel(Parcel parcel, int i) {
       parcel.writeParcelable(mUri, i);
-      parcel.writeParcelable(mContentValues, i);
+      parcel.writeParcelable(mRow.toContentValues(), i);
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(mUri, mContentValues);
+      return Objects.hash(mUri, mRow);
     }
 
     @Override
@@ -345,7 +364,7 @@ public final class RawContact implements Parcelable {
 
       final NamedDataItem other = (NamedDataItem) obj;
       return Objects.equals(mUri, other.mUri)
-          && Objects.equals(mContentValues, other.mContentValues);
+          && Objects.equals(mRow, other.mRow);
     }
   }
 }
@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.account;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.graphics.drawable.Drawable;
@@ -30,6 +29,7 @@ import android.util.ArrayMap;
 import android.view.inputmethod.EditorInfo;
 import android.widget.EditText;
 import com.android.contacts.common.model.dataitem.DataKind;
+import com.android.contacts.common.model.dataitem.DataRow;
 import com.android.dialer.contacts.resources.R;
 import java.text.Collator;
 import java.util.ArrayList;
@@ -293,13 +293,13 @@ public abstract class AccountType {
   }
 
   /**
-   * Generic method of inflating a given {@link ContentValues} into a user-readable {@link
+   * Generic method of inflating the columns of a data item into a user-readable {@link
    * CharSequence}. For example, an inflater could combine the multiple columns of {@link
    * StructuredPostal} together using a string resource before presenting to the user.
    */
   public interface StringInflater {
 
-    CharSequence inflateUsing(Context context, ContentValues values);
+    CharSequence inflateUsing(Context context, DataRow values);
   }
 
   protected static class DefinitionException extends Exception {
@@ -38,6 +38,7 @@ import android.util.ArrayMap;
 import android.util.AttributeSet;
 import android.view.inputmethod.EditorInfo;
 import com.android.contacts.common.model.dataitem.DataKind;
+import com.android.contacts.common.model.dataitem.DataRow;
 import com.android.contacts.common.util.CommonDateUtils;
 import com.android.contacts.common.util.ContactDisplayUtils;
 import com.android.dialer.common.LogUtil;
@@ -55,7 +56,7 @@ public abstract class BaseAccountType extends AccountType {
   public static final StringInflater ORGANIZATION_BODY_INFLATER =
       new StringInflater() {
         @Override
-        public CharSequence inflateUsing(Context context, ContentValues values) {
+        public CharSequence inflateUsing(Context context, DataRow values) {
           final CharSequence companyValue =
               values.containsKey(Organization.COMPANY)
                   ? values.getAsString(Organization.COMPANY)
@@ -605,7 +606,7 @@ public abstract class BaseAccountType extends AccountType {
     }
 
     @Override
-    public CharSequence inflateUsing(Context context, ContentValues values) {
+    public CharSequence inflateUsing(Context context, DataRow values) {
       final boolean validColumn = values.containsKey(mColumnName);
       final boolean validString = mStringRes > 0;
 
@@ -665,7 +666,7 @@ public abstract class BaseAccountType extends AccountType {
     }
 
     @Override
-    public CharSequence inflateUsing(Context context, ContentValues values) {
+    public CharSequence inflateUsing(Context context, DataRow values) {
       final Integer type = values.getAsInteger(getTypeColumn());
       final String label = values.getAsString(getLabelColumn());
       return getTypeLabel(context.getResources(), type, label);
@@ -42,11 +42,11 @@ import com.android.contacts.common.model.account.AccountType.EditType;
 /** This is the base class for data items, which represents a row from the Data table. */
 public class DataItem implements Collapser.Collapsible<DataItem> {
 
-  private final ContentValues mContentValues;
+  private final DataRow mRow;
   protected DataKind mKind;
 
-  protected DataItem(ContentValues values) {
-    mContentValues = values;
+  protected DataItem(DataRow row) {
+    mRow = row;
   }
 
   /**
@@ -54,89 +54,103 @@ public class DataItem implements Collapser.Collapsible<DataItem> {
    * values. Raw contact is the raw contact that this data item is associated with.
    */
   public static DataItem createFrom(ContentValues values) {
-    final String mimeType = values.getAsString(Data.MIMETYPE);
+    return createFrom(DataRow.of(values));
+  }
+
+  /**
+   * Factory for creating subclasses of DataItem objects based on the mimetype of the row. Changes
+   * to the data item are written to {@code values}.
+   */
+  public static DataItem createFrom(DataRow row) {
+    final String mimeType = row.getAsString(Data.MIMETYPE);
     if (GroupMembership.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new GroupMembershipDataItem(values);
+      return new GroupMembershipDataItem(row);
     } else if (StructuredName.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new StructuredNameDataItem(values);
+      return new StructuredNameDataItem(row);
     } else if (Phone.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new PhoneDataItem(values);
+      return new PhoneDataItem(row);
     } else if (Email.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new EmailDataItem(values);
+      return new EmailDataItem(row);
     } else if (StructuredPostal.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new StructuredPostalDataItem(values);
+      return new StructuredPostalDataItem(row);
     } else if (Im.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new ImDataItem(values);
+      return new ImDataItem(row);
     } else if (Organization.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new OrganizationDataItem(values);
+      return new OrganizationDataItem(row);
     } else if (Nickname.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new NicknameDataItem(values);
+      return new NicknameDataItem(row);
     } else if (Note.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new NoteDataItem(values);
+      return new NoteDataItem(row);
     } else if (Website.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new WebsiteDataItem(values);
+      return new WebsiteDataItem(row);
     } else if (SipAddress.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new SipAddressDataItem(values);
+      return new SipAddressDataItem(row);
     } else if (Event.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new EventDataItem(values);
+      return new EventDataItem(row);
     } else if (Relation.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new RelationDataItem(values);
+      return new RelationDataItem(row);
     } else if (Identity.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new IdentityDataItem(values);
+      return new IdentityDataItem(row);
     } else if (Photo.CONTENT_ITEM_TYPE.equals(mimeType)) {
-      return new PhotoDataItem(values);
+      return new PhotoDataItem(row);
     }
 
     // generic
-    return new DataItem(values);
+    return new DataItem(row);
   }
 
+  /** Returns a copy of the columns of the data item, changes to it are not stored. */
   public ContentValues getContentValues() {
-    return mContentValues;
+    return mRow.toContentValues();
+  }
+
+  /** Returns the row holding the columns of the data item. */
+  protected DataRow getRow() {
+    return mRow;
   }
 
   public Long getRawContactId() {
-    return mContentValues.getAsLong(Data.RAW_CONTACT_ID);
+    return mRow.getAsLong(Data.RAW_CONTACT_ID);
   }
 
   public void setRawContactId(long rawContactId) {
-    mContentValues.put(Data.RAW_CONTACT_ID, rawContactId);
+    mRow.put(Data.RAW_CONTACT_ID, rawContactId);
   }
 
   /** Returns the data id. */
   public long getId() {
-    return mContentValues.getAsLong(Data._ID);
+    return mRow.getAsLong(Data._ID);
   }
 
   /** Returns the mimetype of the data. */
   public String getMimeType() {
-    return mContentValues.getAsString(Data.MIMETYPE);
+    return mRow.getAsString(Data.MIMETYPE);
   }
 
   public void setMimeType(String mimeType) {
-    mContentValues.put(Data.MIMETYPE, mimeType);
+    mRow.put(Data.MIMETYPE, mimeType);
   }
 
   public boolean isPrimary() {
-    Integer primary = mContentValues.getAsInteger(Data.IS_PRIMARY);
+    Integer primary = mRow.getAsInteger(Data.IS_PRIMARY);
     return primary != null && primary != 0;
   }
 
   public boolean isSuperPrimary() {
-    Integer superPrimary = mContentValues.getAsInteger(Data.IS_SUPER_PRIMARY);
+    Integer superPrimary = mRow.getAsInteger(Data.IS_SUPER_PRIMARY);
     return superPrimary != null && superPrimary != 0;
   }
 
   public boolean hasKindTypeColumn(DataKind kind) {
     final String key = kind.typeColumn;
     return key != null
-        && mContentValues.containsKey(key)
-        && mContentValues.getAsInteger(key) != null;
+        && mRow.containsKey(key)
+        && mRow.getAsInteger(key) != null;
   }
 
   public int getKindTypeColumn(DataKind kind) {
     final String key = kind.typeColumn;
-    return mContentValues.getAsInteger(key);
+    return mRow.getAsInteger(key);
   }
 
   /**
@@ -146,7 +160,7 @@ public class DataItem implements Collapser.Collapsible<DataItem> {
    *     calling, {@code 0} otherwise.
    */
   public int getCarrierPresence() {
-    return mContentValues.getAsInteger(Data.CARRIER_PRESENCE);
+    return mRow.getAsInteger(Data.CARRIER_PRESENCE);
   }
 
   /**
@@ -157,7 +171,7 @@ public class DataItem implements Collapser.Collapsible<DataItem> {
     if (kind.actionBody == null) {
       return null;
     }
-    CharSequence actionBody = kind.actionBody.inflateUsing(context, mContentValues);
+    CharSequence actionBody = kind.actionBody.inflateUsing(context, mRow);
     return actionBody == null ? null : actionBody.toString();
   }
 
@@ -181,11 +195,11 @@ public class DataItem implements Collapser.Collapsible<DataItem> {
   }
 
   public Integer getTimesUsed() {
-    return mContentValues.getAsInteger(Entity.TIMES_USED);
+    return mRow.getAsInteger(Entity.TIMES_USED);
   }
 
   public Long getLastTimeUsed() {
-    return mContentValues.getAsLong(Entity.LAST_TIME_USED);
+    return mRow.getAsLong(Entity.LAST_TIME_USED);
   }
 
   @Override
@@ -198,7 +212,7 @@ public class DataItem implements Collapser.Collapsible<DataItem> {
         || (that.hasKindTypeColumn(thatKind)
             && getTypePrecedence(thisKind, getKindTypeColumn(thisKind))
                 > getTypePrecedence(thatKind, that.getKindTypeColumn(thatKind)))) {
-      mContentValues.put(thatKind.typeColumn, that.getKindTypeColumn(thatKind));
+      mRow.put(thatKind.typeColumn, that.getKindTypeColumn(thatKind));
       mKind = thatKind;
     }
 
@@ -207,23 +221,23 @@ public class DataItem implements Collapser.Collapsible<DataItem> {
 
     // If any of the collapsed entries are super primary make the whole thing super primary.
     if (isSuperPrimary() || that.isSuperPrimary()) {
-      mContentValues.put(Data.IS_SUPER_PRIMARY, 1);
-      mContentValues.put(Data.IS_PRIMARY, 1);
+      mRow.put(Data.IS_SUPER_PRIMARY, 1);
+      mRow.put(Data.IS_PRIMARY, 1);
     }
 
     // If any of the collapsed entries are primary make the whole thing primary.
     if (isPrimary() || that.isPrimary()) {
-      mContentValues.put(Data.IS_PRIMARY, 1);
+      mRow.put(Data.IS_PRIMARY, 1);
     }
 
     // Add up the times used
-    mContentValues.put(
+    mRow.put(
         Entity.TIMES_USED,
         (getTimesUsed() == null ? 0 : getTimesUsed())
             + (that.getTimesUsed() == null ? 0 : that.getTimesUsed()));
 
     // Use the most recent time
-    mContentValues.put(
+    mRow.put(
         Entity.LAST_TIME_USED,
         Math.max(
             getLastTimeUsed() == null ? 0 : getLastTimeUsed(),
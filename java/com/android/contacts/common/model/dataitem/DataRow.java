@@ -0,0 +1,446 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.contacts.common.model.dataitem;
+
+import android.content.ContentValues;
+import android.provider.ContactsContract.CommonDataKinds.BaseTypes;
+import android.provider.ContactsContract.CommonDataKinds.CommonColumns;
+import android.provider.ContactsContract.CommonDataKinds.Email;
+import android.provider.ContactsContract.CommonDataKinds.Event;
+import android.provider.ContactsContract.CommonDataKinds.GroupMembership;
+import android.provider.ContactsContract.CommonDataKinds.Identity;
+import android.provider.ContactsContract.CommonDataKinds.Im;
+import android.provider.ContactsContract.CommonDataKinds.Nickname;
+import android.provider.ContactsContract.CommonDataKinds.Note;
+import android.provider.ContactsContract.CommonDataKinds.Organization;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.CommonDataKinds.Photo;
+import android.provider.ContactsContract.CommonDataKinds.Relation;
+import android.provider.ContactsContract.CommonDataKinds.SipAddress;
+import android.provider.ContactsContract.CommonDataKinds.StructuredName;
+import android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
+import android.provider.ContactsContract.CommonDataKinds.Website;
+import android.provider.ContactsContract.Data;
+import android.util.ArrayMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compact storage of one row from the Data table, used in place of its {@link ContentValues} by
+ * loaded contacts.
+ *
+ * <p>The integer columns shared by all MIME types, e.g. {@link Data#_ID} and {@link
+ * Data#IS_PRIMARY}, are kept as primitives. {@link Data#DATA1} to {@link Data#DATA15} are kept in
+ * an array no longer than the last column set. The MIME type and custom labels are replaced by
+ * shared instances, so a contact with many numbers or email addresses keeps a single copy of each.
+ * Any other column, and any column set to null, is kept in a {@link ContentValues}.
+ *
+ * <p>The integer columns are returned as {@link Long} by {@link #toContentValues()}, whatever type
+ * they were put with.
+ */
+public final class DataRow {
+
+  private static final String[] LONG_COLUMNS = {
+    Data._ID,
+    Data.RAW_CONTACT_ID,
+    Data.IS_PRIMARY,
+    Data.IS_SUPER_PRIMARY,
+    Data.TIMES_USED,
+    Data.LAST_TIME_USED,
+    Data.CARRIER_PRESENCE,
+    Data.CHAT_CAPABILITY
+  };
+
+  private static final String[] DATA_COLUMNS = {
+    Data.DATA1,
+    Data.DATA2,
+    Data.DATA3,
+    Data.DATA4,
+    Data.DATA5,
+    Data.DATA6,
+    Data.DATA7,
+    Data.DATA8,
+    Data.DATA9,
+    Data.DATA10,
+    Data.DATA11,
+    Data.DATA12,
+    Data.DATA13,
+    Data.DATA14,
+    Data.DATA15
+  };
+
+  private static final Map<String, Integer> LONG_COLUMN_INDEXES = new ArrayMap<>();
+  private static final Map<String, Integer> DATA_COLUMN_INDEXES = new ArrayMap<>();
+  private static final Map<String, String> KNOWN_MIME_TYPES = new ArrayMap<>();
+
+  /** Index of {@link CommonColumns#TYPE} in {@link #DATA_COLUMNS}. */
+  private static final int TYPE_INDEX = 1;
+
+  /** Index of {@link CommonColumns#LABEL} in {@link #DATA_COLUMNS}. */
+  private static final int LABEL_INDEX = 2;
+
+  static {
+    for (int i = 0; i < LONG_COLUMNS.length; i++) {
+      LONG_COLUMN_INDEXES.put(LONG_COLUMNS[i], i);
+    }
+    for (int i = 0; i < DATA_COLUMNS.length; i++) {
+      DATA_COLUMN_INDEXES.put(DATA_COLUMNS[i], i);
+    }
+    for (String mimeType :
+        new String[] {
+          GroupMembership.CONTENT_ITEM_TYPE,
+          StructuredName.CONTENT_ITEM_TYPE,
+          Phone.CONTENT_ITEM_TYPE,
+          Email.CONTENT_ITEM_TYPE,
+          StructuredPostal.CONTENT_ITEM_TYPE,
+          Im.CONTENT_ITEM_TYPE,
+          Organization.CONTENT_ITEM_TYPE,
+          Nickname.CONTENT_ITEM_TYPE,
+          Note.CONTENT_ITEM_TYPE,
+          Website.CONTENT_ITEM_TYPE,
+          SipAddress.CONTENT_ITEM_TYPE,
+          Event.CONTENT_ITEM_TYPE,
+          Relation.CONTENT_ITEM_TYPE,
+          Identity.CONTENT_ITEM_TYPE,
+          Photo.CONTENT_ITEM_TYPE
+        }) {
+      KNOWN_MIME_TYPES.put(mimeType, mimeType);
+    }
+  }
+
+  private static final Object[] NO_DATA = new Object[0];
+
+  /** Holds custom labels and unknown MIME types only while a data row uses them. */
+  private static final Interner<String> sInterner = Interners.newWeakInterner();
+
+  private String mMimeType;
+  private final long[] mLongs = new long[LONG_COLUMNS.length];
+  /** Bit {@code i} is set if {@code mLongs[i]} holds a value. */
+  private int mLongsSet;
+  private Object[] mData = NO_DATA;
+  /** Columns which are not kept in the fields above, null if there are none. */
+  private ContentValues mOtherValues;
+
+  public DataRow() {}
+
+  /** Creates a row holding the same columns as {@code values}, which is not used afterwards. */
+  public static DataRow of(ContentValues values) {
+    final DataRow row = new DataRow();
+    for (Map.Entry<String, Object> entry : values.valueSet()) {
+      row.putValue(entry.getKey(), entry.getValue());
+    }
+    row.internLabel();
+    return row;
+  }
+
+  public DataRow copy() {
+    final DataRow row = new DataRow();
+    row.mMimeType = mMimeType;
+    System.arraycopy(mLongs, 0, row.mLongs, 0, mLongs.length);
+    row.mLongsSet = mLongsSet;
+    row.mData = mData.length == 0 ? NO_DATA : mData.clone();
+    row.mOtherValues = mOtherValues == null ? null : new ContentValues(mOtherValues);
+    return row;
+  }
+
+  /** Returns a new {@link ContentValues} with the columns of the row. */
+  public ContentValues toContentValues() {
+    final ContentValues values =
+        mOtherValues == null ? new ContentValues() : new ContentValues(mOtherValues);
+    if (mMimeType != null) {
+      values.put(Data.MIMETYPE, mMimeType);
+    }
+    for (int i = 0; i < LONG_COLUMNS.length; i++) {
+      if ((mLongsSet & (1 << i)) != 0) {
+        values.put(LONG_COLUMNS[i], mLongs[i]);
+      }
+    }
+    for (int i = 0; i < mData.length; i++) {
+      final Object value = mData[i];
+      if (value instanceof String) {
+        values.put(DATA_COLUMNS[i], (String) value);
+      } else if (value instanceof Long) {
+        values.put(DATA_COLUMNS[i], (Long) value);
+      } else if (value instanceof Integer) {
+        values.put(DATA_COLUMNS[i], (Integer) value);
+      } else if (value instanceof byte[]) {
+        values.put(DATA_COLUMNS[i], (byte[]) value);
+      }
+    }
+    return values;
+  }
+
+  public boolean containsKey(String key) {
+    if (Data.MIMETYPE.equals(key) && mMimeType != null) {
+      return true;
+    }
+    final Integer longIndex = LONG_COLUMN_INDEXES.get(key);
+    if (longIndex != null && (mLongsSet & (1 << longIndex)) != 0) {
+      return true;
+    }
+    final Integer dataIndex = DATA_COLUMN_INDEXES.get(key);
+    if (dataIndex != null && dataIndex < mData.length && mData[dataIndex] != null) {
+      return true;
+    }
+    return mOtherValues != null && mOtherValues.containsKey(key);
+  }
+
+  public Object get(String key) {
+    if (Data.MIMETYPE.equals(key) && mMimeType != null) {
+      return mMimeType;
+    }
+    final Integer longIndex = LONG_COLUMN_INDEXES.get(key);
+    if (longIndex != null && (mLongsSet & (1 << longIndex)) != 0) {
+      return mLongs[longIndex];
+    }
+    final Integer dataIndex = DATA_COLUMN_INDEXES.get(key);
+    if (dataIndex != null && dataIndex < mData.length && mData[dataIndex] != null) {
+      return mData[dataIndex];
+    }
+    return mOtherValues == null ? null : mOtherValues.get(key);
+  }
+
+  /** Same as {@link ContentValues#getAsString}. */
+  public String getAsString(String key) {
+    final Object value = get(key);
+    return value != null ? value.toString() : null;
+  }
+
+  /** Same as {@link ContentValues#getAsLong}, returning null if the value can't be converted. */
+  public Long getAsLong(String key) {
+    final Object value = get(key);
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    }
+    if (value instanceof CharSequence) {
+      try {
+        return Long.valueOf(value.toString());
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /** Same as {@link ContentValues#getAsInteger}, returning null if the value can't be converted. */
+  public Integer getAsInteger(String key) {
+    final Object value = get(key);
+    if (value instanceof Number) {
+      return ((Number) value).intValue();
+    }
+    if (value instanceof CharSequence) {
+      try {
+        return Integer.valueOf(value.toString());
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /** Same as {@link ContentValues#getAsBoolean}. */
+  public Boolean getAsBoolean(String key) {
+    final Object value = get(key);
+    if (value instanceof Boolean) {
+      return (Boolean) value;
+    }
+    if (value instanceof CharSequence) {
+      return Boolean.valueOf(value.toString()) || "1".equals(value.toString());
+    }
+    if (value instanceof Number) {
+      return ((Number) value).intValue() != 0;
+    }
+    return null;
+  }
+
+  public byte[] getAsByteArray(String key) {
+    final Object value = get(key);
+    return value instanceof byte[] ? (byte[]) value : null;
+  }
+
+  public void put(String key, String value) {
+    putValue(key, value);
+    if (DATA_COLUMNS[LABEL_INDEX].equals(key) || DATA_COLUMNS[TYPE_INDEX].equals(key)) {
+      internLabel();
+    }
+  }
+
+  public void put(String key, Integer value) {
+    putValue(key, value);
+    if (DATA_COLUMNS[TYPE_INDEX].equals(key)) {
+      internLabel();
+    }
+  }
+
+  public void put(String key, Long value) {
+    putValue(key, value);
+    if (DATA_COLUMNS[TYPE_INDEX].equals(key)) {
+      internLabel();
+    }
+  }
+
+  public void put(String key, byte[] value) {
+    putValue(key, value);
+  }
+
+  private void putValue(String key, Object value) {
+    removeValue(key);
+    if (value == null) {
+      putOtherValue(key, null);
+      return;
+    }
+    if (Data.MIMETYPE.equals(key) && value instanceof String) {
+      final String knownMimeType = KNOWN_MIME_TYPES.get(value);
+      mMimeType = knownMimeType != null ? knownMimeType : sInterner.intern((String) value);
+      return;
+    }
+    final Integer longIndex = LONG_COLUMN_INDEXES.get(key);
+    if (longIndex != null && (value instanceof Long || value instanceof Integer)) {
+      mLongs[longIndex] = ((Number) value).longValue();
+      mLongsSet |= 1 << longIndex;
+      return;
+    }
+    final Integer dataIndex = DATA_COLUMN_INDEXES.get(key);
+    if (dataIndex != null
+        && (value instanceof String
+            || value instanceof Long
+            || value instanceof Integer
+            || value instanceof byte[])) {
+      if (dataIndex >= mData.length) {
+        mData = Arrays.copyOf(mData, dataIndex + 1);
+      }
+      mData[dataIndex] = value;
+      return;
+    }
+    putOtherValue(key, value);
+  }
+
+  private void removeValue(String key) {
+    if (Data.MIMETYPE.equals(key)) {
+      mMimeType = null;
+    }
+    final Integer longIndex = LONG_COLUMN_INDEXES.get(key);
+    if (longIndex != null) {
+      mLongsSet &= ~(1 << longIndex);
+      mLongs[longIndex] = 0;
+    }
+    final Integer dataIndex = DATA_COLUMN_INDEXES.get(key);
+    if (dataIndex != null && dataIndex < mData.length) {
+      mData[dataIndex] = null;
+    }
+    if (mOtherValues != null) {
+      mOtherValues.remove(key);
+      if (mOtherValues.size() == 0) {
+        mOtherValues = null;
+      }
+    }
+  }
+
+  private void putOtherValue(String key, Object value) {
+    if (mOtherValues == null) {
+      mOtherValues = new ContentValues();
+    }
+    if (value == null) {
+      mOtherValues.putNull(key);
+    } else if (value instanceof String) {
+      mOtherValues.put(key, (String) value);
+    } else if (value instanceof Long) {
+      mOtherValues.put(key, (Long) value);
+    } else if (value instanceof Integer) {
+      mOtherValues.put(key, (Integer) value);
+    } else if (value instanceof Boolean) {
+      mOtherValues.put(key, (Boolean) value);
+    } else if (value instanceof Double) {
+      mOtherValues.put(key, (Double) value);
+    } else if (value instanceof Float) {
+      mOtherValues.put(key, (Float) value);
+    } else if (value instanceof Short) {
+      mOtherValues.put(key, (Short) value);
+    } else if (value instanceof Byte) {
+      mOtherValues.put(key, (Byte) value);
+    } else if (value instanceof byte[]) {
+      mOtherValues.put(key, (byte[]) value);
+    } else {
+      throw new IllegalArgumentException("Unsupported type " + value.getClass());
+    }
+  }
+
+  /**
+   * Shares the label if the row has the custom type, otherwise {@link CommonColumns#LABEL} is a
+   * different column of the MIME type, e.g. {@link StructuredName#FAMILY_NAME}.
+   */
+  private void internLabel() {
+    if (LABEL_INDEX >= mData.length) {
+      return;
+    }
+    final Object type = mData[TYPE_INDEX];
+    final Object label = mData[LABEL_INDEX];
+    if (type instanceof Number
+        && ((Number) type).intValue() == BaseTypes.TYPE_CUSTOM
+        && label instanceof String) {
+      mData[LABEL_INDEX] = sInterner.intern((String) label);
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = Objects.hash(mMimeType, mLongsSet, Arrays.hashCode(mLongs), mOtherValues);
+    // Trailing nulls are left by removed columns and don't make rows different.
+    for (int i = 0; i < mData.length; i++) {
+      final Object value = mData[i];
+      if (value != null) {
+        final int valueHash =
+            value instanceof byte[] ? Arrays.hashCode((byte[]) value) : value.hashCode();
+        hash += (i + 1) * valueHash;
+      }
+    }
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof DataRow)) {
+      return false;
+    }
+    final DataRow other = (DataRow) obj;
+    if (!Objects.equals(mMimeType, other.mMimeType)
+        || mLongsSet != other.mLongsSet
+        || !Arrays.equals(mLongs, other.mLongs)
+        || !Objects.equals(mOtherValues, other.mOtherValues)) {
+      return false;
+    }
+    for (int i = 0; i < Math.max(mData.length, other.mData.length); i++) {
+      final Object value = i < mData.length ? mData[i] : null;
+      final Object otherValue = i < other.mData.length ? other.mData[i] : null;
+      if (!Objects.deepEquals(value, otherValue)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return toContentValues().toString();
+  }
+}
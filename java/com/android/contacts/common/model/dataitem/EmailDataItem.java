@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract.CommonDataKinds.Email;
 
 /**
@@ -25,23 +24,23 @@ import android.provider.ContactsContract.CommonDataKinds.Email;
  */
 public class EmailDataItem extends DataItem {
 
-  /* package */ EmailDataItem(ContentValues values) {
+  /* package */ EmailDataItem(DataRow values) {
     super(values);
   }
 
   public String getAddress() {
-    return getContentValues().getAsString(Email.ADDRESS);
+    return getRow().getAsString(Email.ADDRESS);
   }
 
   public String getDisplayName() {
-    return getContentValues().getAsString(Email.DISPLAY_NAME);
+    return getRow().getAsString(Email.DISPLAY_NAME);
   }
 
   public String getData() {
-    return getContentValues().getAsString(Email.DATA);
+    return getRow().getAsString(Email.DATA);
   }
 
   public String getLabel() {
-    return getContentValues().getAsString(Email.LABEL);
+    return getRow().getAsString(Email.LABEL);
   }
 }
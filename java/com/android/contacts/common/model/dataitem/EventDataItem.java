@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.provider.ContactsContract.CommonDataKinds.Event;
 import android.text.TextUtils;
@@ -27,16 +26,16 @@ import android.text.TextUtils;
  */
 public class EventDataItem extends DataItem {
 
-  /* package */ EventDataItem(ContentValues values) {
+  /* package */ EventDataItem(DataRow values) {
     super(values);
   }
 
   public String getStartDate() {
-    return getContentValues().getAsString(Event.START_DATE);
+    return getRow().getAsString(Event.START_DATE);
   }
 
   public String getLabel() {
-    return getContentValues().getAsString(Event.LABEL);
+    return getRow().getAsString(Event.LABEL);
   }
 
   @Override
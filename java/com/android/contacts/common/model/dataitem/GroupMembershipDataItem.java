@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.GroupMembership;
 
@@ -26,15 +25,15 @@ import android.provider.ContactsContract.CommonDataKinds.GroupMembership;
  */
 public class GroupMembershipDataItem extends DataItem {
 
-  /* package */ GroupMembershipDataItem(ContentValues values) {
+  /* package */ GroupMembershipDataItem(DataRow values) {
     super(values);
   }
 
   public Long getGroupRowId() {
-    return getContentValues().getAsLong(GroupMembership.GROUP_ROW_ID);
+    return getRow().getAsLong(GroupMembership.GROUP_ROW_ID);
   }
 
   public String getGroupSourceId() {
-    return getContentValues().getAsString(GroupMembership.GROUP_SOURCE_ID);
+    return getRow().getAsString(GroupMembership.GROUP_SOURCE_ID);
   }
 }
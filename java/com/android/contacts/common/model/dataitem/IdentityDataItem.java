@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract.CommonDataKinds.Identity;
 
 /**
@@ -25,15 +24,15 @@ import android.provider.ContactsContract.CommonDataKinds.Identity;
  */
 public class IdentityDataItem extends DataItem {
 
-  /* package */ IdentityDataItem(ContentValues values) {
+  /* package */ IdentityDataItem(DataRow values) {
     super(values);
   }
 
   public String getIdentity() {
-    return getContentValues().getAsString(Identity.IDENTITY);
+    return getRow().getAsString(Identity.IDENTITY);
   }
 
   public String getNamespace() {
-    return getContentValues().getAsString(Identity.NAMESPACE);
+    return getRow().getAsString(Identity.NAMESPACE);
   }
 }
@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.provider.ContactsContract.CommonDataKinds.Email;
 import android.provider.ContactsContract.CommonDataKinds.Im;
@@ -31,37 +30,37 @@ public class ImDataItem extends DataItem {
 
   private final boolean mCreatedFromEmail;
 
-  /* package */ ImDataItem(ContentValues values) {
+  /* package */ ImDataItem(DataRow values) {
     super(values);
     mCreatedFromEmail = false;
   }
 
-  private ImDataItem(ContentValues values, boolean createdFromEmail) {
+  private ImDataItem(DataRow values, boolean createdFromEmail) {
     super(values);
     mCreatedFromEmail = createdFromEmail;
   }
 
   public static ImDataItem createFromEmail(EmailDataItem item) {
-    final ImDataItem im = new ImDataItem(new ContentValues(item.getContentValues()), true);
+    final ImDataItem im = new ImDataItem(item.getRow().copy(), true);
     im.setMimeType(Im.CONTENT_ITEM_TYPE);
     return im;
   }
 
   public String getData() {
     if (mCreatedFromEmail) {
-      return getContentValues().getAsString(Email.DATA);
+      return getRow().getAsString(Email.DATA);
     } else {
-      return getContentValues().getAsString(Im.DATA);
+      return getRow().getAsString(Im.DATA);
     }
   }
 
   public String getLabel() {
-    return getContentValues().getAsString(Im.LABEL);
+    return getRow().getAsString(Im.LABEL);
   }
 
   /** Values are one of Im.PROTOCOL_ */
   public Integer getProtocol() {
-    return getContentValues().getAsInteger(Im.PROTOCOL);
+    return getRow().getAsInteger(Im.PROTOCOL);
   }
 
   public boolean isProtocolValid() {
@@ -69,11 +68,11 @@ public class ImDataItem extends DataItem {
   }
 
   public String getCustomProtocol() {
-    return getContentValues().getAsString(Im.CUSTOM_PROTOCOL);
+    return getRow().getAsString(Im.CUSTOM_PROTOCOL);
   }
 
   public int getChatCapability() {
-    Integer result = getContentValues().getAsInteger(Im.CHAT_CAPABILITY);
+    Integer result = getRow().getAsInteger(Im.CHAT_CAPABILITY);
     return result == null ? 0 : result;
   }
 
@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract.CommonDataKinds.Nickname;
 
 /**
@@ -25,15 +24,15 @@ import android.provider.ContactsContract.CommonDataKinds.Nickname;
  */
 public class NicknameDataItem extends DataItem {
 
-  public NicknameDataItem(ContentValues values) {
+  public NicknameDataItem(DataRow values) {
     super(values);
   }
 
   public String getName() {
-    return getContentValues().getAsString(Nickname.NAME);
+    return getRow().getAsString(Nickname.NAME);
   }
 
   public String getLabel() {
-    return getContentValues().getAsString(Nickname.LABEL);
+    return getRow().getAsString(Nickname.LABEL);
   }
 }
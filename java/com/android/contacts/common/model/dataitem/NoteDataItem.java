@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract.CommonDataKinds.Note;
 
 /**
@@ -25,11 +24,11 @@ import android.provider.ContactsContract.CommonDataKinds.Note;
  */
 public class NoteDataItem extends DataItem {
 
-  /* package */ NoteDataItem(ContentValues values) {
+  /* package */ NoteDataItem(DataRow values) {
     super(values);
   }
 
   public String getNote() {
-    return getContentValues().getAsString(Note.NOTE);
+    return getRow().getAsString(Note.NOTE);
   }
 }
@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.Organization;
 
@@ -26,39 +25,39 @@ import android.provider.ContactsContract.CommonDataKinds.Organization;
  */
 public class OrganizationDataItem extends DataItem {
 
-  /* package */ OrganizationDataItem(ContentValues values) {
+  /* package */ OrganizationDataItem(DataRow values) {
     super(values);
   }
 
   public String getCompany() {
-    return getContentValues().getAsString(Organization.COMPANY);
+    return getRow().getAsString(Organization.COMPANY);
   }
 
   public String getLabel() {
-    return getContentValues().getAsString(Organization.LABEL);
+    return getRow().getAsString(Organization.LABEL);
   }
 
   public String getTitle() {
-    return getContentValues().getAsString(Organization.TITLE);
+    return getRow().getAsString(Organization.TITLE);
   }
 
   public String getDepartment() {
-    return getContentValues().getAsString(Organization.DEPARTMENT);
+    return getRow().getAsString(Organization.DEPARTMENT);
   }
 
   public String getJobDescription() {
-    return getContentValues().getAsString(Organization.JOB_DESCRIPTION);
+    return getRow().getAsString(Organization.JOB_DESCRIPTION);
   }
 
   public String getSymbol() {
-    return getContentValues().getAsString(Organization.SYMBOL);
+    return getRow().getAsString(Organization.SYMBOL);
   }
 
   public String getPhoneticName() {
-    return getContentValues().getAsString(Organization.PHONETIC_NAME);
+    return getRow().getAsString(Organization.PHONETIC_NAME);
   }
 
   public String getOfficeLocation() {
-    return getContentValues().getAsString(Organization.OFFICE_LOCATION);
+    return getRow().getAsString(Organization.OFFICE_LOCATION);
   }
 }
@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.provider.ContactsContract.CommonDataKinds.Phone;
 import com.android.dialer.phonenumberutil.PhoneNumberHelper;
@@ -29,25 +28,25 @@ public class PhoneDataItem extends DataItem {
 
   private static final String KEY_FORMATTED_PHONE_NUMBER = "formattedPhoneNumber";
 
-  /* package */ PhoneDataItem(ContentValues values) {
+  /* package */ PhoneDataItem(DataRow values) {
     super(values);
   }
 
   public String getNumber() {
-    return getContentValues().getAsString(Phone.NUMBER);
+    return getRow().getAsString(Phone.NUMBER);
   }
 
   /** Returns the normalized phone number in E164 format. */
   public String getNormalizedNumber() {
-    return getContentValues().getAsString(Phone.NORMALIZED_NUMBER);
+    return getRow().getAsString(Phone.NORMALIZED_NUMBER);
   }
 
   public String getFormattedPhoneNumber() {
-    return getContentValues().getAsString(KEY_FORMATTED_PHONE_NUMBER);
+    return getRow().getAsString(KEY_FORMATTED_PHONE_NUMBER);
   }
 
   public String getLabel() {
-    return getContentValues().getAsString(Phone.LABEL);
+    return getRow().getAsString(Phone.LABEL);
   }
 
   public void computeFormattedPhoneNumber(Context context, String defaultCountryIso) {
@@ -56,7 +55,7 @@ public class PhoneDataItem extends DataItem {
       final String formattedPhoneNumber =
           PhoneNumberHelper.formatNumber(
               context, phoneNumber, getNormalizedNumber(), defaultCountryIso);
-      getContentValues().put(KEY_FORMATTED_PHONE_NUMBER, formattedPhoneNumber);
+      getRow().put(KEY_FORMATTED_PHONE_NUMBER, formattedPhoneNumber);
     }
   }
 
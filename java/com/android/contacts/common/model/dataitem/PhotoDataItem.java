@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.Contacts.Photo;
 
@@ -25,15 +24,15 @@ import android.provider.ContactsContract.Contacts.Photo;
  */
 public class PhotoDataItem extends DataItem {
 
-  /* package */ PhotoDataItem(ContentValues values) {
+  /* package */ PhotoDataItem(DataRow values) {
     super(values);
   }
 
   public Long getPhotoFileId() {
-    return getContentValues().getAsLong(Photo.PHOTO_FILE_ID);
+    return getRow().getAsLong(Photo.PHOTO_FILE_ID);
   }
 
   public byte[] getPhoto() {
-    return getContentValues().getAsByteArray(Photo.PHOTO);
+    return getRow().getAsByteArray(Photo.PHOTO);
   }
 }
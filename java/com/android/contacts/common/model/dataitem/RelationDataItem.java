@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.provider.ContactsContract.CommonDataKinds.Relation;
 import android.text.TextUtils;
@@ -27,16 +26,16 @@ import android.text.TextUtils;
  */
 public class RelationDataItem extends DataItem {
 
-  /* package */ RelationDataItem(ContentValues values) {
+  /* package */ RelationDataItem(DataRow values) {
     super(values);
   }
 
   public String getName() {
-    return getContentValues().getAsString(Relation.NAME);
+    return getRow().getAsString(Relation.NAME);
   }
 
   public String getLabel() {
-    return getContentValues().getAsString(Relation.LABEL);
+    return getRow().getAsString(Relation.LABEL);
   }
 
   @Override
@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.SipAddress;
 
@@ -26,15 +25,15 @@ import android.provider.ContactsContract.CommonDataKinds.SipAddress;
  */
 public class SipAddressDataItem extends DataItem {
 
-  /* package */ SipAddressDataItem(ContentValues values) {
+  /* package */ SipAddressDataItem(DataRow values) {
     super(values);
   }
 
   public String getSipAddress() {
-    return getContentValues().getAsString(SipAddress.SIP_ADDRESS);
+    return getRow().getAsString(SipAddress.SIP_ADDRESS);
   }
 
   public String getLabel() {
-    return getContentValues().getAsString(SipAddress.LABEL);
+    return getRow().getAsString(SipAddress.LABEL);
   }
 }
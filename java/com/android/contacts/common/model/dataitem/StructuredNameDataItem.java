@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract.CommonDataKinds.StructuredName;
 import android.provider.ContactsContract.Contacts.Data;
 
@@ -27,74 +26,74 @@ import android.provider.ContactsContract.Contacts.Data;
 public class StructuredNameDataItem extends DataItem {
 
   public StructuredNameDataItem() {
-    super(new ContentValues());
-    getContentValues().put(Data.MIMETYPE, StructuredName.CONTENT_ITEM_TYPE);
+    super(new DataRow());
+    getRow().put(Data.MIMETYPE, StructuredName.CONTENT_ITEM_TYPE);
   }
 
-  /* package */ StructuredNameDataItem(ContentValues values) {
+  /* package */ StructuredNameDataItem(DataRow values) {
     super(values);
   }
 
   public String getDisplayName() {
-    return getContentValues().getAsString(StructuredName.DISPLAY_NAME);
+    return getRow().getAsString(StructuredName.DISPLAY_NAME);
   }
 
   public void setDisplayName(String name) {
-    getContentValues().put(StructuredName.DISPLAY_NAME, name);
+    getRow().put(StructuredName.DISPLAY_NAME, name);
   }
 
   public String getGivenName() {
-    return getContentValues().getAsString(StructuredName.GIVEN_NAME);
+    return getRow().getAsString(StructuredName.GIVEN_NAME);
   }
 
   public String getFamilyName() {
-    return getContentValues().getAsString(StructuredName.FAMILY_NAME);
+    return getRow().getAsString(StructuredName.FAMILY_NAME);
   }
 
   public String getPrefix() {
-    return getContentValues().getAsString(StructuredName.PREFIX);
+    return getRow().getAsString(StructuredName.PREFIX);
   }
 
   public String getMiddleName() {
-    return getContentValues().getAsString(StructuredName.MIDDLE_NAME);
+    return getRow().getAsString(StructuredName.MIDDLE_NAME);
   }
 
   public String getSuffix() {
-    return getContentValues().getAsString(StructuredName.SUFFIX);
+    return getRow().getAsString(StructuredName.SUFFIX);
   }
 
   public String getPhoneticGivenName() {
-    return getContentValues().getAsString(StructuredName.PHONETIC_GIVEN_NAME);
+    return getRow().getAsString(StructuredName.PHONETIC_GIVEN_NAME);
   }
 
   public void setPhoneticGivenName(String name) {
-    getContentValues().put(StructuredName.PHONETIC_GIVEN_NAME, name);
+    getRow().put(StructuredName.PHONETIC_GIVEN_NAME, name);
   }
 
   public String getPhoneticMiddleName() {
-    return getContentValues().getAsString(StructuredName.PHONETIC_MIDDLE_NAME);
+    return getRow().getAsString(StructuredName.PHONETIC_MIDDLE_NAME);
   }
 
   public void setPhoneticMiddleName(String name) {
-    getContentValues().put(StructuredName.PHONETIC_MIDDLE_NAME, name);
+    getRow().put(StructuredName.PHONETIC_MIDDLE_NAME, name);
   }
 
   public String getPhoneticFamilyName() {
-    return getContentValues().getAsString(StructuredName.PHONETIC_FAMILY_NAME);
+    return getRow().getAsString(StructuredName.PHONETIC_FAMILY_NAME);
   }
 
   public void setPhoneticFamilyName(String name) {
-    getContentValues().put(StructuredName.PHONETIC_FAMILY_NAME, name);
+    getRow().put(StructuredName.PHONETIC_FAMILY_NAME, name);
   }
 
   public String getFullNameStyle() {
-    return getContentValues().getAsString(StructuredName.FULL_NAME_STYLE);
+    return getRow().getAsString(StructuredName.FULL_NAME_STYLE);
   }
 
   public boolean isSuperPrimary() {
-    final ContentValues contentValues = getContentValues();
-    return contentValues == null || !contentValues.containsKey(StructuredName.IS_SUPER_PRIMARY)
+    final DataRow row = getRow();
+    return !row.containsKey(StructuredName.IS_SUPER_PRIMARY)
         ? false
-        : contentValues.getAsBoolean(StructuredName.IS_SUPER_PRIMARY);
+        : row.getAsBoolean(StructuredName.IS_SUPER_PRIMARY);
   }
 }
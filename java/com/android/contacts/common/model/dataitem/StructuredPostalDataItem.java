@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
 
@@ -26,43 +25,43 @@ import android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
  */
 public class StructuredPostalDataItem extends DataItem {
 
-  /* package */ StructuredPostalDataItem(ContentValues values) {
+  /* package */ StructuredPostalDataItem(DataRow values) {
     super(values);
   }
 
   public String getFormattedAddress() {
-    return getContentValues().getAsString(StructuredPostal.FORMATTED_ADDRESS);
+    return getRow().getAsString(StructuredPostal.FORMATTED_ADDRESS);
   }
 
   public String getLabel() {
-    return getContentValues().getAsString(StructuredPostal.LABEL);
+    return getRow().getAsString(StructuredPostal.LABEL);
   }
 
   public String getStreet() {
-    return getContentValues().getAsString(StructuredPostal.STREET);
+    return getRow().getAsString(StructuredPostal.STREET);
   }
 
   public String getPOBox() {
-    return getContentValues().getAsString(StructuredPostal.POBOX);
+    return getRow().getAsString(StructuredPostal.POBOX);
   }
 
   public String getNeighborhood() {
-    return getContentValues().getAsString(StructuredPostal.NEIGHBORHOOD);
+    return getRow().getAsString(StructuredPostal.NEIGHBORHOOD);
   }
 
   public String getCity() {
-    return getContentValues().getAsString(StructuredPostal.CITY);
+    return getRow().getAsString(StructuredPostal.CITY);
   }
 
   public String getRegion() {
-    return getContentValues().getAsString(StructuredPostal.REGION);
+    return getRow().getAsString(StructuredPostal.REGION);
   }
 
   public String getPostcode() {
-    return getContentValues().getAsString(StructuredPostal.POSTCODE);
+    return getRow().getAsString(StructuredPostal.POSTCODE);
   }
 
   public String getCountry() {
-    return getContentValues().getAsString(StructuredPostal.COUNTRY);
+    return getRow().getAsString(StructuredPostal.COUNTRY);
   }
 }
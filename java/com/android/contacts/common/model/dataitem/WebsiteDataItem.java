@@ -16,7 +16,6 @@
 
 package com.android.contacts.common.model.dataitem;
 
-import android.content.ContentValues;
 import android.provider.ContactsContract.CommonDataKinds.Website;
 
 /**
@@ -25,15 +24,15 @@ import android.provider.ContactsContract.CommonDataKinds.Website;
  */
 public class WebsiteDataItem extends DataItem {
 
-  /* package */ WebsiteDataItem(ContentValues values) {
+  /* package */ WebsiteDataItem(DataRow values) {
     super(values);
   }
 
   public String getUrl() {
-    return getContentValues().getAsString(Website.URL);
+    return getRow().getAsString(Website.URL);
   }
 
   public String getLabel() {
-    return getContentValues().getAsString(Website.LABEL);
+    return getRow().getAsString(Website.LABEL);
   }
 }
@@ -19,7 +19,6 @@ package com.android.dialer.app.calllog;
 import android.content.Context;
 import android.support.annotation.NonNull;
 import android.support.v4.app.FragmentManager;
-import android.support.v7.widget.RecyclerView;
 import android.view.View;
 import com.android.dialer.blocking.FilteredNumberAsyncQueryHandler;
 import com.android.dialer.blockreportspam.BlockReportSpamDialogs;
@@ -41,7 +40,7 @@ public class BlockReportSpamListener implements CallLogListItemViewHolder.OnClic
   private final Context context;
   private final View rootView;
   private final FragmentManager fragmentManager;
-  private final RecyclerView.Adapter adapter;
+  private final CallLogAdapter adapter;
   private final FilteredNumberAsyncQueryHandler filteredNumberAsyncQueryHandler;
   private final Spam spam;
   private final SpamSettings spamSettings;
@@ -51,7 +50,7 @@ public class BlockReportSpamListener implements CallLogListItemViewHolder.OnClic
       Context context,
       View rootView,
       FragmentManager fragmentManager,
-      RecyclerView.Adapter adapter,
+      CallLogAdapter adapter,
       FilteredNumberAsyncQueryHandler filteredNumberAsyncQueryHandler) {
     this.context = context;
     this.rootView = rootView;
@@ -91,7 +90,7 @@ public class BlockReportSpamListener implements CallLogListItemViewHolder.OnClic
                   uri -> {
                     Logger.get(context)
                         .logImpression(DialerImpression.Type.USER_ACTION_BLOCKED_NUMBER);
-                    adapter.notifyDataSetChanged();
+                    notifyNumberChanged(number, countryIso);
                   },
                   number,
                   countryIso);
@@ -132,7 +131,7 @@ public class BlockReportSpamListener implements CallLogListItemViewHolder.OnClic
                   uri -> {
                     Logger.get(context)
                         .logImpression(DialerImpression.Type.USER_ACTION_BLOCKED_NUMBER);
-                    adapter.notifyDataSetChanged();
+                    notifyNumberChanged(number, countryIso);
                   },
                   number,
                   countryIso);
@@ -170,7 +169,7 @@ public class BlockReportSpamListener implements CallLogListItemViewHolder.OnClic
                   (rows, values) -> {
                     Logger.get(context)
                         .logImpression(DialerImpression.Type.USER_ACTION_UNBLOCKED_NUMBER);
-                    adapter.notifyDataSetChanged();
+                    notifyNumberChanged(number, countryIso);
                   },
                   blockId);
             },
@@ -199,12 +198,18 @@ public class BlockReportSpamListener implements CallLogListItemViewHolder.OnClic
                     ReportingLocation.Type.CALL_LOG_HISTORY,
                     contactSourceType);
               }
-              adapter.notifyDataSetChanged();
+              notifyNumberChanged(number, countryIso);
             },
             null)
         .show(fragmentManager, BlockReportSpamDialogs.NOT_SPAM_DIALOG_TAG);
   }
 
+  /** Updates the call log after the block or spam status of a number has changed. */
+  private void notifyNumberChanged(String number, String countryIso) {
+    adapter.invalidateRowInfo(number, countryIso);
+    adapter.notifyDataSetChanged();
+  }
+
   private void showSpamBlockingPromoDialog() {
     if (!spamBlockingPromoHelper.shouldShowSpamBlockingPromo()) {
       return;
@@ -42,7 +42,6 @@ import android.support.v7.widget.RecyclerView.ViewHolder;
 import android.telecom.PhoneAccountHandle;
 import android.telephony.PhoneNumberUtils;
 import android.text.TextUtils;
-import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.SparseArray;
 import android.view.ActionMode;
@@ -63,13 +62,13 @@ import com.android.dialer.app.voicemail.VoicemailPlaybackPresenter.OnVoicemailDe
 import com.android.dialer.blocking.FilteredNumberAsyncQueryHandler;
 import com.android.dialer.calldetails.CallDetailsEntries;
 import com.android.dialer.calldetails.CallDetailsEntries.CallDetailsEntry;
-import com.android.dialer.calllogutils.CallbackActionHelper.CallbackAction;
 import com.android.dialer.calllogutils.PhoneCallDetails;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.FragmentUtils.FragmentUtilListener;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.common.concurrent.AsyncTaskExecutor;
 import com.android.dialer.common.concurrent.AsyncTaskExecutors;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
 import com.android.dialer.compat.android.provider.VoicemailCompat;
 import com.android.dialer.configprovider.ConfigProviderComponent;
 import com.android.dialer.contacts.ContactsComponent;
@@ -94,11 +93,13 @@ import com.android.dialer.phonenumberutil.PhoneNumberHelper;
 import com.android.dialer.spam.SpamComponent;
 import com.android.dialer.telecom.TelecomUtil;
 import com.android.dialer.util.PermissionsUtil;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.i18n.phonenumbers.NumberParseException;
 import com.google.i18n.phonenumbers.PhoneNumberUtil;
 import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
 import java.util.ArrayList;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -135,6 +136,7 @@ public class CallLogAdapter extends GroupingListAdapter
   private final OnActionModeStateChangedListener actionModeStateChangedListener;
   private final MultiSelectRemoveView multiSelectRemoveView;
   @NonNull private final FilteredNumberAsyncQueryHandler filteredNumberAsyncQueryHandler;
+  private final CallLogRowEnricher rowEnricher;
   private final int activityType;
 
   /** Instance of helper class for managing views. */
@@ -489,26 +491,25 @@ public class CallLogAdapter extends GroupingListAdapter
   private CallLogListItemViewHolder.OnClickListener blockReportSpamListener;
 
   /**
-   * Map, keyed by call ID, used to track the callback action for a call. Calls associated with the
-   * same callback action will be put into the same primary call group in {@link
-   * com.android.dialer.app.calllog.CallLogGroupBuilder}. This information is used to set the
-   * callback icon and trigger the corresponding action.
+   * Groups of the current cursor, with the callback action and the day group of each group. Calls
+   * associated with the same callback action are put into the same primary call group in {@link
+   * CallLogGroupBuilder}, and every call of a group shares its "day group". The day group is used
+   * to trigger the display of a day group header above the call log entry at the start of a day
+   * group.
    */
-  private final Map<Long, Integer> callbackActions = new ArrayMap<>();
+  private CallLogGroupIndex groupIndex = CallLogGroupIndex.EMPTY;
+
+  /** Groups built in the background for the cursor which is being swapped in. */
+  @Nullable private CallLogGroupIndex precomputedGroupIndex;
+
+  /** Grouping of the most recently fetched cursor, or null if it isn't running. */
+  @Nullable private ListenableFuture<CallLogGroupIndex> pendingGroupIndex;
 
   /**
-   * Map, keyed by call ID, used to track the day group for a call. As call log entries are put into
-   * the primary call groups in {@link com.android.dialer.app.calllog.CallLogGroupBuilder}, they are
-   * also assigned a secondary "day group". This map tracks the day group assigned to all calls in
-   * the call log. This information is used to trigger the display of a day group header above the
-   * call log entry at the start of a day group. Note: Multiple calls are grouped into a single
-   * primary "call group" in the call log, and the cursor used to bind rows includes all of these
-   * calls. When determining if a day group change has occurred it is necessary to look at the last
-   * entry in the call log to determine its day group. This map provides a means of determining the
-   * previous day group without having to reverse the cursor to the start of the previous day call
-   * log entry.
+   * Whether the groups of unchanged calls can be reused from {@link #groupIndex} when the next
+   * cursor is grouped. The callback actions depend on Duo, so they are recomputed once it changes.
    */
-  private final Map<Long, Integer> dayGroups = new ArrayMap<>();
+  private boolean canReuseGroupIndex;
 
   private boolean loading = true;
 
@@ -554,6 +555,22 @@ public class CallLogAdapter extends GroupingListAdapter
         new CallLogListItemHelper(phoneCallDetailsHelper, resources, this.callLogCache);
     callLogGroupBuilder = new CallLogGroupBuilder(activity.getApplicationContext(), this);
     this.filteredNumberAsyncQueryHandler = Assert.isNotNull(filteredNumberAsyncQueryHandler);
+    rowEnricher =
+        new CallLogRowEnricher(
+            this.activity,
+            this.filteredNumberAsyncQueryHandler,
+            new CallLogRowEnricher.RowSource() {
+              @Override
+              public int getRowCount() {
+                return getItemCount();
+              }
+
+              @Nullable
+              @Override
+              public CallLogRowEnricher.RowNumber getRowNumber(int position) {
+                return readRowNumber(position);
+              }
+            });
 
     blockReportSpamListener =
         new BlockReportSpamListener(
@@ -669,6 +686,7 @@ public class CallLogAdapter extends GroupingListAdapter
 
   public void clearFilteredNumbersCache() {
     filteredNumberAsyncQueryHandler.clearCache();
+    rowEnricher.clear();
   }
 
   public void onResume() {
@@ -677,6 +695,7 @@ public class CallLogAdapter extends GroupingListAdapter
       contactInfoCache.start();
     }
     isSpamEnabled = SpamComponent.get(activity).spamSettings().isSpamEnabled();
+    rowEnricher.setSpamEnabled(isSpamEnabled);
     getDuo().registerListener(this);
     notifyDataSetChanged();
   }
@@ -689,6 +708,7 @@ public class CallLogAdapter extends GroupingListAdapter
 
     getDuo().unregisterListener(this);
     pauseCache();
+    rowEnricher.cancelBatches();
     for (Uri uri : hiddenItemUris) {
       CallLogAsyncTaskUtil.deleteVoicemail(activity, uri, null);
     }
@@ -710,7 +730,69 @@ public class CallLogAdapter extends GroupingListAdapter
 
   @Override
   protected void addGroups(Cursor cursor) {
-    callLogGroupBuilder.addGroups(cursor);
+    rowEnricher.onRowsChanged();
+    if (precomputedGroupIndex != null) {
+      groupIndex = precomputedGroupIndex;
+      precomputedGroupIndex = null;
+    } else {
+      LogUtil.w("CallLogAdapter.addGroups", "grouping cursor on the main thread");
+      groupIndex = callLogGroupBuilder.buildGroupIndex(cursor, null);
+    }
+    callLogGroupBuilder.addGroups(groupIndex);
+  }
+
+  /**
+   * Groups the calls of {@code cursor} on a background thread, then shows it in place of the
+   * current cursor. The adapter takes ownership of the cursor.
+   *
+   * @param onCursorChanged run once the cursor is shown, unless a newer cursor replaced it first.
+   */
+  @MainThread
+  public void changeCursorAsync(@Nullable Cursor cursor, @Nullable Runnable onCursorChanged) {
+    Assert.isMainThread();
+    if (cursor == null) {
+      pendingGroupIndex = null;
+      changeCursor(null);
+      if (onCursorChanged != null) {
+        onCursorChanged.run();
+      }
+      return;
+    }
+    CallLogGroupIndex previous = canReuseGroupIndex ? groupIndex : null;
+    ListenableFuture<CallLogGroupIndex> future =
+        DialerExecutorComponent.get(activity)
+            .backgroundExecutor()
+            .submit(() -> callLogGroupBuilder.buildGroupIndex(cursor, previous));
+    pendingGroupIndex = future;
+    Futures.addCallback(
+        future,
+        new FutureCallback<CallLogGroupIndex>() {
+          @Override
+          public void onSuccess(CallLogGroupIndex result) {
+            if (pendingGroupIndex != future) {
+              // A newer cursor has been fetched or the adapter has been cleared.
+              cursor.close();
+              return;
+            }
+            pendingGroupIndex = null;
+            precomputedGroupIndex = result;
+            canReuseGroupIndex = true;
+            changeCursor(cursor);
+            if (onCursorChanged != null) {
+              onCursorChanged.run();
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable throwable) {
+            LogUtil.e("CallLogAdapter.changeCursorAsync", "failed to group calls", throwable);
+            if (pendingGroupIndex == future) {
+              pendingGroupIndex = null;
+            }
+            cursor.close();
+          }
+        },
+        DialerExecutorComponent.get(activity).uiExecutor());
   }
 
   @Override
@@ -767,6 +849,8 @@ public class CallLogAdapter extends GroupingListAdapter
         break;
       default:
         bindCallLogListViewHolder(viewHolder, position);
+        // Done after binding since looking up the numbers of the window moves the cursor.
+        rowEnricher.onRowBound(position);
         break;
     }
     Trace.endSection();
@@ -827,7 +911,7 @@ public class CallLogAdapter extends GroupingListAdapter
     if (currentlyExpandedRowId == views.rowId) {
       views.inflateActionViewStub();
     }
-    loadAndRender(views, views.rowId, details, callDetailsEntries);
+    loadAndRender(views, views.rowId, c.getPosition(), details, callDetailsEntries);
   }
 
   private void updateCheckMarkedStatusOfEntry(CallLogListItemViewHolder views) {
@@ -863,9 +947,12 @@ public class CallLogAdapter extends GroupingListAdapter
   private void loadAndRender(
       final CallLogListItemViewHolder viewHolder,
       final long rowId,
+      int cursorPosition,
       final PhoneCallDetails details,
       final CallDetailsEntries callDetailsEntries) {
     LogUtil.d("CallLogAdapter.loadAndRender", "position: %d", viewHolder.getAdapterPosition());
+    final int callbackAction = groupIndex.getCallbackAction(cursorPosition);
+    final int currentDayGroup = groupIndex.getDayGroup(cursorPosition);
     // Reset block and spam information since this view could be reused which may contain
     // outdated data.
     viewHolder.isSpam = false;
@@ -881,22 +968,18 @@ public class CallLogAdapter extends GroupingListAdapter
         new AsyncTask<Void, Void, Boolean>() {
           @Override
           protected Boolean doInBackground(Void... params) {
-            viewHolder.blockId =
-                filteredNumberAsyncQueryHandler.getBlockedIdSynchronous(
-                    viewHolder.number, viewHolder.countryIso);
-            details.isBlocked = viewHolder.blockId != null;
+            CallLogRowEnricher.RowInfo rowInfo =
+                rowEnricher.getRowInfo(viewHolder.number, viewHolder.countryIso);
             if (isCancelled()) {
               return false;
             }
+            viewHolder.blockId = rowInfo.blockId;
+            details.isBlocked = viewHolder.blockId != null;
             if (isSpamEnabled) {
               viewHolder.isSpamFeatureEnabled = true;
               // Only display the call as a spam call if there are incoming calls in the list.
               // Call log cards with only outgoing calls should never be displayed as spam.
-              viewHolder.isSpam =
-                  details.hasIncomingCalls()
-                      && SpamComponent.get(activity)
-                          .spam()
-                          .checkSpamStatusSynchronous(viewHolder.number, viewHolder.countryIso);
+              viewHolder.isSpam = details.hasIncomingCalls() && rowInfo.isSpam;
               details.isSpam = viewHolder.isSpam;
             }
             return !isCancelled() && loadData(viewHolder, rowId, details);
@@ -906,8 +989,7 @@ public class CallLogAdapter extends GroupingListAdapter
           protected void onPostExecute(Boolean success) {
             viewHolder.isLoaded = true;
             if (success) {
-              viewHolder.callbackAction = getCallbackAction(viewHolder.rowId);
-              int currentDayGroup = getDayGroup(viewHolder.rowId);
+              viewHolder.callbackAction = callbackAction;
               if (currentDayGroup != details.previousGroup) {
                 viewHolder.dayGroupHeaderVisibility = View.VISIBLE;
                 viewHolder.dayGroupHeaderText = getGroupDescription(currentDayGroup);
@@ -923,6 +1005,26 @@ public class CallLogAdapter extends GroupingListAdapter
     asyncTaskExecutor.submit(LOAD_DATA_TASK_IDENTIFIER, loadDataTask);
   }
 
+  /** Reads the number of the row at {@code position} for {@link CallLogRowEnricher}. */
+  @MainThread
+  @Nullable
+  private CallLogRowEnricher.RowNumber readRowNumber(int position) {
+    Cursor cursor = (Cursor) getItem(position);
+    if (cursor == null) {
+      return null;
+    }
+    String number = cursor.getString(CallLogQuery.NUMBER);
+    if (number == null) {
+      return null;
+    }
+    return new CallLogRowEnricher.RowNumber(number, cursor.getString(CallLogQuery.COUNTRY_ISO));
+  }
+
+  /** Drops the cached block and spam status of a number after the user changed it. */
+  void invalidateRowInfo(String number, @Nullable String countryIso) {
+    rowEnricher.invalidate(number, countryIso);
+  }
+
   @MainThread
   private boolean isCallComposerCapable(@Nullable String number) {
     if (number == null) {
@@ -1268,7 +1370,7 @@ public class CallLogAdapter extends GroupingListAdapter
       cursor.moveToPosition(startingPosition);
       return CallLogGroupBuilder.DAY_GROUP_NONE;
     }
-    int result = getDayGroup(cursor.getLong(CallLogQuery.ID));
+    int result = groupIndex.getDayGroup(cursor.getPosition());
     cursor.moveToPosition(startingPosition);
     return result;
   }
@@ -1277,38 +1379,6 @@ public class CallLogAdapter extends GroupingListAdapter
     while (cursor.moveToPrevious() && hiddenRowIds.contains(cursor.getLong(CallLogQuery.ID))) {}
   }
 
-  /**
-   * Given a call ID, look up its callback action. Callback action data are populated in {@link
-   * com.android.dialer.app.calllog.CallLogGroupBuilder}.
-   *
-   * @param callId The call ID to retrieve the callback action.
-   * @return The callback action for the call.
-   */
-  @MainThread
-  private int getCallbackAction(long callId) {
-    Integer result = callbackActions.get(callId);
-    if (result != null) {
-      return result;
-    }
-    return CallbackAction.NONE;
-  }
-
-  /**
-   * Given a call ID, look up the day group the call belongs to. Day group data are populated in
-   * {@link com.android.dialer.app.calllog.CallLogGroupBuilder}.
-   *
-   * @param callId The call ID to retrieve the day group.
-   * @return The day group for the call.
-   */
-  @MainThread
-  private int getDayGroup(long callId) {
-    Integer result = dayGroups.get(callId);
-    if (result != null) {
-      return result;
-    }
-    return CallLogGroupBuilder.DAY_GROUP_NONE;
-  }
-
   /**
    * Returns the call types for the given number of items in the cursor.
    *
@@ -1363,37 +1433,6 @@ public class CallLogAdapter extends GroupingListAdapter
     contactInfoCache.injectContactInfoForTest(number, countryIso, contactInfo);
   }
 
-  /**
-   * Stores the callback action associated with a call in the call log.
-   *
-   * @param rowId The row ID of the current call.
-   * @param callbackAction The current call's callback action.
-   */
-  @Override
-  @MainThread
-  public void setCallbackAction(long rowId, @CallbackAction int callbackAction) {
-    callbackActions.put(rowId, callbackAction);
-  }
-
-  /**
-   * Stores the day group associated with a call in the call log.
-   *
-   * @param rowId The row ID of the current call.
-   * @param dayGroup The day group the call belongs in.
-   */
-  @Override
-  @MainThread
-  public void setDayGroup(long rowId, int dayGroup) {
-    dayGroups.put(rowId, dayGroup);
-  }
-
-  /** Clears the day group associations on re-bind of the call log. */
-  @Override
-  @MainThread
-  public void clearDayGroups() {
-    dayGroups.clear();
-  }
-
   /**
    * Retrieves the call Ids represented by the current call log row.
    *
@@ -1442,6 +1481,7 @@ public class CallLogAdapter extends GroupingListAdapter
 
   @Override
   public void onDuoStateChanged() {
+    canReuseGroupIndex = false;
     notifyDataSetChanged();
   }
 
@@ -232,13 +232,20 @@ public class CallLogFragment extends Fragment
       // Return false; we did not take ownership of the cursor
       return false;
     }
+    // Read before the cursor is grouped on a background thread.
+    boolean hasCalls = cursor != null && cursor.getCount() > 0;
     adapter.invalidatePositions();
     adapter.setLoading(false);
-    adapter.changeCursor(cursor);
-    // This will update the state of the "Clear call log" menu item.
-    getActivity().invalidateOptionsMenu();
+    adapter.changeCursorAsync(
+        cursor,
+        () -> {
+          // This will update the state of the "Clear call log" menu item.
+          if (getActivity() != null) {
+            getActivity().invalidateOptionsMenu();
+          }
+        });
 
-    if (cursor != null && cursor.getCount() > 0) {
+    if (hasCalls) {
       recyclerView.setPaddingRelative(
           recyclerView.getPaddingStart(),
           0,
@@ -468,7 +475,7 @@ public class CallLogFragment extends Fragment
   public void onDestroy() {
     LogUtil.enterBlock("CallLogFragment.onDestroy");
     if (adapter != null) {
-      adapter.changeCursor(null);
+      adapter.changeCursorAsync(null, null);
     }
     super.onDestroy();
   }
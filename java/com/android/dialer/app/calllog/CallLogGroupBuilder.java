@@ -26,12 +26,13 @@ import android.text.TextUtils;
 import com.android.contacts.common.util.DateUtils;
 import com.android.dialer.calllogutils.CallbackActionHelper;
 import com.android.dialer.calllogutils.CallbackActionHelper.CallbackAction;
+import com.android.dialer.common.LogUtil;
 import com.android.dialer.compat.telephony.TelephonyManagerCompat;
 import com.android.dialer.inject.ApplicationContext;
 import com.android.dialer.phonenumbercache.CallLogQuery;
 import com.android.dialer.phonenumberutil.PhoneNumberHelper;
-
 import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -69,49 +70,59 @@ public class CallLogGroupBuilder {
   }
 
   /**
-   * Finds all groups of adjacent entries in the call log which should be grouped together and calls
-   * {@link GroupCreator#addGroup(int, int)} on {@link #groupCreator} for each of them.
+   * Finds all groups of adjacent entries in the call log which should be grouped together, along
+   * with the day group and callback action of each group.
    *
-   * <p>For entries that are not grouped with others, we do not need to create a group of size one.
+   * <p>Calls at the end of the log which are unchanged since {@code previous} was built keep their
+   * groups: as soon as a new group starts at the same call as one of the previous groups, the rest
+   * of the previous groups are copied instead of comparing the calls again. A reload after a new
+   * call therefore only compares the calls at the top of the log.
    *
-   * <p>It assumes that the cursor will not change during its execution.
+   * <p>It assumes that the cursor will not change during its execution. It is meant to run on a
+   * background thread before the cursor is handed to the adapter, see {@link
+   * CallLogAdapter#changeCursorAsync}.
    *
-   * @see GroupingListAdapter#addGroups(Cursor)
+   * @param previous the index built for the previous cursor, or null if there is none.
    */
-  public void addGroups(Cursor cursor) {
+  public CallLogGroupIndex buildGroupIndex(Cursor cursor, @Nullable CallLogGroupIndex previous) {
     final int count = cursor.getCount();
     if (count == 0) {
-      return;
+      return CallLogGroupIndex.EMPTY;
     }
 
-    // Clear any previous day grouping information.
-    groupCreator.clearDayGroups();
-
     // Get current system time, used for calculating which day group calls belong to.
     long currentTime = System.currentTimeMillis();
-    cursor.moveToFirst();
 
-    // Determine the day group for the first call in the cursor.
-    final long firstDate = cursor.getLong(CallLogQuery.DATE);
-    final long firstRowId = cursor.getLong(CallLogQuery.ID);
-    int groupDayGroup = getDayGroup(firstDate, currentTime);
-    groupCreator.setDayGroup(firstRowId, groupDayGroup);
+    long[] rowIds = new long[count];
+    cursor.moveToPosition(-1);
+    while (cursor.moveToNext()) {
+      rowIds[cursor.getPosition()] = cursor.getLong(CallLogQuery.ID);
+    }
+
+    // Calls from firstUnchangedPosition onwards are at previousPosition + shift in this cursor.
+    int firstUnchangedPosition = count - countUnchangedCalls(previous, rowIds);
+    int shift = previous == null ? 0 : count - previous.getRowCount();
+
+    int[] groups = new int[count * CallLogGroupIndex.STRIDE];
+    long[] groupDates = new long[count];
+    int groupCount = 0;
+
+    cursor.moveToFirst();
 
-    // Determine the callback action for the first call in the cursor.
+    // Instantiate group values to those of the first call in the cursor.
     String groupNumber = cursor.getString(CallLogQuery.NUMBER);
     String groupAccountComponentName = cursor.getString(CallLogQuery.ACCOUNT_COMPONENT_NAME);
-    int groupFeatures = cursor.getInt(CallLogQuery.FEATURES);
-    int groupCallbackAction =
-        CallbackActionHelper.getCallbackAction(
-            appContext, groupNumber, groupFeatures, groupAccountComponentName);
-    groupCreator.setCallbackAction(firstRowId, groupCallbackAction);
-
-    // Instantiate other group values to those of the first call in the cursor.
     String groupAccountId = cursor.getString(CallLogQuery.ACCOUNT_ID);
     String groupPostDialDigits = cursor.getString(CallLogQuery.POST_DIAL_DIGITS);
     String groupViaNumbers = cursor.getString(CallLogQuery.VIA_NUMBER);
     int groupCallType = cursor.getInt(CallLogQuery.CALL_TYPE);
-    int groupSize = 1;
+    int groupFeatures = cursor.getInt(CallLogQuery.FEATURES);
+    int groupCallbackAction =
+        CallbackActionHelper.getCallbackAction(
+            appContext, groupNumber, groupFeatures, groupAccountComponentName);
+    long groupDate = cursor.getLong(CallLogQuery.DATE);
+    int groupStart = 0;
+    int reusedGroupCount = 0;
 
     String number;
     String numberPostDialDigits;
@@ -155,40 +166,136 @@ public class CallLogGroupBuilder {
           && areBothNotVoicemail(callType, groupCallType)
           && (areBothNotBlocked(callType, groupCallType) || areBothBlocked(callType, groupCallType))
           && meetsAssistedDialingGroupingCriteria(groupFeatures, callFeatures)) {
-        // Increment the size of the group to include the current call, but do not create
-        // the group until finding a call that does not match.
-        groupSize++;
-      } else {
-        // The call group has changed. Determine the day group for the new call group.
-        final long date = cursor.getLong(CallLogQuery.DATE);
-        groupDayGroup = getDayGroup(date, currentTime);
-
-        // Create a group for the previous group of calls, which does not include the
-        // current call.
-        groupCreator.addGroup(cursor.getPosition() - groupSize, groupSize);
-
-        // Start a new group; it will include at least the current call.
-        groupSize = 1;
-
-        // Update the group values to those of the current call.
-        groupNumber = number;
-        groupPostDialDigits = numberPostDialDigits;
-        groupViaNumbers = numberViaNumbers;
-        groupCallType = callType;
-        groupAccountComponentName = accountComponentName;
-        groupAccountId = accountId;
-        groupCallbackAction = callbackAction;
-        groupFeatures = callFeatures;
+        // Include the current call in the group, but do not create the group until finding a call
+        // that does not match.
+        continue;
+      }
+
+      // The call group has changed. Create a group for the previous group of calls, which does not
+      // include the current call.
+      int position = cursor.getPosition();
+      putGroup(
+          groups,
+          groupDates,
+          groupCount++,
+          groupStart,
+          position - groupStart,
+          getDayGroup(groupDate, currentTime),
+          groupCallbackAction,
+          groupDate);
+
+      // If one of the previous groups starts at the current call, the remaining calls are grouped
+      // as they were before.
+      if (position >= firstUnchangedPosition) {
+        int previousGroup = previous.findGroupStartingAt(position - shift);
+        if (previousGroup >= 0) {
+          boolean isSameDay =
+              DateUtils.getDayDifference(TIME_ZONE, previous.getDayGroupTimeMillis(), currentTime)
+                  == 0;
+          for (int i = previousGroup; i < previous.getGroupCount(); i++) {
+            long date = previous.getGroupDate(i);
+            putGroup(
+                groups,
+                groupDates,
+                groupCount++,
+                previous.getGroupStart(i) + shift,
+                previous.getGroupSize(i),
+                isSameDay ? previous.getGroupDayGroup(i) : getDayGroup(date, currentTime),
+                previous.getGroupCallbackAction(i),
+                date);
+            reusedGroupCount++;
+          }
+          break;
+        }
       }
 
-      // Save the callback action and the day group associated with the current call.
-      final long currentCallId = cursor.getLong(CallLogQuery.ID);
-      groupCreator.setCallbackAction(currentCallId, groupCallbackAction);
-      groupCreator.setDayGroup(currentCallId, groupDayGroup);
+      // Start a new group; it will include at least the current call.
+      groupStart = position;
+      groupDate = cursor.getLong(CallLogQuery.DATE);
+
+      // Update the group values to those of the current call.
+      groupNumber = number;
+      groupPostDialDigits = numberPostDialDigits;
+      groupViaNumbers = numberViaNumbers;
+      groupCallType = callType;
+      groupAccountComponentName = accountComponentName;
+      groupAccountId = accountId;
+      groupCallbackAction = callbackAction;
+      groupFeatures = callFeatures;
     }
 
-    // Create a group for the last set of calls.
-    groupCreator.addGroup(count - groupSize, groupSize);
+    if (reusedGroupCount == 0) {
+      // Create a group for the last set of calls.
+      putGroup(
+          groups,
+          groupDates,
+          groupCount++,
+          groupStart,
+          count - groupStart,
+          getDayGroup(groupDate, currentTime),
+          groupCallbackAction,
+          groupDate);
+    }
+
+    LogUtil.i(
+        "CallLogGroupBuilder.buildGroupIndex",
+        "%d calls in %d groups, %d groups reused",
+        count,
+        groupCount,
+        reusedGroupCount);
+    return new CallLogGroupIndex(
+        Arrays.copyOf(groups, groupCount * CallLogGroupIndex.STRIDE),
+        groupCount,
+        rowIds,
+        Arrays.copyOf(groupDates, groupCount),
+        currentTime);
+  }
+
+  /**
+   * Calls {@link GroupCreator#addGroup(int, int)} on {@link #groupCreator} for each group of the
+   * index.
+   *
+   * @see GroupingListAdapter#addGroups(Cursor)
+   */
+  public void addGroups(CallLogGroupIndex groupIndex) {
+    for (int i = 0; i < groupIndex.getGroupCount(); i++) {
+      groupCreator.addGroup(groupIndex.getGroupStart(i), groupIndex.getGroupSize(i));
+    }
+  }
+
+  /**
+   * Returns the number of calls at the end of the log which are the same as in {@code previous}.
+   */
+  private static int countUnchangedCalls(@Nullable CallLogGroupIndex previous, long[] rowIds) {
+    if (previous == null) {
+      return 0;
+    }
+    int unchanged = 0;
+    int previousCount = previous.getRowCount();
+    while (unchanged < rowIds.length
+        && unchanged < previousCount
+        && rowIds[rowIds.length - 1 - unchanged]
+            == previous.getRowId(previousCount - 1 - unchanged)) {
+      unchanged++;
+    }
+    return unchanged;
+  }
+
+  private static void putGroup(
+      int[] groups,
+      long[] groupDates,
+      int group,
+      int start,
+      int size,
+      int dayGroup,
+      @CallbackAction int callbackAction,
+      long date) {
+    int offset = group * CallLogGroupIndex.STRIDE;
+    groups[offset + CallLogGroupIndex.FIELD_START] = start;
+    groups[offset + CallLogGroupIndex.FIELD_SIZE] = size;
+    groups[offset + CallLogGroupIndex.FIELD_DAY_GROUP] = dayGroup;
+    groups[offset + CallLogGroupIndex.FIELD_CALLBACK_ACTION] = callbackAction;
+    groupDates[group] = date;
   }
 
   /**
@@ -296,28 +403,5 @@ public class CallLogGroupBuilder {
      * @param size The size of the group.
      */
     void addGroup(int cursorPosition, int size);
-
-    /**
-     * Defines the interface for tracking each call's callback action. Calls in a call group are
-     * associated with the same callback action as the first call in the group. The value of a
-     * callback action should be one of the categories in {@link CallbackAction}.
-     *
-     * @param rowId The row ID of the current call.
-     * @param callbackAction The current call's callback action.
-     */
-    void setCallbackAction(long rowId, @CallbackAction int callbackAction);
-
-    /**
-     * Defines the interface for tracking the day group each call belongs to. Calls in a call group
-     * are assigned the same day group as the first call in the group. The day group assigns calls
-     * to the buckets: Today, Yesterday, Last week, and Other
-     *
-     * @param rowId The row ID of the current call.
-     * @param dayGroup The day group the call belongs to.
-     */
-    void setDayGroup(long rowId, int dayGroup);
-
-    /** Defines the interface for clearing the day groupings information on rebind/regroup. */
-    void clearDayGroups();
   }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.app.calllog;
+
+import com.android.dialer.calllogutils.CallbackActionHelper.CallbackAction;
+
+/**
+ * Immutable grouping of the calls in a call log cursor, built by {@link
+ * CallLogGroupBuilder#buildGroupIndex}.
+ *
+ * <p>Groups are stored in cursor order in a single int array, {@link #STRIDE} values per group.
+ * Every call of a group shares the group's day group and callback action, so lookups by cursor
+ * position are a binary search over the group starts.
+ */
+final class CallLogGroupIndex {
+
+  static final CallLogGroupIndex EMPTY =
+      new CallLogGroupIndex(new int[0], 0, new long[0], new long[0], 0);
+
+  static final int FIELD_START = 0;
+  static final int FIELD_SIZE = 1;
+  static final int FIELD_DAY_GROUP = 2;
+  static final int FIELD_CALLBACK_ACTION = 3;
+  static final int STRIDE = 4;
+
+  private final int[] groups;
+  private final int groupCount;
+
+  /** Row IDs in cursor order, used to find the calls which are unchanged on the next reload. */
+  private final long[] rowIds;
+
+  /** Date of the first call of each group, used to recompute day groups on another day. */
+  private final long[] groupDates;
+
+  /** The time the day groups were computed for. */
+  private final long dayGroupTimeMillis;
+
+  CallLogGroupIndex(
+      int[] groups, int groupCount, long[] rowIds, long[] groupDates, long dayGroupTimeMillis) {
+    this.groups = groups;
+    this.groupCount = groupCount;
+    this.rowIds = rowIds;
+    this.groupDates = groupDates;
+    this.dayGroupTimeMillis = dayGroupTimeMillis;
+  }
+
+  int getGroupCount() {
+    return groupCount;
+  }
+
+  int getRowCount() {
+    return rowIds.length;
+  }
+
+  int getGroupStart(int group) {
+    return groups[group * STRIDE + FIELD_START];
+  }
+
+  int getGroupSize(int group) {
+    return groups[group * STRIDE + FIELD_SIZE];
+  }
+
+  int getGroupDayGroup(int group) {
+    return groups[group * STRIDE + FIELD_DAY_GROUP];
+  }
+
+  @CallbackAction
+  int getGroupCallbackAction(int group) {
+    return groups[group * STRIDE + FIELD_CALLBACK_ACTION];
+  }
+
+  long getGroupDate(int group) {
+    return groupDates[group];
+  }
+
+  long getRowId(int cursorPosition) {
+    return rowIds[cursorPosition];
+  }
+
+  long getDayGroupTimeMillis() {
+    return dayGroupTimeMillis;
+  }
+
+  /** Returns the day group of the call at {@code cursorPosition}. */
+  int getDayGroup(int cursorPosition) {
+    int group = findGroup(cursorPosition);
+    return group < 0 ? CallLogGroupBuilder.DAY_GROUP_NONE : getGroupDayGroup(group);
+  }
+
+  /** Returns the callback action of the call at {@code cursorPosition}. */
+  @CallbackAction
+  int getCallbackAction(int cursorPosition) {
+    int group = findGroup(cursorPosition);
+    return group < 0 ? CallbackAction.NONE : getGroupCallbackAction(group);
+  }
+
+  /**
+   * Returns the group which starts at {@code cursorPosition}, or -1 if no group starts there.
+   */
+  int findGroupStartingAt(int cursorPosition) {
+    int group = findGroup(cursorPosition);
+    return group >= 0 && getGroupStart(group) == cursorPosition ? group : -1;
+  }
+
+  /** Returns the group which contains {@code cursorPosition}, or -1 if it is out of range. */
+  private int findGroup(int cursorPosition) {
+    if (cursorPosition < 0 || cursorPosition >= rowIds.length) {
+      return -1;
+    }
+    int low = 0;
+    int high = groupCount - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (getGroupStart(mid) <= cursorPosition) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return groupCount == 0 ? -1 : low;
+  }
+}
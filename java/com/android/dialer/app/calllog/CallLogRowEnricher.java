@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.app.calllog;
+
+import android.content.Context;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.ArrayMap;
+import android.util.LruCache;
+import android.util.SparseArray;
+import com.android.dialer.DialerPhoneNumber;
+import com.android.dialer.blocking.FilteredNumberAsyncQueryHandler;
+import com.android.dialer.common.Assert;
+import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
+import com.android.dialer.phonenumberproto.DialerPhoneNumberUtil;
+import com.android.dialer.spam.SpamComponent;
+import com.android.dialer.spam.status.SpamStatus;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Resolves the block and spam status of call log rows in batches.
+ *
+ * <p>When a row is bound, the distinct numbers of the window of rows around it, and of the window
+ * after that, are looked up together on a background thread. Rows read their status from the cache
+ * once the batch is done. Batches for windows which have been scrolled past are cancelled.
+ */
+final class CallLogRowEnricher {
+
+  /** Number of list positions which are looked up in one batch. */
+  private static final int WINDOW_SIZE = 20;
+
+  /** Number of windows after the one of the bound row which are looked up ahead of scrolling. */
+  private static final int LOOKAHEAD_WINDOWS = 1;
+
+  private static final int MAX_CACHED_ROWS = 500;
+
+  /** Supplies the numbers of the rows in the list. */
+  interface RowSource {
+
+    int getRowCount();
+
+    /** Returns the number shown at {@code position}, or null if it doesn't have one. */
+    @MainThread
+    @Nullable
+    RowNumber getRowNumber(int position);
+  }
+
+  /** The number of a row and its country ISO. */
+  static final class RowNumber {
+    final String number;
+    @Nullable final String countryIso;
+
+    RowNumber(String number, @Nullable String countryIso) {
+      this.number = Assert.isNotNull(number);
+      this.countryIso = countryIso;
+    }
+
+    String getKey() {
+      return getKey(number, countryIso);
+    }
+
+    static String getKey(String number, @Nullable String countryIso) {
+      return number + "|" + countryIso;
+    }
+  }
+
+  /** Block and spam status of a number. */
+  static final class RowInfo {
+    static final RowInfo EMPTY = new RowInfo(null, false);
+
+    @Nullable final Integer blockId;
+    final boolean isSpam;
+
+    RowInfo(@Nullable Integer blockId, boolean isSpam) {
+      this.blockId = blockId;
+      this.isSpam = isSpam;
+    }
+  }
+
+  private final Context appContext;
+  private final FilteredNumberAsyncQueryHandler filteredNumberAsyncQueryHandler;
+  private final RowSource rowSource;
+
+  private final LruCache<String, RowInfo> cache = new LruCache<>(MAX_CACHED_ROWS);
+
+  /** Batches which are still running, keyed by the {@link RowNumber#getKey()}s they contain. */
+  private final Map<String, ListenableFuture<ImmutableMap<String, RowInfo>>> pendingBatches =
+      new ConcurrentHashMap<>();
+
+  /** Windows which have been requested since the rows last changed, keyed by window index. */
+  private final SparseArray<ListenableFuture<ImmutableMap<String, RowInfo>>> windows =
+      new SparseArray<>();
+
+  private volatile boolean isSpamEnabled;
+
+  CallLogRowEnricher(
+      Context context,
+      FilteredNumberAsyncQueryHandler filteredNumberAsyncQueryHandler,
+      RowSource rowSource) {
+    this.appContext = context.getApplicationContext();
+    this.filteredNumberAsyncQueryHandler = filteredNumberAsyncQueryHandler;
+    this.rowSource = rowSource;
+  }
+
+  /** Sets whether spam status is resolved. Cached rows are dropped if the setting changed. */
+  @MainThread
+  void setSpamEnabled(boolean isSpamEnabled) {
+    if (this.isSpamEnabled != isSpamEnabled) {
+      this.isSpamEnabled = isSpamEnabled;
+      clear();
+    }
+  }
+
+  /**
+   * Requests the windows around {@code position}, and cancels the batches of windows which are no
+   * longer near it.
+   */
+  @MainThread
+  void onRowBound(int position) {
+    Assert.isMainThread();
+    int window = position / WINDOW_SIZE;
+    int firstWindow = window - 1;
+    int lastWindow = window + LOOKAHEAD_WINDOWS;
+    for (int i = windows.size() - 1; i >= 0; i--) {
+      int requestedWindow = windows.keyAt(i);
+      if (requestedWindow < firstWindow || requestedWindow > lastWindow) {
+        windows.valueAt(i).cancel(true);
+        windows.removeAt(i);
+      }
+    }
+    for (int i = window; i <= lastWindow; i++) {
+      requestWindow(i);
+    }
+  }
+
+  /** Forgets the requested windows, for example because the cursor has changed. */
+  @MainThread
+  void onRowsChanged() {
+    Assert.isMainThread();
+    cancelBatches();
+  }
+
+  /** Cancels all batches which are still running. */
+  @MainThread
+  void cancelBatches() {
+    for (int i = 0; i < windows.size(); i++) {
+      windows.valueAt(i).cancel(true);
+    }
+    windows.clear();
+  }
+
+  /** Drops all cached rows, for example because numbers were blocked or unblocked. */
+  @MainThread
+  void clear() {
+    cancelBatches();
+    cache.evictAll();
+  }
+
+  /** Drops the cached row of a number whose block or spam status has changed. */
+  @MainThread
+  void invalidate(String number, @Nullable String countryIso) {
+    cache.remove(RowNumber.getKey(number, countryIso));
+  }
+
+  /**
+   * Returns the block and spam status of a number, waiting for the batch which contains it if
+   * there is one. Numbers which aren't part of a batch are looked up on their own.
+   */
+  @WorkerThread
+  RowInfo getRowInfo(@Nullable String number, @Nullable String countryIso) {
+    Assert.isWorkerThread();
+    if (number == null) {
+      return RowInfo.EMPTY;
+    }
+    String key = RowNumber.getKey(number, countryIso);
+    RowInfo rowInfo = cache.get(key);
+    if (rowInfo != null) {
+      return rowInfo;
+    }
+
+    ListenableFuture<ImmutableMap<String, RowInfo>> batch = pendingBatches.get(key);
+    if (batch != null) {
+      try {
+        rowInfo = batch.get().get(key);
+        if (rowInfo != null) {
+          return rowInfo;
+        }
+      } catch (InterruptedException e) {
+        // The row has been recycled.
+        Thread.currentThread().interrupt();
+        return RowInfo.EMPTY;
+      } catch (CancellationException | ExecutionException e) {
+        // The window was scrolled past or the batch failed, look the number up on its own below.
+      }
+    }
+
+    rowInfo =
+        new RowInfo(
+            filteredNumberAsyncQueryHandler.getBlockedIdSynchronous(number, countryIso),
+            isSpamEnabled
+                && SpamComponent.get(appContext)
+                    .spam()
+                    .checkSpamStatusSynchronous(number, countryIso));
+    cache.put(key, rowInfo);
+    return rowInfo;
+  }
+
+  @MainThread
+  private void requestWindow(int window) {
+    if (windows.get(window) != null) {
+      return;
+    }
+    int start = window * WINDOW_SIZE;
+    int end = Math.min(start + WINDOW_SIZE, rowSource.getRowCount());
+    Map<String, RowNumber> rowNumbers = new ArrayMap<>();
+    for (int position = start; position < end; position++) {
+      RowNumber rowNumber = rowSource.getRowNumber(position);
+      if (rowNumber == null) {
+        continue;
+      }
+      String key = rowNumber.getKey();
+      if (cache.get(key) == null && !pendingBatches.containsKey(key)) {
+        rowNumbers.put(key, rowNumber);
+      }
+    }
+    if (rowNumbers.isEmpty()) {
+      windows.put(window, Futures.immediateFuture(ImmutableMap.of()));
+      return;
+    }
+
+    ImmutableSet<String> keys = ImmutableSet.copyOf(rowNumbers.keySet());
+    ListenableFuture<ImmutableMap<String, RowInfo>> batch =
+        loadBatch(ImmutableMap.copyOf(rowNumbers));
+    for (String key : keys) {
+      pendingBatches.put(key, batch);
+    }
+    windows.put(window, batch);
+    Futures.addCallback(
+        batch,
+        new FutureCallback<ImmutableMap<String, RowInfo>>() {
+          @Override
+          public void onSuccess(ImmutableMap<String, RowInfo> result) {
+            LogUtil.d(
+                "CallLogRowEnricher.requestWindow",
+                "resolved %d numbers for window %d",
+                result.size(),
+                window);
+            removePendingBatch(keys, batch);
+          }
+
+          @Override
+          public void onFailure(Throwable throwable) {
+            if (!(throwable instanceof CancellationException)) {
+              LogUtil.e("CallLogRowEnricher.requestWindow", "batch failed", throwable);
+            }
+            removePendingBatch(keys, batch);
+          }
+        },
+        DialerExecutorComponent.get(appContext).uiExecutor());
+  }
+
+  private void removePendingBatch(
+      ImmutableSet<String> keys, ListenableFuture<ImmutableMap<String, RowInfo>> batch) {
+    for (String key : keys) {
+      if (pendingBatches.get(key) == batch) {
+        pendingBatches.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Looks up the block status of all numbers with one query per number column and their spam status
+   * with one batch request. The results are cached before the returned future completes.
+   */
+  private ListenableFuture<ImmutableMap<String, RowInfo>> loadBatch(
+      ImmutableMap<String, RowNumber> rowNumbers) {
+    ListeningExecutorService backgroundExecutor =
+        DialerExecutorComponent.get(appContext).backgroundExecutor();
+    boolean resolveSpam = isSpamEnabled;
+
+    ListenableFuture<Map<String, Integer>> blockedIds =
+        backgroundExecutor.submit(
+            () -> {
+              Map<String, String> countryIsoByNumber = new ArrayMap<>(rowNumbers.size());
+              for (RowNumber rowNumber : rowNumbers.values()) {
+                countryIsoByNumber.put(rowNumber.number, rowNumber.countryIso);
+              }
+              return filteredNumberAsyncQueryHandler.getBlockedIdsSynchronous(countryIsoByNumber);
+            });
+
+    ListenableFuture<ImmutableMap<String, DialerPhoneNumber>> dialerPhoneNumbers =
+        resolveSpam
+            ? backgroundExecutor.submit(
+                () -> {
+                  DialerPhoneNumberUtil dialerPhoneNumberUtil = new DialerPhoneNumberUtil();
+                  ImmutableMap.Builder<String, DialerPhoneNumber> builder = ImmutableMap.builder();
+                  for (Map.Entry<String, RowNumber> entry : rowNumbers.entrySet()) {
+                    builder.put(
+                        entry.getKey(),
+                        dialerPhoneNumberUtil.parse(
+                            entry.getValue().number, entry.getValue().countryIso));
+                  }
+                  return builder.build();
+                })
+            : Futures.immediateFuture(ImmutableMap.of());
+
+    ListenableFuture<ImmutableMap<DialerPhoneNumber, SpamStatus>> spamStatuses =
+        resolveSpam
+            ? Futures.transformAsync(
+                dialerPhoneNumbers,
+                numbers ->
+                    SpamComponent.get(appContext)
+                        .spam()
+                        .batchCheckSpamStatus(ImmutableSet.copyOf(numbers.values())),
+                backgroundExecutor)
+            : Futures.immediateFuture(ImmutableMap.of());
+
+    return Futures.whenAllSucceed(blockedIds, dialerPhoneNumbers, spamStatuses)
+        .call(
+            () -> {
+              Map<String, Integer> blockedIdByNumber = Futures.getDone(blockedIds);
+              ImmutableMap<String, DialerPhoneNumber> dialerPhoneNumberByKey =
+                  Futures.getDone(dialerPhoneNumbers);
+              ImmutableMap<DialerPhoneNumber, SpamStatus> spamStatusByNumber =
+                  Futures.getDone(spamStatuses);
+
+              ImmutableMap.Builder<String, RowInfo> rowInfos = ImmutableMap.builder();
+              for (Map.Entry<String, RowNumber> entry : rowNumbers.entrySet()) {
+                SpamStatus spamStatus =
+                    spamStatusByNumber.get(dialerPhoneNumberByKey.get(entry.getKey()));
+                RowInfo rowInfo =
+                    new RowInfo(
+                        blockedIdByNumber.get(entry.getValue().number),
+                        spamStatus != null && spamStatus.isSpam());
+                cache.put(entry.getKey(), rowInfo);
+                rowInfos.put(entry.getKey(), rowInfo);
+              }
+              return rowInfos.build();
+            },
+            DialerExecutorComponent.get(appContext).lightweightExecutor());
+  }
+}
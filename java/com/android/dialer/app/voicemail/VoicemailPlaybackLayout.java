@@ -152,6 +152,7 @@ public class VoicemailPlaybackLayout extends LinearLayout
   private ImageButton playbackSpeakerphone;
   private ImageButton deleteButton;
   private TextView stateText;
+  private boolean isFetchingContent;
   private TextView positionText;
   private TextView totalDurationText;
   /** Handle state changes when the user manipulates the seek bar. */
@@ -270,6 +271,7 @@ public class VoicemailPlaybackLayout extends LinearLayout
     }
 
     disableUiElements();
+    isFetchingContent = false;
     stateText.setText(getString(R.string.voicemail_playback_error));
   }
 
@@ -302,17 +304,31 @@ public class VoicemailPlaybackLayout extends LinearLayout
 
   @Override
   public void setSuccess() {
+    isFetchingContent = false;
     stateText.setText(null);
   }
 
   @Override
   public void setIsFetchingContent() {
     disableUiElements();
+    isFetchingContent = true;
     stateText.setText(getString(R.string.voicemail_fetching_content));
   }
 
+  @Override
+  public void setFetchProgress(int percent) {
+    if (percent < 0) {
+      return;
+    }
+    playbackSeek.setSecondaryProgress(playbackSeek.getMax() * percent / 100);
+    if (isFetchingContent) {
+      stateText.setText(context.getString(R.string.voicemail_fetching_content_progress, percent));
+    }
+  }
+
   @Override
   public void setFetchContentTimeout() {
+    isFetchingContent = false;
     startStopButton.setEnabled(true);
     stateText.setText(getString(R.string.voicemail_fetching_timout));
   }
@@ -339,6 +355,7 @@ public class VoicemailPlaybackLayout extends LinearLayout
   @Override
   public void resetSeekBar() {
     playbackSeek.setProgress(0);
+    playbackSeek.setSecondaryProgress(0);
     playbackSeek.setEnabled(false);
     playbackSeek.setThumb(voicemailSeekHandleDisabled);
   }
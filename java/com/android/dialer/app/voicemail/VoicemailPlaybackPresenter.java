@@ -59,6 +59,9 @@ import com.android.dialer.phonenumbercache.CallLogQuery;
 import com.android.dialer.strictmode.StrictModeUtils;
 import com.android.dialer.telecom.TelecomUtil;
 import com.android.dialer.util.PermissionsUtil;
+import com.android.voicemail.ProgressiveVoicemailDataSource;
+import com.android.voicemail.VoicemailDownloads;
+import com.android.voicemail.VoicemailDownloads.Download;
 import com.google.common.io.ByteStreams;
 import java.io.File;
 import java.io.IOException;
@@ -91,7 +94,8 @@ import javax.annotation.concurrent.ThreadSafe;
 public class VoicemailPlaybackPresenter
     implements MediaPlayer.OnPreparedListener,
         MediaPlayer.OnCompletionListener,
-        MediaPlayer.OnErrorListener {
+        MediaPlayer.OnErrorListener,
+        VoicemailDownloads.Listener {
 
   public static final int PLAYBACK_REQUEST = 0;
   private static final int NUMBER_OF_THREADS_IN_POOL = 2;
@@ -387,6 +391,7 @@ public class VoicemailPlaybackPresenter
       fetchResultHandler.destroy();
       fetchResultHandler = null;
     }
+    VoicemailDownloads.removeListener(this);
   }
 
   /** Checks to see if we have content available for this voicemail. */
@@ -438,6 +443,9 @@ public class VoicemailPlaybackPresenter
    * proceed to {@link #prepareContent()}. If the has_content field does not become true within the
    * allowed time, we will update the ui to reflect the fact that content was not available.
    *
+   * <p>While the content is downloading, {@link #onDownloadProgress} starts playback as soon as
+   * enough of it was written. If it is already downloading, it is played without a new request.
+   *
    * @return whether issued request to fetch content
    */
   protected boolean requestContent(int code) {
@@ -445,6 +453,13 @@ public class VoicemailPlaybackPresenter
       return false;
     }
 
+    VoicemailDownloads.addListener(this);
+    Download download = VoicemailDownloads.get(voicemailUri);
+    if (download != null && download.isPlayable()) {
+      prepareContent(download);
+      return true;
+    }
+
     FetchResultHandler tempFetchResultHandler =
         new FetchResultHandler(new Handler(), voicemailUri, code);
 
@@ -501,10 +516,18 @@ public class VoicemailPlaybackPresenter
    * will call {@link #onError()} otherwise.
    */
   protected void prepareContent() {
+    prepareContent(null);
+  }
+
+  /**
+   * Prepares the voicemail content for playback, reading it through a {@link
+   * ProgressiveVoicemailDataSource} if {@code download} is not null.
+   */
+  private void prepareContent(@Nullable Download download) {
     if (view == null || context == null) {
       return;
     }
-    LogUtil.d("VoicemailPlaybackPresenter.prepareContent", null);
+    LogUtil.d("VoicemailPlaybackPresenter.prepareContent", "progressive: %b", download != null);
 
     // Release the previous media player, otherwise there may be failures.
     if (mediaPlayer != null) {
@@ -519,10 +542,10 @@ public class VoicemailPlaybackPresenter
       handleError(new IllegalStateException("Cannot play voicemail when call is in progress"));
       return;
     }
-    StrictModeUtils.bypass(this::prepareMediaPlayer);
+    StrictModeUtils.bypass(() -> prepareMediaPlayer(download));
   }
 
-  private void prepareMediaPlayer() {
+  private void prepareMediaPlayer(@Nullable Download download) {
     try {
       mediaPlayer = new MediaPlayer();
       mediaPlayer.setOnPreparedListener(this);
@@ -530,7 +553,12 @@ public class VoicemailPlaybackPresenter
       mediaPlayer.setOnCompletionListener(this);
 
       mediaPlayer.reset();
-      mediaPlayer.setDataSource(context, voicemailUri);
+      if (download != null) {
+        mediaPlayer.setDataSource(
+            ProgressiveVoicemailDataSource.open(context, voicemailUri, download));
+      } else {
+        mediaPlayer.setDataSource(context, voicemailUri);
+      }
       mediaPlayer.setAudioStreamType(VoicemailAudioManager.PLAYBACK_STREAM);
       mediaPlayer.prepareAsync();
     } catch (IOException e) {
@@ -549,7 +577,12 @@ public class VoicemailPlaybackPresenter
     LogUtil.d("VoicemailPlaybackPresenter.onPrepared", null);
     isPrepared = true;
 
-    duration.set(mediaPlayer.getDuration());
+    // The duration of a partially downloaded voicemail may be unknown, keep the one from the
+    // database then.
+    int playerDuration = mediaPlayer.getDuration();
+    if (playerDuration > 0) {
+      duration.set(playerDuration);
+    }
 
     LogUtil.d("VoicemailPlaybackPresenter.onPrepared", "mPosition=" + position);
     view.setClipPosition(position, duration.get());
@@ -566,6 +599,36 @@ public class VoicemailPlaybackPresenter
     }
   }
 
+  /**
+   * Surfaces the progress of the download requested by {@link #requestContent(int)}, and starts
+   * playing the partial download once enough of it was written instead of waiting for the whole
+   * content.
+   */
+  @Override
+  public void onDownloadProgress(Uri voicemailUri, Download download) {
+    if (view == null || context == null || !voicemailUri.equals(this.voicemailUri)) {
+      return;
+    }
+    view.setFetchProgress(download.getProgressPercent());
+    if (download.isFinished()) {
+      if (download.isSucceeded()) {
+        showShareVoicemailButton(true);
+      }
+      return;
+    }
+    if (download.isPlayable()
+        && fetchResultHandler != null
+        && fetchResultHandler.isWaitingForResult()) {
+      LogUtil.i(
+          "VoicemailPlaybackPresenter.onDownloadProgress",
+          "playing after %d bytes",
+          download.getBytesWritten());
+      // Otherwise the player would be prepared again once the download completed.
+      fetchResultHandler.destroy();
+      prepareContent(download);
+    }
+  }
+
   /**
    * Invoked if preparing the media player fails, for example, if file is missing or the voicemail
    * is an unknown file format that can't be played.
@@ -1031,6 +1094,13 @@ public class VoicemailPlaybackPresenter
 
     void setIsFetchingContent();
 
+    /**
+     * Shows the progress of fetching the content, which may continue after playback started.
+     *
+     * @param percent the downloaded part of the content, or -1 if it is unknown.
+     */
+    void setFetchProgress(int percent);
+
     void setPresenter(VoicemailPlaybackPresenter presenter, Uri voicemailUri);
 
     void resetSeekBar();
@@ -1080,6 +1150,10 @@ public class VoicemailPlaybackPresenter
       }
     }
 
+    public boolean isWaitingForResult() {
+      return isWaitingForResult.get();
+    }
+
     public void destroy() {
       if (isWaitingForResult.getAndSet(false) && context != null) {
         context.getContentResolver().unregisterContentObserver(this);
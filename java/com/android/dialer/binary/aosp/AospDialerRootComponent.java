@@ -30,7 +30,7 @@ import com.android.dialer.enrichedcall.stub.StubEnrichedCallModule;
 import com.android.dialer.feedback.stub.StubFeedbackModule;
 import com.android.dialer.glidephotomanager.GlidePhotoManagerModule;
 import com.android.dialer.inject.ContextModule;
-import com.android.dialer.metrics.StubMetricsModule;
+import com.android.dialer.metrics.LocalMetricsModule;
 import com.android.dialer.phonelookup.PhoneLookupModule;
 import com.android.dialer.phonenumbergeoutil.impl.PhoneNumberGeoUtilModule;
 import com.android.dialer.precall.impl.PreCallModule;
@@ -75,7 +75,7 @@ import javax.inject.Singleton;
       StubDuoModule.class,
       StubEnrichedCallModule.class,
       StubBubbleModule.class,
-      StubMetricsModule.class,
+      LocalMetricsModule.class,
       StubFeedbackModule.class,
       StubMapsModule.class,
       StubSimSuggestionModule.class,
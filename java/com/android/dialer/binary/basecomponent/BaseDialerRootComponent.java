@@ -35,6 +35,7 @@ import com.android.dialer.phonelookup.PhoneLookupComponent;
 import com.android.dialer.phonelookup.database.PhoneLookupDatabaseComponent;
 import com.android.dialer.phonenumbergeoutil.PhoneNumberGeoUtilComponent;
 import com.android.dialer.precall.PreCallComponent;
+import com.android.dialer.precall.impl.SpeculativePreCallComponent;
 import com.android.dialer.preferredsim.PreferredSimComponent;
 import com.android.dialer.preferredsim.suggestion.SimSuggestionComponent;
 import com.android.dialer.promotion.PromotionComponent;
@@ -82,6 +83,7 @@ public interface BaseDialerRootComponent
         SimulatorComponent.HasComponent,
         SpamComponent.HasComponent,
         SpeakEasyComponent.HasComponent,
+        SpeculativePreCallComponent.HasComponent,
         StorageComponent.HasComponent,
         StrictModeComponent.HasComponent,
         ThemeComponent.HasComponent,
@@ -17,6 +17,7 @@
 package com.android.dialer.binary.common;
 
 import android.app.Application;
+import android.content.Context;
 import android.os.Trace;
 import android.support.annotation.NonNull;
 import android.support.v4.os.BuildCompat;
@@ -24,14 +25,18 @@ import com.android.dialer.blocking.BlockedNumbersAutoMigrator;
 import com.android.dialer.blocking.FilteredNumberAsyncQueryHandler;
 import com.android.dialer.calllog.CallLogComponent;
 import com.android.dialer.calllog.CallLogFramework;
-import com.android.dialer.calllog.config.CallLogConfig;
 import com.android.dialer.calllog.config.CallLogConfigComponent;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.common.concurrent.DialerExecutorComponent;
 import com.android.dialer.inject.HasRootComponent;
+import com.android.dialer.metrics.Metrics;
 import com.android.dialer.notification.NotificationChannelManager;
 import com.android.dialer.persistentlog.PersistentLogger;
+import com.android.dialer.startup.StartupTask;
+import com.android.dialer.startup.StartupTaskRunner;
 import com.android.dialer.strictmode.StrictModeComponent;
+import java.util.ArrayList;
+import java.util.List;
 
 /** A common application subclass for all Dialer build variants. */
 public abstract class DialerApplication extends Application implements HasRootComponent {
@@ -43,26 +48,62 @@ public abstract class DialerApplication extends Application implements HasRootCo
     Trace.beginSection("DialerApplication.onCreate");
     StrictModeComponent.get(this).getDialerStrictMode().onApplicationCreate(this);
     super.onCreate();
-    new BlockedNumbersAutoMigrator(
-            this.getApplicationContext(),
-            new FilteredNumberAsyncQueryHandler(this),
-            DialerExecutorComponent.get(this).dialerExecutorFactory())
-        .asyncAutoMigrate();
-    initializeAnnotatedCallLog();
-    PersistentLogger.initialize(this);
+    StartupTaskRunner startupTaskRunner =
+        new StartupTaskRunner(this, Metrics.APPLICATION_ON_CREATE_EVENT_NAME, getStartupTasks());
+    startupTaskRunner.runTasksNeededForFirstFrame();
+    startupTaskRunner.runDeferredTasksAfterFirstDraw(this);
+    Trace.endSection();
+  }
 
+  /**
+   * Returns the work to do when the application starts. Sub classes may add their own tasks, only
+   * the ones needed before anything is shown should be run before the first frame.
+   */
+  @NonNull
+  protected List<StartupTask> getStartupTasks() {
+    List<StartupTask> tasks = new ArrayList<>();
+    tasks.add(
+        StartupTask.builder("PersistentLogger", PersistentLogger::initialize)
+            .setNeededForFirstFrame(true)
+            .build());
     if (BuildCompat.isAtLeastO()) {
-      NotificationChannelManager.initChannels(this);
+      // Notifications can be posted before any activity is drawn, e.g. for an incoming call.
+      tasks.add(
+          StartupTask.builder("NotificationChannels", NotificationChannelManager::initChannels)
+              .setNeededForFirstFrame(true)
+              .build());
     }
-    Trace.endSection();
+    tasks.add(
+        StartupTask.builder(
+                "BlockedNumbersAutoMigrator",
+                appContext ->
+                    new BlockedNumbersAutoMigrator(
+                            appContext,
+                            new FilteredNumberAsyncQueryHandler(appContext),
+                            DialerExecutorComponent.get(appContext).dialerExecutorFactory())
+                        .asyncAutoMigrate())
+            // The query handler needs a looper.
+            .setMainThreadOnly(true)
+            .build());
+    tasks.add(
+        StartupTask.builder(
+                "CallLogPollingJob",
+                appContext ->
+                    CallLogConfigComponent.get(appContext).callLogConfig().schedulePollingJob())
+            .build());
+    tasks.add(
+        StartupTask.builder("CallLogFramework", DialerApplication::initializeAnnotatedCallLog)
+            // The framework only learns about call log changes through its content observers.
+            // Registering them later would miss a call ending before the first frame, e.g. when
+            // the application is started for an incoming call.
+            .setNeededForFirstFrame(true)
+            .build());
+    return tasks;
   }
 
-  private void initializeAnnotatedCallLog() {
-    CallLogConfig callLogConfig = CallLogConfigComponent.get(this).callLogConfig();
-    callLogConfig.schedulePollingJob();
-
-    if (callLogConfig.isCallLogFrameworkEnabled()) {
-      CallLogFramework callLogFramework = CallLogComponent.get(this).callLogFramework();
+  private static void initializeAnnotatedCallLog(Context appContext) {
+    if (CallLogConfigComponent.get(appContext).callLogConfig().isCallLogFrameworkEnabled()) {
+      CallLogFramework callLogFramework = CallLogComponent.get(appContext).callLogFramework();
       callLogFramework.registerContentObservers();
     } else {
       LogUtil.i("DialerApplication.initializeAnnotatedCallLog", "framework not enabled");
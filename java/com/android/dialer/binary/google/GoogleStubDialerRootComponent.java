@@ -30,7 +30,7 @@ import com.android.dialer.enrichedcall.stub.StubEnrichedCallModule;
 import com.android.dialer.feedback.stub.StubFeedbackModule;
 import com.android.dialer.glidephotomanager.GlidePhotoManagerModule;
 import com.android.dialer.inject.ContextModule;
-import com.android.dialer.metrics.StubMetricsModule;
+import com.android.dialer.metrics.LocalMetricsModule;
 import com.android.dialer.phonelookup.PhoneLookupModule;
 import com.android.dialer.phonenumbergeoutil.impl.PhoneNumberGeoUtilModule;
 import com.android.dialer.precall.impl.PreCallModule;
@@ -79,7 +79,7 @@ import javax.inject.Singleton;
       StubDuoModule.class,
       StubEnrichedCallModule.class,
       StubFeedbackModule.class,
-      StubMetricsModule.class,
+      LocalMetricsModule.class,
       StubBubbleModule.class,
       StubSimSuggestionModule.class,
       StubSpamModule.class,
@@ -28,10 +28,14 @@ import android.support.annotation.VisibleForTesting;
 import android.support.v4.os.UserManagerCompat;
 import android.telephony.PhoneNumberUtils;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.database.Selection;
 import com.android.dialer.database.FilteredNumberContract.FilteredNumberColumns;
 import com.android.dialer.database.FilteredNumberContract.FilteredNumberTypes;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -255,6 +259,101 @@ public class FilteredNumberAsyncQueryHandler extends AsyncQueryHandler {
     }
   }
 
+  /**
+   * Synchronously check which of the given numbers have been blocked. Numbers which aren't cached
+   * yet are looked up together, with one query per number column instead of one per number.
+   *
+   * @param countryIsoByNumber the numbers to check, mapped to their country ISO.
+   * @return the blocked id of each number, or null for numbers which aren't blocked.
+   */
+  public Map<String, Integer> getBlockedIdsSynchronous(Map<String, String> countryIsoByNumber) {
+    Assert.isWorkerThread();
+    Map<String, Integer> blockedIds = new ArrayMap<>(countryIsoByNumber.size());
+    if (!FilteredNumberCompat.canAttemptBlockOperations(context)) {
+      return blockedIds;
+    }
+
+    // Column to query -> blockable number -> numbers which are blocked under it.
+    Map<String, Map<String, List<String>>> uncachedNumbers = new ArrayMap<>();
+    for (Map.Entry<String, String> entry : countryIsoByNumber.entrySet()) {
+      String number = entry.getKey();
+      Integer cachedId = blockedNumberCache.get(number);
+      if (cachedId != null) {
+        blockedIds.put(number, cachedId == BLOCKED_NUMBER_CACHE_NULL_ID ? null : cachedId);
+        continue;
+      }
+      String e164Number = PhoneNumberUtils.formatNumberToE164(number, entry.getValue());
+      String formattedNumber = FilteredNumbersUtil.getBlockableNumber(context, e164Number, number);
+      if (TextUtils.isEmpty(formattedNumber)) {
+        blockedIds.put(number, null);
+        continue;
+      }
+      String column = getIsBlockedNumberSelection(e164Number != null);
+      Map<String, List<String>> numbersForColumn = uncachedNumbers.get(column);
+      if (numbersForColumn == null) {
+        numbersForColumn = new ArrayMap<>();
+        uncachedNumbers.put(column, numbersForColumn);
+      }
+      List<String> numbers = numbersForColumn.get(formattedNumber);
+      if (numbers == null) {
+        numbers = new ArrayList<>();
+        numbersForColumn.put(formattedNumber, numbers);
+      }
+      numbers.add(number);
+    }
+
+    for (Map.Entry<String, Map<String, List<String>>> entry : uncachedNumbers.entrySet()) {
+      String column = entry.getKey();
+      Map<String, List<String>> numbersForColumn = entry.getValue();
+      Selection selection = Selection.column(column).in(numbersForColumn.keySet());
+      try (Cursor cursor =
+          context
+              .getContentResolver()
+              .query(
+                  FilteredNumberCompat.getContentUri(context, null),
+                  FilteredNumberCompat.filter(
+                      new String[] {
+                        FilteredNumberCompat.getIdColumnName(context),
+                        FilteredNumberCompat.getTypeColumnName(context),
+                        column
+                      }),
+                  selection.getSelection(),
+                  selection.getSelectionArgs(),
+                  null)) {
+        if (cursor != null) {
+          int idIndex = cursor.getColumnIndex(FilteredNumberColumns._ID);
+          int numberIndex = cursor.getColumnIndex(column);
+          while (cursor.moveToNext()) {
+            List<String> numbers = numbersForColumn.get(cursor.getString(numberIndex));
+            if (numbers == null) {
+              continue;
+            }
+            // As in getBlockedIdSynchronous, the first row wins if a number is blocked in both
+            // e164 format and not.
+            for (String number : numbers) {
+              if (!blockedIds.containsKey(number)) {
+                int blockedId = cursor.getInt(idIndex);
+                blockedIds.put(number, blockedId);
+                blockedNumberCache.put(number, blockedId);
+              }
+            }
+          }
+        }
+        for (List<String> numbers : numbersForColumn.values()) {
+          for (String number : numbers) {
+            if (!blockedIds.containsKey(number)) {
+              blockedIds.put(number, null);
+              blockedNumberCache.put(number, BLOCKED_NUMBER_CACHE_NULL_ID);
+            }
+          }
+        }
+      } catch (SecurityException e) {
+        LogUtil.e("FilteredNumberAsyncQueryHandler.getBlockedIdsSynchronous", null, e);
+      }
+    }
+    return blockedIds;
+  }
+
   @VisibleForTesting
   public void clearCache() {
     blockedNumberCache.clear();
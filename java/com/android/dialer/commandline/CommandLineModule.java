@@ -19,8 +19,12 @@ package com.android.dialer.commandline;
 import com.android.dialer.commandline.impl.ActiveCallsCommand;
 import com.android.dialer.commandline.impl.BlockingCommand;
 import com.android.dialer.commandline.impl.CallCommand;
+import com.android.dialer.commandline.impl.ContactMemoryBenchmarkCommand;
 import com.android.dialer.commandline.impl.Echo;
 import com.android.dialer.commandline.impl.Help;
+import com.android.dialer.commandline.impl.ImapParserBenchmarkCommand;
+import com.android.dialer.commandline.impl.MetricsCommand;
+import com.android.dialer.commandline.impl.PersistentLogBenchmarkCommand;
 import com.android.dialer.commandline.impl.Version;
 import com.android.dialer.function.Supplier;
 import com.android.dialer.inject.DialerVariant;
@@ -50,6 +54,10 @@ public abstract class CommandLineModule {
     private final BlockingCommand blockingCommand;
     private final CallCommand callCommand;
     private final ActiveCallsCommand activeCallsCommand;
+    private final ImapParserBenchmarkCommand imapParserBenchmarkCommand;
+    private final MetricsCommand metricsCommand;
+    private final PersistentLogBenchmarkCommand persistentLogBenchmarkCommand;
+    private final ContactMemoryBenchmarkCommand contactMemoryBenchmarkCommand;
 
     @Inject
     AospCommandInjector(
@@ -58,13 +66,21 @@ public abstract class CommandLineModule {
         Echo echo,
         BlockingCommand blockingCommand,
         CallCommand callCommand,
-        ActiveCallsCommand activeCallsCommand) {
+        ActiveCallsCommand activeCallsCommand,
+        ImapParserBenchmarkCommand imapParserBenchmarkCommand,
+        MetricsCommand metricsCommand,
+        PersistentLogBenchmarkCommand persistentLogBenchmarkCommand,
+        ContactMemoryBenchmarkCommand contactMemoryBenchmarkCommand) {
       this.help = help;
       this.version = version;
       this.echo = echo;
       this.blockingCommand = blockingCommand;
       this.callCommand = callCommand;
       this.activeCallsCommand = activeCallsCommand;
+      this.imapParserBenchmarkCommand = imapParserBenchmarkCommand;
+      this.metricsCommand = metricsCommand;
+      this.persistentLogBenchmarkCommand = persistentLogBenchmarkCommand;
+      this.contactMemoryBenchmarkCommand = contactMemoryBenchmarkCommand;
     }
 
     public CommandSupplier.Builder inject(CommandSupplier.Builder builder) {
@@ -74,6 +90,10 @@ public abstract class CommandLineModule {
       builder.addCommand("blocking", blockingCommand);
       builder.addCommand("call", callCommand);
       builder.addCommand("activecalls", activeCallsCommand);
+      builder.addCommand("imapparserbenchmark", imapParserBenchmarkCommand);
+      builder.addCommand("metrics", metricsCommand);
+      builder.addCommand("persistentlogbenchmark", persistentLogBenchmarkCommand);
+      builder.addCommand("contactmemorybenchmark", contactMemoryBenchmarkCommand);
       return builder;
     }
   }
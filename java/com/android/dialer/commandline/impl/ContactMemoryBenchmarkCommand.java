@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.commandline.impl;
+
+import android.support.annotation.NonNull;
+import com.android.contacts.common.model.ContactMemoryBenchmark;
+import com.android.dialer.commandline.Arguments;
+import com.android.dialer.commandline.Command;
+import com.android.dialer.common.concurrent.Annotations.BackgroundExecutor;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import javax.inject.Inject;
+
+/** Measure the heap used by the data items of a loaded contact. */
+public class ContactMemoryBenchmarkCommand implements Command {
+
+  private static final int DEFAULT_ITEMS = 500;
+
+  @NonNull
+  @Override
+  public String getShortDescription() {
+    return "@hide Benchmark the heap used by the data items of a contact.";
+  }
+
+  @NonNull
+  @Override
+  public String getUsage() {
+    return "contactmemorybenchmark [items]\n\n"
+        + "items is the number of phone numbers and of emails of the synthetic contacts.";
+  }
+
+  private final ListeningExecutorService executorService;
+
+  @Inject
+  ContactMemoryBenchmarkCommand(@BackgroundExecutor ListeningExecutorService executorService) {
+    this.executorService = executorService;
+  }
+
+  @Override
+  public ListenableFuture<String> run(Arguments args) throws IllegalCommandLineArgumentException {
+    int items = DEFAULT_ITEMS;
+    if (!args.getPositionals().isEmpty()) {
+      try {
+        items = Integer.parseInt(args.getPositionals().get(0));
+      } catch (NumberFormatException e) {
+        throw new IllegalCommandLineArgumentException("items must be a number");
+      }
+    }
+    int finalItems = items;
+    return executorService.submit(() -> ContactMemoryBenchmark.run(finalItems));
+  }
+}
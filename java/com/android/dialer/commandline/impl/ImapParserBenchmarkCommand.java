@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.commandline.impl;
+
+import android.support.annotation.NonNull;
+import com.android.dialer.commandline.Arguments;
+import com.android.dialer.commandline.Command;
+import com.android.dialer.common.concurrent.Annotations.BackgroundExecutor;
+import com.android.voicemail.impl.mail.store.imap.ImapResponseParserBenchmark;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import java.io.File;
+import javax.inject.Inject;
+
+/** Measure the throughput of the voicemail IMAP response parser. */
+public class ImapParserBenchmarkCommand implements Command {
+
+  private static final int DEFAULT_ITERATIONS = 20;
+
+  @NonNull
+  @Override
+  public String getShortDescription() {
+    return "@hide Benchmark the voicemail IMAP response parser.";
+  }
+
+  @NonNull
+  @Override
+  public String getUsage() {
+    return "imapparserbenchmark [iterations [transcript]]\n\n"
+        + "transcript is a file readable by the dialer holding the bytes received from an IMAP\n"
+        + "server, the built-in transcripts are used if omitted.";
+  }
+
+  private final ListeningExecutorService executorService;
+
+  @Inject
+  ImapParserBenchmarkCommand(@BackgroundExecutor ListeningExecutorService executorService) {
+    this.executorService = executorService;
+  }
+
+  @Override
+  public ListenableFuture<String> run(Arguments args) throws IllegalCommandLineArgumentException {
+    int iterations = DEFAULT_ITERATIONS;
+    if (!args.getPositionals().isEmpty()) {
+      try {
+        iterations = Integer.parseInt(args.getPositionals().get(0));
+      } catch (NumberFormatException e) {
+        throw new IllegalCommandLineArgumentException("iterations must be a number");
+      }
+    }
+    File transcript =
+        args.getPositionals().size() > 1 ? new File(args.getPositionals().get(1)) : null;
+    int finalIterations = iterations;
+    return executorService.submit(
+        () -> ImapResponseParserBenchmark.run(transcript, finalIterations));
+  }
+}
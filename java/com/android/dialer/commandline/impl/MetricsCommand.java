@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.commandline.impl;
+
+import android.support.annotation.NonNull;
+import com.android.dialer.commandline.Arguments;
+import com.android.dialer.commandline.Command;
+import com.android.dialer.metrics.LocalMetrics;
+import com.android.dialer.metrics.Metrics;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import javax.inject.Inject;
+
+/** Dump or reset the metrics recorded by {@link LocalMetrics}. */
+public class MetricsCommand implements Command {
+
+  @NonNull
+  @Override
+  public String getShortDescription() {
+    return "@hide Dump or reset the recorded timers and memory events.";
+  }
+
+  @NonNull
+  @Override
+  public String getUsage() {
+    return "metrics [dump|reset]\n\n"
+        + "dump prints the count, mean, p50, p95, p99 and max of every event since the process\n"
+        + "started or the last reset.";
+  }
+
+  private final Metrics metrics;
+
+  @Inject
+  MetricsCommand(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public ListenableFuture<String> run(Arguments args) throws IllegalCommandLineArgumentException {
+    if (!(metrics instanceof LocalMetrics)) {
+      return Futures.immediateFuture("metrics are not recorded in this build");
+    }
+    LocalMetrics localMetrics = (LocalMetrics) metrics;
+    String action = args.getPositionals().isEmpty() ? "dump" : args.getPositionals().get(0);
+    switch (action) {
+      case "dump":
+        return Futures.immediateFuture(localMetrics.dump());
+      case "reset":
+        localMetrics.reset();
+        return Futures.immediateFuture("reset");
+      default:
+        throw new IllegalCommandLineArgumentException("unknown action " + action);
+    }
+  }
+}
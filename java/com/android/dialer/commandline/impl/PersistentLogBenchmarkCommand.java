@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.commandline.impl;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import com.android.dialer.commandline.Arguments;
+import com.android.dialer.commandline.Command;
+import com.android.dialer.common.concurrent.Annotations.BackgroundExecutor;
+import com.android.dialer.inject.ApplicationContext;
+import com.android.dialer.persistentlog.PersistentLogBenchmark;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import javax.inject.Inject;
+
+/** Compare the throughput of the persistent log formats. */
+public class PersistentLogBenchmarkCommand implements Command {
+
+  private static final int DEFAULT_ENTRIES = 10_000;
+
+  @NonNull
+  @Override
+  public String getShortDescription() {
+    return "@hide Benchmark the persistent log formats.";
+  }
+
+  @NonNull
+  @Override
+  public String getUsage() {
+    return "persistentlogbenchmark [entries]";
+  }
+
+  private final Context appContext;
+  private final ListeningExecutorService executorService;
+
+  @Inject
+  PersistentLogBenchmarkCommand(
+      @ApplicationContext Context context,
+      @BackgroundExecutor ListeningExecutorService executorService) {
+    this.appContext = context;
+    this.executorService = executorService;
+  }
+
+  @Override
+  public ListenableFuture<String> run(Arguments args) throws IllegalCommandLineArgumentException {
+    int entries = DEFAULT_ENTRIES;
+    if (!args.getPositionals().isEmpty()) {
+      try {
+        entries = Integer.parseInt(args.getPositionals().get(0));
+      } catch (NumberFormatException e) {
+        throw new IllegalCommandLineArgumentException("entries must be a number");
+      }
+    }
+    int finalEntries = entries;
+    return executorService.submit(() -> PersistentLogBenchmark.run(appContext, finalEntries));
+  }
+}
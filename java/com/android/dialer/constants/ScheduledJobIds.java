@@ -47,6 +47,7 @@ public final class ScheduledJobIds {
   public static final int VVM_TRANSCRIPTION_BACKFILL_JOB = 204;
   public static final int VVM_NOTIFICATION_JOB = 205;
   public static final int VVM_TRANSCRIPTION_RATING_JOB = 206;
+  public static final int VVM_IMAP_IDLE_JOB = 207;
 
   public static final int VOIP_REGISTRATION = 300;
 
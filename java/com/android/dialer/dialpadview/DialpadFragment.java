@@ -95,6 +95,7 @@ import com.android.dialer.oem.MotorolaUtils;
 import com.android.dialer.performancereport.PerformanceReport;
 import com.android.dialer.phonenumberutil.PhoneNumberHelper;
 import com.android.dialer.precall.PreCall;
+import com.android.dialer.precall.PreCallComponent;
 import com.android.dialer.proguard.UsedByReflection;
 import com.android.dialer.telecom.TelecomUtil;
 import com.android.dialer.util.CallUtil;
@@ -132,6 +133,9 @@ public class DialpadFragment extends Fragment
   private static final int DIAL_TONE_STREAM_TYPE = AudioManager.STREAM_DTMF;
   /** Identifier for the "Add Call" intent extra. */
   private static final String ADD_CALL_MODE_KEY = "add_call_mode";
+
+  /** How long the digits must stay unchanged before the pre-call actions are resolved for them. */
+  private static final long SPECULATE_PRE_CALL_DELAY_MS = 500;
   /**
    * Identifier for intent extra for sending an empty Flash message for CDMA networks. This message
    * is used by the network to simulate a press/depress of the "hookswitch" of a landline phone. Aka
@@ -190,6 +194,7 @@ public class DialpadFragment extends Fragment
   private boolean dTMFToneEnabled;
   private CallStateReceiver callStateReceiver;
   private boolean wasEmptyBeforeTextChange;
+  private final Runnable speculatePreCallRunnable = this::speculatePreCall;
   /**
    * This field is set to true while processing an incoming DIAL intent, in order to make sure that
    * SpecialCharSequenceMgr actions can be triggered by user input but *not* by a tel: URI passed by
@@ -348,9 +353,23 @@ public class DialpadFragment extends Fragment
       dialpadQueryListener.onDialpadQueryChanged(digits.getText().toString());
     }
 
+    digits.removeCallbacks(speculatePreCallRunnable);
+    if (!isDigitsEmpty()) {
+      digits.postDelayed(speculatePreCallRunnable, SPECULATE_PRE_CALL_DELAY_MS);
+    }
+
     updateDeleteButtonEnabledState();
   }
 
+  private void speculatePreCall() {
+    if (getContext() == null || isDigitsEmpty()) {
+      return;
+    }
+    PreCallComponent.get(getContext())
+        .getPreCall()
+        .speculate(getContext(), digits.getText().toString());
+  }
+
   @Override
   public void onCreate(Bundle state) {
     Trace.beginSection(TAG + " onCreate");
@@ -848,6 +867,7 @@ public class DialpadFragment extends Fragment
 
     SpecialCharSequenceMgr.cleanup();
     overflowPopupMenu.dismiss();
+    digits.removeCallbacks(speculatePreCallRunnable);
   }
 
   @Override
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.metrics;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import com.android.dialer.common.LogUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * {@link Metrics} which keeps the timers and memory events in histograms in the process, so they
+ * can be checked on the device with the "metrics" command, e.g. to compare two builds.
+ *
+ * <p>Timers are recorded in microseconds and memory events as the kilobytes allocated on the Java
+ * and native heaps. Jank and battery events are only logged.
+ */
+@ThreadSafe
+@Singleton
+public final class LocalMetrics implements Metrics {
+
+  private final ConcurrentMap<String, Long> namedTimerStartTimes = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Integer, Long> unnamedTimerStartTimes = new ConcurrentHashMap<>();
+  private final AtomicInteger nextTimerId = new AtomicInteger();
+
+  private final ConcurrentMap<String, LogLinearHistogram> timers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, LogLinearHistogram> memory = new ConcurrentHashMap<>();
+
+  @Inject
+  LocalMetrics() {}
+
+  @Override
+  public void startTimer(String timerEventName) {
+    namedTimerStartTimes.put(timerEventName, SystemClock.elapsedRealtimeNanos());
+  }
+
+  @Override
+  public Integer startUnnamedTimer() {
+    int id = nextTimerId.incrementAndGet();
+    unnamedTimerStartTimes.put(id, SystemClock.elapsedRealtimeNanos());
+    return id;
+  }
+
+  @Override
+  public void stopTimer(String timerEventName) {
+    Long startTime = namedTimerStartTimes.remove(timerEventName);
+    if (startTime == null) {
+      return;
+    }
+    recordTimer(timerEventName, startTime);
+  }
+
+  @Override
+  public void stopUnnamedTimer(int timerId, String timerEventName) {
+    Long startTime = unnamedTimerStartTimes.remove(timerId);
+    if (startTime == null) {
+      LogUtil.e(
+          "LocalMetrics.stopUnnamedTimer",
+          "no timer found for id: %d (%s)",
+          timerId,
+          timerEventName);
+      return;
+    }
+    recordTimer(timerEventName, startTime);
+  }
+
+  @Override
+  public void startJankRecorder(String eventName) {
+    LogUtil.d("LocalMetrics.startJankRecorder", "started jank recorder for %s", eventName);
+  }
+
+  @Override
+  public void stopJankRecorder(String eventName) {
+    LogUtil.d("LocalMetrics.stopJankRecorder", "stopped jank recorder for %s", eventName);
+  }
+
+  @Override
+  public void recordMemory(String memoryEventName) {
+    Runtime runtime = Runtime.getRuntime();
+    long allocatedBytes =
+        runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    getHistogram(memory, memoryEventName).record(allocatedBytes / 1024);
+  }
+
+  @Override
+  public void recordBattery(String batteryEventName) {
+    LogUtil.d("LocalMetrics.recordBattery", "recorded battery for %s", batteryEventName);
+  }
+
+  /** Returns a table of the recorded timers and memory events, sorted by name. */
+  public String dump() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("timers (ms)\n");
+    dump(builder, timers, 1000);
+    builder.append("\nmemory (KB)\n");
+    dump(builder, memory, 1);
+    return builder.toString();
+  }
+
+  /** Clears the recorded timers and memory events. Running timers are not affected. */
+  public void reset() {
+    for (LogLinearHistogram histogram : timers.values()) {
+      histogram.reset();
+    }
+    for (LogLinearHistogram histogram : memory.values()) {
+      histogram.reset();
+    }
+  }
+
+  private void recordTimer(String timerEventName, long startTimeNanos) {
+    long micros =
+        TimeUnit.NANOSECONDS.toMicros(SystemClock.elapsedRealtimeNanos() - startTimeNanos);
+    getHistogram(timers, timerEventName).record(micros);
+  }
+
+  private static LogLinearHistogram getHistogram(
+      ConcurrentMap<String, LogLinearHistogram> histograms, String eventName) {
+    return histograms.computeIfAbsent(eventName, name -> new LogLinearHistogram());
+  }
+
+  /** Appends a row per histogram, with the values divided by {@code divisor}. */
+  private static void dump(
+      StringBuilder builder, Map<String, LogLinearHistogram> histograms, double divisor) {
+    builder.append(
+        String.format(
+            Locale.US,
+            "%-60s %8s %10s %10s %10s %10s %10s\n",
+            "event",
+            "count",
+            "mean",
+            "p50",
+            "p95",
+            "p99",
+            "max"));
+    List<String> names = new ArrayList<>(histograms.keySet());
+    Collections.sort(names);
+    for (String name : names) {
+      LogLinearHistogram histogram = histograms.get(name);
+      if (histogram.getCount() == 0) {
+        continue;
+      }
+      builder.append(
+          String.format(
+              Locale.US,
+              "%-60s %8d %10.1f %10.1f %10.1f %10.1f %10.1f\n",
+              name,
+              histogram.getCount(),
+              histogram.getMean() / divisor,
+              histogram.getPercentile(50) / divisor,
+              histogram.getPercentile(95) / divisor,
+              histogram.getPercentile(99) / divisor,
+              histogram.getMax() / divisor));
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Histogram of non-negative values which can be recorded from any thread without locking.
+ *
+ * <p>Values below {@link #SUB_BUCKET_COUNT} have their own bucket. Above, every power of two is
+ * split into {@link #SUB_BUCKET_COUNT} buckets of equal width, so a percentile is reported with an
+ * error of at most 1/{@link #SUB_BUCKET_COUNT} of its value. Values of 2^{@link #MAX_EXPONENT} and
+ * above are counted in the last bucket.
+ */
+@ThreadSafe
+final class LogLinearHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+  /** More than a day in microseconds, or a terabyte in kilobytes. */
+  private static final int MAX_EXPONENT = 40;
+
+  private static final int BUCKET_COUNT = getBucketIndex((1L << MAX_EXPONENT) - 1) + 1;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  void record(long value) {
+    value = Math.max(0, value);
+    buckets.incrementAndGet(Math.min(getBucketIndex(value), BUCKET_COUNT - 1));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long previousMax = max.get();
+    while (value > previousMax && !max.compareAndSet(previousMax, value)) {
+      previousMax = max.get();
+    }
+  }
+
+  /**
+   * Clears the recorded values. Values recorded concurrently may be partially cleared, e.g. be
+   * counted in {@link #getCount()} but not in the percentiles.
+   */
+  void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      buckets.set(i, 0);
+    }
+    count.set(0);
+    sum.set(0);
+    max.set(0);
+  }
+
+  long getCount() {
+    return count.get();
+  }
+
+  long getMean() {
+    long currentCount = count.get();
+    return currentCount == 0 ? 0 : sum.get() / currentCount;
+  }
+
+  long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Returns the upper bound of the bucket holding the value below which {@code percentile} percent
+   * of the values fall, capped at {@link #getMax()}. 0 if nothing was recorded.
+   */
+  long getPercentile(double percentile) {
+    long[] counts = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(getBucketUpperBound(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  private static int getBucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >> shift) - SUB_BUCKET_COUNT;
+    return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  private static long getBucketUpperBound(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+    int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+    return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+  }
+}
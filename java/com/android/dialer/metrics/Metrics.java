@@ -36,6 +36,10 @@ public interface Metrics {
   String OLD_CALL_LOG_JANK_EVENT_NAME = "OldCallLog.Jank";
   String NEW_CALL_LOG_JANK_EVENT_NAME = "NewCallLog.Jank";
 
+  // This template is prefixed with the event a startup task is part of, e.g.
+  // APPLICATION_ON_CREATE_EVENT_NAME, and suffixed with the name of the task.
+  String STARTUP_TASK_TEMPLATE = "%s.%s";
+
   // Events related to refreshing the annotated call log.
   String NEW_CALL_LOG_COALESCE = "NewCallLog.Coalesce";
   String ANNOTATED_CALL_LOG_NOT_DIRTY = "RefreshAnnotatedCallLogReceiver.NotDirty";
@@ -69,6 +73,16 @@ public interface Metrics {
   String LOOKUP_FOR_CALL_TEMPLATE = "%s.LookupForCall";
   String LOOKUP_FOR_NUMBER_TEMPLATE = "%s.LookupForNumber";
 
+  // Events related to searching the directories.
+  String DIRECTORY_CONTACTS_QUERY_EVENT_NAME = "DirectoryContactsCursorLoader.Query";
+  String DIRECTORY_CONTACTS_QUERY_CANCELLED_EVENT_NAME =
+      "DirectoryContactsCursorLoader.QueryCancelled";
+
+  // Events related to placing a call, from the tap to the call being handed to telecom.
+  String PRECALL_TAP_TO_TELECOM_EVENT_NAME = "PreCall.TapToTelecom";
+  String PRECALL_TAP_TO_TELECOM_SPECULATED_EVENT_NAME = "PreCall.TapToTelecom.Speculated";
+  String PRECALL_ABORTED_EVENT_NAME = "PreCall.Aborted";
+
   /** Start a timer. */
   void startTimer(String timerEventName);
 
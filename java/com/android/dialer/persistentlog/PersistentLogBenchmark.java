@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.persistentlog;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.annotation.WorkerThread;
+import com.android.dialer.common.LogUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the throughput of the rolling files of {@link PersistentLogger} with the {@link
+ * PersistentRingLog}, for logging entries like {@link com.android.voicemail.impl.VvmLog} does and
+ * for dumping them. Both logs are written to separate files which are deleted afterwards, the
+ * entries of the real log are not affected.
+ */
+public final class PersistentLogBenchmark {
+
+  private static final String BENCHMARK_FOLDER = "benchmark";
+  private static final String[] TAGS = {
+    "OmtpVvmSyncService", "ImapHelper", "ImapConnection", "VvmTaskScheduler", "SyncTask",
+  };
+
+  private PersistentLogBenchmark() {}
+
+  /** @return a report of the time taken by each logger to log and dump {@code entries} entries. */
+  @WorkerThread
+  public static String run(Context context, int entries) throws IOException {
+    String[] messages = new String[entries];
+    for (int i = 0; i < entries; i++) {
+      messages[i] = "fetched voicemail " + i + " of " + entries + ", 12345 bytes";
+    }
+    StringBuilder report = new StringBuilder();
+    benchmarkRollingFiles(context, messages, report);
+    benchmarkRingLog(context, messages, report);
+    LogUtil.i("PersistentLogBenchmark.run", report.toString());
+    return report.toString();
+  }
+
+  private static void benchmarkRollingFiles(
+      Context context, String[] messages, StringBuilder report) throws IOException {
+    PersistentLogFileHandler fileHandler =
+        new PersistentLogFileHandler(
+            BENCHMARK_FOLDER,
+            PersistentLogger.LOG_FILE_SIZE_LIMIT,
+            PersistentLogger.LOG_FILE_COUNT_LIMIT);
+    fileHandler.initialize(context);
+
+    // Formatting happens on the calling thread, writing on the logger thread in batches.
+    long start = SystemClock.elapsedRealtimeNanos();
+    List<byte[]> batch = new ArrayList<>();
+    for (int i = 0; i < messages.length; i++) {
+      batch.add(PersistentLogger.buildTextLog(TAGS[i % TAGS.length], messages[i]));
+    }
+    long formatted = SystemClock.elapsedRealtimeNanos();
+    fileHandler.writeLogs(batch);
+    long written = SystemClock.elapsedRealtimeNanos();
+    CountingWriter writer = new CountingWriter();
+    for (byte[] log : fileHandler.getLogs()) {
+      writer.append(new String(log, StandardCharsets.UTF_8)).append('\n');
+    }
+    long dumped = SystemClock.elapsedRealtimeNanos();
+
+    appendResult(report, "rolling files, caller", formatted - start, messages.length);
+    appendResult(report, "rolling files, write", written - formatted, messages.length);
+    appendResult(report, "rolling files, dump", dumped - written, writer.lines);
+    deleteRecursively(
+        new File(new File(context.getCacheDir(), "persistent_log"), BENCHMARK_FOLDER));
+  }
+
+  private static void benchmarkRingLog(Context context, String[] messages, StringBuilder report)
+      throws IOException {
+    File file =
+        new File(new File(context.getCacheDir(), "persistent_log"), BENCHMARK_FOLDER + "_ring");
+    PersistentRingLog ringLog =
+        PersistentRingLog.open(
+            file, PersistentLogger.LOG_FILE_SIZE_LIMIT * PersistentLogger.LOG_FILE_COUNT_LIMIT);
+    ringLog.clear();
+
+    // The caller writes the entry to the mapping, there is nothing left to do afterwards.
+    long start = SystemClock.elapsedRealtimeNanos();
+    for (int i = 0; i < messages.length; i++) {
+      ringLog.writeText(System.currentTimeMillis(), TAGS[i % TAGS.length], messages[i]);
+    }
+    long written = SystemClock.elapsedRealtimeNanos();
+    int dumpedEntries = ringLog.dump(new CountingWriter());
+    long dumped = SystemClock.elapsedRealtimeNanos();
+
+    appendResult(report, "ring log, caller", written - start, messages.length);
+    appendResult(report, "ring log, dump", dumped - written, dumpedEntries);
+    file.delete();
+  }
+
+  private static void appendResult(StringBuilder report, String name, long nanos, int entries) {
+    report.append(
+        String.format(
+            Locale.US,
+            "%s: %d entries, %.0f ns/entry, %.0f entries/s%n",
+            name,
+            entries,
+            entries == 0 ? 0 : (double) nanos / entries,
+            nanos == 0 ? 0 : entries * 1e9 / nanos));
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    if (!file.delete()) {
+      LogUtil.w("PersistentLogBenchmark.deleteRecursively", "cannot delete " + file);
+    }
+  }
+
+  /** Discards the dumped text, counting the lines. */
+  private static final class CountingWriter extends Writer {
+    int lines;
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+      for (int i = offset; i < offset + length; i++) {
+        if (buffer[i] == '\n') {
+          lines++;
+        }
+      }
+    }
+
+    @Override
+    public Writer append(char c) {
+      if (c == '\n') {
+        lines++;
+      }
+      return this;
+    }
+
+    @Override
+    public Writer append(CharSequence sequence) {
+      return this;
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+}
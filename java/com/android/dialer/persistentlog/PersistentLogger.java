@@ -21,13 +21,18 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.support.annotation.AnyThread;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.support.annotation.WorkerThread;
 import android.support.v4.os.UserManagerCompat;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.LogUtil;
+import com.android.dialer.configprovider.ConfigProviderComponent;
 import com.android.dialer.strictmode.StrictModeUtils;
+import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -46,11 +51,16 @@ import java.util.concurrent.LinkedBlockingQueue;
  *
  * <p>{@link #logText(String, String)} should be used to log ad-hoc text logs. TODO(twyen): switch
  * to structured logging
+ *
+ * <p>If the "persistent_log_ring_buffer_enabled" flag is set, logs are instead written to a {@link
+ * PersistentRingLog} of the same size, which stores them without formatting them or batching them
+ * and formats them when dumped.
  */
 public final class PersistentLogger {
 
   private static final int FLUSH_DELAY_MILLIS = 200;
   private static final String LOG_FOLDER = "plain_text";
+  private static final String RING_LOG_FILE = "persistent_log/ring/log";
   private static final int MESSAGE_FLUSH = 1;
 
   @VisibleForTesting static final int LOG_FILE_SIZE_LIMIT = 64 * 1024;
@@ -63,6 +73,9 @@ public final class PersistentLogger {
 
   private static final LinkedBlockingQueue<byte[]> messageQueue = new LinkedBlockingQueue<>();
 
+  /** Set on the logger thread if the ring log is enabled and the user is unlocked. */
+  @Nullable private static volatile PersistentRingLog ringLog;
+
   private PersistentLogger() {}
 
   public static void initialize(Context context) {
@@ -92,7 +105,22 @@ public final class PersistentLogger {
               }
               return true;
             });
-    loggerThreadHandler.post(() -> fileHandler.initialize(context));
+    loggerThreadHandler.post(
+        () -> {
+          fileHandler.initialize(context);
+          if (isRingLogEnabled(context) && UserManagerCompat.isUserUnlocked(context)) {
+            ringLog =
+                PersistentRingLog.openOrNull(
+                    new File(context.getCacheDir(), RING_LOG_FILE),
+                    LOG_FILE_SIZE_LIMIT * LOG_FILE_COUNT_LIMIT);
+          }
+        });
+  }
+
+  private static boolean isRingLogEnabled(Context context) {
+    return ConfigProviderComponent.get(context)
+        .getConfigProvider()
+        .getBoolean("persistent_log_ring_buffer_enabled", false);
   }
 
   static HandlerThread getLoggerThread() {
@@ -101,9 +129,28 @@ public final class PersistentLogger {
 
   @AnyThread
   public static void logText(String tag, String string) {
+    PersistentRingLog ring = ringLog;
+    if (ring != null) {
+      ring.writeText(System.currentTimeMillis(), tag, string);
+      return;
+    }
     log(buildTextLog(tag, string));
   }
 
+  /**
+   * Logs {@code format} with {@code args}, which are only formatted when the log is dumped if the
+   * ring log is used.
+   */
+  @AnyThread
+  public static void logFormat(String tag, String format, Object... args) {
+    PersistentRingLog ring = ringLog;
+    if (ring != null) {
+      ring.writeFormat(System.currentTimeMillis(), tag, format, args);
+      return;
+    }
+    logText(tag, String.format(format, args));
+  }
+
   @VisibleForTesting
   @AnyThread
   static void log(byte[] data) {
@@ -126,6 +173,11 @@ public final class PersistentLogger {
   @WorkerThread
   public static String dumpLogToString() {
     Assert.isWorkerThread();
+    if (ringLog != null) {
+      StringWriter writer = new StringWriter();
+      dumpLog(writer);
+      return writer.toString();
+    }
     DumpStringRunnable dumpStringRunnable = new DumpStringRunnable();
     loggerThreadHandler.post(dumpStringRunnable);
     try {
@@ -136,6 +188,25 @@ public final class PersistentLogger {
     }
   }
 
+  /**
+   * Dump the log as human readable text to {@code writer}, one entry at a time. Only the ring log
+   * is streamed, the rolling files are read into memory first.
+   */
+  @WorkerThread
+  public static void dumpLog(Writer writer) {
+    Assert.isWorkerThread();
+    PersistentRingLog ring = ringLog;
+    try {
+      if (ring != null) {
+        ring.dump(writer);
+      } else {
+        writer.write(dumpLogToString());
+      }
+    } catch (IOException e) {
+      LogUtil.e("PersistentLogger.dumpLog", "cannot dump log", e);
+    }
+  }
+
   private static class DumpStringRunnable implements Runnable {
     private String result;
     private final CountDownLatch latch = new CountDownLatch(1);
@@ -177,7 +248,7 @@ public final class PersistentLogger {
     return fileHandler.getLogs();
   }
 
-  private static byte[] buildTextLog(String tag, String string) {
+  static byte[] buildTextLog(String tag, String string) {
     Calendar c = StrictModeUtils.bypass(() -> Calendar.getInstance());
     return String.format("%tm-%td %tH:%tM:%tS.%tL - %s - %s", c, c, c, c, c, c, tag, string)
         .getBytes(StandardCharsets.UTF_8);
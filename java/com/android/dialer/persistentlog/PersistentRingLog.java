@@ -0,0 +1,615 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.persistentlog;
+
+import android.support.annotation.AnyThread;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import com.android.dialer.common.LogUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.IllegalFormatException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Log stored as binary records in a memory-mapped file of fixed size, the oldest records being
+ * overwritten when it is full.
+ *
+ * <p>Writing a record only copies the time, the id of the tag and the raw arguments into the
+ * mapping, the text is formatted when the log is dumped. As the mapping is shared with the kernel,
+ * records are kept if the process is killed right after writing them, without flushing.
+ *
+ * <p>The file starts with a header holding the positions of the first and next records, followed
+ * by a table of the tags and by the ring of records. Positions are counted in bytes written since
+ * the file was created, the offset in the ring being the position modulo its capacity. Each record
+ * is:
+ *
+ * <pre>
+ * int length of the record, header included
+ * long timestamp in milliseconds
+ * short tag id
+ * byte type, {@link #TYPE_TEXT} or {@link #TYPE_FORMAT}
+ * the text, or the format followed by the arguments
+ * </pre>
+ */
+@ThreadSafe
+final class PersistentRingLog {
+
+  private static final int MAGIC = 0x50524c47; // "PRLG"
+  private static final int VERSION = 1;
+
+  private static final int HEADER_MAGIC_OFFSET = 0;
+  private static final int HEADER_VERSION_OFFSET = 4;
+  private static final int HEADER_CAPACITY_OFFSET = 8;
+  private static final int HEADER_TAG_COUNT_OFFSET = 12;
+  private static final int HEADER_FIRST_POSITION_OFFSET = 16;
+  private static final int HEADER_NEXT_POSITION_OFFSET = 24;
+  private static final int HEADER_SIZE = 64;
+
+  private static final int MAX_TAGS = 512;
+  /** A byte for the length followed by the UTF-8 bytes of the tag, truncated to fit. */
+  private static final int TAG_SLOT_SIZE = 64;
+
+  private static final int TAG_TABLE_OFFSET = HEADER_SIZE;
+  private static final int RING_OFFSET = TAG_TABLE_OFFSET + MAX_TAGS * TAG_SLOT_SIZE;
+
+  /** Id of the tags which didn't fit in the table, the tag is then written before the text. */
+  private static final short INLINE_TAG_ID = -1;
+
+  private static final byte TYPE_TEXT = 0;
+  private static final byte TYPE_FORMAT = 1;
+
+  private static final byte ARGUMENT_NULL = 0;
+  private static final byte ARGUMENT_STRING = 1;
+  private static final byte ARGUMENT_LONG = 2;
+  private static final byte ARGUMENT_DOUBLE = 3;
+  private static final byte ARGUMENT_BOOLEAN = 4;
+
+  private static final int RECORD_HEADER_SIZE = 4 + 8 + 2 + 1;
+  private static final int MAX_ARGUMENTS = 16;
+
+  /** Strings are truncated to this many bytes, so a record always fits in the ring. */
+  private static final int MAX_STRING_BYTES = 4 * 1024;
+
+  private final MappedByteBuffer buffer;
+  private final int capacity;
+
+  /** Tag ids, by tag. Only grows, so it is read without the lock. */
+  private final Map<String, Short> tagIds = new ConcurrentHashMap<>();
+
+  @GuardedBy("this")
+  private int tagCount;
+
+  /** Position of the oldest record. Written with the lock and read without it while dumping. */
+  private volatile long firstPosition;
+
+  @GuardedBy("this")
+  private long nextPosition;
+
+  private PersistentRingLog(MappedByteBuffer buffer, int capacity) {
+    this.buffer = buffer;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Opens the log in {@code file}, creating it or clearing it if it was written with another format
+   * or capacity.
+   */
+  @WorkerThread
+  static PersistentRingLog open(File file, int capacity) throws IOException {
+    file.getParentFile().mkdirs();
+    MappedByteBuffer buffer;
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      // The mapping stays valid after the channel is closed.
+      buffer =
+          randomAccessFile.getChannel().map(MapMode.READ_WRITE, 0, (long) RING_OFFSET + capacity);
+    }
+    PersistentRingLog log = new PersistentRingLog(buffer, capacity);
+    if (!log.readHeader()) {
+      LogUtil.i("PersistentRingLog.open", "creating log");
+      log.clear();
+    }
+    return log;
+  }
+
+  @Nullable
+  @WorkerThread
+  static PersistentRingLog openOrNull(File file, int capacity) {
+    try {
+      return open(file, capacity);
+    } catch (IOException e) {
+      LogUtil.e("PersistentRingLog.openOrNull", "cannot open " + file, e);
+      return null;
+    }
+  }
+
+  @AnyThread
+  void writeText(long timestampMillis, String tag, String text) {
+    int tagLength = 0;
+    short tagId = getTagId(tag);
+    if (tagId == INLINE_TAG_ID) {
+      tagLength = getStringSize(tag);
+    }
+    int length = RECORD_HEADER_SIZE + tagLength + getStringSize(text);
+    synchronized (this) {
+      long position = beginRecord(length, timestampMillis, tagId, TYPE_TEXT);
+      if (tagId == INLINE_TAG_ID) {
+        position = putString(position, tag);
+      }
+      putString(position, text);
+      endRecord(length);
+    }
+  }
+
+  /**
+   * Writes a record which is formatted with {@link String#format} when dumped. Arguments which are
+   * not numbers or booleans are written as their {@link String#valueOf}, at most {@link
+   * #MAX_ARGUMENTS} are kept.
+   */
+  @AnyThread
+  void writeFormat(long timestampMillis, String tag, String format, Object... args) {
+    int argumentCount = Math.min(args.length, MAX_ARGUMENTS);
+    String[] strings = new String[argumentCount];
+    int tagLength = 0;
+    short tagId = getTagId(tag);
+    if (tagId == INLINE_TAG_ID) {
+      tagLength = getStringSize(tag);
+    }
+    int length = RECORD_HEADER_SIZE + tagLength + getStringSize(format) + 1;
+    for (int i = 0; i < argumentCount; i++) {
+      Object arg = args[i];
+      length += 1;
+      if (arg instanceof Long || arg instanceof Integer || arg instanceof Short) {
+        length += 8;
+      } else if (arg instanceof Double || arg instanceof Float) {
+        length += 8;
+      } else if (arg instanceof Boolean) {
+        length += 1;
+      } else if (arg != null) {
+        strings[i] = String.valueOf(arg);
+        length += getStringSize(strings[i]);
+      }
+    }
+    synchronized (this) {
+      long position = beginRecord(length, timestampMillis, tagId, TYPE_FORMAT);
+      if (tagId == INLINE_TAG_ID) {
+        position = putString(position, tag);
+      }
+      position = putString(position, format);
+      putByte(position++, (byte) argumentCount);
+      for (int i = 0; i < argumentCount; i++) {
+        Object arg = args[i];
+        if (arg instanceof Long || arg instanceof Integer || arg instanceof Short) {
+          putByte(position++, ARGUMENT_LONG);
+          position = putLong(position, ((Number) arg).longValue());
+        } else if (arg instanceof Double || arg instanceof Float) {
+          putByte(position++, ARGUMENT_DOUBLE);
+          position = putLong(position, Double.doubleToRawLongBits(((Number) arg).doubleValue()));
+        } else if (arg instanceof Boolean) {
+          putByte(position++, ARGUMENT_BOOLEAN);
+          putByte(position++, (byte) ((Boolean) arg ? 1 : 0));
+        } else if (arg != null) {
+          putByte(position++, ARGUMENT_STRING);
+          position = putString(position, strings[i]);
+        } else {
+          putByte(position++, ARGUMENT_NULL);
+        }
+      }
+      endRecord(length);
+    }
+  }
+
+  /**
+   * Formats the records from the oldest to the newest into {@code writer}, one per line. Records
+   * which are overwritten while dumping are skipped.
+   *
+   * @return the number of records dumped
+   */
+  @WorkerThread
+  int dump(Writer writer) throws IOException {
+    long end;
+    synchronized (this) {
+      end = nextPosition;
+    }
+    Calendar calendar = Calendar.getInstance();
+    String[] tags = readTags();
+    StringBuilder line = new StringBuilder();
+    byte[] record = new byte[RECORD_HEADER_SIZE];
+    int count = 0;
+    long position = firstPosition;
+    // Every iteration moves the position forward, so the loop ends even if the log is corrupt.
+    while (position < end) {
+      int length = getInt(position);
+      if (!isValidRecord(position, length, end)) {
+        long first = firstPosition;
+        if (position >= first) {
+          LogUtil.e("PersistentRingLog.dump", "invalid record length %d at %d", length, position);
+          break;
+        }
+        // Overwritten while reading the length.
+        position = first;
+        continue;
+      }
+      if (record.length < length) {
+        record = new byte[length];
+      }
+      getBytes(position, record, length);
+      long first = firstPosition;
+      if (position < first) {
+        // Overwritten while copying, continue with the oldest record left.
+        position = first;
+        continue;
+      }
+      line.setLength(0);
+      formatRecord(record, length, tags, calendar, line);
+      writer.append(line).append('\n');
+      count++;
+      position += length;
+    }
+    return count;
+  }
+
+  /** Deletes all the records and tags. */
+  synchronized void clear() {
+    tagIds.clear();
+    tagCount = 0;
+    firstPosition = 0;
+    nextPosition = 0;
+    buffer.putInt(HEADER_CAPACITY_OFFSET, capacity);
+    buffer.putInt(HEADER_TAG_COUNT_OFFSET, 0);
+    buffer.putLong(HEADER_FIRST_POSITION_OFFSET, 0);
+    buffer.putLong(HEADER_NEXT_POSITION_OFFSET, 0);
+    buffer.putInt(HEADER_VERSION_OFFSET, VERSION);
+    buffer.putInt(HEADER_MAGIC_OFFSET, MAGIC);
+  }
+
+  /** Loads the header and the tags, returns false if they are not valid. */
+  private synchronized boolean readHeader() {
+    if (buffer.getInt(HEADER_MAGIC_OFFSET) != MAGIC
+        || buffer.getInt(HEADER_VERSION_OFFSET) != VERSION
+        || buffer.getInt(HEADER_CAPACITY_OFFSET) != capacity) {
+      return false;
+    }
+    int storedTagCount = buffer.getInt(HEADER_TAG_COUNT_OFFSET);
+    long storedFirstPosition = buffer.getLong(HEADER_FIRST_POSITION_OFFSET);
+    long storedNextPosition = buffer.getLong(HEADER_NEXT_POSITION_OFFSET);
+    if (storedTagCount < 0
+        || storedTagCount > MAX_TAGS
+        || storedFirstPosition < 0
+        || storedFirstPosition > storedNextPosition
+        || storedNextPosition - storedFirstPosition > capacity) {
+      return false;
+    }
+    // A write torn by a power loss can leave any length in the ring, the records must chain from
+    // the first position to the next one.
+    long position = storedFirstPosition;
+    while (position < storedNextPosition) {
+      int length = getInt(position);
+      if (!isValidRecord(position, length, storedNextPosition)) {
+        LogUtil.e(
+            "PersistentRingLog.readHeader", "invalid record length %d at %d", length, position);
+        return false;
+      }
+      position += length;
+    }
+    tagCount = storedTagCount;
+    String[] tags = readTags();
+    for (short i = 0; i < tags.length; i++) {
+      tagIds.put(tags[i], i);
+    }
+    firstPosition = storedFirstPosition;
+    nextPosition = storedNextPosition;
+    return true;
+  }
+
+  private String[] readTags() {
+    int count;
+    synchronized (this) {
+      count = tagCount;
+    }
+    String[] tags = new String[count];
+    byte[] slot = new byte[TAG_SLOT_SIZE];
+    for (int i = 0; i < count; i++) {
+      int offset = TAG_TABLE_OFFSET + i * TAG_SLOT_SIZE;
+      int length = Math.min(buffer.get(offset) & 0xff, TAG_SLOT_SIZE - 1);
+      for (int j = 0; j < length; j++) {
+        slot[j] = buffer.get(offset + 1 + j);
+      }
+      tags[i] = new String(slot, 0, length, StandardCharsets.UTF_8);
+    }
+    return tags;
+  }
+
+  private short getTagId(String tag) {
+    Short tagId = tagIds.get(tag);
+    if (tagId != null) {
+      return tagId;
+    }
+    synchronized (this) {
+      tagId = tagIds.get(tag);
+      if (tagId != null) {
+        return tagId;
+      }
+      if (tagCount == MAX_TAGS) {
+        return INLINE_TAG_ID;
+      }
+      byte[] bytes = tag.getBytes(StandardCharsets.UTF_8);
+      int length = Math.min(bytes.length, TAG_SLOT_SIZE - 1);
+      int offset = TAG_TABLE_OFFSET + tagCount * TAG_SLOT_SIZE;
+      buffer.put(offset, (byte) length);
+      for (int i = 0; i < length; i++) {
+        buffer.put(offset + 1 + i, bytes[i]);
+      }
+      tagId = (short) tagCount;
+      tagCount++;
+      buffer.putInt(HEADER_TAG_COUNT_OFFSET, tagCount);
+      tagIds.put(tag, tagId);
+      return tagId;
+    }
+  }
+
+  /**
+   * Drops the oldest records until {@code length} bytes are free and writes the header of a
+   * record, returning the position following it.
+   */
+  @GuardedBy("this")
+  private long beginRecord(int length, long timestampMillis, short tagId, byte type) {
+    long first = firstPosition;
+    while (nextPosition + length - first > capacity) {
+      int firstLength = getInt(first);
+      if (!isValidRecord(first, firstLength, nextPosition)) {
+        // Only possible if the mapping was corrupted after it was opened, drop all the records.
+        LogUtil.e("PersistentRingLog.beginRecord", "invalid record length %d", firstLength);
+        first = nextPosition;
+        break;
+      }
+      first += firstLength;
+    }
+    if (first != firstPosition) {
+      // Published before the records are overwritten, so that dumps can detect it.
+      firstPosition = first;
+      buffer.putLong(HEADER_FIRST_POSITION_OFFSET, first);
+    }
+    long position = putInt(nextPosition, length);
+    position = putLong(position, timestampMillis);
+    putByte(position++, (byte) (tagId >> 8));
+    putByte(position++, (byte) tagId);
+    putByte(position++, type);
+    return position;
+  }
+
+  /** Returns whether a record of {@code length} at {@code position} can end by {@code end}. */
+  private boolean isValidRecord(long position, int length, long end) {
+    return length >= RECORD_HEADER_SIZE && length <= capacity && position + length <= end;
+  }
+
+  /** Makes the record which was written visible. */
+  @GuardedBy("this")
+  private void endRecord(int length) {
+    nextPosition += length;
+    buffer.putLong(HEADER_NEXT_POSITION_OFFSET, nextPosition);
+  }
+
+  private void putByte(long position, byte value) {
+    buffer.put(RING_OFFSET + (int) (position % capacity), value);
+  }
+
+  private long putInt(long position, int value) {
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      putByte(position++, (byte) (value >> shift));
+    }
+    return position;
+  }
+
+  private long putLong(long position, long value) {
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      putByte(position++, (byte) (value >> shift));
+    }
+    return position;
+  }
+
+  /** Writes the length and the UTF-8 bytes of {@code string}, truncated if needed. */
+  private long putString(long position, String string) {
+    int end = getTruncatedLength(string);
+    long lengthPosition = position;
+    position += 2;
+    for (int i = 0; i < end; i++) {
+      char c = string.charAt(i);
+      if (c < 0x80) {
+        putByte(position++, (byte) c);
+      } else if (c < 0x800) {
+        putByte(position++, (byte) (0xc0 | (c >> 6)));
+        putByte(position++, (byte) (0x80 | (c & 0x3f)));
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < end
+          && Character.isLowSurrogate(string.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, string.charAt(++i));
+        putByte(position++, (byte) (0xf0 | (codePoint >> 18)));
+        putByte(position++, (byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+        putByte(position++, (byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+        putByte(position++, (byte) (0x80 | (codePoint & 0x3f)));
+      } else {
+        // Unpaired surrogates are written as is, like other characters of the BMP.
+        putByte(position++, (byte) (0xe0 | (c >> 12)));
+        putByte(position++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+        putByte(position++, (byte) (0x80 | (c & 0x3f)));
+      }
+    }
+    int length = (int) (position - lengthPosition - 2);
+    putByte(lengthPosition, (byte) (length >> 8));
+    putByte(lengthPosition + 1, (byte) length);
+    return position;
+  }
+
+  /** Returns the bytes taken by {@code string} in a record. */
+  private static int getStringSize(String string) {
+    int size = 0;
+    int end = getTruncatedLength(string);
+    for (int i = 0; i < end; i++) {
+      size += getUtf8Length(string, i, end);
+      if (Character.isHighSurrogate(string.charAt(i))
+          && i + 1 < end
+          && Character.isLowSurrogate(string.charAt(i + 1))) {
+        i++;
+      }
+    }
+    return 2 + size;
+  }
+
+  /** Returns the number of chars of {@code string} whose UTF-8 bytes fit in a record. */
+  private static int getTruncatedLength(String string) {
+    if (string.length() * 3 <= MAX_STRING_BYTES) {
+      return string.length();
+    }
+    int size = 0;
+    int i = 0;
+    while (i < string.length()) {
+      int charSize = getUtf8Length(string, i, string.length());
+      if (size + charSize > MAX_STRING_BYTES) {
+        break;
+      }
+      size += charSize;
+      i += charSize == 4 ? 2 : 1;
+    }
+    return i;
+  }
+
+  /** Returns the UTF-8 bytes of the character at {@code index}, 4 for a surrogate pair. */
+  private static int getUtf8Length(String string, int index, int end) {
+    char c = string.charAt(index);
+    if (c < 0x80) {
+      return 1;
+    } else if (c < 0x800) {
+      return 2;
+    } else if (Character.isHighSurrogate(c)
+        && index + 1 < end
+        && Character.isLowSurrogate(string.charAt(index + 1))) {
+      return 4;
+    }
+    return 3;
+  }
+
+  private int getInt(long position) {
+    int value = 0;
+    for (int i = 0; i < 4; i++) {
+      value = (value << 8) | (buffer.get(RING_OFFSET + (int) (position++ % capacity)) & 0xff);
+    }
+    return value;
+  }
+
+  private void getBytes(long position, byte[] destination, int length) {
+    for (int i = 0; i < length; i++) {
+      destination[i] = buffer.get(RING_OFFSET + (int) (position++ % capacity));
+    }
+  }
+
+  private static void formatRecord(
+      byte[] record, int length, String[] tags, Calendar calendar, StringBuilder line) {
+    RecordReader reader = new RecordReader(record, length);
+    reader.offset = 4; // length
+    long timestampMillis = reader.readLong();
+    short tagId = (short) reader.readShort();
+    byte type = record[reader.offset++];
+    String tag;
+    if (tagId == INLINE_TAG_ID) {
+      tag = reader.readString();
+    } else {
+      tag = tagId >= 0 && tagId < tags.length ? tags[tagId] : "?";
+    }
+    calendar.setTimeInMillis(timestampMillis);
+    line.append(
+        String.format(
+            Locale.US,
+            "%tm-%td %tH:%tM:%tS.%tL - %s - ",
+            calendar,
+            calendar,
+            calendar,
+            calendar,
+            calendar,
+            calendar,
+            tag));
+    if (type == TYPE_TEXT) {
+      line.append(reader.readString());
+      return;
+    }
+    String format = reader.readString();
+    Object[] args = new Object[record[reader.offset++]];
+    for (int i = 0; i < args.length; i++) {
+      byte argumentType = record[reader.offset++];
+      if (argumentType == ARGUMENT_STRING) {
+        args[i] = reader.readString();
+      } else if (argumentType == ARGUMENT_LONG) {
+        args[i] = reader.readLong();
+      } else if (argumentType == ARGUMENT_DOUBLE) {
+        args[i] = Double.longBitsToDouble(reader.readLong());
+      } else if (argumentType == ARGUMENT_BOOLEAN) {
+        args[i] = record[reader.offset++] != 0;
+      }
+    }
+    try {
+      line.append(String.format(Locale.US, format, args));
+    } catch (IllegalFormatException e) {
+      line.append(format);
+      for (Object arg : args) {
+        line.append(' ').append(arg);
+      }
+    }
+  }
+
+  /** Reads the fields of a record copied out of the ring. */
+  private static final class RecordReader {
+    private final byte[] record;
+    private final int length;
+    int offset;
+
+    RecordReader(byte[] record, int length) {
+      this.record = record;
+      this.length = length;
+    }
+
+    int readShort() {
+      int value = ((record[offset] & 0xff) << 8) | (record[offset + 1] & 0xff);
+      offset += 2;
+      return value;
+    }
+
+    long readLong() {
+      long value = 0;
+      for (int i = 0; i < 8; i++) {
+        value = (value << 8) | (record[offset++] & 0xff);
+      }
+      return value;
+    }
+
+    String readString() {
+      int stringLength = Math.min(readShort(), length - offset);
+      String string = new String(record, offset, stringLength, StandardCharsets.UTF_8);
+      offset += stringLength;
+      return string;
+    }
+  }
+}
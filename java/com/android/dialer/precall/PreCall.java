@@ -35,6 +35,14 @@ public interface PreCall {
   @MainThread
   Intent buildIntent(Context context, CallIntentBuilder builder);
 
+  /**
+   * Starts resolving the pre-call actions for {@code number}, which the user is likely to call
+   * soon, so {@link #buildIntent(Context, CallIntentBuilder)} doesn't have to wait for them if the
+   * user does.
+   */
+  @MainThread
+  void speculate(Context context, String number);
+
   static Intent getIntent(Context context, CallIntentBuilder builder) {
     return PreCallComponent.get(context).getPreCall().buildIntent(context, builder);
   }
@@ -18,7 +18,9 @@ package com.android.dialer.precall.impl;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.support.annotation.Nullable;
 import android.telecom.PhoneAccount;
+import android.telecom.PhoneAccountHandle;
 import android.telephony.SubscriptionInfo;
 import android.telephony.TelephonyManager;
 import com.android.dialer.assisteddialing.AssistedDialingMediator;
@@ -28,17 +30,24 @@ import com.android.dialer.callintent.CallIntentBuilder;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.compat.telephony.TelephonyManagerCompat;
-import com.android.dialer.configprovider.ConfigProvider;
 import com.android.dialer.configprovider.ConfigProviderComponent;
 import com.android.dialer.precall.PreCallAction;
 import com.android.dialer.precall.PreCallCoordinator;
 import com.android.dialer.telecom.TelecomUtil;
 import com.android.dialer.util.CallUtil;
 import java.util.Optional;
+import javax.inject.Inject;
 
 /** Rewrites the call URI with country code. */
 public class AssistedDialAction implements PreCallAction {
 
+  private final SpeculativePreCall speculativePreCall;
+
+  @Inject
+  AssistedDialAction(SpeculativePreCall speculativePreCall) {
+    this.speculativePreCall = speculativePreCall;
+  }
+
   @Override
   public boolean requiresUi(Context context, CallIntentBuilder builder) {
     return false;
@@ -50,20 +59,18 @@ public class AssistedDialAction implements PreCallAction {
       return;
     }
 
-    AssistedDialingMediator assistedDialingMediator =
-        ConcreteCreator.createNewAssistedDialingMediator(
-            getAssistedDialingTelephonyManager(context, builder), context);
-
-    // Checks the platform is N+ and meets other pre-flight checks.
-    if (!assistedDialingMediator.isPlatformEligible()) {
-      return;
-    }
     String phoneNumber =
         builder.getUri().getScheme().equals(PhoneAccount.SCHEME_TEL)
             ? builder.getUri().getSchemeSpecificPart()
             : "";
-    Optional<TransformationInfo> transformedNumber =
-        assistedDialingMediator.attemptAssistedDial(phoneNumber);
+    Optional<TransformationInfo> transformedNumber = null;
+    if (usesDefaultTelephonyManager(context, builder.getPhoneAccountHandle())) {
+      transformedNumber = speculativePreCall.getAssistedDialTransformation(phoneNumber);
+    }
+    if (transformedNumber == null) {
+      transformedNumber =
+          attemptAssistedDial(context, builder.getPhoneAccountHandle(), phoneNumber);
+    }
     if (transformedNumber.isPresent()) {
       builder
           .getInCallUiIntentExtras()
@@ -78,26 +85,47 @@ public class AssistedDialAction implements PreCallAction {
     }
   }
 
+  /**
+   * Returns the transformation of {@code phoneNumber} when called with {@code phoneAccountHandle},
+   * absent if assisted dialing does not apply. Can be called on any thread.
+   */
+  static Optional<TransformationInfo> attemptAssistedDial(
+      Context context, @Nullable PhoneAccountHandle phoneAccountHandle, String phoneNumber) {
+    AssistedDialingMediator assistedDialingMediator =
+        ConcreteCreator.createNewAssistedDialingMediator(
+            getAssistedDialingTelephonyManager(context, phoneAccountHandle), context);
+
+    // Checks the platform is N+ and meets other pre-flight checks.
+    if (!assistedDialingMediator.isPlatformEligible()) {
+      return Optional.empty();
+    }
+    return assistedDialingMediator.attemptAssistedDial(phoneNumber);
+  }
+
+  /** Whether the transformation with {@code phoneAccountHandle} is the one with no account. */
+  private static boolean usesDefaultTelephonyManager(
+      Context context, @Nullable PhoneAccountHandle phoneAccountHandle) {
+    return phoneAccountHandle == null
+        || !ConfigProviderComponent.get(context)
+            .getConfigProvider()
+            .getBoolean("assisted_dialing_dual_sim_enabled", false);
+  }
+
   /**
    * A convenience method to return the proper TelephonyManager in possible multi-sim environments.
    */
-  private TelephonyManager getAssistedDialingTelephonyManager(
-      Context context, CallIntentBuilder builder) {
+  private static TelephonyManager getAssistedDialingTelephonyManager(
+      Context context, @Nullable PhoneAccountHandle phoneAccountHandle) {
 
-    ConfigProvider configProvider = ConfigProviderComponent.get(context).getConfigProvider();
     TelephonyManager telephonyManager = context.getSystemService(TelephonyManager.class);
     // None of this will be required in the framework because the PhoneAccountHandle
     // is already mapped to the request in the TelecomConnection.
-    if (builder.getPhoneAccountHandle() == null) {
-      return telephonyManager;
-    }
-
-    if (!configProvider.getBoolean("assisted_dialing_dual_sim_enabled", false)) {
+    if (usesDefaultTelephonyManager(context, phoneAccountHandle)) {
       return telephonyManager;
     }
 
     com.google.common.base.Optional<SubscriptionInfo> subscriptionInfo =
-        TelecomUtil.getSubscriptionInfo(context, builder.getPhoneAccountHandle());
+        TelecomUtil.getSubscriptionInfo(context, phoneAccountHandle);
     if (!subscriptionInfo.isPresent()) {
       LogUtil.i(
           "AssistedDialAction.getAssistedDialingTelephonyManager", "subcriptionInfo was absent.");
@@ -42,6 +42,7 @@ import com.android.dialer.preferredsim.PreferredAccountRecorder;
 import com.android.dialer.preferredsim.PreferredAccountWorker;
 import com.android.dialer.preferredsim.suggestion.SuggestionProvider;
 import com.android.dialer.preferredsim.suggestion.SuggestionProvider.Suggestion;
+import com.google.common.util.concurrent.ListenableFuture;
 import java.util.List;
 import javax.inject.Inject;
 
@@ -56,10 +57,13 @@ public class CallingAccountSelector implements PreCallAction {
   private boolean isDiscarding;
 
   private final PreferredAccountWorker preferredAccountWorker;
+  private final SpeculativePreCall speculativePreCall;
 
   @Inject
-  CallingAccountSelector(PreferredAccountWorker preferredAccountWorker) {
+  CallingAccountSelector(
+      PreferredAccountWorker preferredAccountWorker, SpeculativePreCall speculativePreCall) {
     this.preferredAccountWorker = preferredAccountWorker;
+    this.speculativePreCall = speculativePreCall;
   }
 
   @Override
@@ -128,10 +132,15 @@ public class CallingAccountSelector implements PreCallAction {
     String phoneNumber = builder.getUri().getSchemeSpecificPart();
     PendingAction pendingAction = coordinator.startPendingAction();
 
+    List<PhoneAccountHandle> accounts =
+        activity.getSystemService(TelecomManager.class).getCallCapablePhoneAccounts();
+    ListenableFuture<PreferredAccountWorker.Result> selection =
+        speculativePreCall.getAccountSelection(phoneNumber, accounts);
+    if (selection == null) {
+      selection = preferredAccountWorker.selectAccount(phoneNumber, accounts);
+    }
     coordinator.listen(
-        preferredAccountWorker.selectAccount(
-            phoneNumber,
-            activity.getSystemService(TelecomManager.class).getCallCapablePhoneAccounts()),
+        selection,
         result -> {
           if (isDiscarding) {
             // pendingAction is dropped by the coordinator before onDiscard is triggered.
@@ -221,6 +230,8 @@ public class CallingAccountSelector implements PreCallAction {
         PhoneAccountHandle selectedAccountHandle, boolean setDefault, @Nullable String callId) {
       coordinator.getBuilder().setPhoneAccountHandle(selectedAccountHandle);
       recorder.record(coordinator.getActivity(), selectedAccountHandle, setDefault);
+      // The preferred account of the number might have just been set.
+      speculativePreCall.invalidate();
       listener.finish();
     }
 
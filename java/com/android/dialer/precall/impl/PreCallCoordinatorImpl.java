@@ -123,6 +123,7 @@ public class PreCallCoordinatorImpl implements PreCallCoordinator {
     if (!aborted) {
       runNextAction();
     } else {
+      SpeculativePreCallComponent.get(activity).speculativePreCall().onCallAborted();
       activity.finish();
     }
   }
@@ -193,6 +194,7 @@ public class PreCallCoordinatorImpl implements PreCallCoordinator {
         LogUtil.e("PreCallCoordinatorImpl.placeCall", "duo.getCallIntent() returned absent");
       }
     }
+    SpeculativePreCallComponent.get(activity).speculativePreCall().onPlacingCall();
     TelecomUtil.placeCall(activity, builder.build());
   }
 }
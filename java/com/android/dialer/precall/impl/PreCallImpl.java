@@ -33,21 +33,30 @@ import javax.inject.Inject;
 public class PreCallImpl implements PreCall {
 
   private final ImmutableList<PreCallAction> actions;
+  private final SpeculativePreCall speculativePreCall;
 
   @Inject
-  PreCallImpl(ImmutableList<PreCallAction> actions) {
+  PreCallImpl(ImmutableList<PreCallAction> actions, SpeculativePreCall speculativePreCall) {
     this.actions = actions;
+    this.speculativePreCall = speculativePreCall;
+  }
+
+  @Override
+  public void speculate(Context context, String number) {
+    speculativePreCall.speculate(number);
   }
 
   @NonNull
   @Override
   public Intent buildIntent(Context context, CallIntentBuilder builder) {
     Logger.get(context).logImpression(DialerImpression.Type.PRECALL_INITIATED);
+    speculativePreCall.onCallInitiated();
     if (!requiresUi(context, builder)) {
       LogUtil.i("PreCallImpl.buildIntent", "No UI requested, running pre-call directly");
       for (PreCallAction action : actions) {
         action.runWithoutUi(context, builder);
       }
+      speculativePreCall.onPlacingCall();
       return builder.build();
     }
     LogUtil.i("PreCallImpl.buildIntent", "building intent to start activity");
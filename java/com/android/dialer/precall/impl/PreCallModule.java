@@ -39,13 +39,15 @@ public abstract class PreCallModule {
 
   @Provides
   public static ImmutableList<PreCallAction> provideActions(
-      DuoAction duoAction, CallingAccountSelector callingAccountSelector) {
+      DuoAction duoAction,
+      CallingAccountSelector callingAccountSelector,
+      AssistedDialAction assistedDialAction) {
     return ImmutableList.of(
         new PermissionCheckAction(),
         new MalformedNumberRectifier(
             ImmutableList.of(new UkRegionPrefixInInternationalFormatHandler())),
         callingAccountSelector,
         duoAction,
-        new AssistedDialAction());
+        assistedDialAction);
   }
 }
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.precall.impl;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.telecom.PhoneAccountHandle;
+import android.telecom.TelecomManager;
+import android.telephony.PhoneNumberUtils;
+import android.text.TextUtils;
+import com.android.dialer.assisteddialing.TransformationInfo;
+import com.android.dialer.common.Assert;
+import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.concurrent.Annotations.BackgroundExecutor;
+import com.android.dialer.configprovider.ConfigProviderComponent;
+import com.android.dialer.inject.ApplicationContext;
+import com.android.dialer.metrics.Metrics;
+import com.android.dialer.metrics.MetricsComponent;
+import com.android.dialer.preferredsim.PreferredAccountWorker;
+import com.android.dialer.util.PermissionsUtil;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Resolves the slow pre-call actions for the number the user is about to call, e.g. the number in
+ * the dialpad, before the call button is tapped. The account selection of {@link
+ * CallingAccountSelector} and the number transformation of {@link AssistedDialAction} then use the
+ * results instead of computing them again, if they were resolved for the same number and the same
+ * call capable accounts less than {@link #TTL_MILLIS} ago.
+ *
+ * <p>Disabled unless the "precall_speculation_enabled" flag is set. The time from the tap to the
+ * call being handed to telecom is recorded either way, as {@link
+ * Metrics#PRECALL_TAP_TO_TELECOM_SPECULATED_EVENT_NAME} if a speculative result was used and
+ * {@link Metrics#PRECALL_TAP_TO_TELECOM_EVENT_NAME} otherwise.
+ */
+@Singleton
+public class SpeculativePreCall {
+
+  private static final long TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  private final Context appContext;
+  private final PreferredAccountWorker preferredAccountWorker;
+  private final ListeningExecutorService backgroundExecutor;
+
+  /** The last speculation, only accessed on the main thread. */
+  @Nullable private Speculation speculation;
+
+  @Nullable private Integer tapTimerId;
+  private boolean speculationUsed;
+
+  @Inject
+  SpeculativePreCall(
+      @ApplicationContext Context appContext,
+      PreferredAccountWorker preferredAccountWorker,
+      @BackgroundExecutor ListeningExecutorService backgroundExecutor) {
+    this.appContext = appContext;
+    this.preferredAccountWorker = preferredAccountWorker;
+    this.backgroundExecutor = backgroundExecutor;
+  }
+
+  /** Starts resolving the pre-call actions for {@code number} unless they already are. */
+  @MainThread
+  @SuppressWarnings("MissingPermission")
+  void speculate(String number) {
+    Assert.isMainThread();
+    if (!isEnabled()
+        || TextUtils.isEmpty(number)
+        || PhoneNumberUtils.isEmergencyNumber(number)
+        || !PermissionsUtil.hasReadPhoneStatePermissions(appContext)) {
+      return;
+    }
+    List<PhoneAccountHandle> accounts =
+        appContext.getSystemService(TelecomManager.class).getCallCapablePhoneAccounts();
+    if (getValidSpeculation(number, accounts) != null) {
+      return;
+    }
+    LogUtil.i("SpeculativePreCall.speculate", "resolving pre-call actions");
+    speculation =
+        new Speculation(
+            number,
+            accounts,
+            // CallingAccountSelector only selects an account if there are several.
+            accounts.size() > 1 ? preferredAccountWorker.selectAccount(number, accounts) : null,
+            backgroundExecutor.submit(
+                () -> AssistedDialAction.attemptAssistedDial(appContext, null, number)));
+  }
+
+  /**
+   * Returns the account selection resolved for {@code number} and {@code accounts}, or null if it
+   * has to be resolved now.
+   */
+  @MainThread
+  @Nullable
+  ListenableFuture<PreferredAccountWorker.Result> getAccountSelection(
+      String number, List<PhoneAccountHandle> accounts) {
+    Assert.isMainThread();
+    Speculation valid = getValidSpeculation(number, accounts);
+    if (valid == null || valid.accountSelection == null) {
+      return null;
+    }
+    LogUtil.i("SpeculativePreCall.getAccountSelection", "using speculative account selection");
+    speculationUsed = true;
+    return valid.accountSelection;
+  }
+
+  /**
+   * Returns the assisted dialing transformation of {@code number} with the default telephony
+   * manager, or null if it is not resolved yet.
+   */
+  @MainThread
+  @Nullable
+  @SuppressWarnings({"MissingPermission", "OptionalUsedAsFieldOrParameterType"})
+  Optional<TransformationInfo> getAssistedDialTransformation(String number) {
+    Assert.isMainThread();
+    if (!PermissionsUtil.hasReadPhoneStatePermissions(appContext)) {
+      return null;
+    }
+    Speculation valid =
+        getValidSpeculation(
+            number,
+            appContext.getSystemService(TelecomManager.class).getCallCapablePhoneAccounts());
+    if (valid == null || !valid.assistedDialTransformation.isDone()) {
+      return null;
+    }
+    try {
+      Optional<TransformationInfo> transformation = valid.assistedDialTransformation.get();
+      LogUtil.i(
+          "SpeculativePreCall.getAssistedDialTransformation",
+          "using speculative assisted dialing transformation");
+      speculationUsed = true;
+      return transformation;
+    } catch (InterruptedException | ExecutionException e) {
+      LogUtil.e("SpeculativePreCall.getAssistedDialTransformation", "speculation failed", e);
+      return null;
+    }
+  }
+
+  /** Drops the speculation, e.g. because the preferred account of a number has changed. */
+  @MainThread
+  void invalidate() {
+    speculation = null;
+  }
+
+  /** Called when the user taps to call, starts the tap to telecom timer. */
+  @MainThread
+  void onCallInitiated() {
+    // The previous call may not have been placed, e.g. if it became a Duo call.
+    onCallAborted();
+    tapTimerId = MetricsComponent.get(appContext).metrics().startUnnamedTimer();
+    speculationUsed = false;
+  }
+
+  /** Called when the call will not be placed, e.g. the user dismissed the account selection. */
+  @MainThread
+  void onCallAborted() {
+    if (tapTimerId == null) {
+      return;
+    }
+    MetricsComponent.get(appContext)
+        .metrics()
+        .stopUnnamedTimer(tapTimerId, Metrics.PRECALL_ABORTED_EVENT_NAME);
+    tapTimerId = null;
+  }
+
+  /** Called right before the call is handed to telecom, stops the tap to telecom timer. */
+  @MainThread
+  void onPlacingCall() {
+    if (tapTimerId == null) {
+      return;
+    }
+    MetricsComponent.get(appContext)
+        .metrics()
+        .stopUnnamedTimer(
+            tapTimerId,
+            speculationUsed
+                ? Metrics.PRECALL_TAP_TO_TELECOM_SPECULATED_EVENT_NAME
+                : Metrics.PRECALL_TAP_TO_TELECOM_EVENT_NAME);
+    tapTimerId = null;
+    // The call might change the preferred account or the SIM state.
+    speculation = null;
+  }
+
+  @Nullable
+  private Speculation getValidSpeculation(String number, List<PhoneAccountHandle> accounts) {
+    if (speculation == null) {
+      return null;
+    }
+    if (SystemClock.elapsedRealtime() - speculation.createdMillis >= TTL_MILLIS) {
+      speculation = null;
+      return null;
+    }
+    if (!speculation.number.equals(number) || !Objects.equals(speculation.accounts, accounts)) {
+      return null;
+    }
+    if (speculation.accountSelection != null
+        && speculation.accountSelection.isDone()
+        && !succeeded(speculation.accountSelection)) {
+      speculation = null;
+      return null;
+    }
+    return speculation;
+  }
+
+  private static boolean succeeded(ListenableFuture<?> future) {
+    try {
+      future.get();
+      return true;
+    } catch (InterruptedException | ExecutionException e) {
+      return false;
+    }
+  }
+
+  private boolean isEnabled() {
+    return ConfigProviderComponent.get(appContext)
+        .getConfigProvider()
+        .getBoolean("precall_speculation_enabled", false);
+  }
+
+  /** Pre-call actions resolved for a number and the call capable accounts at the time. */
+  private static final class Speculation {
+    final String number;
+    final List<PhoneAccountHandle> accounts;
+    @Nullable final ListenableFuture<PreferredAccountWorker.Result> accountSelection;
+    final ListenableFuture<Optional<TransformationInfo>> assistedDialTransformation;
+    final long createdMillis = SystemClock.elapsedRealtime();
+
+    Speculation(
+        String number,
+        List<PhoneAccountHandle> accounts,
+        @Nullable ListenableFuture<PreferredAccountWorker.Result> accountSelection,
+        ListenableFuture<Optional<TransformationInfo>> assistedDialTransformation) {
+      this.number = number;
+      this.accounts = accounts;
+      this.accountSelection = accountSelection;
+      this.assistedDialTransformation = assistedDialTransformation;
+    }
+  }
+}
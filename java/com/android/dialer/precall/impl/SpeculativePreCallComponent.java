@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.precall.impl;
+
+import android.content.Context;
+import com.android.dialer.inject.HasRootComponent;
+import dagger.Subcomponent;
+
+/** Component for {@link SpeculativePreCall}, for classes of the pre-call which aren't injected. */
+@Subcomponent
+public abstract class SpeculativePreCallComponent {
+
+  public abstract SpeculativePreCall speculativePreCall();
+
+  public static SpeculativePreCallComponent get(Context context) {
+    return ((SpeculativePreCallComponent.HasComponent)
+            ((HasRootComponent) context.getApplicationContext()).component())
+        .speculativePreCallComponent();
+  }
+
+  /** Used to refer to the root application component. */
+  public interface HasComponent {
+    SpeculativePreCallComponent speculativePreCallComponent();
+  }
+}
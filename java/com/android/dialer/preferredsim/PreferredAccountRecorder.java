@@ -139,6 +139,9 @@ public class PreferredAccountRecorder {
               values,
               PreferredSim.DATA_ID + " = ?",
               new String[] {String.valueOf(input.dataId)});
+      PreferredSimComponent.get(input.context)
+          .preferredAccountWorker()
+          .onPreferredAccountRecorded(input.dataId, input.phoneAccountHandle);
       return null;
     }
   }
@@ -92,4 +92,10 @@ public interface PreferredAccountWorker {
    * provided to show a dialog for the user to manually select.
    */
   ListenableFuture<Result> selectAccount(String phoneNumber, List<PhoneAccountHandle> candidates);
+
+  /**
+   * Called after {@code phoneAccountHandle} was stored as the preferred account of the data row
+   * {@code dataId}, so {@link #selectAccount(String, List)} returns it right away.
+   */
+  void onPreferredAccountRecorded(String dataId, PhoneAccountHandle phoneAccountHandle);
 }
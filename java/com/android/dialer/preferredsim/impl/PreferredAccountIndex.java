@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.preferredsim.impl;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.provider.ContactsContract;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.telecom.PhoneAccountHandle;
+import android.util.ArrayMap;
+import android.util.LruCache;
+import android.util.Pair;
+import com.android.dialer.common.Assert;
+import com.android.dialer.common.LogUtil;
+import com.android.dialer.inject.ApplicationContext;
+import com.android.dialer.preferredsim.PreferredAccountUtil;
+import com.android.dialer.preferredsim.PreferredSimFallbackContract;
+import com.android.dialer.preferredsim.PreferredSimFallbackContract.PreferredSim;
+import com.google.common.base.Optional;
+import java.util.Map;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * In-memory index of the preferred SIM of numbers, so {@link PreferredAccountWorkerImpl} doesn't
+ * query the contacts provider and {@link PreferredSimFallbackProvider} on every call.
+ *
+ * <p>The preferred accounts are loaded from {@link PreferredSimFallbackContract} as a whole the
+ * first time one is needed. The number to data ID lookups are cached per number. Both are dropped
+ * when their provider notifies a change, and the preferred accounts are also updated directly when
+ * {@link com.android.dialer.preferredsim.PreferredAccountRecorder} writes one, before the
+ * notification arrives. A data ID lookup which overlaps a change of the contacts is not cached.
+ */
+@ThreadSafe
+@Singleton
+@SuppressWarnings("Guava")
+public final class PreferredAccountIndex {
+
+  private static final int MAX_NUMBERS = 100;
+
+  private final Context appContext;
+
+  @GuardedBy("this")
+  private boolean isObserving;
+
+  /** Flattened component name and ID of the preferred account by data ID, null if not loaded. */
+  @GuardedBy("this")
+  @Nullable
+  private Map<String, Pair<String, String>> preferredAccounts;
+
+  @GuardedBy("this")
+  private final LruCache<String, Optional<String>> dataIds = new LruCache<>(MAX_NUMBERS);
+
+  @GuardedBy("this")
+  private int contactsVersion;
+
+  @Inject
+  PreferredAccountIndex(@ApplicationContext Context appContext) {
+    this.appContext = appContext;
+  }
+
+  /**
+   * Returns the data ID cached for {@code number} by {@link #putDataId(String, Optional, int)}, or
+   * null if it has to be looked up.
+   */
+  @Nullable
+  synchronized Optional<String> getDataId(@NonNull String number) {
+    return dataIds.get(number);
+  }
+
+  /** Returns the version to pass to {@link #putDataId(String, Optional, int)} before a lookup. */
+  synchronized int getContactsVersion() {
+    return contactsVersion;
+  }
+
+  /**
+   * Caches the data ID looked up for {@code number}, unless the contacts have changed since {@code
+   * version} was returned by {@link #getContactsVersion()}. Must only be called with the contacts
+   * permission.
+   */
+  synchronized void putDataId(@NonNull String number, Optional<String> dataId, int version) {
+    startObserving();
+    if (version != contactsVersion) {
+      LogUtil.i("PreferredAccountIndex.putDataId", "contacts changed during lookup");
+      return;
+    }
+    dataIds.put(number, dataId);
+  }
+
+  /**
+   * Returns the valid preferred account of {@code dataId}. Must only be called with the contacts
+   * permission.
+   */
+  @WorkerThread
+  @NonNull
+  Optional<PhoneAccountHandle> getPreferredAccount(@NonNull String dataId) {
+    Assert.isWorkerThread();
+    Pair<String, String> preferredAccount;
+    synchronized (this) {
+      startObserving();
+      if (preferredAccounts == null) {
+        loadPreferredAccounts();
+      }
+      preferredAccount = preferredAccounts.get(dataId);
+    }
+    if (preferredAccount == null) {
+      return Optional.absent();
+    }
+    return PreferredAccountUtil.getValidPhoneAccount(
+        appContext, preferredAccount.first, preferredAccount.second);
+  }
+
+  /** Updates the index after the preferred account of {@code dataId} was written. */
+  synchronized void onPreferredAccountRecorded(
+      @NonNull String dataId, @NonNull PhoneAccountHandle phoneAccountHandle) {
+    if (preferredAccounts == null) {
+      return;
+    }
+    preferredAccounts.put(
+        dataId,
+        Pair.create(
+            phoneAccountHandle.getComponentName().flattenToString(), phoneAccountHandle.getId()));
+  }
+
+  @GuardedBy("this")
+  private void loadPreferredAccounts() {
+    Map<String, Pair<String, String>> loaded = new ArrayMap<>();
+    try (Cursor cursor =
+        appContext
+            .getContentResolver()
+            .query(
+                PreferredSimFallbackContract.CONTENT_URI,
+                new String[] {
+                  PreferredSim.DATA_ID,
+                  PreferredSim.PREFERRED_PHONE_ACCOUNT_COMPONENT_NAME,
+                  PreferredSim.PREFERRED_PHONE_ACCOUNT_ID
+                },
+                null,
+                null,
+                null)) {
+      if (cursor != null) {
+        while (cursor.moveToNext()) {
+          loaded.put(cursor.getString(0), Pair.create(cursor.getString(1), cursor.getString(2)));
+        }
+      }
+    }
+    LogUtil.i("PreferredAccountIndex.loadPreferredAccounts", "loaded %d rows", loaded.size());
+    preferredAccounts = loaded;
+  }
+
+  /**
+   * Registers the observers which keep the index current. Observing the providers requires the
+   * contacts permission, so this is only done once the index is used.
+   */
+  @GuardedBy("this")
+  private void startObserving() {
+    if (isObserving) {
+      return;
+    }
+    isObserving = true;
+    appContext
+        .getContentResolver()
+        .registerContentObserver(
+            PreferredSimFallbackContract.CONTENT_URI,
+            true,
+            new ContentObserver(null) {
+              @Override
+              public void onChange(boolean selfChange) {
+                synchronized (PreferredAccountIndex.this) {
+                  preferredAccounts = null;
+                }
+              }
+            });
+    appContext
+        .getContentResolver()
+        .registerContentObserver(
+            ContactsContract.AUTHORITY_URI,
+            true,
+            new ContentObserver(null) {
+              @Override
+              public void onChange(boolean selfChange) {
+                synchronized (PreferredAccountIndex.this) {
+                  dataIds.evictAll();
+                  contactsVersion++;
+                }
+              }
+            });
+  }
+}
@@ -51,8 +51,6 @@ import com.android.dialer.logging.Logger;
 import com.android.dialer.preferredsim.PreferredAccountUtil;
 import com.android.dialer.preferredsim.PreferredAccountWorker;
 import com.android.dialer.preferredsim.PreferredAccountWorker.Result.Builder;
-import com.android.dialer.preferredsim.PreferredSimFallbackContract;
-import com.android.dialer.preferredsim.PreferredSimFallbackContract.PreferredSim;
 import com.android.dialer.preferredsim.suggestion.SimSuggestionComponent;
 import com.android.dialer.preferredsim.suggestion.SuggestionProvider;
 import com.android.dialer.preferredsim.suggestion.SuggestionProvider.Suggestion;
@@ -72,6 +70,7 @@ public class PreferredAccountWorkerImpl implements PreferredAccountWorker {
 
   private final Context appContext;
   private final ListeningExecutorService backgroundExecutor;
+  private final PreferredAccountIndex preferredAccountIndex;
 
   @VisibleForTesting
   public static final String METADATA_SUPPORTS_PREFERRED_SIM =
@@ -80,9 +79,11 @@ public class PreferredAccountWorkerImpl implements PreferredAccountWorker {
   @Inject
   public PreferredAccountWorkerImpl(
       @ApplicationContext Context appContext,
-      @BackgroundExecutor ListeningExecutorService backgroundExecutor) {
+      @BackgroundExecutor ListeningExecutorService backgroundExecutor,
+      PreferredAccountIndex preferredAccountIndex) {
     this.appContext = appContext;
     this.backgroundExecutor = backgroundExecutor;
+    this.preferredAccountIndex = preferredAccountIndex;
   }
 
   @Override
@@ -100,11 +101,17 @@ public class PreferredAccountWorkerImpl implements PreferredAccountWorker {
     return backgroundExecutor.submit(() -> doInBackground(phoneNumber, candidates));
   }
 
+  @Override
+  public void onPreferredAccountRecorded(String dataId, PhoneAccountHandle phoneAccountHandle) {
+    preferredAccountIndex.onPreferredAccountRecorded(dataId, phoneAccountHandle);
+  }
+
   private Result doInBackground(String phoneNumber, List<PhoneAccountHandle> candidates) {
 
     Optional<String> dataId = getDataId(phoneNumber);
     if (dataId.isPresent()) {
-      Optional<PhoneAccountHandle> preferred = getPreferredAccount(appContext, dataId.get());
+      Optional<PhoneAccountHandle> preferred =
+          preferredAccountIndex.getPreferredAccount(dataId.get());
       if (preferred.isPresent()) {
         return usePreferredSim(preferred.get(), candidates, dataId.get());
       }
@@ -252,6 +259,20 @@ public class PreferredAccountWorkerImpl implements PreferredAccountWorker {
     if (TextUtils.isEmpty(phoneNumber)) {
       return Optional.absent();
     }
+    Optional<String> cached = preferredAccountIndex.getDataId(phoneNumber);
+    if (cached != null) {
+      return cached;
+    }
+    int contactsVersion = preferredAccountIndex.getContactsVersion();
+    Optional<String> dataId = queryDataId(phoneNumber);
+    preferredAccountIndex.putDataId(phoneNumber, dataId, contactsVersion);
+    return dataId;
+  }
+
+  @WorkerThread
+  @NonNull
+  private Optional<String> queryDataId(@NonNull String phoneNumber) {
+    Assert.isWorkerThread();
     try (Cursor cursor =
         appContext
             .getContentResolver()
@@ -325,35 +346,6 @@ public class PreferredAccountWorkerImpl implements PreferredAccountWorker {
     }
   }
 
-  @WorkerThread
-  @NonNull
-  private static Optional<PhoneAccountHandle> getPreferredAccount(
-      @NonNull Context context, @NonNull String dataId) {
-    Assert.isWorkerThread();
-    Assert.isNotNull(dataId);
-    try (Cursor cursor =
-        context
-            .getContentResolver()
-            .query(
-                PreferredSimFallbackContract.CONTENT_URI,
-                new String[] {
-                  PreferredSim.PREFERRED_PHONE_ACCOUNT_COMPONENT_NAME,
-                  PreferredSim.PREFERRED_PHONE_ACCOUNT_ID
-                },
-                PreferredSim.DATA_ID + " = ?",
-                new String[] {dataId},
-                null)) {
-      if (cursor == null) {
-        return Optional.absent();
-      }
-      if (!cursor.moveToFirst()) {
-        return Optional.absent();
-      }
-      return PreferredAccountUtil.getValidPhoneAccount(
-          context, cursor.getString(0), cursor.getString(1));
-    }
-  }
-
   @WorkerThread
   private static boolean isPreferredSimEnabled(Context context) {
     Assert.isWorkerThread();
@@ -109,18 +109,26 @@ public class PreferredSimFallbackProvider extends ContentProvider {
     if (PreferredSimFallbackContract.CONTENT_URI.equals(uri)
         && selection == null
         && selectionArgs == null) {
-      return databaseHelper
-          .getWritableDatabase()
-          .delete(PreferredSimDatabaseHelper.TABLE, null, null);
+      int count =
+          databaseHelper
+              .getWritableDatabase()
+              .delete(PreferredSimDatabaseHelper.TABLE, null, null);
+      getContext()
+          .getContentResolver()
+          .notifyChange(PreferredSimFallbackContract.CONTENT_URI, null);
+      return count;
     }
 
     if (!TextUtils.equals(getContext().getPackageName(), getCallingPackage())) {
       throw new IllegalArgumentException("Unsupported operation");
     }
 
-    return databaseHelper
-        .getWritableDatabase()
-        .delete(PreferredSimDatabaseHelper.TABLE, selection, selectionArgs);
+    int count =
+        databaseHelper
+            .getWritableDatabase()
+            .delete(PreferredSimDatabaseHelper.TABLE, selection, selectionArgs);
+    getContext().getContentResolver().notifyChange(PreferredSimFallbackContract.CONTENT_URI, null);
+    return count;
   }
 
   /**
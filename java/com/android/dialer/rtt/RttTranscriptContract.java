@@ -26,15 +26,45 @@ public final class RttTranscriptContract {
      * Unique key that should match {@link android.provider.CallLog.Calls#DATE} of the data row it
      * is associated with.
      *
-     * <p>TYPE: TEXT
+     * <p>TYPE: INTEGER
      */
     static final String TRANSCRIPT_ID = "rtt_transcript_id";
 
     /**
-     * Transcript data, encoded as {@link RttTranscript} proto.
+     * Transcript data, encoded as {@link RttTranscript} proto. Transcripts written incrementally
+     * only store the header fields here, their messages live in {@link
+     * RttTranscriptMessageColumn}.
      *
      * <p>TYPE: BLOB
      */
     static final String TRANSCRIPT_DATA = "transcript_data";
   }
+
+  /**
+   * Columns for messages of an RTT transcript. Messages are stored one row each so that a long call
+   * only rewrites the messages that changed since the last save.
+   */
+  static final class RttTranscriptMessageColumn {
+
+    /**
+     * {@link RttTranscriptColumn#TRANSCRIPT_ID} of the transcript the message belongs to.
+     *
+     * <p>TYPE: INTEGER
+     */
+    static final String TRANSCRIPT_ID = "rtt_transcript_id";
+
+    /**
+     * Zero based position of the message inside the transcript.
+     *
+     * <p>TYPE: INTEGER
+     */
+    static final String SEQUENCE = "sequence";
+
+    /**
+     * Message data, encoded as {@link RttTranscriptMessage} proto.
+     *
+     * <p>TYPE: BLOB
+     */
+    static final String MESSAGE_DATA = "message_data";
+  }
 }
@@ -22,12 +22,17 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.os.SystemClock;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.rtt.RttTranscriptContract.RttTranscriptColumn;
+import com.android.dialer.rtt.RttTranscriptContract.RttTranscriptMessageColumn;
 
 /** Database helper class for RTT transcript. */
 final class RttTranscriptDatabaseHelper extends SQLiteOpenHelper {
 
   static final String TABLE = "rtt_transcript";
 
+  static final String MESSAGE_TABLE = "rtt_transcript_message";
+
+  private static final int DATABASE_VERSION = 2;
+
   private static final String CREATE_TABLE_SQL =
       "create table if not exists "
           + TABLE
@@ -36,8 +41,35 @@ final class RttTranscriptDatabaseHelper extends SQLiteOpenHelper {
           + (RttTranscriptColumn.TRANSCRIPT_DATA + " blob not null")
           + ");";
 
-  RttTranscriptDatabaseHelper(Context context) {
-    super(context, "rtt_transcript.db", null, 1);
+  private static final String CREATE_MESSAGE_TABLE_SQL =
+      "create table if not exists "
+          + MESSAGE_TABLE
+          + " ("
+          + (RttTranscriptMessageColumn.TRANSCRIPT_ID + " integer not null, ")
+          + (RttTranscriptMessageColumn.SEQUENCE + " integer not null, ")
+          + (RttTranscriptMessageColumn.MESSAGE_DATA + " blob not null, ")
+          + ("primary key ("
+              + RttTranscriptMessageColumn.TRANSCRIPT_ID
+              + ", "
+              + RttTranscriptMessageColumn.SEQUENCE
+              + ")")
+          + ");";
+
+  private static RttTranscriptDatabaseHelper instance;
+
+  /**
+   * Returns the process wide helper. The helper is never closed so that incremental writes during a
+   * call don't pay for reopening the database.
+   */
+  static synchronized RttTranscriptDatabaseHelper getInstance(Context context) {
+    if (instance == null) {
+      instance = new RttTranscriptDatabaseHelper(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  private RttTranscriptDatabaseHelper(Context context) {
+    super(context, "rtt_transcript.db", null, DATABASE_VERSION);
   }
 
   @Override
@@ -45,6 +77,7 @@ final class RttTranscriptDatabaseHelper extends SQLiteOpenHelper {
     LogUtil.enterBlock("RttTranscriptDatabaseHelper.onCreate");
     long startTime = SystemClock.elapsedRealtime();
     db.execSQL(CREATE_TABLE_SQL);
+    db.execSQL(CREATE_MESSAGE_TABLE_SQL);
     LogUtil.i(
         "RttTranscriptDatabaseHelper.onCreate",
         "took: %dms",
@@ -52,5 +85,11 @@ final class RttTranscriptDatabaseHelper extends SQLiteOpenHelper {
   }
 
   @Override
-  public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {}
+  public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    LogUtil.i(
+        "RttTranscriptDatabaseHelper.onUpgrade", "from: %d, to: %d", oldVersion, newVersion);
+    if (oldVersion < 2) {
+      db.execSQL(CREATE_MESSAGE_TABLE_SQL);
+    }
+  }
 }
@@ -19,18 +19,26 @@ package com.android.dialer.rtt;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.support.annotation.WorkerThread;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.concurrent.DialerExecutorComponent;
+import com.android.dialer.common.concurrent.DialerFutureSerializer;
 import com.android.dialer.common.database.Selection;
 import com.android.dialer.rtt.RttTranscriptContract.RttTranscriptColumn;
+import com.android.dialer.rtt.RttTranscriptContract.RttTranscriptMessageColumn;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.ArrayList;
+import java.util.List;
 
 /** Util class to save and load RTT transcript. */
 public final class RttTranscriptUtil {
 
+  /** Keeps incremental writes of a transcript in the order they were requested. */
+  private static final DialerFutureSerializer WRITE_SERIALIZER = new DialerFutureSerializer();
+
   public static ListenableFuture<ImmutableSet<String>> getAvailableRttTranscriptIds(
       Context context, ImmutableSet<String> transcriptIds) {
     return DialerExecutorComponent.get(context)
@@ -42,7 +50,7 @@ public final class RttTranscriptUtil {
   private static ImmutableSet<String> checkRttTranscriptAvailability(
       Context context, ImmutableSet<String> transcriptIds) {
     Assert.isWorkerThread();
-    RttTranscriptDatabaseHelper databaseHelper = new RttTranscriptDatabaseHelper(context);
+    RttTranscriptDatabaseHelper databaseHelper = RttTranscriptDatabaseHelper.getInstance(context);
     ImmutableSet.Builder<String> builder = ImmutableSet.builder();
     Selection selection =
         Selection.builder()
@@ -66,7 +74,6 @@ public final class RttTranscriptUtil {
         }
       }
     }
-    databaseHelper.close();
     return builder.build();
   }
 
@@ -76,58 +83,138 @@ public final class RttTranscriptUtil {
         .submit(() -> getRttTranscript(context, transcriptId));
   }
 
+  /**
+   * Assembles the transcript from its header row and message rows. Transcripts saved before
+   * messages were stored separately carry their messages in the header row and are returned as is.
+   */
   @WorkerThread
   private static RttTranscript getRttTranscript(Context context, String transcriptId) {
     Assert.isWorkerThread();
-    RttTranscriptDatabaseHelper databaseHelper = new RttTranscriptDatabaseHelper(context);
+    SQLiteDatabase database =
+        RttTranscriptDatabaseHelper.getInstance(context).getReadableDatabase();
+    RttTranscript header;
     try (Cursor cursor =
-        databaseHelper
-            .getReadableDatabase()
-            .query(
-                RttTranscriptDatabaseHelper.TABLE,
-                new String[] {RttTranscriptColumn.TRANSCRIPT_DATA},
-                RttTranscriptColumn.TRANSCRIPT_ID + " = ?",
-                new String[] {transcriptId},
-                null,
-                null,
-                null)) {
-      if (cursor != null && cursor.moveToFirst()) {
-        try {
-          return RttTranscript.parseFrom(cursor.getBlob(0));
-        } catch (InvalidProtocolBufferException e) {
-          throw new RuntimeException("Parse failed for RTT transcript", e);
-        }
-      } else {
+        database.query(
+            RttTranscriptDatabaseHelper.TABLE,
+            new String[] {RttTranscriptColumn.TRANSCRIPT_DATA},
+            RttTranscriptColumn.TRANSCRIPT_ID + " = ?",
+            new String[] {transcriptId},
+            null,
+            null,
+            null)) {
+      if (cursor == null || !cursor.moveToFirst()) {
         return null;
       }
-    } finally {
-      databaseHelper.close();
+      try {
+        header = RttTranscript.parseFrom(cursor.getBlob(0));
+      } catch (InvalidProtocolBufferException e) {
+        throw new RuntimeException("Parse failed for RTT transcript", e);
+      }
+    }
+    if (header.getMessagesCount() > 0) {
+      return header;
+    }
+
+    RttTranscript.Builder builder = header.toBuilder();
+    try (Cursor cursor =
+        database.query(
+            RttTranscriptDatabaseHelper.MESSAGE_TABLE,
+            new String[] {RttTranscriptMessageColumn.MESSAGE_DATA},
+            RttTranscriptMessageColumn.TRANSCRIPT_ID + " = ?",
+            new String[] {transcriptId},
+            null,
+            null,
+            RttTranscriptMessageColumn.SEQUENCE + " ASC")) {
+      if (cursor != null) {
+        while (cursor.moveToNext()) {
+          try {
+            builder.addMessages(RttTranscriptMessage.parseFrom(cursor.getBlob(0)));
+          } catch (InvalidProtocolBufferException e) {
+            throw new RuntimeException("Parse failed for RTT transcript message", e);
+          }
+        }
+      }
     }
+    return builder.build();
   }
 
   public static ListenableFuture<Void> saveRttTranscript(
       Context context, RttTranscript rttTranscript) {
-    return DialerExecutorComponent.get(context)
-        .backgroundExecutor()
-        .submit(
-            () -> {
-              save(context, rttTranscript);
-              return null;
-            });
+    return appendRttTranscriptMessages(
+        context,
+        rttTranscript.toBuilder().clearMessages().build(),
+        0,
+        rttTranscript.getMessagesList());
+  }
+
+  /**
+   * Writes messages of a transcript starting at {@code firstSequence}, leaving the messages already
+   * stored before that position untouched. Stored messages past the end of {@code messages} are
+   * removed, which happens when backspaces from the remote party delete a whole message.
+   *
+   * @param header transcript with id, number and timestamp set and no messages
+   * @param firstSequence position in the transcript of the first element of {@code messages}
+   * @param messages all messages of the transcript from {@code firstSequence} on
+   */
+  public static ListenableFuture<Void> appendRttTranscriptMessages(
+      Context context,
+      RttTranscript header,
+      int firstSequence,
+      List<RttTranscriptMessage> messages) {
+    Assert.checkArgument(header.getMessagesCount() == 0);
+    Assert.checkArgument(firstSequence >= 0);
+    List<RttTranscriptMessage> messagesCopy = new ArrayList<>(messages);
+    return WRITE_SERIALIZER.submit(
+        () -> {
+          save(context, header, firstSequence, messagesCopy);
+          return null;
+        },
+        DialerExecutorComponent.get(context).backgroundExecutor());
   }
 
   @WorkerThread
-  private static void save(Context context, RttTranscript rttTranscript) {
+  private static void save(
+      Context context,
+      RttTranscript header,
+      int firstSequence,
+      List<RttTranscriptMessage> messages) {
     Assert.isWorkerThread();
-    RttTranscriptDatabaseHelper databaseHelper = new RttTranscriptDatabaseHelper(context);
-    ContentValues value = new ContentValues();
-    value.put(RttTranscriptColumn.TRANSCRIPT_ID, rttTranscript.getId());
-    value.put(RttTranscriptColumn.TRANSCRIPT_DATA, rttTranscript.toByteArray());
-    long id =
-        databaseHelper.getWritableDatabase().insert(RttTranscriptDatabaseHelper.TABLE, null, value);
-    databaseHelper.close();
-    if (id < 0) {
-      throw new RuntimeException("Failed to save RTT transcript");
+    SQLiteDatabase database =
+        RttTranscriptDatabaseHelper.getInstance(context).getWritableDatabase();
+    database.beginTransaction();
+    try {
+      ContentValues headerValues = new ContentValues();
+      headerValues.put(RttTranscriptColumn.TRANSCRIPT_ID, header.getId());
+      headerValues.put(RttTranscriptColumn.TRANSCRIPT_DATA, header.toByteArray());
+      database.insertWithOnConflict(
+          RttTranscriptDatabaseHelper.TABLE, null, headerValues, SQLiteDatabase.CONFLICT_IGNORE);
+
+      database.delete(
+          RttTranscriptDatabaseHelper.MESSAGE_TABLE,
+          RttTranscriptMessageColumn.TRANSCRIPT_ID
+              + " = ? AND "
+              + RttTranscriptMessageColumn.SEQUENCE
+              + " >= ?",
+          new String[] {header.getId(), String.valueOf(firstSequence + messages.size())});
+
+      for (int i = 0; i < messages.size(); i++) {
+        ContentValues values = new ContentValues();
+        values.put(RttTranscriptMessageColumn.TRANSCRIPT_ID, header.getId());
+        values.put(RttTranscriptMessageColumn.SEQUENCE, firstSequence + i);
+        values.put(RttTranscriptMessageColumn.MESSAGE_DATA, messages.get(i).toByteArray());
+        long id =
+            database.insertWithOnConflict(
+                RttTranscriptDatabaseHelper.MESSAGE_TABLE,
+                null,
+                values,
+                SQLiteDatabase.CONFLICT_REPLACE);
+        if (id < 0) {
+          throw new RuntimeException("Failed to save RTT transcript message");
+        }
+      }
+      database.setTransactionSuccessful();
+    } finally {
+      database.endTransaction();
     }
   }
 }
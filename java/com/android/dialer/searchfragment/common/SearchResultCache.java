@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.searchfragment.common;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+import com.android.dialer.common.LogUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Cache of the rows returned by a remote search source, e.g. a directory or nearby places, by
+ * source and query.
+ *
+ * <p>Results expire after {@link #TTL_MILLIS}. Unless the cache only answers exact queries, a
+ * query which extends a cached query of the same source is answered by filtering the cached rows
+ * locally, as long as the cached result wasn't truncated by the limit of the source: the rows
+ * matching the longer query are then among the cached ones. Rows are matched on their name and
+ * number, so a source which also matches other fields, e.g. email addresses, might have returned a
+ * few more rows.
+ */
+@ThreadSafe
+public final class SearchResultCache {
+
+  private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  private static final int MAX_ENTRIES = 32;
+
+  private final int maxResults;
+  private final boolean filterLongerQueries;
+  private final LruCache<String, Entry> entries = new LruCache<>(MAX_ENTRIES);
+
+  /**
+   * @param maxResults the limit of the source, a result of this size may be truncated.
+   * @param filterLongerQueries whether longer queries may be answered from the rows of a shorter
+   *     one. Must be false for sources matching rows on more than their name and number, which
+   *     would be dropped by the local filter.
+   */
+  public SearchResultCache(int maxResults, boolean filterLongerQueries) {
+    this.maxResults = maxResults;
+    this.filterLongerQueries = filterLongerQueries;
+  }
+
+  /**
+   * Returns the rows of {@code sourceId} for {@code query}, or null if they have to be queried from
+   * the source.
+   */
+  @Nullable
+  public Rows get(long sourceId, String query) {
+    long now = SystemClock.elapsedRealtime();
+    Entry entry = getUnexpired(sourceId, query, now);
+    if (entry != null) {
+      return entry.rows;
+    }
+    if (!filterLongerQueries) {
+      return null;
+    }
+    for (int length = query.length() - 1; length > 0; length--) {
+      String prefix = query.substring(0, length);
+      Entry prefixEntry = getUnexpired(sourceId, prefix, now);
+      if (prefixEntry == null) {
+        continue;
+      }
+      if (prefixEntry.truncated) {
+        return null;
+      }
+      Rows rows = prefixEntry.rows.filter(query);
+      LogUtil.i(
+          "SearchResultCache.get",
+          "filtered %d of %d rows cached for a shorter query",
+          rows.values.size(),
+          prefixEntry.rows.values.size());
+      // Keeps the time of the query the rows come from, so they expire together.
+      entries.put(getKey(sourceId, query), new Entry(rows, false, prefixEntry.createdMillis));
+      return rows;
+    }
+    return null;
+  }
+
+  /**
+   * Caches the rows of {@code sourceId} for {@code query}.
+   *
+   * @param count the number of rows returned by the source, before any filtering
+   */
+  public void put(long sourceId, String query, Rows rows, int count) {
+    entries.put(
+        getKey(sourceId, query),
+        new Entry(rows, count >= maxResults, SystemClock.elapsedRealtime()));
+  }
+
+  @Nullable
+  private Entry getUnexpired(long sourceId, String query, long now) {
+    String key = getKey(sourceId, query);
+    Entry entry = entries.get(key);
+    if (entry != null && now - entry.createdMillis >= TTL_MILLIS) {
+      entries.remove(key);
+      return null;
+    }
+    return entry;
+  }
+
+  private static String getKey(long sourceId, String query) {
+    return sourceId + "/" + query;
+  }
+
+  /** Rows returned by a source, which can be turned into a new cursor every time they are shown. */
+  public static final class Rows {
+    public final String[] columnNames;
+    public final List<Object[]> values;
+
+    public Rows(String[] columnNames, List<Object[]> values) {
+      this.columnNames = columnNames;
+      this.values = Collections.unmodifiableList(values);
+    }
+
+    /** Reads the remaining rows of {@code cursor}, which is left after the last row. */
+    public static Rows fromCursor(@NonNull Cursor cursor) {
+      List<Object[]> values = new ArrayList<>(cursor.getCount());
+      while (cursor.moveToNext()) {
+        values.add(objectArrayFromCursor(cursor));
+      }
+      return new Rows(cursor.getColumnNames(), values);
+    }
+
+    public MatrixCursor newCursor() {
+      MatrixCursor cursor = new MatrixCursor(columnNames, values.size());
+      for (Object[] row : values) {
+        cursor.addRow(row);
+      }
+      return cursor;
+    }
+
+    private Rows filter(String query) {
+      List<Object[]> filtered = new ArrayList<>();
+      for (Object[] row : values) {
+        String name = (String) row[Projections.DISPLAY_NAME];
+        String number = (String) row[Projections.PHONE_NUMBER];
+        if (QueryFilteringUtil.nameContainsQuery(query, name)
+            || (number != null && QueryFilteringUtil.numberMatchesNumberQuery(query, number))) {
+          filtered.add(row);
+        }
+      }
+      return new Rows(columnNames, filtered);
+    }
+  }
+
+  /** Returns the values of the current row of {@code cursor}. */
+  @NonNull
+  public static Object[] objectArrayFromCursor(@NonNull Cursor cursor) {
+    Object[] values = new Object[cursor.getColumnCount()];
+    for (int i = 0; i < cursor.getColumnCount(); i++) {
+      int fieldType = cursor.getType(i);
+      if (fieldType == Cursor.FIELD_TYPE_BLOB) {
+        values[i] = cursor.getBlob(i);
+      } else if (fieldType == Cursor.FIELD_TYPE_FLOAT) {
+        values[i] = cursor.getDouble(i);
+      } else if (fieldType == Cursor.FIELD_TYPE_INTEGER) {
+        values[i] = cursor.getLong(i);
+      } else if (fieldType == Cursor.FIELD_TYPE_STRING) {
+        values[i] = cursor.getString(i);
+      } else if (fieldType == Cursor.FIELD_TYPE_NULL) {
+        values[i] = null;
+      } else {
+        throw new IllegalStateException("Unknown fieldType (" + fieldType + ") for column: " + i);
+      }
+    }
+    return values;
+  }
+
+  private static final class Entry {
+    final Rows rows;
+    final boolean truncated;
+    final long createdMillis;
+
+    Entry(Rows rows, boolean truncated, long createdMillis) {
+      this.rows = rows;
+      this.truncated = truncated;
+      this.createdMillis = createdMillis;
+    }
+  }
+}
@@ -19,24 +19,47 @@ package com.android.dialer.searchfragment.directories;
 import android.content.Context;
 import android.content.CursorLoader;
 import android.database.Cursor;
-import android.database.MatrixCursor;
 import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.os.SystemClock;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.CommonDataKinds.Phone;
-import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
+import android.util.ArrayMap;
+import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
+import com.android.dialer.common.concurrent.ThreadUtil;
 import com.android.dialer.common.cp2.DirectoryUtils;
+import com.android.dialer.metrics.Metrics;
+import com.android.dialer.metrics.MetricsComponent;
 import com.android.dialer.searchfragment.common.Projections;
+import com.android.dialer.searchfragment.common.SearchResultCache;
+import com.android.dialer.searchfragment.common.SearchResultCache.Rows;
 import com.android.dialer.searchfragment.directories.DirectoriesCursorLoader.Directory;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.GuardedBy;
 
 /**
  * Cursor loader to load extended contacts on device.
  *
- * <p>This loader performs several database queries in serial and merges the resulting cursors
- * together into {@link DirectoryContactsCursor}. If there are no results, the loader will return a
- * null cursor.
+ * <p>This loader queries the directories in parallel and merges the resulting cursors together into
+ * {@link DirectoryContactsCursor}. Every time a directory answers while others are still pending,
+ * the directories loaded so far are delivered, so a slow directory doesn't hold back the results of
+ * the others. A directory which doesn't answer within {@link #DIRECTORY_QUERY_TIMEOUT_MILLIS} is
+ * cancelled and left out. If there are no results, the loader will return a null cursor.
+ *
+ * <p>The results of each directory are kept in a {@link SearchResultCache}, which also answers
+ * queries extending a cached one without querying the directory again.
  */
 public final class DirectoryContactsCursorLoader extends CursorLoader {
 
@@ -47,9 +70,24 @@ public final class DirectoryContactsCursorLoader extends CursorLoader {
   private static final String PHONE_NUMBER_NOT_NULL = Phone.NUMBER + " IS NOT NULL";
   private static final String MAX_RESULTS = "10";
 
+  /** Time given to each directory to answer, counted from the start of the load. */
+  @VisibleForTesting static final long DIRECTORY_QUERY_TIMEOUT_MILLIS = 3_000;
+
+  private static final SearchResultCache cache =
+      new SearchResultCache(Integer.parseInt(MAX_RESULTS), true /* filterLongerQueries */);
+
+  /** Number of timed out queries by directory id, since the process started. */
+  @GuardedBy("DirectoryContactsCursorLoader.class")
+  private static final Map<Long, Integer> timeoutCounts = new ArrayMap<>();
+
   private final String query;
   private final List<Directory> directories;
-  private final Cursor[] cursors;
+
+  /** Rows of the directories which answered or were cached, null for the others. */
+  private final Rows[] rows;
+
+  @GuardedBy("this")
+  private final List<CancellationSignal> directoryCancellationSignals = new ArrayList<>();
 
   public DirectoryContactsCursorLoader(Context context, String query, List<Directory> directories) {
     super(
@@ -61,26 +99,125 @@ public final class DirectoryContactsCursorLoader extends CursorLoader {
         Phone.SORT_KEY_PRIMARY);
     this.query = query;
     this.directories = new ArrayList<>(directories);
-    cursors = new Cursor[directories.size()];
+    rows = new Rows[directories.size()];
   }
 
   @Override
   public Cursor loadInBackground() {
-    for (int i = 0; i < directories.size(); i++) {
-      Directory directory = directories.get(i);
+    long startMillis = now();
+    CompletionService<Rows> completionService =
+        new ExecutorCompletionService<>(
+            DialerExecutorComponent.get(getContext()).backgroundExecutor());
+    // Directory index by pending query.
+    Map<Future<Rows>, Integer> pending = new ArrayMap<>();
+    Map<Integer, CancellationSignal> cancellationSignals = new ArrayMap<>();
+    synchronized (this) {
+      if (isLoadInBackgroundCanceled()) {
+        throw new OperationCanceledException();
+      }
+      for (int i = 0; i < directories.size(); i++) {
+        Directory directory = directories.get(i);
+        rows[i] = null;
+
+        if (!ContactsContract.Directory.isRemoteDirectoryId(directory.getId())
+            && !ContactsContract.Directory.isEnterpriseDirectoryId(directory.getId())) {
+          continue;
+        }
 
-      if (!ContactsContract.Directory.isRemoteDirectoryId(directory.getId())
-          && !ContactsContract.Directory.isEnterpriseDirectoryId(directory.getId())) {
-        cursors[i] = null;
-        continue;
+        // Filter out invisible directories.
+        if (DirectoryUtils.isInvisibleDirectoryId(directory.getId())) {
+          continue;
+        }
+
+        Rows cachedRows = cache.get(directory.getId(), query);
+        if (cachedRows != null) {
+          rows[i] = cachedRows;
+          continue;
+        }
+
+        int index = i;
+        CancellationSignal cancellationSignal = new CancellationSignal();
+        directoryCancellationSignals.add(cancellationSignal);
+        cancellationSignals.put(index, cancellationSignal);
+        pending.put(
+            completionService.submit(() -> queryDirectory(directory, cancellationSignal)), index);
       }
+    }
 
-      // Filter out invisible directories.
-      if (DirectoryUtils.isInvisibleDirectoryId(directory.getId())) {
-        cursors[i] = null;
-        continue;
+    if (!pending.isEmpty() && hasResults()) {
+      // Shows the cached directories while the others are queried.
+      deliverPartialResult();
+    }
+
+    try {
+      while (!pending.isEmpty()) {
+        long remainingMillis = startMillis + DIRECTORY_QUERY_TIMEOUT_MILLIS - now();
+        Future<Rows> completed =
+            remainingMillis > 0
+                ? completionService.poll(remainingMillis, TimeUnit.MILLISECONDS)
+                : null;
+        if (completed == null) {
+          break;
+        }
+        int index = pending.remove(completed);
+        rows[index] = getRows(completed);
+        logLatency(directories.get(index), now() - startMillis);
+        if (!pending.isEmpty() && rows[index] != null && !rows[index].values.isEmpty()) {
+          deliverPartialResult();
+        }
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      for (Map.Entry<Future<Rows>, Integer> entry : pending.entrySet()) {
+        // Results arriving after this point are ignored, so the directory has timed out.
+        cancellationSignals.get(entry.getValue()).cancel();
+        entry.getKey().cancel(false);
+        if (!isLoadInBackgroundCanceled()) {
+          logTimeout(directories.get(entry.getValue()));
+        }
+      }
+      synchronized (this) {
+        directoryCancellationSignals.clear();
+      }
+    }
+
+    if (isLoadInBackgroundCanceled()) {
+      throw new OperationCanceledException();
+    }
+    return newCursor();
+  }
+
+  @Override
+  public void cancelLoadInBackground() {
+    super.cancelLoadInBackground();
+    synchronized (this) {
+      for (CancellationSignal cancellationSignal : directoryCancellationSignals) {
+        cancellationSignal.cancel();
+      }
+    }
+  }
+
+  /**
+   * Returns the rows of {@code completed}, or null if its query failed, in which case the directory
+   * is left out like one without results.
+   */
+  @Nullable
+  private static Rows getRows(Future<Rows> completed) throws InterruptedException {
+    try {
+      return completed.get();
+    } catch (ExecutionException e) {
+      LogUtil.e("DirectoryContactsCursorLoader.getRows", "query failed", e);
+      return null;
+    }
+  }
 
+  @Nullable
+  @WorkerThread
+  private Rows queryDirectory(Directory directory, CancellationSignal cancellationSignal) {
+    Metrics metrics = MetricsComponent.get(getContext()).metrics();
+    Integer timerId = metrics.startUnnamedTimer();
+    try {
       Cursor cursor =
           getContext()
               .getContentResolver()
@@ -89,56 +226,109 @@ public final class DirectoryContactsCursorLoader extends CursorLoader {
                   getProjection(),
                   getSelection(),
                   getSelectionArgs(),
-                  getSortOrder());
+                  getSortOrder(),
+                  cancellationSignal);
       // Even though the cursor specifies "WHERE PHONE_NUMBER IS NOT NULL" the Blackberry Hub app's
       // directory extension doesn't appear to respect it, and sometimes returns a null phone
       // number. In this case just hide the row entirely. See a bug.
-      cursors[i] = createMatrixCursorFilteringNullNumbers(cursor);
+      if (cursor == null) {
+        return null;
+      }
+      int count = cursor.getCount();
+      Rows directoryRows = filterNullNumbers(cursor);
+      if (timerId != null) {
+        metrics.stopUnnamedTimer(timerId, Metrics.DIRECTORY_CONTACTS_QUERY_EVENT_NAME);
+      }
+      cache.put(directory.getId(), query, directoryRows, count);
+      return directoryRows;
+    } catch (OperationCanceledException e) {
+      if (timerId != null) {
+        metrics.stopUnnamedTimer(timerId, Metrics.DIRECTORY_CONTACTS_QUERY_CANCELLED_EVENT_NAME);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Delivers the directories which answered so far. A new cursor is created as the previous result
+   * is closed when it is replaced.
+   */
+  private void deliverPartialResult() {
+    Cursor cursor = newCursor();
+    ThreadUtil.postOnUiThread(
+        () -> {
+          if (isAbandoned() || isReset() || isLoadInBackgroundCanceled()) {
+            if (cursor != null) {
+              cursor.close();
+            }
+            return;
+          }
+          deliverResult(cursor);
+        });
+  }
+
+  private boolean hasResults() {
+    for (Rows directoryRows : rows) {
+      if (directoryRows != null && !directoryRows.values.isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Nullable
+  private Cursor newCursor() {
+    Cursor[] cursors = new Cursor[rows.length];
+    for (int i = 0; i < rows.length; i++) {
+      if (rows[i] != null) {
+        cursors[i] = rows[i].newCursor();
+      }
     }
     return DirectoryContactsCursor.newInstance(getContext(), cursors, directories);
   }
 
-  private MatrixCursor createMatrixCursorFilteringNullNumbers(Cursor cursor) {
-    if (cursor == null) {
-      return null;
+  private static void logLatency(Directory directory, long latencyMillis) {
+    LogUtil.i(
+        "DirectoryContactsCursorLoader.logLatency",
+        "directory %d answered in %d millis",
+        directory.getId(),
+        latencyMillis);
+  }
+
+  private static void logTimeout(Directory directory) {
+    int count;
+    synchronized (DirectoryContactsCursorLoader.class) {
+      Integer previousCount = timeoutCounts.get(directory.getId());
+      count = previousCount == null ? 1 : previousCount + 1;
+      timeoutCounts.put(directory.getId(), count);
     }
-    MatrixCursor matrixCursor = new MatrixCursor(cursor.getColumnNames());
+    LogUtil.i(
+        "DirectoryContactsCursorLoader.logTimeout",
+        "directory %d timed out, %d timeouts so far",
+        directory.getId(),
+        count);
+  }
+
+  private static long now() {
+    return SystemClock.elapsedRealtime();
+  }
+
+  private static Rows filterNullNumbers(Cursor cursor) {
     try {
+      List<Object[]> values = new ArrayList<>();
       if (cursor.moveToFirst()) {
         do {
           String number = cursor.getString(Projections.PHONE_NUMBER);
           if (number == null) {
             continue;
           }
-          matrixCursor.addRow(objectArrayFromCursor(cursor));
+          values.add(SearchResultCache.objectArrayFromCursor(cursor));
         } while (cursor.moveToNext());
       }
+      return new Rows(cursor.getColumnNames(), values);
     } finally {
       cursor.close();
     }
-    return matrixCursor;
-  }
-
-  @NonNull
-  private static Object[] objectArrayFromCursor(@NonNull Cursor cursor) {
-    Object[] values = new Object[cursor.getColumnCount()];
-    for (int i = 0; i < cursor.getColumnCount(); i++) {
-      int fieldType = cursor.getType(i);
-      if (fieldType == Cursor.FIELD_TYPE_BLOB) {
-        values[i] = cursor.getBlob(i);
-      } else if (fieldType == Cursor.FIELD_TYPE_FLOAT) {
-        values[i] = cursor.getDouble(i);
-      } else if (fieldType == Cursor.FIELD_TYPE_INTEGER) {
-        values[i] = cursor.getLong(i);
-      } else if (fieldType == Cursor.FIELD_TYPE_STRING) {
-        values[i] = cursor.getString(i);
-      } else if (fieldType == Cursor.FIELD_TYPE_NULL) {
-        values[i] = null;
-      } else {
-        throw new IllegalStateException("Unknown fieldType (" + fieldType + ") for column: " + i);
-      }
-    }
-    return values;
   }
 
   @VisibleForTesting
@@ -19,19 +19,48 @@ package com.android.dialer.searchfragment.nearbyplaces;
 import android.content.Context;
 import android.content.CursorLoader;
 import android.database.Cursor;
+import android.location.Location;
+import android.location.LocationManager;
 import android.net.Uri;
 import android.provider.ContactsContract;
 import android.support.annotation.NonNull;
 import com.android.contacts.common.extensions.PhoneDirectoryExtenderAccessor;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.searchfragment.common.Projections;
+import com.android.dialer.searchfragment.common.SearchResultCache;
+import com.android.dialer.searchfragment.common.SearchResultCache.Rows;
+import com.android.dialer.util.PermissionsUtil;
 import java.util.List;
 
-/** Cursor loader for nearby places search results. */
+/**
+ * Cursor loader for nearby places search results.
+ *
+ * <p>Results are kept in a {@link SearchResultCache}, so repeating a query doesn't make a new
+ * network request. Longer queries are not filtered from the cached results, as places are also
+ * matched on their category and address, e.g. "pizza" matches "Domino's". Places depend on where
+ * the device is, so results are cached per coarse last known location and are not shared with
+ * results found without the location permission.
+ */
 public final class NearbyPlacesCursorLoader extends CursorLoader {
 
   private static final String MAX_RESULTS = "3";
   private static final long INVALID_DIRECTORY_ID = Long.MAX_VALUE;
+
+  /**
+   * Nearby places are a single source, which doesn't have a stable directory id. The cache source
+   * id identifies the location the places are near instead.
+   */
+  private static final long CACHE_SOURCE_ID_NO_PERMISSION = 0;
+
+  private static final long CACHE_SOURCE_ID_NO_LOCATION = 1;
+
+  /** Locations are rounded to cells of 0.01 degrees, about a kilometer. */
+  private static final int CELLS_PER_DEGREE = 100;
+
+  private static final SearchResultCache cache =
+      new SearchResultCache(Integer.parseInt(MAX_RESULTS), false /* filterLongerQueries */);
+
+  private final String query;
   private final long directoryId;
 
   /**
@@ -41,6 +70,7 @@ public final class NearbyPlacesCursorLoader extends CursorLoader {
    */
   public NearbyPlacesCursorLoader(Context context, String query, @NonNull List<Long> directoryIds) {
     super(context, getContentUri(context, query), Projections.DATA_PROJECTION, null, null, null);
+    this.query = query;
     this.directoryId = getDirectoryId(directoryIds);
   }
 
@@ -50,7 +80,38 @@ public final class NearbyPlacesCursorLoader extends CursorLoader {
       LogUtil.i("NearbyPlacesCursorLoader.loadInBackground", "directory id not set.");
       return null;
     }
-    return NearbyPlacesCursor.newInstance(getContext(), super.loadInBackground(), directoryId);
+    long cacheSourceId = getCacheSourceId(getContext());
+    Rows rows = cache.get(cacheSourceId, query);
+    if (rows != null) {
+      return NearbyPlacesCursor.newInstance(getContext(), rows.newCursor(), directoryId);
+    }
+    Cursor cursor = super.loadInBackground();
+    if (cursor != null) {
+      cache.put(cacheSourceId, query, Rows.fromCursor(cursor), cursor.getCount());
+      cursor.moveToPosition(-1);
+    }
+    return NearbyPlacesCursor.newInstance(getContext(), cursor, directoryId);
+  }
+
+  /** Returns the cache source id of the location the device last reported, rounded to a cell. */
+  @SuppressWarnings("missingPermission")
+  private static long getCacheSourceId(Context context) {
+    if (!PermissionsUtil.hasLocationPermissions(context)) {
+      return CACHE_SOURCE_ID_NO_PERMISSION;
+    }
+    Location location =
+        context
+            .getSystemService(LocationManager.class)
+            .getLastKnownLocation(LocationManager.PASSIVE_PROVIDER);
+    if (location == null) {
+      return CACHE_SOURCE_ID_NO_LOCATION;
+    }
+    long latitudeCell = Math.round((location.getLatitude() + 90) * CELLS_PER_DEGREE);
+    long longitudeCell = Math.round((location.getLongitude() + 180) * CELLS_PER_DEGREE);
+    return CACHE_SOURCE_ID_NO_LOCATION
+        + 1
+        + latitudeCell * (360 * CELLS_PER_DEGREE + 1)
+        + longitudeCell;
   }
 
   private static Uri getContentUri(Context context, String query) {
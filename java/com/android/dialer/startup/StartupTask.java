@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.startup;
+
+import android.content.Context;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableSet;
+
+/** A piece of work done when the application starts, run by {@link StartupTaskRunner}. */
+@AutoValue
+public abstract class StartupTask {
+
+  /** The work of a task. */
+  public interface Action {
+    void run(Context appContext);
+  }
+
+  /** Name of the task, unique among the tasks of a runner. Used in the metrics event names. */
+  public abstract String name();
+
+  /** The names of the tasks which must be done before this one is run. */
+  public abstract ImmutableSet<String> dependencies();
+
+  /**
+   * Whether the task must be done before the first frame is drawn. Other tasks are deferred until
+   * then.
+   */
+  public abstract boolean neededForFirstFrame();
+
+  /**
+   * Whether a deferred task must run on the main thread, e.g. because it shares state with code
+   * running there. Other deferred tasks run on the background executor.
+   */
+  public abstract boolean mainThreadOnly();
+
+  abstract Action action();
+
+  /**
+   * Creates an instance of {@link Builder}.
+   *
+   * <p>Unless otherwise set, the task has no dependencies and is deferred to the background.
+   */
+  public static Builder builder(String name, Action action) {
+    return new AutoValue_StartupTask.Builder()
+        .setName(name)
+        .setAction(action)
+        .setDependencies(ImmutableSet.of())
+        .setNeededForFirstFrame(false)
+        .setMainThreadOnly(false);
+  }
+
+  /** Creates instances of {@link StartupTask}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+
+    abstract Builder setName(String name);
+
+    abstract Builder setAction(Action action);
+
+    public abstract Builder setDependencies(ImmutableSet<String> names);
+
+    public abstract Builder setNeededForFirstFrame(boolean isNeededForFirstFrame);
+
+    public abstract Builder setMainThreadOnly(boolean isMainThreadOnly);
+
+    public abstract StartupTask build();
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.dialer.startup;
+
+import android.app.Activity;
+import android.app.Application;
+import android.app.Application.ActivityLifecycleCallbacks;
+import android.content.Context;
+import android.os.Bundle;
+import android.support.annotation.MainThread;
+import android.util.ArrayMap;
+import android.view.View;
+import android.view.ViewTreeObserver.OnDrawListener;
+import com.android.dialer.common.Assert;
+import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
+import com.android.dialer.common.concurrent.ThreadUtil;
+import com.android.dialer.metrics.Metrics;
+import com.android.dialer.metrics.MetricsComponent;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the {@link StartupTask}s of the application in the order of their dependencies.
+ *
+ * <p>The tasks needed for the first frame are run right away on the main thread. The others are
+ * deferred until the first frame has been drawn, or until {@link #FIRST_DRAW_TIMEOUT_MILLIS} if no
+ * activity is drawn, e.g. when the application is started for an incoming call. Each deferred task
+ * is then run as soon as its dependencies are done.
+ *
+ * <p>The time taken by each task is recorded as {@link Metrics#STARTUP_TASK_TEMPLATE} with the
+ * event name of the runner, e.g. "Application.onCreate.CallLogFramework".
+ */
+public final class StartupTaskRunner {
+
+  private static final long FIRST_DRAW_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+  private final Context appContext;
+  private final String eventName;
+  private final ImmutableList<StartupTask> tasks;
+
+  private boolean deferredTasksStarted;
+
+  /**
+   * @param eventName the metrics event the tasks are part of, e.g. {@link
+   *     Metrics#APPLICATION_ON_CREATE_EVENT_NAME}
+   * @param tasks the tasks, in any order. Tasks needed for the first frame may only depend on tasks
+   *     which are also needed for it.
+   */
+  public StartupTaskRunner(Context context, String eventName, List<StartupTask> tasks) {
+    this.appContext = context.getApplicationContext();
+    this.eventName = eventName;
+    this.tasks = sortByDependencies(tasks);
+  }
+
+  /** Runs the tasks needed for the first frame. */
+  @MainThread
+  public void runTasksNeededForFirstFrame() {
+    Assert.isMainThread();
+    for (StartupTask task : tasks) {
+      if (task.neededForFirstFrame()) {
+        runTask(task);
+      }
+    }
+  }
+
+  /** Runs the other tasks once the first activity started by {@code application} is drawn. */
+  @MainThread
+  public void runDeferredTasksAfterFirstDraw(Application application) {
+    Assert.isMainThread();
+    application.registerActivityLifecycleCallbacks(
+        new ActivityLifecycleCallbacks() {
+          @Override
+          public void onActivityCreated(Activity activity, Bundle savedInstanceState) {}
+
+          @Override
+          public void onActivityStarted(Activity activity) {}
+
+          @Override
+          public void onActivityResumed(Activity activity) {
+            // The first frame is drawn after the activity is resumed.
+            application.unregisterActivityLifecycleCallbacks(this);
+            runDeferredTasksAfterFirstDraw(activity);
+          }
+
+          @Override
+          public void onActivityPaused(Activity activity) {}
+
+          @Override
+          public void onActivityStopped(Activity activity) {}
+
+          @Override
+          public void onActivitySaveInstanceState(Activity activity, Bundle outState) {}
+
+          @Override
+          public void onActivityDestroyed(Activity activity) {}
+        });
+    ThreadUtil.postDelayedOnUiThread(this::runDeferredTasks, FIRST_DRAW_TIMEOUT_MILLIS);
+  }
+
+  /** Runs the other tasks once {@code activity} is drawn. */
+  @MainThread
+  private void runDeferredTasksAfterFirstDraw(Activity activity) {
+    Assert.isMainThread();
+    View decorView = activity.getWindow().getDecorView();
+    decorView
+        .getViewTreeObserver()
+        .addOnDrawListener(
+            new OnDrawListener() {
+              private boolean isFirstDraw = true;
+
+              @Override
+              public void onDraw() {
+                if (!isFirstDraw) {
+                  return;
+                }
+                isFirstDraw = false;
+                OnDrawListener listener = this;
+                // Draw listeners can't be removed while they are dispatched.
+                ThreadUtil.postOnUiThread(
+                    () -> {
+                      decorView.getViewTreeObserver().removeOnDrawListener(listener);
+                      runDeferredTasks();
+                    });
+              }
+            });
+    ThreadUtil.postDelayedOnUiThread(this::runDeferredTasks, FIRST_DRAW_TIMEOUT_MILLIS);
+  }
+
+  @MainThread
+  private void runDeferredTasks() {
+    if (deferredTasksStarted) {
+      return;
+    }
+    deferredTasksStarted = true;
+    Map<String, ListenableFuture<Void>> futures = new ArrayMap<>();
+    for (StartupTask task : tasks) {
+      if (task.neededForFirstFrame()) {
+        continue;
+      }
+      List<ListenableFuture<Void>> dependencies = new ArrayList<>();
+      for (String dependency : task.dependencies()) {
+        if (futures.containsKey(dependency)) {
+          dependencies.add(futures.get(dependency));
+        }
+      }
+      ListenableFuture<Void> future =
+          Futures.whenAllSucceed(dependencies)
+              .call(
+                  () -> {
+                    runTask(task);
+                    return null;
+                  },
+                  task.mainThreadOnly()
+                      ? DialerExecutorComponent.get(appContext).uiExecutor()
+                      : DialerExecutorComponent.get(appContext).backgroundExecutor());
+      Futures.addCallback(
+          future,
+          new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void unused) {}
+
+            @Override
+            public void onFailure(Throwable throwable) {
+              // A task which failed also fails the tasks depending on it, without running them.
+              LogUtil.e("StartupTaskRunner.runDeferredTasks", task.name() + " not done", throwable);
+            }
+          },
+          MoreExecutors.directExecutor());
+      futures.put(task.name(), future);
+    }
+  }
+
+  private void runTask(StartupTask task) {
+    LogUtil.i("StartupTaskRunner.runTask", "running %s", task.name());
+    Metrics metrics = MetricsComponent.get(appContext).metrics();
+    Integer timerId = metrics.startUnnamedTimer();
+    try {
+      task.action().run(appContext);
+    } finally {
+      if (timerId != null) {
+        metrics.stopUnnamedTimer(
+            timerId,
+            String.format(Locale.US, Metrics.STARTUP_TASK_TEMPLATE, eventName, task.name()));
+      }
+    }
+  }
+
+  /** Returns {@code tasks} ordered so that every task comes after its dependencies. */
+  private static ImmutableList<StartupTask> sortByDependencies(List<StartupTask> tasks) {
+    Map<String, StartupTask> tasksByName = new ArrayMap<>();
+    for (StartupTask task : tasks) {
+      Assert.checkArgument(
+          tasksByName.put(task.name(), task) == null, "duplicate task %s", task.name());
+    }
+    ImmutableList.Builder<StartupTask> sorted = ImmutableList.builder();
+    Map<String, Boolean> visited = new ArrayMap<>();
+    for (StartupTask task : tasks) {
+      visit(task, tasksByName, visited, sorted);
+    }
+    return sorted.build();
+  }
+
+  /**
+   * Adds {@code task} to {@code sorted} after its dependencies. {@code visited} maps the tasks
+   * being visited to false and the tasks added to true.
+   */
+  private static void visit(
+      StartupTask task,
+      Map<String, StartupTask> tasksByName,
+      Map<String, Boolean> visited,
+      ImmutableList.Builder<StartupTask> sorted) {
+    Boolean added = visited.get(task.name());
+    if (added != null) {
+      Assert.checkArgument(added, "dependency cycle through %s", task.name());
+      return;
+    }
+    visited.put(task.name(), false);
+    for (String name : task.dependencies()) {
+      StartupTask dependency =
+          Assert.isNotNull(tasksByName.get(name), "unknown dependency %s of %s", name, task.name());
+      Assert.checkArgument(
+          !task.neededForFirstFrame() || dependency.neededForFirstFrame(),
+          "%s is needed for the first frame but depends on %s",
+          task.name(),
+          name);
+      visit(dependency, tasksByName, visited, sorted);
+    }
+    visited.put(task.name(), true);
+    sorted.add(task);
+  }
+}
@@ -28,6 +28,8 @@ import android.support.annotation.Nullable;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.strictmode.StrictModeUtils;
+import com.android.voicemail.ProgressiveVoicemailDataSource;
+import com.android.voicemail.VoicemailDownloads.Download;
 import java.io.IOException;
 
 /** A wrapper around {@link MediaPlayer} */
@@ -50,6 +52,15 @@ public class NewVoicemailMediaPlayer {
   // TODO(uabdullah): Consider removing the StrictModeUtils.bypass (a bug)
   public void prepareMediaPlayerAndPlayVoicemailWhenReady(Context context, Uri uri)
       throws IOException {
+    prepareMediaPlayerAndPlayVoicemailWhenReady(context, uri, null);
+  }
+
+  /**
+   * Like {@link #prepareMediaPlayerAndPlayVoicemailWhenReady(Context, Uri)}, but reads the content
+   * through a {@link ProgressiveVoicemailDataSource} while {@code download} is still running.
+   */
+  public void prepareMediaPlayerAndPlayVoicemailWhenReady(
+      Context context, Uri uri, @Nullable Download download) throws IOException {
     Assert.checkArgument(uri != null, "Media player cannot play a null uri");
     LogUtil.i(
         "NewVoicemailMediaPlayer",
@@ -63,7 +74,12 @@ public class NewVoicemailMediaPlayer {
       StrictModeUtils.bypass(
           () -> {
             try {
-              mediaPlayer.setDataSource(context, uri);
+              if (download != null) {
+                mediaPlayer.setDataSource(
+                    ProgressiveVoicemailDataSource.open(context, uri, download));
+              } else {
+                mediaPlayer.setDataSource(context, uri);
+              }
               setAudioManagerToNonSpeakerMode(context);
             } catch (IOException e) {
               LogUtil.i(
@@ -49,6 +49,8 @@ import com.android.dialer.precall.PreCall;
 import com.android.dialer.telecom.TelecomUtil;
 import com.android.dialer.voicemail.listui.NewVoicemailViewHolder.NewVoicemailViewHolderListener;
 import com.android.dialer.voicemail.model.VoicemailEntry;
+import com.android.voicemail.VoicemailDownloads;
+import com.android.voicemail.VoicemailDownloads.Download;
 import java.util.Locale;
 
 /**
@@ -84,6 +86,12 @@ public final class NewVoicemailMediaPlayerView extends LinearLayout {
     inflater.inflate(R.layout.new_voicemail_media_player_layout, this);
   }
 
+  @Override
+  protected void onDetachedFromWindow() {
+    super.onDetachedFromWindow();
+    VoicemailDownloads.removeListener(downloadListener);
+  }
+
   @Override
   protected void onFinishInflate() {
     super.onFinishInflate();
@@ -123,7 +131,9 @@ public final class NewVoicemailMediaPlayerView extends LinearLayout {
         "NewVoicemailMediaPlayer.reset",
         "the uri for this is " + voicemailUri + " and number is " + numberVoicemailFrom);
     voicemailUri = null;
+    VoicemailDownloads.removeListener(downloadListener);
     voicemailLoadingStatusView.setVisibility(GONE);
+    voicemailLoadingStatusView.setText(R.string.voicemail_media_player_state);
     numberVoicemailFrom = null;
     phoneAccountId = null;
     phoneAccountComponentName = null;
@@ -422,10 +432,53 @@ public final class NewVoicemailMediaPlayerView extends LinearLayout {
       // voicemail, after it's downloaded.
       mediaPlayer.setVoicemailRequestedToDownload(uri);
       voicemailLoadingStatusView.setVisibility(VISIBLE);
+      VoicemailDownloads.addListener(downloadListener);
       sendIntentToDownloadVoicemail(uri);
     }
   }
 
+  /**
+   * Shows the progress of the voicemail requested to download, and starts playing it once enough
+   * of it was written. A completed download is played by {@link
+   * NewVoicemailAdapter#checkAndPlayVoicemail()} instead.
+   */
+  private final VoicemailDownloads.Listener downloadListener =
+      new VoicemailDownloads.Listener() {
+        @Override
+        public void onDownloadProgress(Uri uri, Download download) {
+          if (!uri.equals(voicemailUri)) {
+            return;
+          }
+          int percent = download.getProgressPercent();
+          if (percent >= 0) {
+            voicemailLoadingStatusView.setText(
+                getContext().getString(R.string.voicemail_media_player_state_progress, percent));
+          }
+          if (download.isFinished()) {
+            VoicemailDownloads.removeListener(this);
+            return;
+          }
+          if (download.isPlayable()
+              && mediaPlayer != null
+              && uri.equals(mediaPlayer.getVoicemailRequestedToDownload())) {
+            LogUtil.i(
+                "NewVoicemailMediaPlayer.onDownloadProgress",
+                "playing after %d bytes",
+                download.getBytesWritten());
+            try {
+              // Preparing clears the download request, so the completed download isn't played
+              // again.
+              mediaPlayer.prepareMediaPlayerAndPlayVoicemailWhenReady(getContext(), uri, download);
+            } catch (Exception e) {
+              LogUtil.e(
+                  "NewVoicemailMediaPlayer.onDownloadProgress",
+                  "Exception when preparing the partial download of uri: " + uri,
+                  e);
+            }
+          }
+        }
+      };
+
   private void sendIntentToDownloadVoicemail(Uri uri) {
     LogUtil.i("NewVoicemailMediaPlayer.sendIntentToDownloadVoicemail", "uri:%s", uri.toString());
 
@@ -21,6 +21,7 @@ import com.android.incallui.DialpadPresenter.DialpadUi;
 import com.android.incallui.baseui.Presenter;
 import com.android.incallui.baseui.Ui;
 import com.android.incallui.call.CallList;
+import com.android.incallui.call.CallListChanges;
 import com.android.incallui.call.DialerCall;
 import com.android.incallui.call.TelecomAdapter;
 
@@ -43,6 +44,11 @@ public class DialpadPresenter extends Presenter<DialpadUi>
     InCallPresenter.getInstance().removeListener(this);
   }
 
+  @Override
+  public int getInterestedChanges() {
+    return CallListChanges.Type.STATE;
+  }
+
   @Override
   public void onStateChange(
       InCallPresenter.InCallState oldState,
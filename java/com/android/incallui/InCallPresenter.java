@@ -63,6 +63,7 @@ import com.android.incallui.InCallOrientationEventListener.ScreenOrientation;
 import com.android.incallui.answerproximitysensor.PseudoScreenState;
 import com.android.incallui.audiomode.AudioModeProvider;
 import com.android.incallui.call.CallList;
+import com.android.incallui.call.CallListChanges;
 import com.android.incallui.call.DialerCall;
 import com.android.incallui.call.ExternalCallList;
 import com.android.incallui.call.TelecomAdapter;
@@ -112,6 +113,14 @@ public class InCallPresenter implements CallList.Listener, AudioModeProvider.Aud
   private final Set<InCallStateListener> listeners =
       Collections.newSetFromMap(new ConcurrentHashMap<InCallStateListener, Boolean>(8, 0.9f, 1));
 
+  /** State listeners added since the last dispatch, which get the next one regardless of filter. */
+  private final Set<InCallStateListener> listenersAwaitingFirstUpdate =
+      Collections.newSetFromMap(new ConcurrentHashMap<InCallStateListener, Boolean>(8, 0.9f, 1));
+
+  private final CallListChanges.Tracker callListChangeTracker = new CallListChanges.Tracker();
+  private int deliveredStateChangeCount;
+  private int suppressedStateChangeCount;
+
   private final List<IncomingCallListener> incomingCallListeners = new CopyOnWriteArrayList<>();
   private final Set<InCallDetailsListener> detailsListeners =
       Collections.newSetFromMap(new ConcurrentHashMap<InCallDetailsListener, Boolean>(8, 0.9f, 1));
@@ -881,14 +890,41 @@ public class InCallPresenter implements CallList.Listener, AudioModeProvider.Aud
       onForegroundCallChanged(primary);
     }
 
+    @CallListChanges.Type
+    int changes =
+        callListChangeTracker.update(
+            callList, AudioModeProvider.getInstance().getAudioState().getRoute());
+    if (oldState != newState) {
+      changes |= CallListChanges.Type.STATE;
+    }
+
     // notify listeners of new state
     for (InCallStateListener listener : listeners) {
+      // Removed one at a time, as a listener added during dispatch may not be visited.
+      boolean awaitingFirstUpdate = listenersAwaitingFirstUpdate.remove(listener);
+      if ((listener.getInterestedChanges() & changes) == 0 && !awaitingFirstUpdate) {
+        suppressedStateChangeCount++;
+        continue;
+      }
+      deliveredStateChangeCount++;
       LogUtil.d(
           "InCallPresenter.onCallListChange",
           "Notify " + listener + " of state " + inCallState.toString());
       listener.onStateChange(oldState, inCallState, callList);
     }
 
+    if (newState == InCallState.NO_CALLS && oldState != InCallState.NO_CALLS) {
+      LogUtil.i(
+          "InCallPresenter.onCallListChange",
+          "state changes delivered: %d, suppressed: %d, call updates coalesced: %d",
+          deliveredStateChangeCount,
+          suppressedStateChangeCount,
+          callList.getAndResetCoalescedUpdateCount());
+      deliveredStateChangeCount = 0;
+      suppressedStateChangeCount = 0;
+      callListChangeTracker.reset();
+    }
+
     if (isActivityStarted()) {
       final boolean hasCall =
           callList.getActiveOrBackgroundCall() != null || callList.getOutgoingCall() != null;
@@ -1116,12 +1152,15 @@ public class InCallPresenter implements CallList.Listener, AudioModeProvider.Aud
 
   public void addListener(InCallStateListener listener) {
     Objects.requireNonNull(listener);
-    listeners.add(listener);
+    if (listeners.add(listener)) {
+      listenersAwaitingFirstUpdate.add(listener);
+    }
   }
 
   public void removeListener(InCallStateListener listener) {
     if (listener != null) {
       listeners.remove(listener);
+      listenersAwaitingFirstUpdate.remove(listener);
     }
   }
 
@@ -1947,6 +1986,15 @@ public class InCallPresenter implements CallList.Listener, AudioModeProvider.Aud
 
     // TODO: Enhance state to contain the call objects instead of passing CallList
     void onStateChange(InCallState oldState, InCallState newState, CallList callList);
+
+    /**
+     * Returns the {@link CallListChanges.Type}s this listener depends on. {@link #onStateChange}
+     * is skipped for updates that changed none of them.
+     */
+    @CallListChanges.Type
+    default int getInterestedChanges() {
+      return CallListChanges.ALL;
+    }
   }
 
   public interface IncomingCallListener {
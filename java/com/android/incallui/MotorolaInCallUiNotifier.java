@@ -26,6 +26,7 @@ import com.android.incallui.InCallPresenter.InCallState;
 import com.android.incallui.InCallPresenter.InCallStateListener;
 import com.android.incallui.InCallPresenter.InCallUiListener;
 import com.android.incallui.call.CallList;
+import com.android.incallui.call.CallListChanges;
 
 /**
  * Responsible for broadcasting the Intent INCOMING_CALL_VISIBILITY_CHANGED so other processes could
@@ -56,6 +57,11 @@ public class MotorolaInCallUiNotifier implements InCallUiListener, InCallStateLi
     }
   }
 
+  @Override
+  public int getInterestedChanges() {
+    return CallListChanges.Type.STATE;
+  }
+
   @Override
   public void onStateChange(InCallState oldState, InCallState newState, CallList callList) {
     if (oldState != null
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.incallui;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.util.ArraySet;
+import android.util.LruCache;
+import com.android.dialer.common.Assert;
+import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.concurrent.DialerExecutorComponent;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Renders the large icons of the in-call notification on a background thread and keeps the most
+ * recent ones, so that updating the notification doesn't redraw the contact photo every time.
+ */
+final class NotificationLargeIconCache {
+
+  /** Enough for the calls of a conference or a few call waiting swaps. */
+  private static final int MAX_ICONS = 8;
+
+  private final Context context;
+  private final LruCache<String, Bitmap> icons = new LruCache<>(MAX_ICONS);
+  private final Set<String> pendingKeys = new ArraySet<>();
+
+  NotificationLargeIconCache(Context context) {
+    this.context = context;
+  }
+
+  @MainThread
+  @Nullable
+  Bitmap get(String key) {
+    Assert.isMainThread();
+    return icons.get(key);
+  }
+
+  /**
+   * Runs {@code renderer} on a background thread unless the icon for {@code key} is already being
+   * rendered. Once the icon is cached {@code onRendered} is run on the main thread.
+   */
+  @MainThread
+  void render(String key, Callable<Bitmap> renderer, Runnable onRendered) {
+    Assert.isMainThread();
+    if (!pendingKeys.add(key)) {
+      return;
+    }
+    Futures.addCallback(
+        DialerExecutorComponent.get(context).backgroundExecutor().submit(renderer),
+        new FutureCallback<Bitmap>() {
+          @Override
+          public void onSuccess(@Nullable Bitmap icon) {
+            pendingKeys.remove(key);
+            if (icon == null) {
+              LogUtil.w("NotificationLargeIconCache.onSuccess", "no icon rendered");
+              return;
+            }
+            icons.put(key, icon);
+            onRendered.run();
+          }
+
+          @Override
+          public void onFailure(Throwable throwable) {
+            pendingKeys.remove(key);
+            LogUtil.e("NotificationLargeIconCache.onFailure", "failed to render icon", throwable);
+          }
+        },
+        DialerExecutorComponent.get(context).uiExecutor());
+  }
+}
@@ -30,6 +30,7 @@ import com.android.incallui.InCallPresenter.InCallStateListener;
 import com.android.incallui.audiomode.AudioModeProvider;
 import com.android.incallui.audiomode.AudioModeProvider.AudioModeListener;
 import com.android.incallui.call.CallList;
+import com.android.incallui.call.CallListChanges;
 import com.android.incallui.call.DialerCall;
 
 /**
@@ -99,6 +100,13 @@ public class ProximitySensor
     updateProximitySensorMode();
   }
 
+  @Override
+  public int getInterestedChanges() {
+    return CallListChanges.Type.STATE
+        | CallListChanges.Type.CAPABILITIES
+        | CallListChanges.Type.VIDEO;
+  }
+
   /** Called to keep track of the overall UI state. */
   @Override
   public void onStateChange(InCallState oldState, InCallState newState, CallList callList) {
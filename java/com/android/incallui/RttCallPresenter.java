@@ -23,10 +23,10 @@ import android.os.Looper;
 import android.telecom.Call.RttCall;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.common.concurrent.ThreadUtil;
-import com.android.dialer.rtt.RttTranscript;
 import com.android.incallui.InCallPresenter.InCallState;
 import com.android.incallui.InCallPresenter.InCallStateListener;
 import com.android.incallui.call.CallList;
+import com.android.incallui.call.CallListChanges;
 import com.android.incallui.call.DialerCall;
 import com.android.incallui.rtt.protocol.RttCallScreen;
 import com.android.incallui.rtt.protocol.RttCallScreenDelegate;
@@ -88,15 +88,16 @@ public class RttCallPresenter implements RttCallScreenDelegate, InCallStateListe
 
   private void saveTranscript(DialerCall dialerCall) {
     LogUtil.enterBlock("RttCallPresenter.saveTranscript");
-    RttTranscript.Builder builder = RttTranscript.newBuilder();
-    builder
-
-        .setId(String.valueOf(dialerCall.getCreationTimeMillis()))
+    int firstUnsavedIndex = rttCallScreen.getFirstUnsavedRttMessageIndex();
+    dialerCall.updateRttTranscript(
+        firstUnsavedIndex, rttCallScreen.getRttTranscriptMessageList(firstUnsavedIndex));
+    rttCallScreen.onRttTranscriptSaved();
+  }
 
-        .setTimestamp(dialerCall.getCreationTimeMillis())
-        .setNumber(dialerCall.getNumber())
-        .addAllMessages(rttCallScreen.getRttTranscriptMessageList());
-    dialerCall.setRttTranscript(builder.build());
+  @Override
+  public int getInterestedChanges() {
+    // RTT becoming active shows up as a property change.
+    return CallListChanges.Type.STATE | CallListChanges.Type.CAPABILITIES;
   }
 
   @Override
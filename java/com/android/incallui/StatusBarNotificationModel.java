@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.incallui;
+
+import android.net.Uri;
+import android.support.annotation.Nullable;
+import android.telecom.CallAudioState;
+import com.google.auto.value.AutoValue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The data shown by the in-call notification. {@link StatusBarNotifier} only posts a notification
+ * when the model differs from the one it posted last.
+ */
+@AutoValue
+abstract class StatusBarNotificationModel {
+
+  abstract int iconResId();
+
+  abstract String content();
+
+  /** Identifies the contact photo or letter tile the large icon is rendered from. */
+  @Nullable
+  abstract String largeIconKey();
+
+  /** Whether the large icon for {@link #largeIconKey()} has been rendered and can be shown. */
+  abstract boolean isLargeIconReady();
+
+  @Nullable
+  abstract String contentTitle();
+
+  abstract int callState();
+
+  abstract int videoState();
+
+  abstract int notificationType();
+
+  @Nullable
+  abstract Uri ringtone();
+
+  @Nullable
+  abstract CallAudioState callAudioState();
+
+  static Builder builder() {
+    return new AutoValue_StatusBarNotificationModel.Builder();
+  }
+
+  /**
+   * Returns the names of the fields that differ from {@code previous}, or all fields if there is no
+   * previous model.
+   */
+  List<String> changedFields(@Nullable StatusBarNotificationModel previous) {
+    List<String> changed = new ArrayList<>();
+    if (previous == null || iconResId() != previous.iconResId()) {
+      changed.add("icon");
+    }
+    if (previous == null || !content().equals(previous.content())) {
+      changed.add("content");
+    }
+    if (previous == null
+        || !Objects.equals(largeIconKey(), previous.largeIconKey())
+        || isLargeIconReady() != previous.isLargeIconReady()) {
+      changed.add("largeIcon");
+    }
+    if (previous == null || !Objects.equals(contentTitle(), previous.contentTitle())) {
+      changed.add("title");
+    }
+    if (previous == null || callState() != previous.callState()) {
+      changed.add("state");
+    }
+    if (previous == null || videoState() != previous.videoState()) {
+      changed.add("videoState");
+    }
+    if (previous == null || notificationType() != previous.notificationType()) {
+      changed.add("type");
+    }
+    if (previous == null || !Objects.equals(ringtone(), previous.ringtone())) {
+      changed.add("ringtone");
+    }
+    if (previous == null || !Objects.equals(callAudioState(), previous.callAudioState())) {
+      changed.add("audioState");
+    }
+    return changed;
+  }
+
+  /**
+   * Whether the only differences from {@code previous} are ones that may be posted with a delay,
+   * such as audio route or text updates of an ongoing call.
+   */
+  boolean isMinorUpdateOf(@Nullable StatusBarNotificationModel previous) {
+    return previous != null
+        && iconResId() == previous.iconResId()
+        && Objects.equals(largeIconKey(), previous.largeIconKey())
+        && isLargeIconReady() == previous.isLargeIconReady()
+        && Objects.equals(contentTitle(), previous.contentTitle())
+        && callState() == previous.callState()
+        && videoState() == previous.videoState()
+        && notificationType() == previous.notificationType()
+        && Objects.equals(ringtone(), previous.ringtone());
+  }
+
+  @AutoValue.Builder
+  abstract static class Builder {
+    abstract Builder setIconResId(int iconResId);
+
+    abstract Builder setContent(String content);
+
+    abstract Builder setLargeIconKey(@Nullable String largeIconKey);
+
+    abstract Builder setIsLargeIconReady(boolean isLargeIconReady);
+
+    abstract Builder setContentTitle(@Nullable String contentTitle);
+
+    abstract Builder setCallState(int callState);
+
+    abstract Builder setVideoState(int videoState);
+
+    abstract Builder setNotificationType(int notificationType);
+
+    abstract Builder setRingtone(@Nullable Uri ringtone);
+
+    abstract Builder setCallAudioState(@Nullable CallAudioState callAudioState);
+
+    abstract StatusBarNotificationModel build();
+  }
+}
@@ -40,12 +40,12 @@ import android.content.Intent;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.Drawable;
 import android.graphics.drawable.Icon;
 import android.media.AudioAttributes;
 import android.net.Uri;
 import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
+import android.os.SystemClock;
 import android.os.Trace;
 import android.support.annotation.ColorRes;
 import android.support.annotation.NonNull;
@@ -53,12 +53,12 @@ import android.support.annotation.Nullable;
 import android.support.annotation.RequiresPermission;
 import android.support.annotation.StringRes;
 import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
 import android.support.v4.os.BuildCompat;
 import android.telecom.Call.Details;
 import android.telecom.CallAudioState;
 import android.telecom.PhoneAccount;
 import android.telecom.TelecomManager;
-import android.telecom.VideoProfile;
 import android.text.BidiFormatter;
 import android.text.Spannable;
 import android.text.SpannableString;
@@ -70,6 +70,7 @@ import com.android.contacts.common.ContactsUtils;
 import com.android.contacts.common.ContactsUtils.UserType;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.LogUtil;
+import com.android.dialer.common.concurrent.ThreadUtil;
 import com.android.dialer.configprovider.ConfigProviderComponent;
 import com.android.dialer.contactphoto.BitmapUtil;
 import com.android.dialer.contacts.ContactsComponent;
@@ -98,7 +99,10 @@ import com.android.incallui.ringtone.ToneGeneratorFactory;
 import com.android.incallui.speakeasy.SpeakEasyComponent;
 import com.android.incallui.videotech.utils.SessionModificationState;
 import com.google.common.base.Optional;
-import java.util.Objects;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
 
 /** This class adds Notifications to the status bar for the in-call experience. */
 public class StatusBarNotifier
@@ -121,20 +125,36 @@ public class StatusBarNotifier
 
   private static final long[] VIBRATE_PATTERN = new long[] {0, 1000, 1000};
 
+  /**
+   * Minimum time between two posts of the ongoing call notification when only the audio route or
+   * text changed. Bursts of such changes are folded into a single post.
+   */
+  private static final long MIN_ONGOING_UPDATE_INTERVAL_MILLIS = 500;
+
   private final Context context;
   private final ContactInfoCache contactInfoCache;
   private final DialerRingtoneManager dialerRingtoneManager;
   private int currentNotification = NOTIFICATION_NONE;
-  private int callState = DialerCallState.INVALID;
-  private int videoState = VideoProfile.STATE_AUDIO_ONLY;
-  private int savedIcon = 0;
-  private String savedContent = null;
-  private Bitmap savedLargeIcon;
-  private String savedContentTitle;
-  private CallAudioState savedCallAudioState;
-  private Uri ringtone;
+  @Nullable private StatusBarNotificationModel postedModel;
+  private long lastPostTimeMillis;
+  private boolean isDeferredUpdatePending;
+  private final NotificationLargeIconCache largeIconCache;
+
+  /**
+   * Ids of the photos in {@link #largeIconCache}, distinct for every photo unlike identity hash
+   * codes. Bitmaps don't override equals(), so they are compared by reference.
+   */
+  private final Map<Bitmap, Integer> largeIconPhotoIds = new WeakHashMap<>();
+
+  private int nextLargeIconPhotoId;
   private StatusBarCallListener statusBarCallListener;
 
+  private final Runnable deferredUpdateRunnable =
+      () -> {
+        isDeferredUpdatePending = false;
+        updateNotification();
+      };
+
   public StatusBarNotifier(@NonNull Context context, @NonNull ContactInfoCache contactInfoCache) {
     Trace.beginSection("StatusBarNotifier.Constructor");
     this.context = Assert.isNotNull(context);
@@ -144,6 +164,7 @@ public class StatusBarNotifier
             new InCallTonePlayer(new ToneGeneratorFactory(), new PausableExecutorImpl()),
             CallList.getInstance());
     currentNotification = NOTIFICATION_NONE;
+    largeIconCache = new NotificationLargeIconCache(context);
     Trace.endSection();
   }
 
@@ -227,6 +248,15 @@ public class StatusBarNotifier
       TelecomAdapter.getInstance().stopForegroundNotification();
       currentNotification = NOTIFICATION_NONE;
     }
+    cancelDeferredUpdate();
+    postedModel = null;
+  }
+
+  private void cancelDeferredUpdate() {
+    if (isDeferredUpdatePending) {
+      ThreadUtil.getUiThreadHandler().removeCallbacks(deferredUpdateRunnable);
+      isDeferredUpdatePending = false;
+    }
   }
 
   /**
@@ -285,7 +315,16 @@ public class StatusBarNotifier
     Trace.beginSection("read icon and strings");
     // Check if data has changed; if nothing is different, don't issue another notification.
     final int iconResId = getIconToDisplay(call);
-    Bitmap largeIcon = getLargeIconToDisplay(context, contactInfo, call);
+    final String largeIconKey = getLargeIconKey(contactInfo, call);
+    Bitmap largeIcon = null;
+    if (largeIconKey != null) {
+      largeIcon = largeIconCache.get(largeIconKey);
+      if (largeIcon == null) {
+        // Post without the icon for now, the notification is updated once it's rendered.
+        largeIconCache.render(
+            largeIconKey, getLargeIconRenderer(contactInfo, call), this::updateNotification);
+      }
+    }
     final CharSequence content = getContentString(call, contactInfo.userType);
     final String contentTitle = getContentTitle(contactInfo, call);
     Trace.endSection();
@@ -316,24 +355,24 @@ public class StatusBarNotifier
     }
     Trace.endSection(); // prepare work
 
-    if (!checkForChangeAndSaveData(
-        iconResId,
-        content.toString(),
-        largeIcon,
-        contentTitle,
-        callState,
-        call.getVideoState(),
-        notificationType,
-        contactInfo.contactRingtoneUri,
-        callAudioState)) {
+    StatusBarNotificationModel model =
+        StatusBarNotificationModel.builder()
+            .setIconResId(iconResId)
+            .setContent(content.toString())
+            .setLargeIconKey(largeIconKey)
+            .setIsLargeIconReady(largeIcon != null)
+            .setContentTitle(contentTitle)
+            .setCallState(callState)
+            .setVideoState(call.getVideoState())
+            .setNotificationType(notificationType)
+            .setRingtone(contactInfo.contactRingtoneUri)
+            .setCallAudioState(callAudioState)
+            .build();
+    if (!shouldPostNow(model)) {
       Trace.endSection();
       return;
     }
 
-    if (largeIcon != null) {
-      largeIcon = getRoundedIcon(largeIcon);
-    }
-
     // This builder is used for the notification shown when the device is locked and the user
     // has set their notification settings to 'hide sensitive content'
     // {@see Notification.Builder#setPublicVersion}.
@@ -433,6 +472,8 @@ public class StatusBarNotifier
 
     // If a notification exists, this will only update it.
     TelecomAdapter.getInstance().startForegroundNotification(NOTIFICATION_ID, notification);
+    postedModel = model;
+    lastPostTimeMillis = SystemClock.elapsedRealtime();
 
     Trace.endSection();
     call.getLatencyReport().onNotificationShown();
@@ -476,84 +517,47 @@ public class StatusBarNotifier
   }
 
   /**
-   * Checks the new notification data and compares it against any notification that we are already
-   * displaying. If the data is exactly the same, we return false so that we do not issue a new
-   * notification for the exact same data.
+   * Compares the new notification data against the notification that we are already displaying.
+   * Returns false if the data is exactly the same, so that we do not issue a new notification for
+   * the exact same data, or if only minor fields of the ongoing call notification changed and it
+   * was posted very recently. In the latter case an update is scheduled for when the interval has
+   * passed.
    */
-  private boolean checkForChangeAndSaveData(
-      int icon,
-      String content,
-      Bitmap largeIcon,
-      String contentTitle,
-      int state,
-      int videoState,
-      int notificationType,
-      Uri ringtone,
-      CallAudioState callAudioState) {
-
-    // The two are different:
-    // if new title is not null, it should be different from saved version OR
-    // if new title is null, the saved version should not be null
-    final boolean contentTitleChanged =
-        (contentTitle != null && !contentTitle.equals(savedContentTitle))
-            || (contentTitle == null && savedContentTitle != null);
-
-    boolean largeIconChanged;
-    if (savedLargeIcon == null) {
-      largeIconChanged = largeIcon != null;
-    } else {
-      largeIconChanged = largeIcon == null || !savedLargeIcon.sameAs(largeIcon);
-    }
-
-    // any change means we are definitely updating
-    boolean retval =
-        (savedIcon != icon)
-            || !Objects.equals(savedContent, content)
-            || (callState != state)
-            || (this.videoState != videoState)
-            || largeIconChanged
-            || contentTitleChanged
-            || !Objects.equals(this.ringtone, ringtone)
-            || !Objects.equals(savedCallAudioState, callAudioState);
+  private boolean shouldPostNow(StatusBarNotificationModel model) {
+    List<String> changedFields = model.changedFields(postedModel);
+    LogUtil.d("StatusBarNotifier.shouldPostNow", "data changed: %s", changedFields);
 
-    LogUtil.d(
-        "StatusBarNotifier.checkForChangeAndSaveData",
-        "data changed: icon: %b, content: %b, state: %b, videoState: %b, largeIcon: %b, title: %b,"
-            + "ringtone: %b, audioState: %b, type: %b",
-        (savedIcon != icon),
-        !Objects.equals(savedContent, content),
-        (callState != state),
-        (this.videoState != videoState),
-        largeIconChanged,
-        contentTitleChanged,
-        !Objects.equals(this.ringtone, ringtone),
-        !Objects.equals(savedCallAudioState, callAudioState),
-        currentNotification != notificationType);
     // If we aren't showing a notification right now or the notification type is changing,
     // definitely do an update.
-    if (currentNotification != notificationType) {
+    if (currentNotification != model.notificationType()) {
       if (currentNotification == NOTIFICATION_NONE) {
-        LogUtil.d(
-            "StatusBarNotifier.checkForChangeAndSaveData", "showing notification for first time.");
+        LogUtil.d("StatusBarNotifier.shouldPostNow", "showing notification for first time.");
       }
-      retval = true;
+      cancelDeferredUpdate();
+      return true;
+    }
+    if (changedFields.isEmpty()) {
+      return false;
     }
 
-    savedIcon = icon;
-    savedContent = content;
-    callState = state;
-    this.videoState = videoState;
-    savedLargeIcon = largeIcon;
-    savedContentTitle = contentTitle;
-    this.ringtone = ringtone;
-    savedCallAudioState = callAudioState;
-
-    if (retval) {
-      LogUtil.d(
-          "StatusBarNotifier.checkForChangeAndSaveData", "data changed.  Showing notification");
+    if (model.notificationType() == NOTIFICATION_IN_CALL && model.isMinorUpdateOf(postedModel)) {
+      long sinceLastPostMillis = SystemClock.elapsedRealtime() - lastPostTimeMillis;
+      if (sinceLastPostMillis < MIN_ONGOING_UPDATE_INTERVAL_MILLIS) {
+        if (!isDeferredUpdatePending) {
+          isDeferredUpdatePending = true;
+          ThreadUtil.getUiThreadHandler()
+              .postDelayed(
+                  deferredUpdateRunnable,
+                  MIN_ONGOING_UPDATE_INTERVAL_MILLIS - sinceLastPostMillis);
+        }
+        LogUtil.d("StatusBarNotifier.shouldPostNow", "deferring minor update");
+        return false;
+      }
     }
 
-    return retval;
+    cancelDeferredUpdate();
+    LogUtil.d("StatusBarNotifier.shouldPostNow", "data changed.  Showing notification");
+    return true;
   }
 
   /** Returns the main string to use in the notification. */
@@ -590,44 +594,82 @@ public class StatusBarNotifier
     }
   }
 
-  /** Gets a large icon from the contact info object to display in the notification. */
-  private static Bitmap getLargeIconToDisplay(
-      Context context, ContactCacheEntry contactInfo, DialerCall call) {
-    Trace.beginSection("StatusBarNotifier.getLargeIconToDisplay");
-    Resources resources = context.getResources();
-    Bitmap largeIcon = null;
-    if (contactInfo.photo != null && (contactInfo.photo instanceof BitmapDrawable)) {
-      largeIcon = ((BitmapDrawable) contactInfo.photo).getBitmap();
+  /**
+   * Returns the key identifying the large icon to display in the notification, or null if there is
+   * no large icon. Icons with the same key render to the same bitmap.
+   */
+  @Nullable
+  private String getLargeIconKey(ContactCacheEntry contactInfo, DialerCall call) {
+    if (call.isSpam()) {
+      return "spam";
     }
     if (contactInfo.photo == null) {
-      int width = (int) resources.getDimension(android.R.dimen.notification_large_icon_width);
-      int height = (int) resources.getDimension(android.R.dimen.notification_large_icon_height);
-      @ContactType
-      int contactType =
-          LetterTileDrawable.getContactTypeFromPrimitives(
-              call.isVoiceMailNumber(),
-              call.isSpam(),
-              contactInfo.isBusiness,
-              call.getNumberPresentation(),
-              call.isConferenceCall() && !call.hasProperty(Details.PROPERTY_GENERIC_CONFERENCE));
-      LetterTileDrawable lettertile = new LetterTileDrawable(resources);
-
-      lettertile.setCanonicalDialerLetterTileDetails(
-          contactInfo.namePrimary == null ? contactInfo.number : contactInfo.namePrimary,
-          contactInfo.lookupKey,
-          LetterTileDrawable.SHAPE_CIRCLE,
-          contactType);
-      largeIcon = lettertile.getBitmap(width, height);
+      return "letter_tile:"
+          + getLetterTileContactType(contactInfo, call)
+          + ":"
+          + getLetterTileDisplayName(contactInfo)
+          + ":"
+          + contactInfo.lookupKey;
+    }
+    if (contactInfo.photo instanceof BitmapDrawable) {
+      Bitmap photo = ((BitmapDrawable) contactInfo.photo).getBitmap();
+      if (photo != null) {
+        Integer photoId = largeIconPhotoIds.get(photo);
+        if (photoId == null) {
+          photoId = nextLargeIconPhotoId++;
+          largeIconPhotoIds.put(photo, photoId);
+        }
+        return "photo:" + photoId + ":" + photo.getGenerationId();
+      }
     }
+    return null;
+  }
 
+  /**
+   * Returns a task that renders the rounded large icon for {@link #getLargeIconKey}. Everything
+   * needed from the contact info and call is read up front so the task can run on a background
+   * thread.
+   */
+  private Callable<Bitmap> getLargeIconRenderer(ContactCacheEntry contactInfo, DialerCall call) {
+    Resources resources = context.getResources();
     if (call.isSpam()) {
-      Drawable drawable = resources.getDrawable(R.drawable.blocked_contact, context.getTheme());
-      largeIcon = DrawableConverter.drawableToBitmap(drawable);
+      return () ->
+          getRoundedIcon(
+              DrawableConverter.drawableToBitmap(
+                  resources.getDrawable(R.drawable.blocked_contact, context.getTheme())));
     }
-    Trace.endSection();
-    return largeIcon;
+    if (contactInfo.photo == null) {
+      @ContactType int contactType = getLetterTileContactType(contactInfo, call);
+      String displayName = getLetterTileDisplayName(contactInfo);
+      String lookupKey = contactInfo.lookupKey;
+      return () -> {
+        int width = (int) resources.getDimension(android.R.dimen.notification_large_icon_width);
+        int height = (int) resources.getDimension(android.R.dimen.notification_large_icon_height);
+        LetterTileDrawable lettertile = new LetterTileDrawable(resources);
+        lettertile.setCanonicalDialerLetterTileDetails(
+            displayName, lookupKey, LetterTileDrawable.SHAPE_CIRCLE, contactType);
+        return getRoundedIcon(lettertile.getBitmap(width, height));
+      };
+    }
+    Bitmap photo = ((BitmapDrawable) contactInfo.photo).getBitmap();
+    return () -> getRoundedIcon(photo);
+  }
+
+  @ContactType
+  private static int getLetterTileContactType(ContactCacheEntry contactInfo, DialerCall call) {
+    return LetterTileDrawable.getContactTypeFromPrimitives(
+        call.isVoiceMailNumber(),
+        call.isSpam(),
+        contactInfo.isBusiness,
+        call.getNumberPresentation(),
+        call.isConferenceCall() && !call.hasProperty(Details.PROPERTY_GENERIC_CONFERENCE));
+  }
+
+  private static String getLetterTileDisplayName(ContactCacheEntry contactInfo) {
+    return contactInfo.namePrimary == null ? contactInfo.number : contactInfo.namePrimary;
   }
 
+  @WorkerThread
   private Bitmap getRoundedIcon(Bitmap bitmap) {
     if (bitmap == null) {
       return null;
@@ -27,6 +27,7 @@ import android.telecom.Call;
 import android.telecom.DisconnectCause;
 import android.telecom.PhoneAccount;
 import android.util.ArrayMap;
+import android.view.Choreographer;
 import com.android.dialer.blocking.FilteredNumberAsyncQueryHandler;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.LogUtil;
@@ -85,6 +86,23 @@ public class CallList implements DialerCallDelegate {
       Collections.newSetFromMap(new ConcurrentHashMap<DialerCall, Boolean>(8, 0.9f, 1));
 
   private UiListener uiListeners;
+
+  /** Index of {@link #callById} by state, or null if a call changed since it was built. */
+  @Nullable private CallListSnapshot snapshot;
+
+  /** Whether a coalesced {@link #notifyGenericListeners()} is waiting for the next frame. */
+  private boolean isGenericNotificationPending;
+
+  /** Number of call updates that were folded into an already pending notification. */
+  private int coalescedUpdateCount;
+
+  private final Choreographer.FrameCallback genericNotificationFrameCallback =
+      frameTimeNanos -> {
+        if (isGenericNotificationPending) {
+          notifyGenericListeners();
+        }
+      };
+
   /** Handles the timeout for destroying disconnected calls. */
   private final Handler handler =
       new Handler() {
@@ -335,6 +353,7 @@ public class CallList implements DialerCallDelegate {
       call.unregisterCallback();
       callById.remove(call.getId());
       callByTelecomCall.remove(telecomCall);
+      invalidateSnapshot();
     }
   }
 
@@ -519,20 +538,27 @@ public class CallList implements DialerCallDelegate {
    * this logic to sort by call time.
    */
   public DialerCall getCallWithState(int state, int positionToFind) {
-    DialerCall retval = null;
-    int position = 0;
-    for (DialerCall call : callById.values()) {
-      if (call.getState() == state) {
-        if (position >= positionToFind) {
-          retval = call;
-          break;
-        } else {
-          position++;
-        }
-      }
+    return getSnapshot().getCallWithState(state, positionToFind);
+  }
+
+  /**
+   * Returns an immutable index of the current calls by state. The same instance is returned until
+   * a call is added, removed or changes state.
+   */
+  public CallListSnapshot getSnapshot() {
+    if (snapshot == null) {
+      snapshot = CallListSnapshot.create(callById.values());
     }
+    return snapshot;
+  }
 
-    return retval;
+  private void invalidateSnapshot() {
+    snapshot = null;
+  }
+
+  @Override
+  public void onDialerCallStateSet(DialerCall call) {
+    invalidateSnapshot();
   }
 
   /**
@@ -614,12 +640,38 @@ public class CallList implements DialerCallDelegate {
    */
   private void notifyGenericListeners() {
     Trace.beginSection("CallList.notifyGenericListeners");
+    if (isGenericNotificationPending) {
+      // This notification covers the pending one.
+      isGenericNotificationPending = false;
+      Choreographer.getInstance().removeFrameCallback(genericNotificationFrameCallback);
+    }
     for (Listener listener : listeners) {
       listener.onCallListChange(this);
     }
     Trace.endSection();
   }
 
+  /**
+   * Notifies all listeners at the next frame. Bursts of call updates, such as the detail changes
+   * IMS networks send during conference setup or handover, are delivered as a single {@link
+   * Listener#onCallListChange(CallList)} since listeners re-read the call list anyway.
+   */
+  private void scheduleGenericListenersNotification() {
+    if (isGenericNotificationPending) {
+      coalescedUpdateCount++;
+      return;
+    }
+    isGenericNotificationPending = true;
+    Choreographer.getInstance().postFrameCallback(genericNotificationFrameCallback);
+  }
+
+  /** Returns the number of call updates coalesced into a pending notification, and resets it. */
+  public int getAndResetCoalescedUpdateCount() {
+    int count = coalescedUpdateCount;
+    coalescedUpdateCount = 0;
+    return count;
+  }
+
   private void notifyListenersOfDisconnect(DialerCall call) {
     for (Listener listener : listeners) {
       listener.onDisconnect(call);
@@ -634,6 +686,8 @@ public class CallList implements DialerCallDelegate {
   private boolean updateCallInMap(DialerCall call) {
     Trace.beginSection("CallList.updateCallInMap");
     Objects.requireNonNull(call);
+    // The call's state may have changed even if the map doesn't, e.g. after it joined a conference.
+    invalidateSnapshot();
 
     boolean updated = false;
 
@@ -816,7 +870,7 @@ public class CallList implements DialerCallDelegate {
     public void onDialerCallUpdate() {
       Trace.beginSection("CallList.onDialerCallUpdate");
       onUpdateCall(call);
-      notifyGenericListeners();
+      scheduleGenericListenersNotification();
       Trace.endSection();
     }
 
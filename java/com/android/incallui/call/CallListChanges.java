@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.incallui.call;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.MainThread;
+import android.telecom.Call.Details;
+import android.util.ArrayMap;
+import com.android.dialer.common.Assert;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Map;
+
+/**
+ * Describes which parts of the call list changed between two dispatches of {@link
+ * CallList.Listener#onCallListChange(CallList)}, so that listeners which only depend on a few
+ * fields don't have to rerun for every call update.
+ */
+public final class CallListChanges {
+
+  /** Flags for the kinds of change that are tracked. */
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef(
+    flag = true,
+    value = {
+      Type.STATE,
+      Type.CAPABILITIES,
+      Type.VIDEO,
+      Type.AUDIO_ROUTE,
+      Type.OTHER,
+    }
+  )
+  public @interface Type {
+    /** A call was added or removed, or the state of a call or of the in-call UI changed. */
+    int STATE = 1;
+
+    /** Capabilities or properties of a call changed. */
+    int CAPABILITIES = 1 << 1;
+
+    /** Video state or session modification state of a call changed. */
+    int VIDEO = 1 << 2;
+
+    /** The audio route changed. */
+    int AUDIO_ROUTE = 1 << 3;
+
+    /**
+     * Anything that isn't tracked by the other flags, such as caller info or extras. This is set
+     * for every update since untracked fields may always have changed.
+     */
+    int OTHER = 1 << 4;
+  }
+
+  /** All change types. Listeners that don't declare their interests receive every update. */
+  public static final int ALL =
+      Type.STATE | Type.CAPABILITIES | Type.VIDEO | Type.AUDIO_ROUTE | Type.OTHER;
+
+  private CallListChanges() {}
+
+  /** Computes the change set of each update against the fields seen by the previous one. */
+  public static final class Tracker {
+
+    private Map<String, CallFields> lastFields = new ArrayMap<>();
+    private int lastAudioRoute = -1;
+
+    /** Returns the {@link Type}s that changed since the last call, and remembers the new values. */
+    @MainThread
+    @Type
+    public int update(CallList callList, int audioRoute) {
+      Assert.isMainThread();
+      int changes = Type.OTHER;
+      if (audioRoute != lastAudioRoute) {
+        changes |= Type.AUDIO_ROUTE;
+        lastAudioRoute = audioRoute;
+      }
+
+      Map<String, CallFields> newFields = new ArrayMap<>(callList.getAllCalls().size());
+      for (DialerCall call : callList.getAllCalls()) {
+        CallFields fields = new CallFields(call);
+        CallFields previous = lastFields.get(call.getId());
+        changes |= previous == null ? Type.STATE : fields.diff(previous);
+        newFields.put(call.getId(), fields);
+      }
+      if (newFields.size() != lastFields.size()) {
+        // A call was removed.
+        changes |= Type.STATE;
+      }
+      lastFields = newFields;
+      return changes;
+    }
+
+    /** Forgets all previously seen values so that the next update reports every change. */
+    public void reset() {
+      lastFields = new ArrayMap<>();
+      lastAudioRoute = -1;
+    }
+  }
+
+  /** Values of a single call that are compared between updates. */
+  private static final class CallFields {
+    private final int state;
+    private final int capabilities;
+    private final int properties;
+    private final int videoState;
+    private final int sessionModificationState;
+
+    CallFields(DialerCall call) {
+      state = call.getState();
+      Details details = call.getTelecomCall().getDetails();
+      capabilities = details.getCallCapabilities();
+      properties = details.getCallProperties();
+      videoState = call.getVideoState();
+      sessionModificationState = call.getVideoTech().getSessionModificationState();
+    }
+
+    @Type
+    int diff(CallFields other) {
+      int changes = 0;
+      if (state != other.state) {
+        changes |= Type.STATE;
+      }
+      if (capabilities != other.capabilities || properties != other.properties) {
+        changes |= Type.CAPABILITIES;
+      }
+      if (videoState != other.videoState
+          || sessionModificationState != other.sessionModificationState) {
+        changes |= Type.VIDEO;
+      }
+      return changes;
+    }
+  }
+}
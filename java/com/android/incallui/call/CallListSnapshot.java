@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.incallui.call;
+
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable view of the calls in a {@link CallList}, indexed by {@link DialerCall#getState()}.
+ *
+ * <p>{@link CallList} builds a snapshot once per update and hands out the same instance until a
+ * call is added, removed or changes state, so the many state lookups presenters make while handling
+ * one update don't each scan every call. Within a state, calls keep the iteration order of the call
+ * list.
+ */
+public final class CallListSnapshot {
+
+  private final SparseArray<ImmutableList<DialerCall>> callsByState;
+  private final int size;
+
+  private CallListSnapshot(SparseArray<ImmutableList<DialerCall>> callsByState, int size) {
+    this.callsByState = callsByState;
+    this.size = size;
+  }
+
+  static CallListSnapshot create(Collection<DialerCall> calls) {
+    SparseArray<List<DialerCall>> grouped = new SparseArray<>();
+    for (DialerCall call : calls) {
+      int state = call.getState();
+      List<DialerCall> callsWithState = grouped.get(state);
+      if (callsWithState == null) {
+        callsWithState = new ArrayList<>(1);
+        grouped.put(state, callsWithState);
+      }
+      callsWithState.add(call);
+    }
+    SparseArray<ImmutableList<DialerCall>> callsByState = new SparseArray<>(grouped.size());
+    for (int i = 0; i < grouped.size(); i++) {
+      callsByState.put(grouped.keyAt(i), ImmutableList.copyOf(grouped.valueAt(i)));
+    }
+    return new CallListSnapshot(callsByState, calls.size());
+  }
+
+  /** Returns all calls with the specified state. */
+  public ImmutableList<DialerCall> getCallsWithState(int state) {
+    ImmutableList<DialerCall> calls = callsByState.get(state);
+    return calls == null ? ImmutableList.of() : calls;
+  }
+
+  /** Returns the first call with the specified state. */
+  @Nullable
+  public DialerCall getFirstCallWithState(int state) {
+    return getCallWithState(state, 0);
+  }
+
+  /** Returns the [position]th call with the specified state. */
+  @Nullable
+  public DialerCall getCallWithState(int state, int position) {
+    ImmutableList<DialerCall> calls = callsByState.get(state);
+    if (calls == null || position >= calls.size()) {
+      return null;
+    }
+    return calls.get(position);
+  }
+
+  /** Returns whether there is at least one call with the specified state. */
+  public boolean hasCallWithState(int state) {
+    return callsByState.get(state) != null;
+  }
+
+  public int size() {
+    return size;
+  }
+}
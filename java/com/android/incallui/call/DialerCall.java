@@ -76,6 +76,7 @@ import com.android.dialer.logging.DialerImpression;
 import com.android.dialer.logging.Logger;
 import com.android.dialer.preferredsim.PreferredAccountRecorder;
 import com.android.dialer.rtt.RttTranscript;
+import com.android.dialer.rtt.RttTranscriptMessage;
 import com.android.dialer.rtt.RttTranscriptUtil;
 import com.android.dialer.spam.status.SpamStatus;
 import com.android.dialer.telecom.TelecomCallUtil;
@@ -223,15 +224,51 @@ public class DialerCall implements VideoTechListener, StateChangedListener, Capa
    */
   private boolean isCallSubjectSupported;
 
+  /** Returns the RTT transcript of the call, or null if the RTT chat was never saved. */
+  @Nullable
   public RttTranscript getRttTranscript() {
-    return rttTranscript;
+    if (rttTranscriptHeader == null) {
+      return null;
+    }
+    return rttTranscriptHeader.toBuilder().addAllMessages(rttTranscriptMessages).build();
   }
 
-  public void setRttTranscript(RttTranscript rttTranscript) {
-    this.rttTranscript = rttTranscript;
+  /**
+   * Replaces the messages of the RTT transcript from {@code firstChangedIndex} on. Only these
+   * messages are written to the transcript database, the ones before are stored already.
+   */
+  public void updateRttTranscript(int firstChangedIndex, List<RttTranscriptMessage> messages) {
+    Assert.checkArgument(firstChangedIndex <= rttTranscriptMessages.size());
+    if (rttTranscriptHeader == null) {
+      rttTranscriptHeader =
+          RttTranscript.newBuilder()
+              .setId(String.valueOf(getCreationTimeMillis()))
+              .setTimestamp(getCreationTimeMillis())
+              .setNumber(getNumber())
+              .build();
+    }
+    if (firstChangedIndex == rttTranscriptMessages.size() && messages.isEmpty()) {
+      return;
+    }
+    rttTranscriptMessages.subList(firstChangedIndex, rttTranscriptMessages.size()).clear();
+    rttTranscriptMessages.addAll(messages);
+    // Don't save transcript if it's empty.
+    if (rttTranscriptMessages.isEmpty() && !isRttTranscriptSaved) {
+      return;
+    }
+    isRttTranscriptSaved = true;
+    Futures.addCallback(
+        RttTranscriptUtil.appendRttTranscriptMessages(
+            context, rttTranscriptHeader, firstChangedIndex, messages),
+        new DefaultFutureCallback<>(),
+        MoreExecutors.directExecutor());
   }
 
-  private RttTranscript rttTranscript;
+  /** Id, number and timestamp of the RTT transcript, set once the RTT chat is saved. */
+  @Nullable private RttTranscript rttTranscriptHeader;
+
+  private final List<RttTranscriptMessage> rttTranscriptMessages = new ArrayList<>();
+  private boolean isRttTranscriptSaved;
 
   private final Call.Callback telecomCallCallback =
       new Call.Callback() {
@@ -871,7 +908,10 @@ public class DialerCall implements VideoTechListener, StateChangedListener, Capa
     }
     updateCallTiming(state);
 
-    this.state = state;
+    if (this.state != state) {
+      this.state = state;
+      dialerCallDelegate.onDialerCallStateSet(this);
+    }
   }
 
   private void updateCallTiming(int newState) {
@@ -1149,21 +1189,18 @@ public class DialerCall implements VideoTechListener, StateChangedListener, Capa
       try {
         String messageLeft = getRttCall().readImmediately();
         if (!TextUtils.isEmpty(messageLeft)) {
-          rttTranscript =
-              RttChatMessage.getRttTranscriptWithNewRemoteMessage(rttTranscript, messageLeft);
+          List<RttChatMessage> messages =
+              RttChatMessage.fromTranscriptMessageList(rttTranscriptMessages);
+          int firstChangedIndex = RttChatMessage.updateRemoteRttChatMessage(messages, messageLeft);
+          updateRttTranscript(
+              firstChangedIndex,
+              RttChatMessage.toTranscriptMessageList(
+                  messages.subList(firstChangedIndex, messages.size())));
         }
       } catch (IOException e) {
         LogUtil.e("DialerCall.saveRttTranscript", "error when reading remaining message", e);
       }
     }
-    // Don't save transcript if it's empty.
-    if (rttTranscript.getMessagesCount() == 0) {
-      return;
-    }
-    Futures.addCallback(
-        RttTranscriptUtil.saveRttTranscript(context, rttTranscript),
-        new DefaultFutureCallback<>(),
-        MoreExecutors.directExecutor());
   }
 
   public boolean hasReceivedVideoUpgradeRequest() {
@@ -1688,7 +1725,7 @@ public class DialerCall implements VideoTechListener, StateChangedListener, Capa
       videoTechManager.dispatchRemovedFromCallList();
     }
     // TODO(wangqi): Consider moving this to a DialerCallListener.
-    if (rttTranscript != null && !isCallRemoved) {
+    if (rttTranscriptHeader != null && !isCallRemoved) {
       saveRttTranscript();
     }
     isCallRemoved = true;
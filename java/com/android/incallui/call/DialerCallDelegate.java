@@ -22,4 +22,7 @@ import android.telecom.Call;
 public interface DialerCallDelegate {
 
   DialerCall getDialerCallFromTelecomCall(Call telecomCall);
+
+  /** Called after {@link DialerCall#setState(int)} changed the state of a call. */
+  default void onDialerCallStateSet(DialerCall call) {}
 }
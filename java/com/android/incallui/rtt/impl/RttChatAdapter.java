@@ -54,6 +54,12 @@ public class RttChatAdapter extends RecyclerView.Adapter<ViewHolder> {
 
   private static final int POSITION_ADVISORY = 0;
 
+  /**
+   * Payload for {@link #notifyItemChanged(int, Object)} when only the text of a message bubble
+   * changed, so the bound view holder can update its text without redoing layout and avatar.
+   */
+  private static final Object PAYLOAD_CONTENT_CHANGED = new Object();
+
   private Drawable avatarDrawable;
 
   interface MessageListener {
@@ -65,6 +71,8 @@ public class RttChatAdapter extends RecyclerView.Adapter<ViewHolder> {
   private final Context context;
   private List<RttChatMessage> rttMessages = new ArrayList<>();
   private int lastIndexOfLocalMessage = -1;
+  /** Index of the first message changed since the transcript of the call was last updated. */
+  private int firstUnsavedIndex = 0;
   private final MessageListener messageListener;
   private boolean shouldShowAdvisory;
 
@@ -119,6 +127,27 @@ public class RttChatAdapter extends RecyclerView.Adapter<ViewHolder> {
     }
   }
 
+  @Override
+  public void onBindViewHolder(ViewHolder viewHolder, int itemPosition, List<Object> payloads) {
+    if (getItemViewType(itemPosition) == RowType.MESSAGE
+        && !payloads.isEmpty()
+        && allContentChanged(payloads)) {
+      ((RttChatMessageViewHolder) viewHolder)
+          .updateContent(rttMessages.get(toMessagePosition(itemPosition)));
+      return;
+    }
+    onBindViewHolder(viewHolder, itemPosition);
+  }
+
+  private static boolean allContentChanged(List<Object> payloads) {
+    for (Object payload : payloads) {
+      if (payload != PAYLOAD_CONTENT_CHANGED) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public int getItemCount() {
     return shouldShowAdvisory ? rttMessages.size() + 1 : rttMessages.size();
@@ -134,8 +163,10 @@ public class RttChatAdapter extends RecyclerView.Adapter<ViewHolder> {
       rttChatMessage.append(newMessage);
       rttMessages.add(rttChatMessage);
       lastIndexOfLocalMessage = rttMessages.size() - 1;
+      markUnsaved(lastIndexOfLocalMessage);
       notifyItemInserted(toItemPosition(lastIndexOfLocalMessage));
     } else {
+      markUnsaved(lastIndexOfLocalMessage);
       rttChatMessage.append(newMessage);
       // Clear empty message bubble.
       if (TextUtils.isEmpty(rttChatMessage.getContent())) {
@@ -143,7 +174,7 @@ public class RttChatAdapter extends RecyclerView.Adapter<ViewHolder> {
         notifyItemRemoved(toItemPosition(lastIndexOfLocalMessage));
         lastIndexOfLocalMessage = -1;
       } else {
-        notifyItemChanged(toItemPosition(lastIndexOfLocalMessage));
+        notifyItemChanged(toItemPosition(lastIndexOfLocalMessage), PAYLOAD_CONTENT_CHANGED);
       }
     }
   }
@@ -169,9 +200,45 @@ public class RttChatAdapter extends RecyclerView.Adapter<ViewHolder> {
   }
 
   private void updateCurrentRemoteMessage(String newMessage) {
-    RttChatMessage.updateRemoteRttChatMessage(rttMessages, newMessage);
+    int appendedIndex = RttChatMessage.appendToUnfinishedRemoteMessage(rttMessages, newMessage);
+    if (appendedIndex >= 0) {
+      // No message was added or removed, so only the text of one bubble changed.
+      markUnsaved(appendedIndex);
+      notifyItemChanged(toItemPosition(appendedIndex), PAYLOAD_CONTENT_CHANGED);
+      return;
+    }
+    // Only references are copied, to tell whether messages were removed or added below.
+    List<RttChatMessage> oldMessages = new ArrayList<>(rttMessages);
+    int firstChangedIndex = RttChatMessage.updateRemoteRttChatMessage(rttMessages, newMessage);
+    markUnsaved(firstChangedIndex);
     lastIndexOfLocalMessage = RttChatMessage.getLastIndexLocalMessage(rttMessages);
-    notifyDataSetChanged();
+    notifyMessagesChanged(firstChangedIndex, oldMessages);
+  }
+
+  /**
+   * Notifies only the bubbles from {@code firstChangedIndex} on. When the same messages stay at the
+   * same positions only their text needs rebinding, otherwise grouping may have shifted, e.g. when
+   * a message was removed and another one added, and the changed range is rebound fully.
+   */
+  private void notifyMessagesChanged(int firstChangedIndex, List<RttChatMessage> oldMessages) {
+    int oldSize = oldMessages.size();
+    int newSize = rttMessages.size();
+    boolean sameMessages = oldSize == newSize;
+    for (int i = firstChangedIndex; sameMessages && i < newSize; i++) {
+      sameMessages = oldMessages.get(i) == rttMessages.get(i);
+    }
+    int changedCount = Math.min(oldSize, newSize) - firstChangedIndex;
+    if (changedCount > 0) {
+      notifyItemRangeChanged(
+          toItemPosition(firstChangedIndex),
+          changedCount,
+          sameMessages ? PAYLOAD_CONTENT_CHANGED : null);
+    }
+    if (newSize > oldSize) {
+      notifyItemRangeInserted(toItemPosition(oldSize), newSize - oldSize);
+    } else if (newSize < oldSize) {
+      notifyItemRangeRemoved(toItemPosition(newSize), oldSize - newSize);
+    }
   }
 
   void addLocalMessage(String message) {
@@ -184,6 +251,7 @@ public class RttChatAdapter extends RecyclerView.Adapter<ViewHolder> {
   void submitLocalMessage() {
     LogUtil.enterBlock("RttChatAdapater.submitLocalMessage");
     rttMessages.get(lastIndexOfLocalMessage).finish();
+    markUnsaved(lastIndexOfLocalMessage);
     notifyItemChanged(toItemPosition(lastIndexOfLocalMessage));
     lastIndexOfLocalMessage = -1;
   }
@@ -231,6 +299,7 @@ public class RttChatAdapter extends RecyclerView.Adapter<ViewHolder> {
     if (lastIndexOfLocalMessage >= 0) {
       RttChatMessage rttChatMessage = rttMessages.get(lastIndexOfLocalMessage);
       rttChatMessage.unfinish();
+      markUnsaved(lastIndexOfLocalMessage);
       return rttChatMessage.getContent();
     } else {
       return null;
@@ -252,6 +321,8 @@ public class RttChatAdapter extends RecyclerView.Adapter<ViewHolder> {
   String onRestoreRttChat(RttTranscript rttTranscript) {
     LogUtil.enterBlock("RttChatAdapater.onRestoreRttChat");
     rttMessages = RttChatMessage.fromTranscript(rttTranscript);
+    // The restored messages are the transcript of the call already.
+    firstUnsavedIndex = rttMessages.size();
     lastIndexOfLocalMessage = RttChatMessage.getLastIndexLocalMessage(rttMessages);
     notifyDataSetChanged();
     if (lastIndexOfLocalMessage < 0) {
@@ -265,7 +336,21 @@ public class RttChatAdapter extends RecyclerView.Adapter<ViewHolder> {
     }
   }
 
-  List<RttTranscriptMessage> getRttTranscriptMessageList() {
-    return RttChatMessage.toTranscriptMessageList(rttMessages);
+  private void markUnsaved(int index) {
+    firstUnsavedIndex = Math.min(firstUnsavedIndex, index);
+  }
+
+  int getFirstUnsavedMessageIndex() {
+    return Math.min(firstUnsavedIndex, rttMessages.size());
+  }
+
+  /** Returns the messages from {@code fromIndex} on, which may be empty. */
+  List<RttTranscriptMessage> getRttTranscriptMessageList(int fromIndex) {
+    return RttChatMessage.toTranscriptMessageList(
+        rttMessages.subList(fromIndex, rttMessages.size()));
+  }
+
+  void onRttTranscriptSaved() {
+    firstUnsavedIndex = rttMessages.size();
   }
 }
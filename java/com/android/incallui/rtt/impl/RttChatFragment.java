@@ -157,8 +157,18 @@ public class RttChatFragment extends Fragment
   }
 
   @Override
-  public List<RttTranscriptMessage> getRttTranscriptMessageList() {
-    return adapter.getRttTranscriptMessageList();
+  public int getFirstUnsavedRttMessageIndex() {
+    return adapter.getFirstUnsavedMessageIndex();
+  }
+
+  @Override
+  public List<RttTranscriptMessage> getRttTranscriptMessageList(int fromIndex) {
+    return adapter.getRttTranscriptMessageList(fromIndex);
+  }
+
+  @Override
+  public void onRttTranscriptSaved() {
+    adapter.onRttTranscriptSaved();
   }
 
   @Nullable
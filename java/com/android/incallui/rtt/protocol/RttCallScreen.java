@@ -33,7 +33,15 @@ public interface RttCallScreen extends InCallScreen {
 
   void onRestoreRttChat(RttTranscript rttTranscript);
 
-  List<RttTranscriptMessage> getRttTranscriptMessageList();
+  /**
+   * Returns the index of the first message changed since {@link #onRttTranscriptSaved()}. Messages
+   * before it are the same as in the transcript of the call.
+   */
+  int getFirstUnsavedRttMessageIndex();
+
+  List<RttTranscriptMessage> getRttTranscriptMessageList(int fromIndex);
+
+  void onRttTranscriptSaved();
 
   Fragment getRttCallScreenFragment();
 
@@ -17,6 +17,7 @@
 package com.android.incallui.rtt.protocol;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import com.android.dialer.common.Assert;
 import com.android.dialer.rtt.RttTranscript;
 import com.android.dialer.rtt.RttTranscriptMessage;
@@ -33,6 +34,8 @@ public final class RttChatMessage {
   public boolean isRemote;
   private long timstamp;
   private final StringBuilder content = new StringBuilder();
+  /** Cached result of {@link #getContent()}, cleared whenever {@link #content} is modified. */
+  @Nullable private String contentString;
   private boolean isFinished;
 
   public boolean isFinished() {
@@ -48,6 +51,7 @@ public final class RttChatMessage {
   }
 
   public void append(String text) {
+    contentString = null;
     for (int i = 0; i < text.length(); i++) {
       char c = text.charAt(i);
       if (c == '\b' && content.length() > 0 && content.charAt(content.length() - 1) != '\b') {
@@ -59,7 +63,10 @@ public final class RttChatMessage {
   }
 
   public String getContent() {
-    return content.toString();
+    if (contentString == null) {
+      contentString = content.toString();
+    }
+    return contentString;
   }
 
   /**
@@ -90,23 +97,17 @@ public final class RttChatMessage {
     return modify.toString();
   }
 
-  public static RttTranscript getRttTranscriptWithNewRemoteMessage(
-      RttTranscript rttTranscript, @NonNull String text) {
-    List<RttChatMessage> messageList = fromTranscript(rttTranscript);
-    updateRemoteRttChatMessage(messageList, text);
-    return RttTranscript.newBuilder()
-        .setId(rttTranscript.getId())
-        .setNumber(rttTranscript.getNumber())
-        .setTimestamp(rttTranscript.getTimestamp())
-        .addAllMessages(toTranscriptMessageList(messageList))
-        .build();
-  }
-
-  /** Update list of {@code RttChatMessage} based on given remote text. */
-  public static void updateRemoteRttChatMessage(
+  /**
+   * Update list of {@code RttChatMessage} based on given remote text.
+   *
+   * @return index of the first message that was changed, added or removed, or the size of the list
+   *     if nothing changed. Messages before this index are left untouched.
+   */
+  public static int updateRemoteRttChatMessage(
       List<RttChatMessage> messageList, @NonNull String text) {
     Assert.isNotNull(messageList);
     Iterator<String> splitText = SPLITTER.split(text).iterator();
+    int firstChangedIndex = messageList.size();
 
     while (splitText.hasNext()) {
       String singleMessageContent = splitText.next();
@@ -120,9 +121,11 @@ public final class RttChatMessage {
           message.finish();
         }
         if (message.content.length() != 0) {
+          firstChangedIndex = Math.min(firstChangedIndex, messageList.size());
           messageList.add(message);
         }
       } else {
+        firstChangedIndex = Math.min(firstChangedIndex, index);
         message = messageList.get(index);
         message.append(singleMessageContent);
         if (splitText.hasNext()) {
@@ -137,12 +140,15 @@ public final class RttChatMessage {
       while (content.length() > 0 && content.charAt(0) == '\b') {
         messageList.remove(message);
         content.delete(0, 1);
+        message.contentString = null;
         int previous = getLastIndexRemoteMessage(messageList);
         // There are more backspaces than existing characters.
         if (previous < 0) {
           while (content.length() > 0 && content.charAt(0) == '\b') {
             content.deleteCharAt(0);
           }
+          message.contentString = null;
+          firstChangedIndex = 0;
           // Add message if there are still characters after backspaces.
           if (content.length() > 0) {
             message = new RttChatMessage();
@@ -155,6 +161,7 @@ public final class RttChatMessage {
           }
           break;
         }
+        firstChangedIndex = Math.min(firstChangedIndex, previous);
         message = messageList.get(previous);
         message.unfinish();
         message.append(content.toString());
@@ -163,8 +170,32 @@ public final class RttChatMessage {
     }
     if (text.endsWith(Constants.BUBBLE_BREAKER)) {
       int lastIndexRemoteMessage = getLastIndexRemoteMessage(messageList);
-      messageList.get(lastIndexRemoteMessage).finish();
+      RttChatMessage lastRemoteMessage = messageList.get(lastIndexRemoteMessage);
+      if (!lastRemoteMessage.isFinished()) {
+        firstChangedIndex = Math.min(firstChangedIndex, lastIndexRemoteMessage);
+        lastRemoteMessage.finish();
+      }
     }
+    return Math.min(firstChangedIndex, messageList.size());
+  }
+
+  /**
+   * Appends remote text to the unfinished remote message in place, if the text neither starts a
+   * new message nor deletes characters, as is the case for most text while the remote party types.
+   *
+   * @return index of the message the text was appended to, or -1 if nothing was changed and {@link
+   *     #updateRemoteRttChatMessage} has to be used.
+   */
+  public static int appendToUnfinishedRemoteMessage(
+      List<RttChatMessage> messageList, @NonNull String text) {
+    if (text.contains(Constants.BUBBLE_BREAKER) || text.indexOf('\b') >= 0) {
+      return -1;
+    }
+    int index = getLastIndexUnfinishedRemoteMessage(messageList);
+    if (index >= 0) {
+      messageList.get(index).append(text);
+    }
+    return index;
   }
 
   private static int getLastIndexUnfinishedRemoteMessage(List<RttChatMessage> messageList) {
@@ -207,11 +238,16 @@ public final class RttChatMessage {
   }
 
   public static List<RttChatMessage> fromTranscript(RttTranscript rttTranscript) {
-    List<RttChatMessage> messageList = new ArrayList<>();
     if (rttTranscript == null) {
-      return messageList;
+      return new ArrayList<>();
     }
-    for (RttTranscriptMessage message : rttTranscript.getMessagesList()) {
+    return fromTranscriptMessageList(rttTranscript.getMessagesList());
+  }
+
+  public static List<RttChatMessage> fromTranscriptMessageList(
+      List<RttTranscriptMessage> transcriptMessageList) {
+    List<RttChatMessage> messageList = new ArrayList<>();
+    for (RttTranscriptMessage message : transcriptMessageList) {
       RttChatMessage chatMessage = new RttChatMessage();
       chatMessage.append(message.getContent());
       chatMessage.timstamp = message.getTimestamp();
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.voicemail;
+
+import android.content.Context;
+import android.media.MediaDataSource;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import com.android.voicemail.VoicemailDownloads.Download;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the payload of a voicemail from the voicemail provider while it is still being downloaded.
+ * Reads past the bytes written so far block until the fetcher has written them, so the media
+ * player buffers instead of hitting the end of the file.
+ */
+public final class ProgressiveVoicemailDataSource extends MediaDataSource {
+
+  /** How long a read waits for the fetcher before playback fails. */
+  private static final long READ_TIMEOUT_MILLIS = 20_000;
+
+  private final Download download;
+  private final ParcelFileDescriptor fileDescriptor;
+  private final FileChannel channel;
+
+  private ProgressiveVoicemailDataSource(Download download, ParcelFileDescriptor fileDescriptor) {
+    this.download = download;
+    this.fileDescriptor = fileDescriptor;
+    channel = new FileInputStream(fileDescriptor.getFileDescriptor()).getChannel();
+  }
+
+  /** Opens the partially written payload of {@code voicemailUri}. */
+  public static ProgressiveVoicemailDataSource open(
+      Context context, Uri voicemailUri, Download download) throws IOException {
+    ParcelFileDescriptor fileDescriptor =
+        context.getContentResolver().openFileDescriptor(voicemailUri, "r");
+    if (fileDescriptor == null) {
+      throw new FileNotFoundException("No content for " + voicemailUri);
+    }
+    return new ProgressiveVoicemailDataSource(download, fileDescriptor);
+  }
+
+  @Override
+  public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+    if (size == 0) {
+      return 0;
+    }
+    try {
+      if (!download.awaitBytes(position, READ_TIMEOUT_MILLIS)) {
+        throw new IOException("Timed out waiting for voicemail content");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    long available = download.getBytesWritten() - position;
+    if (available <= 0) {
+      if (download.isSucceeded()) {
+        return -1;
+      }
+      throw new IOException("Voicemail download failed");
+    }
+    return channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(size, available)), position);
+  }
+
+  @Override
+  public long getSize() {
+    // The final size is only known once the download completed.
+    return download.isSucceeded() ? download.getBytesWritten() : -1;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+    fileDescriptor.close();
+  }
+}
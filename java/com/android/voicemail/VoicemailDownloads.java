@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.voicemail;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.ArraySet;
+import com.android.dialer.common.Assert;
+import com.android.dialer.common.concurrent.ThreadUtil;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Tracks the voicemail payloads which are being written into the voicemail provider, so that
+ * playback can start on a partially downloaded file with {@link ProgressiveVoicemailDataSource}.
+ *
+ * <p>The fetcher registers a {@link Download} before it starts writing and reports every chunk it
+ * has written. Listeners are notified on the main thread at most every {@link
+ * #PROGRESS_INTERVAL_MILLIS}, when the download becomes playable and when it finishes.
+ */
+public final class VoicemailDownloads {
+
+  /** Bytes which must be written before playback of a partial download may start. */
+  public static final long PLAYBACK_THRESHOLD_BYTES = 8 * 1024;
+
+  private static final long PROGRESS_INTERVAL_MILLIS = 200;
+
+  private static final Map<Uri, Download> downloads = new ConcurrentHashMap<>();
+
+  /** Only accessed on the main thread. */
+  private static final Set<Listener> listeners = new ArraySet<>();
+
+  /** Receives the progress of the downloads. */
+  public interface Listener {
+
+    @MainThread
+    void onDownloadProgress(Uri voicemailUri, Download download);
+  }
+
+  private VoicemailDownloads() {}
+
+  /**
+   * Registers the download of the payload of {@code voicemailUri}, replacing any previous one.
+   *
+   * @param expectedBytes the approximate size of the payload, or -1 if it is unknown.
+   */
+  @WorkerThread
+  public static Download begin(Uri voicemailUri, long expectedBytes) {
+    Download download = new Download(voicemailUri, expectedBytes);
+    downloads.put(voicemailUri, download);
+    dispatch(download);
+    return download;
+  }
+
+  /** Returns the download of the payload of {@code voicemailUri}, or null if none is running. */
+  @Nullable
+  public static Download get(Uri voicemailUri) {
+    return downloads.get(voicemailUri);
+  }
+
+  @MainThread
+  public static void addListener(Listener listener) {
+    Assert.isMainThread();
+    listeners.add(listener);
+  }
+
+  @MainThread
+  public static void removeListener(Listener listener) {
+    Assert.isMainThread();
+    listeners.remove(listener);
+  }
+
+  private static void dispatch(Download download) {
+    ThreadUtil.postOnUiThread(
+        () -> {
+          for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onDownloadProgress(download.voicemailUri, download);
+          }
+        });
+  }
+
+  /** The state of a single payload being written into the voicemail provider. */
+  public static final class Download {
+
+    private final Uri voicemailUri;
+    private final long expectedBytes;
+
+    @GuardedBy("this")
+    private long bytesWritten;
+
+    @GuardedBy("this")
+    private boolean finished;
+
+    @GuardedBy("this")
+    private boolean succeeded;
+
+    @GuardedBy("this")
+    private long lastDispatchMillis;
+
+    private Download(Uri voicemailUri, long expectedBytes) {
+      this.voicemailUri = voicemailUri;
+      this.expectedBytes = expectedBytes;
+    }
+
+    public synchronized long getBytesWritten() {
+      return bytesWritten;
+    }
+
+    public synchronized boolean isFinished() {
+      return finished;
+    }
+
+    public synchronized boolean isSucceeded() {
+      return succeeded;
+    }
+
+    /**
+     * Returns whether a player may start reading the payload: enough of it was written, and the
+     * download hasn't failed.
+     */
+    public synchronized boolean isPlayable() {
+      return succeeded || (!finished && bytesWritten >= PLAYBACK_THRESHOLD_BYTES);
+    }
+
+    /** Returns the progress of the download in percent, or -1 if it can't be estimated. */
+    public synchronized int getProgressPercent() {
+      if (succeeded) {
+        return 100;
+      }
+      if (expectedBytes <= 0) {
+        return -1;
+      }
+      // The expected size is approximate, don't report completion before the download finished.
+      return (int) Math.min(99, bytesWritten * 100 / expectedBytes);
+    }
+
+    /** Must be called by the fetcher once {@code count} more bytes are readable in the provider. */
+    @WorkerThread
+    public void onBytesWritten(long count) {
+      boolean shouldDispatch;
+      synchronized (this) {
+        boolean wasPlayable = bytesWritten >= PLAYBACK_THRESHOLD_BYTES;
+        bytesWritten += count;
+        notifyAll();
+        long now = SystemClock.elapsedRealtime();
+        shouldDispatch =
+            now - lastDispatchMillis >= PROGRESS_INTERVAL_MILLIS
+                || (!wasPlayable && bytesWritten >= PLAYBACK_THRESHOLD_BYTES);
+        if (shouldDispatch) {
+          lastDispatchMillis = now;
+        }
+      }
+      if (shouldDispatch) {
+        dispatch(this);
+      }
+    }
+
+    /** Must be called by the fetcher once it stopped writing and closed the file. */
+    @WorkerThread
+    public void finish(boolean succeeded) {
+      synchronized (this) {
+        finished = true;
+        this.succeeded = succeeded;
+        notifyAll();
+      }
+      downloads.remove(voicemailUri, this);
+      dispatch(this);
+    }
+
+    /**
+     * Blocks until the byte at {@code position} was written or the download finished.
+     *
+     * @return false if neither happened within {@code timeoutMillis}.
+     */
+    @WorkerThread
+    public synchronized boolean awaitBytes(long position, long timeoutMillis)
+        throws InterruptedException {
+      long deadline = SystemClock.elapsedRealtime() + timeoutMillis;
+      while (bytesWritten <= position && !finished) {
+        long remaining = deadline - SystemClock.elapsedRealtime();
+        if (remaining <= 0) {
+          return false;
+        }
+        wait(remaining);
+      }
+      return true;
+    }
+  }
+}
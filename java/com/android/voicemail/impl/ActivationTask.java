@@ -37,6 +37,7 @@ import com.android.voicemail.impl.scheduling.RetryPolicy;
 import com.android.voicemail.impl.settings.VisualVoicemailSettingsUtil;
 import com.android.voicemail.impl.sms.StatusMessage;
 import com.android.voicemail.impl.sms.StatusSmsFetcher;
+import com.android.voicemail.impl.sync.ImapIdleJobService;
 import com.android.voicemail.impl.sync.SyncTask;
 import com.android.voicemail.impl.sync.VvmAccountManager;
 import com.android.voicemail.impl.utils.LoggerUtils;
@@ -111,6 +112,12 @@ public class ActivationTask extends BaseTask {
     messageData = extras.getParcelable(EXTRA_MESSAGE_DATA_BUNDLE);
   }
 
+  @Override
+  public int getPriority() {
+    // Every other task of the account depends on the activation.
+    return PRIORITY_USER_VISIBLE;
+  }
+
   @Override
   public Intent createRestartIntent() {
     LoggerUtils.logImpressionOnMainThread(
@@ -277,6 +284,7 @@ public class ActivationTask extends BaseTask {
         OmtpEvents.CONFIG_REQUEST_STATUS_SUCCESS);
     clearLegacyVoicemailNotification(context, phoneAccountHandle);
     SyncTask.start(context, phoneAccountHandle);
+    ImapIdleJobService.schedule(context);
   }
 
   /** Sends a broadcast to the dialer UI to clear legacy voicemail notifications if any. */
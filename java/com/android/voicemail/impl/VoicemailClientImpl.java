@@ -37,6 +37,7 @@ import com.android.voicemail.VoicemailClient;
 import com.android.voicemail.VoicemailVersionConstants;
 import com.android.voicemail.impl.configui.VoicemailSecretCodeActivity;
 import com.android.voicemail.impl.settings.VisualVoicemailSettingsUtil;
+import com.android.voicemail.impl.sync.ImapIdleJobService;
 import com.android.voicemail.impl.sync.VvmAccountManager;
 import com.android.voicemail.impl.transcribe.TranscriptionBackfillService;
 import com.android.voicemail.impl.transcribe.TranscriptionConfigProvider;
@@ -248,6 +249,7 @@ public class VoicemailClientImpl implements VoicemailClient {
   public void onBoot(@NonNull Context context) {
     OmtpService.onBoot(context);
     StatusCheckJobService.schedule(context);
+    ImapIdleJobService.schedule(context);
   }
 
   @Override
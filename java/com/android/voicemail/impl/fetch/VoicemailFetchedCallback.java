@@ -19,16 +19,22 @@ import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.provider.VoicemailContract.Voicemails;
 import android.support.annotation.Nullable;
 import android.telecom.PhoneAccountHandle;
 import android.telecom.TelecomManager;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.concurrent.ThreadUtil;
+import com.android.voicemail.VoicemailDownloads;
+import com.android.voicemail.VoicemailDownloads.Download;
 import com.android.voicemail.impl.R;
 import com.android.voicemail.impl.VvmLog;
 import com.android.voicemail.impl.imap.VoicemailPayload;
+import com.android.voicemail.impl.mail.MessagingException;
 import com.android.voicemail.impl.transcribe.TranscriptionService;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import org.apache.commons.io.IOUtils;
@@ -90,9 +96,59 @@ public class VoicemailFetchedCallback {
       IOUtils.closeQuietly(outputStream);
     }
 
-    // Update mime_type & has_content after we are done with file update.
+    onContentWritten(voicemailPayload.getMimeType());
+  }
+
+  /** Writes the content of a voicemail to a stream. */
+  public interface ContentWriter {
+
+    /**
+     * Writes the content to {@code out}.
+     *
+     * @return the number of bytes written, or -1 if the content couldn't be found.
+     */
+    long writeTo(OutputStream out) throws IOException, MessagingException;
+  }
+
+  /**
+   * Streams the voicemail content from {@code writer} directly into the file descriptor of the
+   * voicemail provider, then sets the "has_content" bit of the voicemail to "1". The progress is
+   * published through {@link VoicemailDownloads} so that playback can start before the content is
+   * complete.
+   *
+   * @param mimeType the MIME type of the content.
+   * @param expectedBytes the approximate size of the content, or -1 if it is unknown.
+   * @return false if the content couldn't be written.
+   */
+  public boolean setVoicemailContent(String mimeType, long expectedBytes, ContentWriter writer) {
+    Assert.isWorkerThread();
+    VvmLog.d(TAG, String.format("Streaming new voicemail content: %s", uri));
+    Download download = VoicemailDownloads.begin(uri, expectedBytes);
+    long bytesWritten = -1;
+    try (ParcelFileDescriptor fileDescriptor = contentResolver.openFileDescriptor(uri, "w");
+        OutputStream outputStream =
+            new ProgressOutputStream(
+                new FileOutputStream(fileDescriptor.getFileDescriptor()), download)) {
+      bytesWritten = writer.writeTo(outputStream);
+    } catch (IOException | MessagingException e) {
+      VvmLog.w(TAG, String.format("Failed to write content for %s", uri), e);
+      return false;
+    } finally {
+      download.finish(bytesWritten >= 0);
+    }
+    if (bytesWritten < 0) {
+      VvmLog.w(TAG, String.format("No content found for %s", uri));
+      return false;
+    }
+    VvmLog.d(TAG, String.format("Wrote %d bytes of content", bytesWritten));
+    onContentWritten(mimeType);
+    return true;
+  }
+
+  /** Updates mime_type & has_content after we are done with file update. */
+  private void onContentWritten(String mimeType) {
     ContentValues values = new ContentValues();
-    values.put(Voicemails.MIME_TYPE, voicemailPayload.getMimeType());
+    values.put(Voicemails.MIME_TYPE, mimeType);
     values.put(Voicemails.HAS_CONTENT, true);
     if (updateVoicemail(values)) {
       ThreadUtil.postOnUiThread(
@@ -114,4 +170,30 @@ public class VoicemailFetchedCallback {
       return true;
     }
   }
+
+  /**
+   * Reports every chunk to the {@link Download} once it reached the file, which is unbuffered, so
+   * that readers never wait for bytes that are already readable.
+   */
+  private static final class ProgressOutputStream extends FilterOutputStream {
+
+    private final Download download;
+
+    ProgressOutputStream(OutputStream out, Download download) {
+      super(out);
+      this.download = download;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      download.onBytesWritten(1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      download.onBytesWritten(len);
+    }
+  }
 }
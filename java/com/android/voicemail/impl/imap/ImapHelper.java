@@ -41,10 +41,13 @@ import com.android.voicemail.impl.mail.Flag;
 import com.android.voicemail.impl.mail.Message;
 import com.android.voicemail.impl.mail.MessagingException;
 import com.android.voicemail.impl.mail.Multipart;
+import com.android.voicemail.impl.mail.Part;
 import com.android.voicemail.impl.mail.TempDirectory;
+import com.android.voicemail.impl.mail.internet.MimeHeader;
 import com.android.voicemail.impl.mail.internet.MimeMessage;
 import com.android.voicemail.impl.mail.store.ImapConnection;
 import com.android.voicemail.impl.mail.store.ImapFolder;
+import com.android.voicemail.impl.mail.store.ImapFolder.IdleResult;
 import com.android.voicemail.impl.mail.store.ImapFolder.Quota;
 import com.android.voicemail.impl.mail.store.ImapStore;
 import com.android.voicemail.impl.mail.store.imap.ImapConstants;
@@ -59,6 +62,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.commons.io.IOUtils;
 
 /** A helper interface to abstract commands sent across IMAP interface for a given account. */
@@ -134,6 +138,31 @@ public class ImapHelper implements Closeable {
     }
   }
 
+  /**
+   * Connects to {@code serverName}:{@code port} in plain text on the default network instead of the
+   * server provisioned for {@code phoneAccount}. Only used to verify the IMAP client against a
+   * local stand-in server.
+   */
+  public ImapHelper(
+      Context context,
+      PhoneAccountHandle phoneAccount,
+      String serverName,
+      int port,
+      String username,
+      String password,
+      Editor status) {
+    this.context = context;
+    this.phoneAccount = phoneAccount;
+    this.network = null;
+    this.status = status;
+    config = new OmtpVvmCarrierConfigHelper(context, phoneAccount);
+    prefs = new VisualVoicemailPreferences(context, phoneAccount);
+    TempDirectory.setTempDirectory(context);
+    imapStore =
+        new ImapStore(
+            context, this, username, password, port, serverName, ImapStore.FLAG_NONE, null);
+  }
+
   @Override
   public void close() {
     imapStore.closeConnection();
@@ -149,6 +178,10 @@ public class ImapHelper implements Closeable {
     return info.isRoaming();
   }
 
+  public PhoneAccountHandle getPhoneAccountHandle() {
+    return phoneAccount;
+  }
+
   public OmtpVvmCarrierConfigHelper getConfig() {
     return config;
   }
@@ -157,6 +190,43 @@ public class ImapHelper implements Closeable {
     return imapStore.getConnection();
   }
 
+  /**
+   * Whether the server supports IMAP IDLE, which is required by {@link #waitForMailboxChange}.
+   *
+   * <p>Failing to connect or to read the CAPABILITY response throws instead, as it tells nothing
+   * about the server.
+   */
+  public boolean isIdleSupported() throws IOException, MessagingException {
+    return imapStore.getConnection().isIdleSupported();
+  }
+
+  /**
+   * Selects the inbox and waits with IMAP IDLE until the server pushes a change, {@code
+   * timeoutMillis} have elapsed or {@code cancelled} is set. The caller thread will block until the
+   * method returns.
+   *
+   * @return the changes, or {@code null} if the inbox could not be opened or the IDLE failed.
+   */
+  @Nullable
+  public IdleResult waitForMailboxChange(long timeoutMillis, AtomicBoolean cancelled) {
+    try {
+      folder = openImapFolder(ImapFolder.MODE_READ_ONLY);
+      if (folder == null) {
+        return null;
+      }
+      return folder.idle(timeoutMillis, cancelled);
+    } catch (MessagingException e) {
+      LogUtils.e(TAG, e, "Messaging Exception");
+      return null;
+    } finally {
+      if (folder != null) {
+        // Nothing was changed, don't expunge.
+        folder.close(false);
+        folder = null;
+      }
+    }
+  }
+
   /** The caller thread will block until the method returns. */
   public boolean markMessagesAsRead(List<Voicemail> voicemails) {
     return setFlags(voicemails, Flag.SEEN);
@@ -203,6 +273,22 @@ public class ImapHelper implements Closeable {
    * @return A list of voicemail objects containing data about voicemails stored on the server.
    */
   public List<Voicemail> fetchAllVoicemails() {
+    return fetchVoicemails("1:*");
+  }
+
+  /**
+   * Fetch the voicemails with sequence numbers from {@code first} to {@code last}, such as the ones
+   * announced by an EXISTS response during {@link #waitForMailboxChange}.
+   *
+   * @return A list of voicemail objects containing data about voicemails stored on the server.
+   */
+  @Nullable
+  public List<Voicemail> fetchVoicemails(int first, int last) {
+    return fetchVoicemails(first + ":" + last);
+  }
+
+  @Nullable
+  private List<Voicemail> fetchVoicemails(String sequenceSet) {
     List<Voicemail> result = new ArrayList<Voicemail>();
     Message[] messages;
     try {
@@ -213,7 +299,7 @@ public class ImapHelper implements Closeable {
       }
 
       // This method retrieves lightweight messages containing only the uid of the message.
-      messages = folder.getMessages(null);
+      messages = folder.getMessagesInRange(sequenceSet);
 
       for (Message message : messages) {
         // Get the voicemail details (message structure).
@@ -321,6 +407,14 @@ public class ImapHelper implements Closeable {
       if (message == null) {
         return false;
       }
+      BodyPart audioPart = fetchAudioPart(message);
+      if (audioPart != null) {
+        // Stream the audio straight from the connection into the voicemail provider.
+        return callback.setVoicemailContent(
+            audioPart.getMimeType().toLowerCase(),
+            estimateDecodedSize(audioPart),
+            out -> folder.fetchPartTo(message, audioPart, out));
+      }
       VoicemailPayload voicemailPayload = fetchVoicemailPayload(message);
       callback.setVoicemailContent(voicemailPayload);
       return true;
@@ -331,6 +425,49 @@ public class ImapHelper implements Closeable {
     return false;
   }
 
+  /**
+   * Fetches the structure of the given message and returns its audio part, or null if the message
+   * doesn't have one. Messages without it are fetched whole with {@link
+   * #fetchVoicemailPayload(Message)}, which handles unsupported formats.
+   *
+   * @throws MessagingException if fetching the structure of the message fails
+   */
+  @Nullable
+  private BodyPart fetchAudioPart(Message message) throws MessagingException {
+    FetchProfile fetchProfile = new FetchProfile();
+    fetchProfile.add(FetchProfile.Item.STRUCTURE);
+    folder.fetch(new Message[] {message}, fetchProfile, null);
+
+    if (!(message.getBody() instanceof Multipart)) {
+      return null;
+    }
+    Multipart multipart = (Multipart) message.getBody();
+    for (int i = 0; i < multipart.getCount(); ++i) {
+      BodyPart bodyPart = multipart.getBodyPart(i);
+      if (bodyPart.getMimeType().toLowerCase().startsWith("audio/")) {
+        return bodyPart;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the approximate size of {@code part} once its transfer encoding is removed, or -1 if
+   * the server didn't report its size.
+   */
+  private static long estimateDecodedSize(Part part) throws MessagingException {
+    int size = part.getSize();
+    if (size <= 0) {
+      return -1;
+    }
+    String[] encodings = part.getHeader(MimeHeader.HEADER_CONTENT_TRANSFER_ENCODING);
+    if (encodings != null && encodings.length > 0 && "base64".equalsIgnoreCase(encodings[0])) {
+      // Every 4 characters of base64 decode into 3 bytes, line breaks aside.
+      return size * 3L / 4;
+    }
+    return size;
+  }
+
   /**
    * Fetches the body of the given message and returns the parsed voicemail payload.
    *
@@ -32,6 +32,7 @@ import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketException;
 import java.util.ArrayList;
 import java.util.List;
 import javax.net.ssl.HostnameVerifier;
@@ -262,6 +263,11 @@ public class MailTransport {
     }
   }
 
+  /** Sets how long a read may block before it throws a {@link java.net.SocketTimeoutException}. */
+  public void setSoTimeout(int timeoutMillis) throws SocketException {
+    socket.setSoTimeout(timeoutMillis);
+  }
+
   public boolean isOpen() {
     return (in != null
         && out != null
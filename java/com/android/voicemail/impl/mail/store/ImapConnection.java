@@ -15,6 +15,7 @@
  */
 package com.android.voicemail.impl.mail.store;
 
+import android.support.annotation.Nullable;
 import android.util.ArraySet;
 import android.util.Base64;
 import com.android.voicemail.impl.OmtpEvents;
@@ -28,9 +29,12 @@ import com.android.voicemail.impl.mail.store.imap.DigestMd5Utils;
 import com.android.voicemail.impl.mail.store.imap.ImapConstants;
 import com.android.voicemail.impl.mail.store.imap.ImapResponse;
 import com.android.voicemail.impl.mail.store.imap.ImapResponseParser;
+import com.android.voicemail.impl.mail.store.imap.ImapResponseParser.FetchHandler;
+import com.android.voicemail.impl.mail.store.imap.ImapResponseParser.LiteralHandler;
 import com.android.voicemail.impl.mail.store.imap.ImapUtility;
 import com.android.voicemail.impl.mail.utils.LogUtils;
 import java.io.IOException;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +52,9 @@ public class ImapConnection {
   private ImapResponseParser parser;
   private Set<String> capabilities = new ArraySet<>();
 
+  /** Whether the login on the open transport succeeded. */
+  private boolean loggedIn;
+
   static final String IMAP_REDACTED_LOG = "[IMAP command redacted]";
 
   /**
@@ -62,9 +69,9 @@ public class ImapConnection {
   }
 
   void setStore(ImapStore store) {
-    // TODO: maybe we should throw an exception if the connection is not closed here,
-    // if it's not currently closed, then we won't reopen it, so if the credentials have
-    // changed, the connection will not be reestablished.
+    // An open connection is not reopened, so if the credentials have changed it will not be
+    // reestablished. ImapConnectionPool only hands a connection to a store with the same
+    // credentials.
     imapStore = store;
     loginPhrase = null;
   }
@@ -92,10 +99,12 @@ public class ImapConnection {
   }
 
   public void open() throws IOException, MessagingException {
-    if (transport != null && transport.isOpen()) {
+    if (isLoggedIn()) {
       return;
     }
 
+    loggedIn = false;
+    boolean opened = false;
     try {
       // copy configuration into a clean transport, if necessary
       if (transport == null) {
@@ -123,6 +132,8 @@ public class ImapConnection {
 
       // LOGIN
       doLogin();
+      loggedIn = true;
+      opened = true;
     } catch (SSLException e) {
       LogUtils.d(TAG, "SSLException ", e);
       imapStore.getImapHelper().handleEvent(OmtpEvents.DATA_SSL_EXCEPTION);
@@ -131,6 +142,42 @@ public class ImapConnection {
       LogUtils.d(TAG, "IOException", ioe);
       imapStore.getImapHelper().handleEvent(OmtpEvents.DATA_IOE_ON_OPEN);
       throw ioe;
+    } finally {
+      destroyResponses();
+      if (!opened && transport != null) {
+        // Not reused half opened, the next open() starts over with the greeting and the login.
+        transport.close();
+        transport = null;
+      }
+    }
+  }
+
+  /**
+   * Whether the transport is open and the login on it succeeded. The session might still have been
+   * dropped by the server.
+   */
+  boolean isLoggedIn() {
+    return loggedIn && transport != null && transport.isOpen();
+  }
+
+  /**
+   * Checks with a NOOP whether an open connection is still logged in. Responses left unread by the
+   * previous user of the connection are skipped.
+   */
+  boolean isUsable() {
+    if (!isLoggedIn()) {
+      return false;
+    }
+    try {
+      String tag = sendCommand(ImapConstants.NOOP, false);
+      ImapResponse response;
+      do {
+        response = parser.readResponse(false);
+      } while (!tag.equals(response.getTag()));
+      return response.isOk();
+    } catch (IOException | MessagingException e) {
+      VvmLog.w(TAG, "NOOP failed: " + e);
+      return false;
     } finally {
       destroyResponses();
     }
@@ -160,6 +207,7 @@ public class ImapConnection {
       transport.close();
       transport = null;
     }
+    loggedIn = false;
     destroyResponses();
     parser = null;
     imapStore = null;
@@ -306,6 +354,63 @@ public class ImapConnection {
   private boolean hasCapability(String capability) {
     return capabilities.contains(capability);
   }
+
+  /** Whether the server supports IDLE (RFC 2177). Opens the connection if necessary. */
+  public boolean isIdleSupported() throws IOException, MessagingException {
+    open();
+    return hasCapability(ImapConstants.CAPABILITY_IDLE);
+  }
+
+  /**
+   * Sends IDLE, after which the server pushes the changes of the selected mailbox until {@link
+   * #stopIdle()} is called.
+   *
+   * @return the untagged responses received before the server accepted the command.
+   */
+  List<ImapResponse> startIdle() throws IOException, MessagingException {
+    sendCommand(ImapConstants.IDLE, false);
+    List<ImapResponse> responses = new ArrayList<>();
+    ImapResponse response;
+    while (!(response = parser.readResponse(false)).isContinuationRequest()) {
+      if (response.isTagged()) {
+        throw new MessagingException(
+            MessagingException.SERVER_ERROR, "IDLE rejected: " + response.toString());
+      }
+      responses.add(response);
+    }
+    return responses;
+  }
+
+  /**
+   * Waits for the next response pushed by the server while idling.
+   *
+   * @return the response, or {@code null} if none was received within {@code timeoutMillis}.
+   */
+  @Nullable
+  ImapResponse readIdleResponse(int timeoutMillis) throws IOException, MessagingException {
+    transport.setSoTimeout(timeoutMillis);
+    try {
+      // Only the wait for the response times out, the parser would consume and drop the bytes
+      // around a timeout in the middle of a response.
+      parser.awaitResponse();
+    } catch (SocketTimeoutException e) {
+      return null;
+    } finally {
+      transport.setSoTimeout(MailTransport.SOCKET_READ_TIMEOUT);
+    }
+    return parser.readResponse(false);
+  }
+
+  /**
+   * Ends the IDLE started by {@link #startIdle()}.
+   *
+   * @return the responses received until the server completed the IDLE command.
+   */
+  List<ImapResponse> stopIdle() throws IOException, MessagingException {
+    transport.writeLine(ImapConstants.DONE, ImapConstants.DONE);
+    return getCommandResponses();
+  }
+
   /**
    * Create an {@link ImapResponseParser} from {@code mTransport.getInputStream()} and set it to
    * {@link #parser}.
@@ -328,6 +433,19 @@ public class ImapConnection {
     return parser.readResponse(false);
   }
 
+  /** @see ImapResponseParser#readResponse(boolean, FetchHandler) */
+  public ImapResponse readResponse(FetchHandler fetchHandler)
+      throws IOException, MessagingException {
+    return parser.readResponse(false, fetchHandler);
+  }
+
+  /** @see ImapResponseParser#setLiteralHandler(LiteralHandler) */
+  public void setLiteralHandler(@Nullable LiteralHandler literalHandler) {
+    if (parser != null) {
+      parser.setLiteralHandler(literalHandler);
+    }
+  }
+
   public List<ImapResponse> executeSimpleCommand(String command)
       throws IOException, MessagingException {
     return executeSimpleCommand(command, false);
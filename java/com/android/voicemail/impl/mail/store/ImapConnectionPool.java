@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package com.android.voicemail.impl.mail.store;
+
+import android.net.Network;
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.telecom.PhoneAccountHandle;
+import android.util.ArrayMap;
+import com.android.voicemail.impl.VvmLog;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Keeps the authenticated {@link ImapConnection} of an {@link ImapStore} open for a short while
+ * after the store is closed, so that the next sync, fetch or PIN change of the same account on the
+ * same network skips the TLS handshake and the login.
+ *
+ * <p>At most one idle connection is kept per {@link Key}. It is checked with a NOOP before it is
+ * handed out again, and logged out once it has been idle for {@link #IDLE_TIMEOUT_MILLIS}.
+ */
+final class ImapConnectionPool {
+
+  private static final String TAG = "ImapConnectionPool";
+
+  private static final long IDLE_TIMEOUT_MILLIS = 30_000;
+
+  private static final Object lock = new Object();
+
+  @GuardedBy("lock")
+  private static final Map<Key, IdleConnection> idleConnections = new ArrayMap<>();
+
+  /** Logs out the expired connections. Its thread only lives while connections are idle. */
+  @GuardedBy("lock")
+  private static ScheduledThreadPoolExecutor evictor;
+
+  /**
+   * Identifies the connections which can be shared. The credentials and the server are part of the
+   * key so a connection is never reused after they were changed, e.g. by a PIN change or a new
+   * STATUS SMS.
+   */
+  static final class Key {
+    @Nullable private final PhoneAccountHandle phoneAccountHandle;
+    @Nullable private final Network network;
+    private final String username;
+    private final String password;
+    private final String serverName;
+    private final int port;
+    private final int flags;
+
+    Key(
+        @Nullable PhoneAccountHandle phoneAccountHandle,
+        @Nullable Network network,
+        String username,
+        String password,
+        String serverName,
+        int port,
+        int flags) {
+      this.phoneAccountHandle = phoneAccountHandle;
+      this.network = network;
+      this.username = username;
+      this.password = password;
+      this.serverName = serverName;
+      this.port = port;
+      this.flags = flags;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+      if (!(object instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) object;
+      return Objects.equals(phoneAccountHandle, other.phoneAccountHandle)
+          && Objects.equals(network, other.network)
+          && Objects.equals(username, other.username)
+          && Objects.equals(password, other.password)
+          && Objects.equals(serverName, other.serverName)
+          && port == other.port
+          && flags == other.flags;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(phoneAccountHandle, network, username, password, serverName, port, flags);
+    }
+  }
+
+  private static final class IdleConnection {
+    final ImapConnection connection;
+    final long releasedMillis;
+
+    IdleConnection(ImapConnection connection, long releasedMillis) {
+      this.connection = connection;
+      this.releasedMillis = releasedMillis;
+    }
+  }
+
+  private ImapConnectionPool() {}
+
+  /**
+   * Returns the idle connection for {@code store} if it is still logged in, or a new connection
+   * which will be opened on its first command.
+   */
+  static ImapConnection acquire(ImapStore store) {
+    IdleConnection idle;
+    synchronized (lock) {
+      idle = idleConnections.remove(store.getPoolKey());
+    }
+    if (idle != null) {
+      if (idle.connection.isUsable()) {
+        VvmLog.i(
+            TAG,
+            "reusing connection idle for "
+                + (SystemClock.elapsedRealtime() - idle.releasedMillis)
+                + " millis");
+        idle.connection.setStore(store);
+        return idle.connection;
+      }
+      VvmLog.i(TAG, "idle connection is no longer usable");
+      idle.connection.close();
+    }
+    return new ImapConnection(store);
+  }
+
+  /** Takes back the connection of {@code store}, which must not be used by it anymore. */
+  static void release(ImapStore store, ImapConnection connection) {
+    if (!connection.isLoggedIn()) {
+      connection.close();
+      return;
+    }
+    connection.destroyResponses();
+    IdleConnection replaced;
+    synchronized (lock) {
+      replaced =
+          idleConnections.put(
+              store.getPoolKey(), new IdleConnection(connection, SystemClock.elapsedRealtime()));
+      scheduleEviction(IDLE_TIMEOUT_MILLIS);
+    }
+    if (replaced != null) {
+      // Another store of the same account released its connection concurrently, keep one.
+      replaced.connection.close();
+    }
+  }
+
+  private static void closeExpiredConnections() {
+    List<ImapConnection> expired = new ArrayList<>();
+    long now = SystemClock.elapsedRealtime();
+    synchronized (lock) {
+      long nextExpiry = Long.MAX_VALUE;
+      Iterator<IdleConnection> iterator = idleConnections.values().iterator();
+      while (iterator.hasNext()) {
+        IdleConnection idle = iterator.next();
+        long expiry = idle.releasedMillis + IDLE_TIMEOUT_MILLIS;
+        if (expiry <= now) {
+          expired.add(idle.connection);
+          iterator.remove();
+        } else {
+          nextExpiry = Math.min(nextExpiry, expiry);
+        }
+      }
+      if (nextExpiry != Long.MAX_VALUE) {
+        scheduleEviction(nextExpiry - now);
+      }
+    }
+    for (ImapConnection connection : expired) {
+      VvmLog.i(TAG, "closing idle connection");
+      connection.close();
+    }
+  }
+
+  @GuardedBy("lock")
+  private static void scheduleEviction(long delayMillis) {
+    if (evictor == null) {
+      evictor = new ScheduledThreadPoolExecutor(1);
+      evictor.setKeepAliveTime(IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+      evictor.allowCoreThreadTimeOut(true);
+    }
+    evictor.schedule(
+        ImapConnectionPool::closeExpiredConnections, delayMillis, TimeUnit.MILLISECONDS);
+  }
+}
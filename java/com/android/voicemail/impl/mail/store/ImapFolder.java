@@ -16,6 +16,7 @@
 package com.android.voicemail.impl.mail.store;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
@@ -47,10 +48,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ImapFolder {
   private static final String TAG = "ImapFolder";
@@ -65,6 +68,8 @@ public class ImapFolder {
   private ImapConnection connection;
   private String mode;
   private boolean exists;
+  /** Buffer reused by {@link #fetchPartTo} to decode parts into their destination. */
+  @Nullable private byte[] copyBuffer;
   /** A set of hashes that can be used to track dirtiness */
   Object[] hash;
 
@@ -81,6 +86,30 @@ public class ImapFolder {
     public void messageRetrieved(Message message);
   }
 
+  /** How often {@link #idle} checks whether it has been cancelled. */
+  private static final int IDLE_CANCELLATION_CHECK_MILLIS = 30_000;
+
+  /** The changes of the mailbox pushed by the server during {@link #idle}. */
+  public static class IdleResult {
+    /** The message count when the IDLE started. */
+    public final int previousMessageCount;
+    /** The message count reported by the last EXISTS response. */
+    public int messageCount;
+    /** Whether messages were expunged, which renumbers the messages after them. */
+    public boolean expunged;
+    /** Whether the flags of a message were changed, e.g. by another client. */
+    public boolean flagsChanged;
+
+    IdleResult(int messageCount) {
+      previousMessageCount = messageCount;
+      this.messageCount = messageCount;
+    }
+
+    public boolean hasChanges() {
+      return messageCount != previousMessageCount || expunged || flagsChanged;
+    }
+  }
+
   private void destroyResponses() {
     if (connection != null) {
       connection.destroyResponses();
@@ -220,6 +249,14 @@ public class ImapFolder {
     return getMessagesInternal(uids);
   }
 
+  /**
+   * Returns the messages whose sequence numbers are in {@code sequenceSet}, e.g. "1:*" for all of
+   * them.
+   */
+  public Message[] getMessagesInRange(String sequenceSet) throws MessagingException {
+    return getMessagesInternal(searchForUids(sequenceSet + " NOT DELETED"));
+  }
+
   public Message[] getMessagesInternal(String[] uids) {
     final ArrayList<Message> messages = new ArrayList<Message>(uids.length);
     for (int i = 0; i < uids.length; i++) {
@@ -305,122 +342,204 @@ public class ImapFolder {
           false);
       ImapResponse response;
       do {
-        response = null;
         try {
-          response = connection.readResponse();
+          response =
+              connection.readResponse(
+                  (messageNumber, fetchList) ->
+                      handleFetchResponse(fetchList, fp, messageMap, fetchPart, listener));
+        } finally {
+          destroyResponses();
+        }
+      } while (!response.isTagged());
+    } catch (IOException ioe) {
+      store.getImapHelper().handleEvent(OmtpEvents.DATA_GENERIC_IMAP_IOE);
+      throw ioExceptionHandler(connection, ioe);
+    }
+  }
 
-          if (!response.isDataResponse(1, ImapConstants.FETCH)) {
-            continue; // Ignore
-          }
-          final ImapList fetchList = response.getListOrEmpty(2);
-          final String uid = fetchList.getKeyedStringOrEmpty(ImapConstants.UID).getString();
-          if (TextUtils.isEmpty(uid)) continue;
-
-          ImapMessage message = (ImapMessage) messageMap.get(uid);
-          if (message == null) continue;
-
-          if (fp.contains(FetchProfile.Item.FLAGS)) {
-            final ImapList flags = fetchList.getKeyedListOrEmpty(ImapConstants.FLAGS);
-            for (int i = 0, count = flags.size(); i < count; i++) {
-              final ImapString flag = flags.getStringOrEmpty(i);
-              if (flag.is(ImapConstants.FLAG_DELETED)) {
-                message.setFlagInternal(Flag.DELETED, true);
-              } else if (flag.is(ImapConstants.FLAG_ANSWERED)) {
-                message.setFlagInternal(Flag.ANSWERED, true);
-              } else if (flag.is(ImapConstants.FLAG_SEEN)) {
-                message.setFlagInternal(Flag.SEEN, true);
-              } else if (flag.is(ImapConstants.FLAG_FLAGGED)) {
-                message.setFlagInternal(Flag.FLAGGED, true);
-              }
-            }
-          }
-          if (fp.contains(FetchProfile.Item.ENVELOPE)) {
-            final Date internalDate =
-                fetchList.getKeyedStringOrEmpty(ImapConstants.INTERNALDATE).getDateOrNull();
-            final int size =
-                fetchList.getKeyedStringOrEmpty(ImapConstants.RFC822_SIZE).getNumberOrZero();
-            final String header =
-                fetchList
-                    .getKeyedStringOrEmpty(ImapConstants.BODY_BRACKET_HEADER, true)
-                    .getString();
-
-            message.setInternalDate(internalDate);
-            message.setSize(size);
-            try {
-              message.parse(Utility.streamFromAsciiString(header));
-            } catch (Exception e) {
-              VvmLog.e(TAG, "Error parsing header %s", e);
-            }
-          }
-          if (fp.contains(FetchProfile.Item.STRUCTURE)) {
-            ImapList bs = fetchList.getKeyedListOrEmpty(ImapConstants.BODYSTRUCTURE);
-            if (!bs.isEmpty()) {
-              try {
-                parseBodyStructure(bs, message, ImapConstants.TEXT);
-              } catch (MessagingException e) {
-                VvmLog.v(TAG, "Error handling message", e);
-                message.setBody(null);
-              }
-            }
-          }
-          if (fp.contains(FetchProfile.Item.BODY)
-                  || fp.contains(FetchProfile.Item.BODY_TRUNCATED)) {
-            // Body is keyed by "BODY[]...".
-            // Previously used "BODY[..." but this can be confused with "BODY[HEADER..."
-            // TODO Should we accept "RFC822" as well??
-            ImapString body = fetchList.getKeyedStringOrEmpty("BODY[]", true);
-            InputStream bodyStream = body.getAsStream();
-            try {
-              message.parse(bodyStream);
-            } catch (Exception e) {
-              VvmLog.e(TAG, "Error parsing body %s", e);
-            }
-          }
-          if (fetchPart != null) {
-            InputStream bodyStream = fetchList.getKeyedStringOrEmpty("BODY[", true).getAsStream();
-            String[] encodings = fetchPart.getHeader(MimeHeader.HEADER_CONTENT_TRANSFER_ENCODING);
-
-            String contentTransferEncoding = null;
-            if (encodings != null && encodings.length > 0) {
-              contentTransferEncoding = encodings[0];
-            } else {
-              // According to http://tools.ietf.org/html/rfc2045#section-6.1
-              // "7bit" is the default.
-              contentTransferEncoding = "7bit";
-            }
+  /** Applies the items of a FETCH response to the message it is for. */
+  private void handleFetchResponse(
+      ImapList fetchList,
+      FetchProfile fp,
+      ArrayMap<String, Message> messageMap,
+      @Nullable Part fetchPart,
+      MessageRetrievalListener listener)
+      throws MessagingException {
+    final String uid = fetchList.getKeyedStringOrEmpty(ImapConstants.UID).getString();
+    if (TextUtils.isEmpty(uid)) return;
 
-            try {
-              // TODO Don't create 2 temp files.
-              // decodeBody creates BinaryTempFileBody, but we could avoid this
-              // if we implement ImapStringBody.
-              // (We'll need to share a temp file.  Protect it with a ref-count.)
-              message.setBody(
-                  decodeBody(
-                      store.getContext(),
-                      bodyStream,
-                      contentTransferEncoding,
-                      fetchPart.getSize(),
-                      listener));
-            } catch (Exception e) {
-              // TODO: Figure out what kinds of exceptions might actually be thrown
-              // from here. This blanket catch-all is because we're not sure what to
-              // do if we don't have a contentTransferEncoding, and we don't have
-              // time to figure out what exceptions might be thrown.
-              VvmLog.e(TAG, "Error fetching body %s", e);
-            }
-          }
+    ImapMessage message = (ImapMessage) messageMap.get(uid);
+    if (message == null) return;
+
+    if (fp.contains(FetchProfile.Item.FLAGS)) {
+      final ImapList flags = fetchList.getKeyedListOrEmpty(ImapConstants.FLAGS);
+      for (int i = 0, count = flags.size(); i < count; i++) {
+        final ImapString flag = flags.getStringOrEmpty(i);
+        if (flag.is(ImapConstants.FLAG_DELETED)) {
+          message.setFlagInternal(Flag.DELETED, true);
+        } else if (flag.is(ImapConstants.FLAG_ANSWERED)) {
+          message.setFlagInternal(Flag.ANSWERED, true);
+        } else if (flag.is(ImapConstants.FLAG_SEEN)) {
+          message.setFlagInternal(Flag.SEEN, true);
+        } else if (flag.is(ImapConstants.FLAG_FLAGGED)) {
+          message.setFlagInternal(Flag.FLAGGED, true);
+        }
+      }
+    }
+    if (fp.contains(FetchProfile.Item.ENVELOPE)) {
+      final Date internalDate =
+          fetchList.getKeyedStringOrEmpty(ImapConstants.INTERNALDATE).getDateOrNull();
+      final int size = fetchList.getKeyedStringOrEmpty(ImapConstants.RFC822_SIZE).getNumberOrZero();
+      final String header =
+          fetchList.getKeyedStringOrEmpty(ImapConstants.BODY_BRACKET_HEADER, true).getString();
+
+      message.setInternalDate(internalDate);
+      message.setSize(size);
+      try {
+        message.parse(Utility.streamFromAsciiString(header));
+      } catch (Exception e) {
+        VvmLog.e(TAG, "Error parsing header %s", e);
+      }
+    }
+    if (fp.contains(FetchProfile.Item.STRUCTURE)) {
+      ImapList bs = fetchList.getKeyedListOrEmpty(ImapConstants.BODYSTRUCTURE);
+      if (!bs.isEmpty()) {
+        try {
+          parseBodyStructure(bs, message, ImapConstants.TEXT);
+        } catch (MessagingException e) {
+          VvmLog.v(TAG, "Error handling message", e);
+          message.setBody(null);
+        }
+      }
+    }
+    if (fp.contains(FetchProfile.Item.BODY) || fp.contains(FetchProfile.Item.BODY_TRUNCATED)) {
+      // Body is keyed by "BODY[]...".
+      // Previously used "BODY[..." but this can be confused with "BODY[HEADER..."
+      // TODO Should we accept "RFC822" as well??
+      ImapString body = fetchList.getKeyedStringOrEmpty("BODY[]", true);
+      InputStream bodyStream = body.getAsStream();
+      try {
+        message.parse(bodyStream);
+      } catch (Exception e) {
+        VvmLog.e(TAG, "Error parsing body %s", e);
+      }
+    }
+    if (fetchPart != null) {
+      InputStream bodyStream = fetchList.getKeyedStringOrEmpty("BODY[", true).getAsStream();
+      String[] encodings = fetchPart.getHeader(MimeHeader.HEADER_CONTENT_TRANSFER_ENCODING);
+
+      String contentTransferEncoding = null;
+      if (encodings != null && encodings.length > 0) {
+        contentTransferEncoding = encodings[0];
+      } else {
+        // According to http://tools.ietf.org/html/rfc2045#section-6.1
+        // "7bit" is the default.
+        contentTransferEncoding = "7bit";
+      }
+
+      try {
+        // TODO Don't create 2 temp files.
+        // decodeBody creates BinaryTempFileBody, but we could avoid this
+        // if we implement ImapStringBody.
+        // (We'll need to share a temp file.  Protect it with a ref-count.)
+        message.setBody(
+            decodeBody(
+                store.getContext(),
+                bodyStream,
+                contentTransferEncoding,
+                fetchPart.getSize(),
+                listener));
+      } catch (Exception e) {
+        // TODO: Figure out what kinds of exceptions might actually be thrown
+        // from here. This blanket catch-all is because we're not sure what to
+        // do if we don't have a contentTransferEncoding, and we don't have
+        // time to figure out what exceptions might be thrown.
+        VvmLog.e(TAG, "Error fetching body %s", e);
+      }
+    }
+
+    if (listener != null) {
+      listener.messageRetrieved(message);
+    }
+  }
 
-          if (listener != null) {
-            listener.messageRetrieved(message);
+  /**
+   * Fetches a single body part of a message and writes it to {@code out}, removing its content
+   * transfer encoding on the way. The literal is decoded straight from the connection through one
+   * buffer, so the part is never held whole in memory or in a temp file.
+   *
+   * @param part a part of the message's structure, as fetched with {@link
+   *     FetchProfile.Item#STRUCTURE}.
+   * @return the number of decoded bytes written, or -1 if the server didn't return the part.
+   */
+  public long fetchPartTo(Message message, Part part, OutputStream out)
+      throws MessagingException {
+    checkOpen();
+    final String[] partIds = part.getHeader(MimeHeader.HEADER_ANDROID_ATTACHMENT_STORE_DATA);
+    if (partIds == null) {
+      throw new MessagingException("Part has no id");
+    }
+    String[] encodings = part.getHeader(MimeHeader.HEADER_CONTENT_TRANSFER_ENCODING);
+    // According to http://tools.ietf.org/html/rfc2045#section-6.1 "7bit" is the default.
+    final String contentTransferEncoding =
+        encodings != null && encodings.length > 0 ? encodings[0] : "7bit";
+
+    final long[] bytesWritten = {-1};
+    try {
+      connection.sendCommand(
+          String.format(
+              Locale.US,
+              ImapConstants.UID_FETCH + " %s (%s %s[%s])",
+              message.getUid(),
+              ImapConstants.UID,
+              ImapConstants.FETCH_FIELD_BODY_PEEK_BARE,
+              partIds[0]),
+          false);
+      connection.setLiteralHandler(
+          (in, size) -> {
+            if (bytesWritten[0] != -1) {
+              // Only the first literal is the part.
+              return null;
+            }
+            bytesWritten[0] = copyDecoded(in, contentTransferEncoding, out);
+            return ImapString.EMPTY;
+          });
+      boolean tagged = false;
+      while (!tagged) {
+        try {
+          ImapResponse response = connection.readResponse();
+          tagged = response.isTagged();
+          // Checked before the response is destroyed.
+          if (tagged && !response.isOk()) {
+            throw new MessagingException("Failed to fetch part: " + response);
           }
         } finally {
           destroyResponses();
         }
-      } while (!response.isTagged());
+      }
     } catch (IOException ioe) {
       store.getImapHelper().handleEvent(OmtpEvents.DATA_GENERIC_IMAP_IOE);
       throw ioExceptionHandler(connection, ioe);
+    } finally {
+      connection.setLiteralHandler(null);
     }
+    return bytesWritten[0];
+  }
+
+  private long copyDecoded(InputStream in, String contentTransferEncoding, OutputStream out)
+      throws IOException {
+    in = MimeUtility.getInputStreamForContentTransferEncoding(in, contentTransferEncoding);
+    if (copyBuffer == null) {
+      copyBuffer = new byte[COPY_BUFFER_SIZE];
+    }
+    long count = 0;
+    int n;
+    // A Base64DataException is propagated, so a truncated part is not taken for the whole part.
+    while (-1 != (n = in.read(copyBuffer))) {
+      out.write(copyBuffer, 0, n);
+      count += n;
+    }
+    return count;
   }
 
   /**
@@ -470,6 +589,50 @@ public class ImapFolder {
     }
   }
 
+  /**
+   * Waits with IDLE (RFC 2177) until the server reports a change of the folder, {@code
+   * timeoutMillis} have elapsed or {@code cancelled} is set. The folder must be open, and the
+   * server must support IDLE (see {@link ImapConnection#isIdleSupported()}).
+   */
+  public IdleResult idle(long timeoutMillis, AtomicBoolean cancelled) throws MessagingException {
+    checkOpen();
+    IdleResult result = new IdleResult(messageCount);
+    long deadline = SystemClock.elapsedRealtime() + timeoutMillis;
+    try {
+      handleIdleResponses(connection.startIdle(), result);
+      while (!result.hasChanges() && !cancelled.get()) {
+        long remaining = deadline - SystemClock.elapsedRealtime();
+        if (remaining <= 0) {
+          break;
+        }
+        ImapResponse response =
+            connection.readIdleResponse((int) Math.min(remaining, IDLE_CANCELLATION_CHECK_MILLIS));
+        if (response != null) {
+          handleIdleResponses(Arrays.asList(response), result);
+        }
+      }
+      handleIdleResponses(connection.stopIdle(), result);
+      return result;
+    } catch (IOException ioe) {
+      throw ioExceptionHandler(connection, ioe);
+    } finally {
+      destroyResponses();
+    }
+  }
+
+  private void handleIdleResponses(List<ImapResponse> responses, IdleResult result) {
+    for (ImapResponse response : responses) {
+      if (response.isDataResponse(1, ImapConstants.EXISTS)) {
+        messageCount = response.getStringOrEmpty(0).getNumberOrZero();
+        result.messageCount = messageCount;
+      } else if (response.isDataResponse(1, ImapConstants.EXPUNGE)) {
+        result.expunged = true;
+      } else if (response.isDataResponse(1, ImapConstants.FETCH)) {
+        result.flagsChanged = true;
+      }
+    }
+  }
+
   /**
    * Handle an untagged response that the caller doesn't care to handle themselves.
    *
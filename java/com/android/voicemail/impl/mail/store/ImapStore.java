@@ -39,6 +39,7 @@ public class ImapStore {
   private final String username;
   private final String password;
   private final MailTransport transport;
+  private final ImapConnectionPool.Key poolKey;
   private ImapConnection connection;
 
   public static final int FLAG_NONE = 0x00; // No flags
@@ -63,6 +64,9 @@ public class ImapStore {
     this.username = username;
     this.password = password;
     transport = new MailTransport(context, this.getImapHelper(), network, serverName, port, flags);
+    poolKey =
+        new ImapConnectionPool.Key(
+            helper.getPhoneAccountHandle(), network, username, password, serverName, port, flags);
   }
 
   public Context getContext() {
@@ -81,6 +85,10 @@ public class ImapStore {
     return password;
   }
 
+  ImapConnectionPool.Key getPoolKey() {
+    return poolKey;
+  }
+
   /** Returns a clone of the transport associated with this store. */
   MailTransport cloneTransport() {
     return transport.clone();
@@ -166,16 +174,20 @@ public class ImapStore {
     }
   }
 
+  /**
+   * Returns the connection to the {@link ImapConnectionPool}, which keeps it logged in for a while
+   * so the next store of the same account can reuse it.
+   */
   public void closeConnection() {
     if (connection != null) {
-      connection.close();
+      ImapConnectionPool.release(this, connection);
       connection = null;
     }
   }
 
   public ImapConnection getConnection() {
     if (connection == null) {
-      connection = new ImapConnection(this);
+      connection = ImapConnectionPool.acquire(this);
     }
     return connection;
   }
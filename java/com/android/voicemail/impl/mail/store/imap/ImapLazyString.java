@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.voicemail.impl.mail.store.imap;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Subclass of {@link ImapString} used for the non literals of the responses passed to a {@link
+ * ImapResponseParser.FetchHandler}. It is a view of the parser's buffer, which is only decoded
+ * when the string is first read.
+ */
+public class ImapLazyString extends ImapString {
+  private byte[] bytes;
+  private final int offset;
+  private final int length;
+  private String string;
+
+  /* package */ ImapLazyString(byte[] bytes, int offset, int length) {
+    this.bytes = bytes;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  @Override
+  public void destroy() {
+    bytes = null;
+    string = null;
+    super.destroy();
+  }
+
+  @Override
+  public String getString() {
+    if (string == null) {
+      checkNotDestroyed();
+      string = new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+    return string;
+  }
+
+  @Override
+  public InputStream getAsStream() {
+    checkNotDestroyed();
+    return new ByteArrayInputStream(bytes, offset, length);
+  }
+
+  @Override
+  public String toString() {
+    // Purposefully not return just the string, in order to prevent using it instead of getString.
+    return isDestroyed() ? "[destroyed]" : "\"" + getString() + "\"";
+  }
+}
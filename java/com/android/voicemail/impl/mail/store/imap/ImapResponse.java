@@ -34,6 +34,11 @@ public class ImapResponse extends ImapList {
         || ImapConstants.BYE.equalsIgnoreCase(symbol);
   }
 
+  /** @return the tag of the response, or {@code null} if it's untagged. */
+  public String getTag() {
+    return tag;
+  }
+
   /** @return whether it's a tagged response. */
   public boolean isTagged() {
     return tag != null;
@@ -16,32 +16,63 @@
 
 package com.android.voicemail.impl.mail.store.imap;
 
+import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import com.android.voicemail.impl.VvmLog;
 import com.android.voicemail.impl.mail.FixedLengthInputStream;
 import com.android.voicemail.impl.mail.MessagingException;
-import com.android.voicemail.impl.mail.PeekableInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 
-/** IMAP response parser. */
+/**
+ * IMAP response parser.
+ *
+ * <p>The stream is read ahead into a reusable buffer, and strings are accumulated as bytes in a
+ * reusable scratch buffer. Untagged FETCH responses can be passed to a {@link FetchHandler} instead
+ * of being kept until {@link #destroyResponses()}, in which case their strings are only decoded
+ * when the handler reads them.
+ */
 public class ImapResponseParser {
   private static final String TAG = "ImapResponseParser";
 
   /** Literal larger than this will be stored in temp file. */
   public static final int LITERAL_KEEP_IN_MEMORY_THRESHOLD = 2 * 1024 * 1024;
 
+  private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+  private static final int SCRATCH_INITIAL_SIZE = 256;
+
+  /** A scratch buffer grown larger than this by a response is not kept for the next one. */
+  private static final int SCRATCH_MAX_RETAINED_SIZE = 64 * 1024;
+
   /** Input stream */
-  private final PeekableInputStream in;
+  private final InputStream in;
+
+  /** Bytes read ahead from {@link #in}. Those from readPosition to readLimit are not parsed yet. */
+  private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+
+  private int readPosition;
+  private int readLimit;
+
+  /** Reads the rest of {@link #readBuffer} before {@link #in}, for literals. */
+  private final InputStream bufferedIn = new BufferedIn();
 
   private final int literalKeepInMemoryThreshold;
 
-  /** StringBuilder used by readUntil() */
-  private final StringBuilder bufferReadUntil = new StringBuilder();
+  /**
+   * Bytes of the string being parsed, from tokenStart to scratchLength. The strings of a response
+   * passed to a {@link FetchHandler} stay in it until the handler returns.
+   */
+  private byte[] scratch = new byte[SCRATCH_INITIAL_SIZE];
 
-  /** StringBuilder used by parseBareString() */
-  private final StringBuilder parseBareString = new StringBuilder();
+  private int scratchLength;
+  private int tokenStart;
+
+  /** Whether strings are parsed into {@link ImapLazyString} views of {@link #scratch}. */
+  private boolean lazyStrings;
 
   /**
    * We store all {@link ImapResponse} in it. {@link #destroyResponses()} must be called from time
@@ -49,6 +80,39 @@ public class ImapResponseParser {
    */
   private final ArrayList<ImapResponse> responsesToDestroy = new ArrayList<ImapResponse>();
 
+  /** Receives literals instead of them being buffered, or null. */
+  @Nullable private LiteralHandler literalHandler;
+
+  /** Consumes literals as they are read from the connection. */
+  public interface LiteralHandler {
+
+    /**
+     * Called when a literal is read. The handler may stream {@code in} elsewhere instead of the
+     * parser buffering the literal in memory or in a temp file. Whatever the handler leaves unread
+     * is skipped.
+     *
+     * @param in the content of the literal, {@code size} bytes long.
+     * @return the value to put in the response in place of the literal, or null to let the parser
+     *     buffer the literal as usual. The handler must not read {@code in} if it returns null.
+     */
+    @Nullable
+    ImapString onLiteral(InputStream in, int size) throws IOException;
+  }
+
+  /** Receives the untagged FETCH responses read by {@link #readResponse(boolean, FetchHandler)}. */
+  public interface FetchHandler {
+
+    /**
+     * Called for each untagged FETCH response, once the whole response has been read.
+     *
+     * @param messageNumber the message sequence number of the response.
+     * @param items the items of the response, e.g. (UID 7 FLAGS (\Seen)). Strings are decoded when
+     *     first read, and literals go through the {@link LiteralHandler} as usual. The list is
+     *     destroyed when the method returns, so it must not be kept.
+     */
+    void onFetch(int messageNumber, ImapList items) throws IOException, MessagingException;
+  }
+
   /**
    * Exception thrown when we receive BYE. It derives from IOException, so it'll be treated in the
    * same way EOF does.
@@ -68,10 +132,18 @@ public class ImapResponseParser {
 
   /** Constructor for testing to override the literal size threshold. */
   /* package for test */ ImapResponseParser(InputStream in, int literalKeepInMemoryThreshold) {
-    this.in = new PeekableInputStream(in);
+    this.in = in;
     this.literalKeepInMemoryThreshold = literalKeepInMemoryThreshold;
   }
 
+  /**
+   * Sets the handler which receives the literals of the following responses, or null to buffer
+   * them again.
+   */
+  public void setLiteralHandler(@Nullable LiteralHandler literalHandler) {
+    this.literalHandler = literalHandler;
+  }
+
   private static IOException newEOSException() {
     final String message = "End of stream reached";
     VvmLog.d(TAG, message);
@@ -79,31 +151,65 @@ public class ImapResponseParser {
   }
 
   /**
-   * Peek next one byte.
+   * Reads the next bytes from {@link #in} into {@link #readBuffer}, which must have been fully
+   * parsed.
+   *
+   * @return false if reaches EOF.
+   */
+  private boolean fill() throws IOException {
+    int count;
+    do {
+      count = in.read(readBuffer, 0, readBuffer.length);
+    } while (count == 0);
+    if (count == -1) {
+      return false;
+    }
+    readPosition = 0;
+    readLimit = count;
+    return true;
+  }
+
+  /**
+   * Makes sure that at least one byte is in {@link #readBuffer}.
    *
    * <p>Throws IOException() if reaches EOF. As long as logical response lines end with \r\n, we
    * shouldn't see EOF during parsing.
    */
-  private int peek() throws IOException {
-    final int next = in.peek();
-    if (next == -1) {
+  private void ensureAvailable() throws IOException {
+    if (readPosition == readLimit && !fill()) {
       throw newEOSException();
     }
-    return next;
   }
 
   /**
-   * Read and return one byte from {@link #in}, and put it in {@link #mDiscourseLogger}.
+   * Blocks until the start of the next response is received, without consuming it. Unlike {@link
+   * #readResponse(boolean)}, a {@link java.net.SocketTimeoutException} leaves the parser untouched,
+   * so waiting for a response pushed by the server can time out and be retried.
+   */
+  public void awaitResponse() throws IOException {
+    ensureAvailable();
+  }
+
+  /**
+   * Peek next one byte.
+   *
+   * <p>Throws IOException() if reaches EOF. As long as logical response lines end with \r\n, we
+   * shouldn't see EOF during parsing.
+   */
+  private int peek() throws IOException {
+    ensureAvailable();
+    return readBuffer[readPosition] & 0xff;
+  }
+
+  /**
+   * Read and return one byte.
    *
    * <p>Throws IOException() if reaches EOF. As long as logical response lines end with \r\n, we
    * shouldn't see EOF during parsing.
    */
   private int readByte() throws IOException {
-    int next = in.read();
-    if (next == -1) {
-      throw newEOSException();
-    }
-    return next;
+    ensureAvailable();
+    return readBuffer[readPosition++] & 0xff;
   }
 
   /**
@@ -132,9 +238,20 @@ public class ImapResponseParser {
    * @exception ByeException when detects BYE and <code>byeExpected</code> is false.
    */
   public ImapResponse readResponse(boolean byeExpected) throws IOException, MessagingException {
+    return readResponse(byeExpected, null);
+  }
+
+  /**
+   * Same as {@link #readResponse(boolean)}, except that an untagged FETCH response is passed to
+   * {@code fetchHandler} without being added to the returned response, which then only contains
+   * the message number and FETCH. Large mailboxes can then be fetched without building a tree of
+   * strings per message.
+   */
+  public ImapResponse readResponse(boolean byeExpected, @Nullable FetchHandler fetchHandler)
+      throws IOException, MessagingException {
     ImapResponse response = null;
     try {
-      response = parseResponse();
+      response = parseResponse(fetchHandler);
     } catch (RuntimeException e) {
       // Parser crash -- log network activities.
       onParseError(e);
@@ -192,15 +309,9 @@ public class ImapResponseParser {
    * (rather than peeked) and won't be included in the result.
    */
   /* package for test */ String readUntil(char end) throws IOException {
-    bufferReadUntil.setLength(0);
-    for (; ; ) {
-      final int ch = readByte();
-      if (ch != end) {
-        bufferReadUntil.append((char) ch);
-      } else {
-        return bufferReadUntil.toString();
-      }
-    }
+    startToken();
+    appendUntil(end);
+    return takeString();
   }
 
   /** Read all bytes until \r\n. */
@@ -210,8 +321,113 @@ public class ImapResponseParser {
     return ret;
   }
 
+  /** Starts a string at the end of {@link #scratch}. */
+  private void startToken() {
+    tokenStart = scratchLength;
+  }
+
+  private void append(int b) {
+    ensureScratchCapacity(1);
+    scratch[scratchLength++] = (byte) b;
+  }
+
+  private void append(byte[] bytes, int offset, int length) {
+    ensureScratchCapacity(length);
+    System.arraycopy(bytes, offset, scratch, scratchLength, length);
+    scratchLength += length;
+  }
+
+  private void ensureScratchCapacity(int length) {
+    if (scratchLength + length > scratch.length) {
+      // The views already created keep the old array, which is not written anymore.
+      scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, scratchLength + length));
+    }
+  }
+
+  /** Appends all bytes until {@code end}, which is read but not appended, to the string. */
+  private void appendUntil(char end) throws IOException {
+    for (; ; ) {
+      ensureAvailable();
+      final int start = readPosition;
+      int i = start;
+      while (i < readLimit && readBuffer[i] != end) {
+        i++;
+      }
+      append(readBuffer, start, i - start);
+      if (i < readLimit) {
+        readPosition = i + 1;
+        return;
+      }
+      readPosition = i;
+    }
+  }
+
+  /** Appends all bytes until the next {@link #isAtomSpecial} one to the string. */
+  private void appendAtomChars() throws IOException {
+    for (; ; ) {
+      ensureAvailable();
+      final int start = readPosition;
+      int i = start;
+      while (i < readLimit && !isAtomSpecial(readBuffer[i] & 0xff)) {
+        i++;
+      }
+      append(readBuffer, start, i - start);
+      readPosition = i;
+      if (i < readLimit) {
+        return;
+      }
+    }
+  }
+
+  private boolean isTokenEmpty() {
+    return scratchLength == tokenStart;
+  }
+
+  private boolean tokenEqualsIgnoreCase(String s) {
+    if (scratchLength - tokenStart != s.length()) {
+      return false;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      if (Character.toUpperCase((char) (scratch[tokenStart + i] & 0xff))
+          != Character.toUpperCase(s.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the string and removes it from {@link #scratch}. */
+  private String takeString() {
+    String s =
+        new String(scratch, tokenStart, scratchLength - tokenStart, StandardCharsets.ISO_8859_1);
+    scratchLength = tokenStart;
+    return s;
+  }
+
+  /**
+   * Returns the string as an {@link ImapLazyString} if {@link #lazyStrings}, in which case it is
+   * kept in {@link #scratch}, or as an {@link ImapSimpleString} otherwise.
+   */
+  private ImapString takeImapString() {
+    if (lazyStrings) {
+      return new ImapLazyString(scratch, tokenStart, scratchLength - tokenStart);
+    }
+    return new ImapSimpleString(takeString());
+  }
+
+  /** Empties {@link #scratch}, invalidating the {@link ImapLazyString} views. */
+  private void resetScratch() {
+    scratchLength = 0;
+    tokenStart = 0;
+    if (scratch.length > SCRATCH_MAX_RETAINED_SIZE) {
+      scratch = new byte[SCRATCH_INITIAL_SIZE];
+    }
+  }
+
   /** Parse and return the response line. */
-  private ImapResponse parseResponse() throws IOException, MessagingException {
+  private ImapResponse parseResponse(@Nullable FetchHandler fetchHandler)
+      throws IOException, MessagingException {
+    resetScratch();
     // We need to destroy the response if we get an exception.
     // So, we first store the response that's being built in responseToDestroy, until it's
     // completely built, at which point we copy it into responseToReturn and null out
@@ -271,6 +487,8 @@ public class ImapResponseParser {
               // The rest is free-form text.
               responseToDestroy.add(new ImapSimpleString(rest));
             }
+          } else if (fetchHandler != null && tag == null && firstString.isNumber()) {
+            parseNumberedData(responseToDestroy, firstString.getNumberOrZero(), fetchHandler);
           } else { // It's a response data.
             parseElements(responseToDestroy, '\0');
           }
@@ -293,6 +511,42 @@ public class ImapResponseParser {
     return responseToReturn;
   }
 
+  /**
+   * Parses the rest of an untagged response starting with a message number. If it is a FETCH
+   * response, its items are passed to {@code fetchHandler} instead of being added to {@code
+   * response}.
+   */
+  private void parseNumberedData(ImapResponse response, int messageNumber, FetchHandler handler)
+      throws IOException, MessagingException {
+    final ImapString type = parseBareString();
+    response.add(type);
+    if (!type.is(ImapConstants.FETCH) || peek() != ' ') {
+      parseElements(response, '\0');
+      return;
+    }
+    readByte(); // skip ' '
+    if (peek() != '(') {
+      parseElements(response, '\0');
+      return;
+    }
+
+    ImapList items = null;
+    lazyStrings = true;
+    try {
+      items = parseList('(', ')');
+      lazyStrings = false;
+      // Read up to the next response first, so the stream stays usable whatever the handler does.
+      parseElements(response, '\0');
+      handler.onFetch(messageNumber, items);
+    } finally {
+      lazyStrings = false;
+      if (items != null) {
+        items.destroy();
+      }
+      resetScratch();
+    }
+  }
+
   private ImapElement parseElement() throws IOException, MessagingException {
     final int next = peek();
     switch (next) {
@@ -302,7 +556,9 @@ public class ImapResponseParser {
         return parseList('[', ']');
       case '"':
         readByte(); // Skip "
-        return new ImapSimpleString(readUntil('"'));
+        startToken();
+        appendUntil('"');
+        return takeImapString();
       case '{':
         return parseLiteral();
       case '\r': // CR
@@ -326,50 +582,53 @@ public class ImapResponseParser {
    * <p>If the value is "NIL", returns an empty string.
    */
   private ImapString parseBareString() throws IOException, MessagingException {
-    parseBareString.setLength(0);
+    startToken();
     for (; ; ) {
-      final int ch = peek();
-
-      // TODO Can we clean this up?  (This condition is from the old parser.)
-      if (ch == '('
-          || ch == ')'
-          || ch == '{'
-          || ch == ' '
-          ||
-          // ']' is not part of atom (it's in resp-specials)
-          ch == ']'
-          ||
-          // docs claim that flags are \ atom but atom isn't supposed to
-          // contain
-          // * and some flags contain *
-          // ch == '%' || ch == '*' ||
-          ch == '%'
-          ||
-          // TODO probably should not allow \ and should recognize
-          // it as a flag instead
-          // ch == '"' || ch == '\' ||
-          ch == '"'
-          || (0x00 <= ch && ch <= 0x1f)
-          || ch == 0x7f) {
-        if (parseBareString.length() == 0) {
-          throw new MessagingException("Expected string, none found.");
-        }
-        String s = parseBareString.toString();
-
-        // NIL will be always converted into the empty string.
-        if (ImapConstants.NIL.equalsIgnoreCase(s)) {
-          return ImapString.EMPTY;
-        }
-        return new ImapSimpleString(s);
-      } else if (ch == '[') {
-        // Eat all until next ']'
-        parseBareString.append((char) readByte());
-        parseBareString.append(readUntil(']'));
-        parseBareString.append(']'); // readUntil won't include the end char.
-      } else {
-        parseBareString.append((char) readByte());
+      appendAtomChars();
+      if (peek() != '[') {
+        break;
       }
+      // Eat all until next ']'
+      append(readByte());
+      appendUntil(']');
+      append(']'); // appendUntil won't include the end char.
+    }
+    if (isTokenEmpty()) {
+      throw new MessagingException("Expected string, none found.");
+    }
+
+    // NIL will be always converted into the empty string.
+    if (tokenEqualsIgnoreCase(ImapConstants.NIL)) {
+      scratchLength = tokenStart;
+      return ImapString.EMPTY;
     }
+    return takeImapString();
+  }
+
+  /** Whether {@code ch} ends an atom, or is the '[' starting a part of it. */
+  private static boolean isAtomSpecial(int ch) {
+    // TODO Can we clean this up?  (This condition is from the old parser.)
+    return ch == '('
+        || ch == ')'
+        || ch == '{'
+        || ch == ' '
+        ||
+        // ']' is not part of atom (it's in resp-specials)
+        ch == ']'
+        ||
+        // docs claim that flags are \ atom but atom isn't supposed to
+        // contain
+        // * and some flags contain *
+        // ch == '%' || ch == '*' ||
+        ch == '%'
+        ||
+        // TODO probably should not allow \ and should recognize
+        // it as a flag instead
+        // ch == '"' || ch == '\' ||
+        ch == '"'
+        || (0x00 <= ch && ch <= 0x1f)
+        || ch == 0x7f
+        || ch == '[';
   }
 
   private void parseElements(ImapList list, char end) throws IOException, MessagingException {
@@ -414,11 +673,51 @@ public class ImapResponseParser {
     }
     expect('\r');
     expect('\n');
-    FixedLengthInputStream in = new FixedLengthInputStream(this.in, size);
+    FixedLengthInputStream in = new FixedLengthInputStream(bufferedIn, size);
+    if (literalHandler != null) {
+      ImapString handled = literalHandler.onLiteral(in, size);
+      if (handled != null) {
+        // Skip what the handler didn't read so that parsing resumes after the literal.
+        while (in.skip(size) > 0) {}
+        return handled;
+      }
+    }
     if (size > literalKeepInMemoryThreshold) {
       return new ImapTempFileLiteral(in);
     } else {
       return new ImapMemoryLiteral(in);
     }
   }
+
+  /** Reads {@link #readBuffer} before {@link #in}, so that literals can be streamed. */
+  private class BufferedIn extends InputStream {
+
+    @Override
+    public int read() throws IOException {
+      if (readPosition == readLimit && !fill()) {
+        return -1;
+      }
+      return readBuffer[readPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      if (readPosition == readLimit) {
+        if (length >= readBuffer.length) {
+          // Nothing to gain from copying large reads through the buffer.
+          return in.read(b, offset, length);
+        }
+        if (!fill()) {
+          return -1;
+        }
+      }
+      final int count = Math.min(length, readLimit - readPosition);
+      System.arraycopy(readBuffer, readPosition, b, offset, count);
+      readPosition += count;
+      return count;
+    }
+  }
 }
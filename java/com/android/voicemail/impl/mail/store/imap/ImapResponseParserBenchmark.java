@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.voicemail.impl.mail.store.imap;
+
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import com.android.voicemail.impl.VvmLog;
+import com.android.voicemail.impl.mail.MessagingException;
+import com.android.voicemail.impl.mail.store.imap.ImapResponseParser.FetchHandler;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Measures the throughput of {@link ImapResponseParser} by replaying server transcripts, the bytes
+ * received from an IMAP server for a command, once building the response trees and once passing
+ * the FETCH responses to a {@link FetchHandler}.
+ *
+ * <p>The built-in transcripts follow what carrier servers return for the commands of {@link
+ * com.android.voicemail.impl.imap.ImapHelper}. A transcript recorded from a real server can be
+ * replayed instead, its responses must end with a tagged one.
+ */
+public final class ImapResponseParserBenchmark {
+
+  private static final String TAG = "ImapResponseParserBenchmark";
+
+  private static final int MAILBOX_SIZE = 500;
+
+  private static final int AUDIO_SIZE = 256 * 1024;
+
+  private ImapResponseParserBenchmark() {}
+
+  /**
+   * Replays each transcript {@code iterations} times in both modes, after an iteration to warm up.
+   *
+   * @param transcript a recorded transcript, or null to replay the built-in ones.
+   * @return a report of the throughput of each transcript and mode.
+   */
+  @WorkerThread
+  public static String run(@Nullable File transcript, int iterations)
+      throws IOException, MessagingException {
+    StringBuilder report = new StringBuilder();
+    if (transcript != null) {
+      benchmark(report, transcript.getName(), readFile(transcript), iterations);
+    } else {
+      benchmark(report, "header fetch", buildHeaderFetchTranscript(), iterations);
+      benchmark(report, "uid search", buildSearchTranscript(), iterations);
+      benchmark(report, "audio fetch", buildAudioFetchTranscript(), iterations);
+    }
+    VvmLog.i(TAG, report.toString());
+    return report.toString();
+  }
+
+  private static void benchmark(
+      StringBuilder report, String name, byte[] transcript, int iterations)
+      throws IOException, MessagingException {
+    for (boolean useFetchHandler : new boolean[] {false, true}) {
+      replay(transcript, useFetchHandler);
+      int responses = 0;
+      long start = SystemClock.elapsedRealtimeNanos();
+      for (int i = 0; i < iterations; i++) {
+        responses += replay(transcript, useFetchHandler);
+      }
+      double seconds = (SystemClock.elapsedRealtimeNanos() - start) / 1e9;
+      report.append(
+          String.format(
+              Locale.US,
+              "%s (%s): %.1f MB/s, %.0f responses/s%n",
+              name,
+              useFetchHandler ? "fetch handler" : "response tree",
+              (double) transcript.length * iterations / (1024 * 1024) / seconds,
+              responses / seconds));
+    }
+  }
+
+  /**
+   * Parses {@code transcript} like {@link com.android.voicemail.impl.mail.store.ImapFolder} does,
+   * reading the UID of every FETCH response.
+   *
+   * @return the number of responses.
+   */
+  private static int replay(byte[] transcript, boolean useFetchHandler)
+      throws IOException, MessagingException {
+    ImapResponseParser parser = new ImapResponseParser(new ByteArrayInputStream(transcript));
+    FetchHandler fetchHandler =
+        (messageNumber, items) -> items.getKeyedStringOrEmpty(ImapConstants.UID).getString();
+    int responses = 0;
+    ImapResponse response;
+    do {
+      try {
+        if (useFetchHandler) {
+          response = parser.readResponse(false, fetchHandler);
+        } else {
+          response = parser.readResponse(false);
+          if (response.isDataResponse(1, ImapConstants.FETCH)) {
+            response.getListOrEmpty(2).getKeyedStringOrEmpty(ImapConstants.UID).getString();
+          }
+        }
+        responses++;
+      } finally {
+        parser.destroyResponses();
+      }
+    } while (!response.isTagged());
+    return responses;
+  }
+
+  /** The FETCH of {@link com.android.voicemail.impl.imap.ImapHelper#fetchAllVoicemails()}. */
+  private static byte[] buildHeaderFetchTranscript() {
+    StringBuilder transcript = new StringBuilder();
+    for (int i = 1; i <= MAILBOX_SIZE; i++) {
+      String header =
+          "Date: Mon, 1 Oct 2018 10:00:00 -0700\r\n"
+              + "Subject: voice mail\r\n"
+              + "From: 5550100@vvm.example.com\r\n"
+              + "Content-Type: multipart/mixed; boundary=\"boundary"
+              + i
+              + "\"\r\n\r\n";
+      transcript
+          .append("* ")
+          .append(i)
+          .append(" FETCH (UID ")
+          .append(1000 + i)
+          .append(" FLAGS (\\Seen) INTERNALDATE \"01-Oct-2018 10:00:00 -0700\" RFC822.SIZE 8192")
+          .append(" BODY[HEADER.FIELDS (DATE SUBJECT FROM CONTENT-TYPE TO CC)] {")
+          .append(header.length())
+          .append("}\r\n")
+          .append(header)
+          .append(" BODYSTRUCTURE ((\"audio\" \"amr\" (\"name\" \"voicemail.amr\") NIL NIL")
+          .append(" \"base64\" 5842 NIL (\"attachment\" (\"filename\" \"voicemail.amr\")) NIL)")
+          .append(" (\"text\" \"plain\" (\"charset\" \"us-ascii\") NIL NIL \"7bit\" 64 2 NIL NIL")
+          .append(" NIL) \"mixed\" (\"boundary\" \"boundary")
+          .append(i)
+          .append("\") NIL NIL))\r\n");
+    }
+    transcript.append("A5 OK UID FETCH completed\r\n");
+    return transcript.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /** The SEARCH of {@link com.android.voicemail.impl.mail.store.ImapFolder#getMessagesInRange}. */
+  private static byte[] buildSearchTranscript() {
+    StringBuilder transcript = new StringBuilder("* SEARCH");
+    for (int i = 1; i <= MAILBOX_SIZE * 10; i++) {
+      transcript.append(' ').append(1000 + i);
+    }
+    transcript.append("\r\nA4 OK UID SEARCH completed\r\n");
+    return transcript.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /** The FETCH of the audio part of a voicemail. */
+  private static byte[] buildAudioFetchTranscript() {
+    char[] audio = new char[AUDIO_SIZE];
+    for (int i = 0; i < audio.length; i++) {
+      // base64 lines of 76 characters.
+      audio[i] = i % 78 == 76 ? '\r' : i % 78 == 77 ? '\n' : (char) ('A' + i % 26);
+    }
+    String transcript =
+        "* 1 FETCH (UID 1001 BODY[1] {"
+            + audio.length
+            + "}\r\n"
+            + new String(audio)
+            + ")\r\nA6 OK UID FETCH completed\r\n";
+    return transcript.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static byte[] readFile(File file) throws IOException {
+    byte[] bytes = new byte[(int) file.length()];
+    try (InputStream in = new FileInputStream(file)) {
+      int count = 0;
+      int read;
+      while (count < bytes.length && (read = in.read(bytes, count, bytes.length - count)) != -1) {
+        count += read;
+      }
+      return Arrays.copyOf(bytes, count);
+    }
+  }
+}
@@ -180,6 +180,16 @@ public abstract class BaseTask implements Task {
     return executionTime - getTimeMillis();
   }
 
+  @Override
+  public int getPriority() {
+    return PRIORITY_BACKGROUND;
+  }
+
+  @Override
+  public boolean isEquivalentTo(Task task) {
+    return false;
+  }
+
   @Override
   @CallSuper
   public void onBeforeExecute() {
@@ -49,6 +49,16 @@ public interface Task {
   int TASK_ACTIVATION = 3;
   int TASK_STATUS_CHECK = 4;
 
+  /**
+   * Priority of tasks the user is waiting on, such as downloading a voicemail that just arrived.
+   * Among the ready tasks, the one with the highest priority is executed first.
+   */
+  int PRIORITY_USER_VISIBLE = 2;
+  /** Priority of tasks synchronizing the voicemail inbox with the server. */
+  int PRIORITY_SYNC = 1;
+  /** Priority of housekeeping tasks that can wait for everything else, such as status checks. */
+  int PRIORITY_BACKGROUND = 0;
+
   /**
    * Used to differentiate between types of tasks. If a task with the same TaskId is already in the
    * queue the new task will be rejected.
@@ -114,12 +124,27 @@ public interface Task {
    * @return number of milliSeconds the scheduler should wait before running this task. A value less
    *     than {@link TaskExecutor#READY_TOLERANCE_MILLISECONDS} will be considered ready. If no
    *     tasks are ready, the scheduler will sleep for this amount of time before doing another
-   *     check (it will still wake if a new task is added). The first task in the queue that is
-   *     ready will be executed.
+   *     check (it will still wake if a new task is added). The ready task with the highest
+   *     {@link #getPriority()} will be executed, in insertion order if priorities are equal.
    */
   @MainThread
   long getReadyInMilliSeconds();
 
+  /**
+   * @return one of {@link #PRIORITY_USER_VISIBLE}, {@link #PRIORITY_SYNC} or {@link
+   *     #PRIORITY_BACKGROUND}.
+   */
+  @MainThread
+  int getPriority();
+
+  /**
+   * Whether this queued task would do the same work as {@code task}, in which case {@code task} is
+   * discarded. Only consulted for tasks with {@link #TASK_ALLOW_DUPLICATES}, as other tasks are
+   * already deduplicated by their {@link TaskId}.
+   */
+  @MainThread
+  boolean isEquivalentTo(Task task);
+
   /**
    * Called on the main thread when the scheduler is about to send the task into the worker thread,
    * calling {@link #onExecuteInBackgroundThread()}
@@ -25,6 +25,7 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.annotation.MainThread;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
@@ -140,6 +141,19 @@ final class TaskExecutor {
 
   private Job job;
 
+  /**
+   * Wakes the executor when the next task is ready. At most one is pending, so adding a task during
+   * a short sleep replaces the wakeup instead of stacking another one.
+   */
+  private final Runnable wakeUp =
+      new Runnable() {
+        @MainThread
+        @Override
+        public void run() {
+          maybeRunNextTask();
+        }
+      };
+
   private final Runnable stopServiceWithDelay =
       new Runnable() {
         @MainThread
@@ -320,6 +334,8 @@ final class TaskExecutor {
     NextTask nextTask = getTasks().getNextTask(READY_TOLERANCE_MILLISECONDS);
 
     if (nextTask.task != null) {
+      mainThreadHandler.removeCallbacks(wakeUp);
+      logQueueWait(nextTask.task);
       nextTask.task.onBeforeExecute();
       Message message = workerThreadHandler.obtainMessage();
       message.obj = nextTask.task;
@@ -339,19 +355,33 @@ final class TaskExecutor {
   private void sleep(long timeMillis) {
     VvmLog.i(TAG, "sleep for " + timeMillis + " millis");
     if (timeMillis < SHORT_SLEEP_THRESHOLD_MILLISECONDS) {
-      mainThreadHandler.postDelayed(
-          new Runnable() {
-            @Override
-            public void run() {
-              maybeRunNextTask();
-            }
-          },
-          timeMillis);
+      mainThreadHandler.removeCallbacks(wakeUp);
+      mainThreadHandler.postDelayed(wakeUp, timeMillis);
       return;
     }
     scheduleJobAndTerminate(timeMillis, false);
   }
 
+  /**
+   * Logs how long {@code task} waited in the queue in total, and how much of it was spent behind
+   * other tasks after it became ready.
+   */
+  @MainThread
+  private void logQueueWait(Task task) {
+    long queuedMillis = getTasks().getQueuedMillis(task, SystemClock.elapsedRealtime());
+    long lateMillis = Math.max(0, -task.getReadyInMilliSeconds());
+    VvmLog.i(
+        TAG,
+        task
+            + " (priority "
+            + task.getPriority()
+            + ") queued for "
+            + queuedMillis
+            + " millis, "
+            + Math.min(lateMillis, queuedMillis)
+            + " millis after ready");
+  }
+
   private List<Bundle> serializePendingTasks() {
     return getTasks().toBundles();
   }
@@ -422,6 +452,7 @@ final class TaskExecutor {
   void scheduleJobAndTerminate(long delayMillis, boolean isNewJob) {
     Assert.isMainThread();
     finishJobAsync();
+    mainThreadHandler.removeCallbacks(wakeUp);
     mainThreadHandler.post(new JobFinishedPoller(delayMillis, isNewJob));
   }
 
@@ -18,8 +18,10 @@ package com.android.voicemail.impl.scheduling;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.ArrayMap;
 import com.android.voicemail.impl.Assert;
 import com.android.voicemail.impl.VvmLog;
 import com.android.voicemail.impl.scheduling.Task.TaskId;
@@ -28,6 +30,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 
 /**
@@ -39,6 +42,9 @@ class TaskQueue implements Iterable<Task> {
 
   private final Queue<Task> queue = new ArrayDeque<>();
 
+  /** The time each queued task was added, for {@link #getQueuedMillis(Task, long)}. */
+  private final Map<Task, Long> addedTimes = new ArrayMap<>();
+
   public List<Bundle> toBundles() {
     List<Bundle> result = new ArrayList<>(queue.size());
     for (Task task : queue) {
@@ -62,7 +68,9 @@ class TaskQueue implements Iterable<Task> {
 
   /**
    * Add a new task to the queue. A new task with a TaskId collision will be discarded, and {@link
-   * Task#onDuplicatedTaskAdded(Task)} will be called on the existing task.
+   * Task#onDuplicatedTaskAdded(Task)} will be called on the existing task. A task with {@link
+   * Task#TASK_ALLOW_DUPLICATES} will be discarded if a queued task is {@link
+   * Task#isEquivalentTo(Task) equivalent} to it.
    *
    * @return {@code true} if the task is added, or {@code false} if the task is discarded due to
    *     collision.
@@ -78,13 +86,28 @@ class TaskQueue implements Iterable<Task> {
         VvmLog.i("TaskQueue.add", "duplicated task added");
         return false;
       }
+    } else {
+      for (Task queuedTask : queue) {
+        if (queuedTask.isEquivalentTo(task)) {
+          VvmLog.i("TaskQueue.add", "equivalent task already queued, discarding " + task);
+          return false;
+        }
+      }
     }
     queue.add(task);
+    addedTimes.put(task, SystemClock.elapsedRealtime());
     return true;
   }
 
   public void remove(Task task) {
     queue.remove(task);
+    addedTimes.remove(task);
+  }
+
+  /** Returns how long {@code task} has been in the queue at {@code nowMillis}. */
+  long getQueuedMillis(Task task, long nowMillis) {
+    Long addedTime = addedTimes.get(task);
+    return addedTime == null ? 0 : nowMillis - addedTime;
   }
 
   public Task getTask(TaskId id) {
@@ -114,29 +137,38 @@ class TaskQueue implements Iterable<Task> {
   }
 
   /**
-   * The next task is the first task with {@link Task#getReadyInMilliSeconds()} return a value less
-   * then {@code readyToleranceMillis}, in insertion order. If no task matches this criteria, the
-   * minimal value of {@link Task#getReadyInMilliSeconds()} is returned instead. If there are no
-   * tasks at all, the minimalWaitTimeMillis will also be null.
+   * The next task is the task with the highest {@link Task#getPriority()} among the tasks with
+   * {@link Task#getReadyInMilliSeconds()} return a value less then {@code
+   * readyToleranceMillis}, the first one in insertion order if several have the same priority. If
+   * no task matches this criteria, the minimal value of {@link Task#getReadyInMilliSeconds()} is
+   * returned instead. If there are no tasks at all, the minimalWaitTimeMillis will also be null.
+   *
+   * <p>Ready times are evaluated on every call rather than kept sorted because policies such as
+   * {@link PostponePolicy} move the ready time of a queued task.
    */
   @NonNull
   NextTask getNextTask(long readyToleranceMillis) {
+    Task nextTask = null;
     Long minimalWaitTime = null;
     for (Task task : queue) {
       long waitTime = task.getReadyInMilliSeconds();
       if (waitTime < readyToleranceMillis) {
-        return new NextTask(task, 0L);
-      } else {
-        if (minimalWaitTime == null || waitTime < minimalWaitTime) {
-          minimalWaitTime = waitTime;
+        if (nextTask == null || task.getPriority() > nextTask.getPriority()) {
+          nextTask = task;
         }
+      } else if (minimalWaitTime == null || waitTime < minimalWaitTime) {
+        minimalWaitTime = waitTime;
       }
     }
+    if (nextTask != null) {
+      return new NextTask(nextTask, 0L);
+    }
     return new NextTask(null, minimalWaitTime);
   }
 
   public void clear() {
     queue.clear();
+    addedTimes.clear();
   }
 
   public int size() {
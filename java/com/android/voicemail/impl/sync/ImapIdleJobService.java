@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.voicemail.impl.sync;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.BatteryManager;
+import android.os.Build.VERSION_CODES;
+import android.os.SystemClock;
+import android.support.annotation.MainThread;
+import android.telecom.PhoneAccountHandle;
+import android.telecom.TelecomManager;
+import com.android.dialer.buildtype.BuildType;
+import com.android.dialer.buildtype.BuildType.Type;
+import com.android.dialer.common.concurrent.ThreadUtil;
+import com.android.dialer.configprovider.ConfigProviderComponent;
+import com.android.dialer.constants.ScheduledJobIds;
+import com.android.voicemail.impl.VvmLog;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A periodic job which keeps an {@link ImapIdleSession} open for every activated account, so new
+ * voicemails are downloaded as soon as the IMAP server pushes them instead of waiting for the
+ * carrier SMS. Disabled unless the "voicemail_imap_idle_enabled" flag is set.
+ *
+ * <p>A session lasts at most {@link #SESSION_MILLIS_CHARGING} while charging and {@link
+ * #SESSION_MILLIS_ON_BATTERY} otherwise, out of every {@link #PERIOD_MILLIS}, and the job does not
+ * run while the battery is low. The job is cancelled if no server supports IDLE, and scheduled
+ * again on the next boot or activation.
+ */
+@TargetApi(VERSION_CODES.O)
+public class ImapIdleJobService extends JobService {
+
+  private static final String TAG = "ImapIdleJobService";
+
+  private static final long PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+  /** Below the 10 minutes a job is allowed to run. */
+  private static final long SESSION_MILLIS_CHARGING = TimeUnit.MINUTES.toMillis(9);
+
+  private static final long SESSION_MILLIS_ON_BATTERY = TimeUnit.MINUTES.toMillis(3);
+
+  private final AtomicBoolean cancelled = new AtomicBoolean();
+
+  private ExecutorService executor;
+
+  public static boolean isEnabled(Context context) {
+    return ConfigProviderComponent.get(context)
+        .getConfigProvider()
+        .getBoolean("voicemail_imap_idle_enabled", false);
+  }
+
+  /**
+   * Whether the sessions should connect to a {@link LocalImapServer} instead of the carrier server,
+   * to verify the IDLE client without depending on the carrier. Only possible on bugfood builds.
+   */
+  static boolean shouldUseLocalServer(Context context) {
+    return BuildType.get() == Type.BUGFOOD
+        && ConfigProviderComponent.get(context)
+            .getConfigProvider()
+            .getBoolean("voicemail_imap_idle_use_local_server", false);
+  }
+
+  public static void schedule(Context context) {
+    JobScheduler jobScheduler = context.getSystemService(JobScheduler.class);
+    if (!isEnabled(context)) {
+      jobScheduler.cancel(ScheduledJobIds.VVM_IMAP_IDLE_JOB);
+      return;
+    }
+    if (jobScheduler.getPendingJob(ScheduledJobIds.VVM_IMAP_IDLE_JOB) != null) {
+      VvmLog.i("ImapIdleJobService.schedule", "job already scheduled");
+      return;
+    }
+
+    jobScheduler.schedule(
+        new JobInfo.Builder(
+                ScheduledJobIds.VVM_IMAP_IDLE_JOB,
+                new ComponentName(context, ImapIdleJobService.class))
+            .setPeriodic(PERIOD_MILLIS)
+            .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+            .setRequiresBatteryNotLow(true)
+            .build());
+  }
+
+  @Override
+  @MainThread
+  public boolean onStartJob(JobParameters params) {
+    if (!isEnabled(this)) {
+      getSystemService(JobScheduler.class).cancel(ScheduledJobIds.VVM_IMAP_IDLE_JOB);
+      return false;
+    }
+    List<PhoneAccountHandle> accounts = new ArrayList<>();
+    for (PhoneAccountHandle phoneAccountHandle :
+        getSystemService(TelecomManager.class).getCallCapablePhoneAccounts()) {
+      if (VvmAccountManager.isAccountActivated(this, phoneAccountHandle)) {
+        accounts.add(phoneAccountHandle);
+      }
+    }
+    if (accounts.isEmpty()) {
+      return false;
+    }
+
+    long sessionMillis =
+        getSystemService(BatteryManager.class).isCharging()
+            ? SESSION_MILLIS_CHARGING
+            : SESSION_MILLIS_ON_BATTERY;
+    long deadline = SystemClock.elapsedRealtime() + sessionMillis;
+    VvmLog.i(TAG, "starting " + accounts.size() + " sessions for " + sessionMillis + " millis");
+
+    cancelled.set(false);
+    executor = Executors.newFixedThreadPool(accounts.size());
+    AtomicInteger remainingSessions = new AtomicInteger(accounts.size());
+    AtomicBoolean isIdleSupported = new AtomicBoolean();
+    for (PhoneAccountHandle phoneAccountHandle : accounts) {
+      executor.execute(
+          () -> {
+            if (new ImapIdleSession(this, phoneAccountHandle, deadline, cancelled).run()) {
+              isIdleSupported.set(true);
+            }
+            if (remainingSessions.decrementAndGet() == 0) {
+              ThreadUtil.postOnUiThread(() -> onSessionsFinished(params, isIdleSupported.get()));
+            }
+          });
+    }
+    return true; // sessions running in background
+  }
+
+  @Override
+  @MainThread
+  public boolean onStopJob(JobParameters params) {
+    VvmLog.i(TAG, "onStopJob");
+    cancelled.set(true);
+    return false; // the periodic job will run again
+  }
+
+  @MainThread
+  private void onSessionsFinished(JobParameters params, boolean isIdleSupported) {
+    executor.shutdown();
+    if (cancelled.get()) {
+      return;
+    }
+    jobFinished(params, false);
+    if (!isIdleSupported) {
+      VvmLog.i(TAG, "no server supports IDLE, cancelling job");
+      getSystemService(JobScheduler.class).cancel(ScheduledJobIds.VVM_IMAP_IDLE_JOB);
+    }
+  }
+}
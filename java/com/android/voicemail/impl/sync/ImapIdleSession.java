@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.voicemail.impl.sync;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.annotation.WorkerThread;
+import android.telecom.PhoneAccountHandle;
+import com.android.voicemail.impl.OmtpVvmCarrierConfigHelper;
+import com.android.voicemail.impl.Voicemail;
+import com.android.voicemail.impl.VoicemailStatus;
+import com.android.voicemail.impl.VvmLog;
+import com.android.voicemail.impl.imap.ImapHelper;
+import com.android.voicemail.impl.imap.ImapHelper.InitializingException;
+import com.android.voicemail.impl.mail.MessagingException;
+import com.android.voicemail.impl.mail.store.ImapFolder.IdleResult;
+import com.android.voicemail.impl.sync.VvmNetworkRequest.NetworkWrapper;
+import com.android.voicemail.impl.sync.VvmNetworkRequest.RequestFailedException;
+import com.android.voicemail.impl.utils.VoicemailDatabaseUtil;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Waits with IMAP IDLE for the changes of the inbox of one account until a deadline, and turns them
+ * into tasks. New messages are inserted and downloaded with {@link SyncOneTask}, like the ones
+ * announced by a SYNC SMS. Expunges and flag changes renumber or modify existing messages, so they
+ * start a full {@link SyncTask}.
+ */
+final class ImapIdleSession {
+
+  private static final String TAG = "ImapIdleSession";
+
+  private final Context context;
+  private final PhoneAccountHandle phoneAccountHandle;
+  private final long deadline;
+  private final AtomicBoolean cancelled;
+  private final boolean isLocal;
+
+  ImapIdleSession(
+      Context context,
+      PhoneAccountHandle phoneAccountHandle,
+      long deadline,
+      AtomicBoolean cancelled) {
+    this.context = context;
+    this.phoneAccountHandle = phoneAccountHandle;
+    this.deadline = deadline;
+    this.cancelled = cancelled;
+    isLocal = ImapIdleJobService.shouldUseLocalServer(context);
+  }
+
+  /** @return false if the server does not support IDLE. */
+  @WorkerThread
+  boolean run() {
+    VoicemailStatus.Editor status = VoicemailStatus.edit(context, phoneAccountHandle);
+    if (isLocal) {
+      try (ImapHelper imapHelper =
+          new ImapHelper(
+              context,
+              phoneAccountHandle,
+              LocalImapServer.HOST,
+              LocalImapServer.start(),
+              LocalImapServer.USERNAME,
+              LocalImapServer.PASSWORD,
+              status)) {
+        return idle(imapHelper);
+      } catch (IOException e) {
+        VvmLog.e(TAG, "cannot start local server", e);
+        return false;
+      }
+    }
+
+    OmtpVvmCarrierConfigHelper config =
+        new OmtpVvmCarrierConfigHelper(context, phoneAccountHandle);
+    try (NetworkWrapper network =
+        VvmNetworkRequest.getNetwork(config, phoneAccountHandle, status)) {
+      if (network == null) {
+        VvmLog.e(TAG, "unable to acquire network");
+        return true;
+      }
+      try (ImapHelper imapHelper =
+          new ImapHelper(context, phoneAccountHandle, network.get(), status)) {
+        return idle(imapHelper);
+      }
+    } catch (RequestFailedException | InitializingException e) {
+      VvmLog.w(TAG, "cannot connect: " + e);
+      return true;
+    }
+  }
+
+  private boolean idle(ImapHelper imapHelper) {
+    try {
+      if (!imapHelper.isIdleSupported()) {
+        VvmLog.i(TAG, "IDLE not supported");
+        return false;
+      }
+    } catch (IOException | MessagingException e) {
+      // Only a server answering CAPABILITY without IDLE stops the job, the next session retries.
+      VvmLog.w(TAG, "cannot query IDLE capability: " + e);
+      return true;
+    }
+    int knownMessageCount = -1;
+    long remainingMillis;
+    while (!cancelled.get() && (remainingMillis = deadline - SystemClock.elapsedRealtime()) > 0) {
+      IdleResult result = imapHelper.waitForMailboxChange(remainingMillis, cancelled);
+      if (result == null) {
+        // The connection failed, the next session will retry.
+        break;
+      }
+      // Changes between two IDLEs are only visible as a different message count on SELECT.
+      boolean missedChanges =
+          knownMessageCount != -1 && result.previousMessageCount != knownMessageCount;
+      if (missedChanges || result.expunged || result.flagsChanged) {
+        VvmLog.i(TAG, "mailbox changed, syncing");
+        SyncTask.start(context, phoneAccountHandle);
+      } else if (result.messageCount > result.previousMessageCount) {
+        onMessagesAdded(imapHelper, result.previousMessageCount + 1, result.messageCount);
+      }
+      knownMessageCount = result.messageCount;
+    }
+    return true;
+  }
+
+  private void onMessagesAdded(ImapHelper imapHelper, int first, int last) {
+    VvmLog.i(TAG, "messages " + first + " to " + last + " added");
+    List<Voicemail> voicemails = imapHelper.fetchVoicemails(first, last);
+    if (voicemails == null) {
+      SyncTask.start(context, phoneAccountHandle);
+      return;
+    }
+    VoicemailsQueryHelper queryHelper = new VoicemailsQueryHelper(context);
+    for (Voicemail voicemail : voicemails) {
+      if (isLocal) {
+        VvmLog.i(
+            TAG,
+            "local voicemail "
+                + voicemail.getSourceData()
+                + " reported after "
+                + (System.currentTimeMillis() - voicemail.getTimestampMillis())
+                + " millis");
+        continue;
+      }
+      // The carrier SMS might have announced it already.
+      if (!queryHelper.isVoicemailUnique(voicemail)) {
+        continue;
+      }
+      Voicemail.Builder builder =
+          Voicemail.createForInsertion(voicemail.getTimestampMillis(), voicemail.getNumber())
+              .setPhoneAccount(phoneAccountHandle)
+              .setSourceData(voicemail.getSourceData())
+              .setDuration(voicemail.getDuration())
+              .setIsRead(voicemail.isRead())
+              .setTranscription(voicemail.getTranscription())
+              .setSourcePackage(context.getPackageName());
+      Uri uri = VoicemailDatabaseUtil.insert(context, builder.build());
+      SyncOneTask.start(
+          context, phoneAccountHandle, builder.setId(ContentUris.parseId(uri)).setUri(uri).build());
+    }
+  }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.voicemail.impl.sync;
+
+import com.android.dialer.buildtype.BuildType;
+import com.android.dialer.buildtype.BuildType.Type;
+import com.android.voicemail.impl.VvmLog;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * In-process stand-in for a voicemail IMAP server which supports IDLE and receives a new voicemail
+ * every {@link #NEW_MESSAGE_INTERVAL_MILLIS}. Used by {@link ImapIdleSession} instead of the
+ * carrier server when {@link ImapIdleJobService#shouldUseLocalServer} is set, to verify the IDLE
+ * client and measure how long a new voicemail takes to be reported.
+ *
+ * <p>Only the commands sent by the IDLE session are implemented, others and invalid arguments are
+ * answered with BAD. Messages have the UID 1000 + their sequence number and are never expunged.
+ * The server only starts on bugfood builds.
+ */
+final class LocalImapServer {
+
+  private static final String TAG = "LocalImapServer";
+
+  static final String HOST = "127.0.0.1";
+  static final String USERNAME = "local";
+  static final String PASSWORD = "local";
+
+  private static final long NEW_MESSAGE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  /** How often an idling connection checks for new messages. */
+  private static final int IDLE_CHECK_MILLIS = 1_000;
+
+  private static final int UID_OFFSET = 1000;
+
+  @GuardedBy("LocalImapServer.class")
+  private static ServerSocket serverSocket;
+
+  /** Arrival times of the messages, in sequence number order. */
+  @GuardedBy("LocalImapServer.class")
+  private static final List<Long> arrivalTimes = new ArrayList<>();
+
+  private LocalImapServer() {}
+
+  /** Starts the server if necessary, and returns its port. */
+  static synchronized int start() throws IOException {
+    if (BuildType.get() != Type.BUGFOOD) {
+      throw new IOException("local server is only available on bugfood builds");
+    }
+    if (serverSocket == null) {
+      serverSocket = new ServerSocket(0, 0, InetAddress.getByName(HOST));
+      arrivalTimes.add(System.currentTimeMillis());
+      ServerSocket socket = serverSocket;
+      Thread thread = new Thread(() -> acceptConnections(socket), TAG);
+      thread.setDaemon(true);
+      thread.start();
+      VvmLog.i(TAG, "started on port " + serverSocket.getLocalPort());
+    }
+    return serverSocket.getLocalPort();
+  }
+
+  /** Delivers a new message if the interval has elapsed, and returns the message count. */
+  private static synchronized int getMessageCount() {
+    long now = System.currentTimeMillis();
+    if (now - arrivalTimes.get(arrivalTimes.size() - 1) >= NEW_MESSAGE_INTERVAL_MILLIS) {
+      arrivalTimes.add(now);
+    }
+    return arrivalTimes.size();
+  }
+
+  private static synchronized long getArrivalTime(int sequenceNumber) {
+    return arrivalTimes.get(sequenceNumber - 1);
+  }
+
+  private static void acceptConnections(ServerSocket serverSocket) {
+    while (true) {
+      try {
+        Socket socket = serverSocket.accept();
+        Thread thread = new Thread(() -> serve(socket), TAG + ".connection");
+        thread.setDaemon(true);
+        thread.start();
+      } catch (IOException e) {
+        VvmLog.e(TAG, "accept failed", e);
+        return;
+      }
+    }
+  }
+
+  private static void serve(Socket socket) {
+    try (Socket closeable = socket;
+        BufferedReader in =
+            new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+      writeLine(out, "* OK local voicemail IMAP server ready");
+      String line;
+      while ((line = in.readLine()) != null) {
+        String[] parts = line.split(" ", 3);
+        if (parts.length < 2) {
+          writeLine(out, "* BAD missing command");
+          continue;
+        }
+        String tag = parts[0];
+        String arguments = parts.length > 2 ? parts[2] : "";
+        try {
+          if (!handleCommand(socket, in, out, tag, parts[1], arguments)) {
+            return;
+          }
+        } catch (RuntimeException e) {
+          // e.g. a sequence number which is not a number or out of range.
+          VvmLog.w(TAG, "invalid command: " + e);
+          writeLine(out, tag + " BAD invalid arguments");
+        }
+      }
+    } catch (IOException e) {
+      VvmLog.w(TAG, "connection closed: " + e);
+    }
+  }
+
+  /** @return false if the connection should be closed. */
+  private static boolean handleCommand(
+      Socket socket, BufferedReader in, Writer out, String tag, String command, String arguments)
+      throws IOException {
+    switch (command.toUpperCase(Locale.US)) {
+      case "CAPABILITY":
+        writeLine(out, "* CAPABILITY IMAP4rev1 IDLE");
+        writeLine(out, tag + " OK CAPABILITY completed");
+        break;
+      case "LOGIN":
+        // ImapConnection quotes the password.
+        if (arguments.replace("\"", "").equals(USERNAME + " " + PASSWORD)) {
+          writeLine(out, tag + " OK LOGIN completed");
+        } else {
+          writeLine(out, tag + " NO [AUTHENTICATIONFAILED] invalid credentials");
+        }
+        break;
+      case "NOOP":
+      case "EXPUNGE":
+        writeLine(out, tag + " OK completed");
+        break;
+      case "SELECT":
+        writeLine(out, "* " + getMessageCount() + " EXISTS");
+        writeLine(out, tag + " OK [READ-WRITE] SELECT completed");
+        break;
+      case "IDLE":
+        idle(socket, in, out, tag);
+        break;
+      case "UID":
+        handleUidCommand(out, tag, arguments);
+        break;
+      case "LOGOUT":
+        writeLine(out, "* BYE logging out");
+        writeLine(out, tag + " OK LOGOUT completed");
+        return false;
+      default:
+        writeLine(out, tag + " BAD unsupported command");
+    }
+    return true;
+  }
+
+  private static void idle(Socket socket, BufferedReader in, Writer out, String tag)
+      throws IOException {
+    writeLine(out, "+ idling");
+    int reportedCount = getMessageCount();
+    socket.setSoTimeout(IDLE_CHECK_MILLIS);
+    try {
+      while (true) {
+        try {
+          String line = in.readLine();
+          if (line == null || line.equalsIgnoreCase("DONE")) {
+            writeLine(out, tag + " OK IDLE terminated");
+            return;
+          }
+        } catch (SocketTimeoutException e) {
+          int count = getMessageCount();
+          if (count != reportedCount) {
+            writeLine(out, "* " + count + " EXISTS");
+            reportedCount = count;
+          }
+        }
+      }
+    } finally {
+      socket.setSoTimeout(0);
+    }
+  }
+
+  private static void handleUidCommand(Writer out, String tag, String arguments)
+      throws IOException {
+    String[] parts = arguments.split(" ", 3);
+    if (parts.length >= 2 && parts[0].equalsIgnoreCase("SEARCH")) {
+      // e.g. "UID SEARCH 3:4 NOT DELETED"
+      String[] range = parts[1].split(":");
+      int count = getMessageCount();
+      int first = parseSequenceNumber(range[0], count);
+      int last = range.length > 1 ? parseSequenceNumber(range[1], count) : first;
+      StringBuilder response = new StringBuilder("* SEARCH");
+      for (int i = Math.max(1, first); i <= Math.min(last, count); i++) {
+        response.append(' ').append(UID_OFFSET + i);
+      }
+      writeLine(out, response.toString());
+      writeLine(out, tag + " OK SEARCH completed");
+    } else if (parts.length >= 2 && parts[0].equalsIgnoreCase("FETCH")) {
+      // Only the structure fetch of ImapHelper#fetchVoicemails is supported.
+      for (String uid : parts[1].split(",")) {
+        int sequenceNumber = Integer.parseInt(uid) - UID_OFFSET;
+        Date arrival = new Date(getArrivalTime(sequenceNumber));
+        String header =
+            "Date: "
+                + new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.US).format(arrival)
+                + "\r\nFrom: 5550100@local"
+                + "\r\nContent-Type: multipart/mixed; boundary=local\r\n\r\n";
+        writeLine(
+            out,
+            "* "
+                + sequenceNumber
+                + " FETCH (UID "
+                + uid
+                + " FLAGS () INTERNALDATE \""
+                + new SimpleDateFormat("dd-MMM-yyyy HH:mm:ss Z", Locale.US).format(arrival)
+                + "\" RFC822.SIZE 1024 BODY[HEADER.FIELDS (DATE FROM CONTENT-TYPE)] {"
+                + header.length()
+                + "}\r\n"
+                + header
+                + " BODYSTRUCTURE ((\"audio\" \"amr\" (\"name\" \"voicemail.amr\") NIL NIL"
+                + " \"base64\" 1024 NIL NIL NIL) \"mixed\" (\"boundary\" \"local\") NIL NIL))");
+      }
+      writeLine(out, tag + " OK FETCH completed");
+    } else {
+      writeLine(out, tag + " BAD unsupported UID command");
+    }
+  }
+
+  private static int parseSequenceNumber(String value, int messageCount) {
+    return value.equals("*") ? messageCount : Integer.parseInt(value);
+  }
+
+  private static void writeLine(Writer out, String line) throws IOException {
+    out.write(line);
+    out.write("\r\n");
+    out.flush();
+  }
+}
@@ -16,10 +16,11 @@
 package com.android.voicemail.impl.sync;
 
 import android.annotation.TargetApi;
+import android.content.ContentProviderResult;
 import android.content.Context;
 import android.net.Network;
-import android.net.Uri;
 import android.os.Build.VERSION_CODES;
+import android.support.annotation.Nullable;
 import android.support.v4.os.BuildCompat;
 import android.telecom.PhoneAccountHandle;
 import android.text.TextUtils;
@@ -42,7 +43,6 @@ import com.android.voicemail.impl.settings.VisualVoicemailSettingsUtil;
 import com.android.voicemail.impl.sync.VvmNetworkRequest.NetworkWrapper;
 import com.android.voicemail.impl.sync.VvmNetworkRequest.RequestFailedException;
 import com.android.voicemail.impl.utils.LoggerUtils;
-import com.android.voicemail.impl.utils.VoicemailDatabaseUtil;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -209,7 +209,7 @@ public class OmtpVvmSyncService {
   }
 
   private boolean syncAll(ImapHelper imapHelper, PhoneAccountHandle account) {
-
+    int providerCallsBefore = queryHelper.getProviderCallCount();
     List<Voicemail> serverVoicemails = imapHelper.fetchAllVoicemails();
     List<Voicemail> localVoicemails = queryHelper.getAllVoicemails(account);
     List<Voicemail> deletedVoicemails = queryHelper.getDeletedVoicemails(account);
@@ -221,11 +221,14 @@ public class OmtpVvmSyncService {
       return false;
     }
 
+    // The local changes are written in one batch at the end of the pass.
+    VoicemailsQueryHelper.Batch batch = queryHelper.newBatch();
+
     if (deletedVoicemails.size() > 0) {
       if (imapHelper.markMessagesAsDeleted(deletedVoicemails)) {
         // Delete only the voicemails that was deleted on the server, in case more are deleted
         // since the IMAP query was completed.
-        queryHelper.deleteFromDatabase(deletedVoicemails);
+        batch.delete(deletedVoicemails);
       } else {
         succeeded = false;
       }
@@ -249,10 +252,10 @@ public class OmtpVvmSyncService {
 
       // Do not delete voicemails that are archived marked as archived.
       if (remoteVoicemail == null) {
-        queryHelper.deleteNonArchivedFromDatabase(localVoicemail);
+        batch.deleteNonArchived(localVoicemail);
       } else {
         if (remoteVoicemail.isRead() && !localVoicemail.isRead()) {
-          queryHelper.markReadInDatabase(localVoicemail);
+          batch.markRead(localVoicemail);
         } else if (localVoicemail.isRead() && !remoteVoicemail.isRead()) {
           localReadVoicemails.add(localVoicemail);
         }
@@ -261,7 +264,7 @@ public class OmtpVvmSyncService {
             && TextUtils.isEmpty(localVoicemail.getTranscription())) {
           LoggerUtils.logImpressionOnMainThread(
               context, DialerImpression.Type.VVM_TRANSCRIPTION_DOWNLOADED);
-          queryHelper.updateWithTranscription(localVoicemail, remoteVoicemail.getTranscription());
+          batch.updateWithTranscription(localVoicemail, remoteVoicemail.getTranscription());
         }
       }
     }
@@ -270,30 +273,56 @@ public class OmtpVvmSyncService {
       VvmLog.i(TAG, "Marking voicemails as read");
       if (imapHelper.markMessagesAsRead(localReadVoicemails)) {
         VvmLog.i(TAG, "Marking voicemails as clean");
-        queryHelper.markCleanInDatabase(localReadVoicemails);
+        batch.markClean(localReadVoicemails);
       } else {
+        applyBatch(batch, providerCallsBefore);
         return false;
       }
     }
 
     // The leftover messages are messages that exist on the server but not locally.
-    boolean prefetchEnabled = shouldPerformPrefetch(account, imapHelper);
-    for (Voicemail remoteVoicemail : remoteMap.values()) {
+    List<Voicemail> newVoicemails = new ArrayList<>(remoteMap.values());
+    int[] insertResultIndices = new int[newVoicemails.size()];
+    for (int i = 0; i < newVoicemails.size(); i++) {
+      Voicemail remoteVoicemail = newVoicemails.get(i);
       if (!TextUtils.isEmpty(remoteVoicemail.getTranscription())) {
         LoggerUtils.logImpressionOnMainThread(
             context, DialerImpression.Type.VVM_TRANSCRIPTION_DOWNLOADED);
       }
-      Uri uri = VoicemailDatabaseUtil.insert(context, remoteVoicemail);
-      if (prefetchEnabled) {
+      insertResultIndices[i] = batch.insert(remoteVoicemail);
+    }
+
+    ContentProviderResult[] results = applyBatch(batch, providerCallsBefore);
+    if (results == null) {
+      return false;
+    }
+
+    if (shouldPerformPrefetch(account, imapHelper)) {
+      for (int i = 0; i < newVoicemails.size(); i++) {
         VoicemailFetchedCallback fetchedCallback =
-            new VoicemailFetchedCallback(context, uri, account);
-        imapHelper.fetchVoicemailPayload(fetchedCallback, remoteVoicemail.getSourceData());
+            new VoicemailFetchedCallback(context, results[insertResultIndices[i]].uri, account);
+        imapHelper.fetchVoicemailPayload(fetchedCallback, newVoicemails.get(i).getSourceData());
       }
     }
 
     return succeeded;
   }
 
+  /** Applies the writes of a sync pass, and logs how many provider calls the pass made. */
+  @Nullable
+  private ContentProviderResult[] applyBatch(
+      VoicemailsQueryHelper.Batch batch, int providerCallsBefore) {
+    ContentProviderResult[] results = batch.apply();
+    VvmLog.i(
+        TAG,
+        "syncAll: "
+            + batch.size()
+            + " writes, "
+            + (queryHelper.getProviderCallCount() - providerCallsBefore)
+            + " provider calls");
+    return results;
+  }
+
   private boolean downloadOneVoicemail(
       ImapHelper imapHelper, Voicemail voicemail, PhoneAccountHandle account) {
     if (shouldPerformPrefetch(account, imapHelper)) {
@@ -26,7 +26,9 @@ import com.android.voicemail.impl.Voicemail;
 import com.android.voicemail.impl.VoicemailStatus;
 import com.android.voicemail.impl.scheduling.BaseTask;
 import com.android.voicemail.impl.scheduling.RetryPolicy;
+import com.android.voicemail.impl.scheduling.Task;
 import com.android.voicemail.impl.utils.LoggerUtils;
+import java.util.Objects;
 
 /**
  * Task to download a single voicemail from the server. This task is initiated by a SMS notifying
@@ -63,6 +65,25 @@ public class SyncOneTask extends BaseTask {
     voicemail = extras.getParcelable(EXTRA_VOICEMAIL);
   }
 
+  @Override
+  public int getPriority() {
+    return PRIORITY_USER_VISIBLE;
+  }
+
+  @Override
+  public boolean isEquivalentTo(Task task) {
+    if (hasStarted() || !(task instanceof SyncOneTask)) {
+      return false;
+    }
+    SyncOneTask other = (SyncOneTask) task;
+    // The source data identifies the message on the IMAP server.
+    return Objects.equals(phone, other.phone)
+        && voicemail != null
+        && other.voicemail != null
+        && voicemail.getSourceData() != null
+        && voicemail.getSourceData().equals(other.voicemail.getSourceData());
+  }
+
   @Override
   public void onExecuteInBackgroundThread() {
     OmtpVvmSyncService service = new OmtpVvmSyncService(getContext());
@@ -61,6 +61,11 @@ public class SyncTask extends BaseTask {
     phone = extras.getParcelable(EXTRA_PHONE_ACCOUNT_HANDLE);
   }
 
+  @Override
+  public int getPriority() {
+    return PRIORITY_SYNC;
+  }
+
   @Override
   public void onExecuteInBackgroundThread() {
     OmtpVvmSyncService service = new OmtpVvmSyncService(getContext());
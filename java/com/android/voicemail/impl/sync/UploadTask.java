@@ -52,6 +52,11 @@ public class UploadTask extends BaseTask {
     super.onCreate(context, extras);
   }
 
+  @Override
+  public int getPriority() {
+    return PRIORITY_SYNC;
+  }
+
   @Override
   public void onExecuteInBackgroundThread() {
     OmtpVvmSyncService service = new OmtpVvmSyncService(getContext());
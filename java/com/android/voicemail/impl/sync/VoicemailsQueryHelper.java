@@ -15,23 +15,38 @@
  */
 package com.android.voicemail.impl.sync;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.RemoteException;
 import android.provider.VoicemailContract;
 import android.provider.VoicemailContract.Voicemails;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.telecom.PhoneAccountHandle;
 import com.android.dialer.common.Assert;
 import com.android.voicemail.impl.Voicemail;
+import com.android.voicemail.impl.VvmLog;
+import com.android.voicemail.impl.utils.VoicemailDatabaseUtil;
 import java.util.ArrayList;
 import java.util.List;
 
 /** Construct queries to interact with the voicemails table. */
 public class VoicemailsQueryHelper {
+  private static final String TAG = "VoicemailsQueryHelper";
+
+  /**
+   * Largest number of operations applied in one call, to stay below the size limit of a binder
+   * transaction.
+   */
+  private static final int MAX_OPERATIONS_PER_CALL = 250;
+
   static final String[] PROJECTION =
       new String[] {
         Voicemails._ID, // 0
@@ -49,11 +64,16 @@ public class VoicemailsQueryHelper {
 
   static final String DELETED_SELECTION = Voicemails.DELETED + "=1";
   static final String ARCHIVED_SELECTION = Voicemails.ARCHIVED + "=0";
+  static final String NON_ARCHIVED_ID_SELECTION =
+      Voicemails._ID + "=? AND " + Voicemails.ARCHIVED + "= 0";
 
   private Context context;
   private ContentResolver contentResolver;
   private Uri sourceUri;
 
+  /** Number of calls made to the voicemail provider. */
+  private int providerCalls;
+
   public VoicemailsQueryHelper(Context context) {
     this.context = context;
     contentResolver = context.getContentResolver();
@@ -88,6 +108,7 @@ public class VoicemailsQueryHelper {
    */
   private List<Voicemail> getLocalVoicemails(
       @NonNull PhoneAccountHandle unusedPhoneAccountHandle, String selection) {
+    providerCalls++;
     Cursor cursor = contentResolver.query(sourceUri, PROJECTION, selection, null, null);
     if (cursor == null) {
       return null;
@@ -124,23 +145,27 @@ public class VoicemailsQueryHelper {
       return 0;
     }
 
+    providerCalls++;
+    return contentResolver.delete(Voicemails.CONTENT_URI, getIdSelection(voicemails), null);
+  }
+
+  private static String getIdSelection(List<Voicemail> voicemails) {
     StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < count; i++) {
+    for (int i = 0; i < voicemails.size(); i++) {
       if (i > 0) {
         sb.append(",");
       }
       sb.append(voicemails.get(i).getId());
     }
-
-    String selectionStatement = String.format(Voicemails._ID + " IN (%s)", sb.toString());
-    return contentResolver.delete(Voicemails.CONTENT_URI, selectionStatement, null);
+    return String.format(Voicemails._ID + " IN (%s)", sb.toString());
   }
 
   /** Utility method to delete a single voicemail that is not archived. */
   public void deleteNonArchivedFromDatabase(Voicemail voicemail) {
+    providerCalls++;
     contentResolver.delete(
         Voicemails.CONTENT_URI,
-        Voicemails._ID + "=? AND " + Voicemails.ARCHIVED + "= 0",
+        NON_ARCHIVED_ID_SELECTION,
         new String[] {Long.toString(voicemail.getId())});
   }
 
@@ -157,6 +182,7 @@ public class VoicemailsQueryHelper {
     Uri uri = ContentUris.withAppendedId(sourceUri, voicemail.getId());
     ContentValues contentValues = new ContentValues();
     contentValues.put(Voicemails.IS_READ, "1");
+    providerCalls++;
     contentResolver.update(uri, contentValues, null, null);
   }
 
@@ -181,6 +207,7 @@ public class VoicemailsQueryHelper {
   public void markCleanInDatabase(Voicemail voicemail) {
     Uri uri = ContentUris.withAppendedId(sourceUri, voicemail.getId());
     ContentValues contentValues = new ContentValues();
+    providerCalls++;
     contentResolver.update(uri, contentValues, null, null);
   }
 
@@ -189,6 +216,7 @@ public class VoicemailsQueryHelper {
     Uri uri = ContentUris.withAppendedId(sourceUri, voicemail.getId());
     ContentValues contentValues = new ContentValues();
     contentValues.put(Voicemails.TRANSCRIPTION, transcription);
+    providerCalls++;
     contentResolver.update(uri, contentValues, null, null);
   }
 
@@ -219,6 +247,7 @@ public class VoicemailsQueryHelper {
                 + Voicemails.SOURCE_DATA
                 + "=?";
         String[] whereArgs = {phoneAccountComponentName, phoneAccountId, sourceData};
+        providerCalls++;
         cursor = contentResolver.query(sourceUri, PROJECTION, whereClause, whereArgs, null);
         if (cursor.getCount() == 0) {
           return true;
@@ -250,6 +279,7 @@ public class VoicemailsQueryHelper {
     Uri uri = ContentUris.withAppendedId(sourceUri, voicemail.getId());
     ContentValues contentValues = new ContentValues();
     contentValues.put(Voicemails.ARCHIVED, "1");
+    providerCalls++;
     contentResolver.update(uri, contentValues, null, null);
   }
 
@@ -260,6 +290,7 @@ public class VoicemailsQueryHelper {
     }
 
     String sortAndLimit = "date ASC limit " + numVoicemails;
+    providerCalls++;
 
     try (Cursor cursor =
         contentResolver.query(sourceUri, PROJECTION, ARCHIVED_SELECTION, null, sortAndLimit)) {
@@ -283,4 +314,111 @@ public class VoicemailsQueryHelper {
       return voicemails;
     }
   }
+
+  /** Returns the number of calls made to the voicemail provider through this helper. */
+  public int getProviderCallCount() {
+    return providerCalls;
+  }
+
+  /** Returns an empty {@link Batch} of writes to the voicemails table. */
+  public Batch newBatch() {
+    return new Batch();
+  }
+
+  /**
+   * Collects the writes of a sync pass, which are then applied to the voicemail provider together
+   * by {@link #apply()} instead of each in its own call. The writes are the same as the ones of the
+   * corresponding methods of {@link VoicemailsQueryHelper}.
+   */
+  public class Batch {
+    private final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+    private Batch() {}
+
+    /** @see #deleteFromDatabase(List) */
+    public void delete(List<Voicemail> voicemails) {
+      if (!voicemails.isEmpty()) {
+        operations.add(
+            ContentProviderOperation.newDelete(Voicemails.CONTENT_URI)
+                .withSelection(getIdSelection(voicemails), null)
+                .build());
+      }
+    }
+
+    /** @see #deleteNonArchivedFromDatabase(Voicemail) */
+    public void deleteNonArchived(Voicemail voicemail) {
+      operations.add(
+          ContentProviderOperation.newDelete(Voicemails.CONTENT_URI)
+              .withSelection(
+                  NON_ARCHIVED_ID_SELECTION, new String[] {Long.toString(voicemail.getId())})
+              .build());
+    }
+
+    /** @see #markReadInDatabase(Voicemail) */
+    public void markRead(Voicemail voicemail) {
+      operations.add(newUpdate(voicemail).withValue(Voicemails.IS_READ, "1").build());
+    }
+
+    /** @see #markCleanInDatabase(List) */
+    public void markClean(List<Voicemail> voicemails) {
+      for (Voicemail voicemail : voicemails) {
+        // An update needs values. The provider clears the flag of an update by the source package
+        // without one, so setting it explicitly has the same effect as markCleanInDatabase.
+        operations.add(newUpdate(voicemail).withValue(Voicemails.DIRTY, 0).build());
+      }
+    }
+
+    /** @see #updateWithTranscription(Voicemail, String) */
+    public void updateWithTranscription(Voicemail voicemail, String transcription) {
+      operations.add(
+          newUpdate(voicemail).withValue(Voicemails.TRANSCRIPTION, transcription).build());
+    }
+
+    /**
+     * Inserts a new voicemail, like {@link VoicemailDatabaseUtil#insert(Context, Voicemail)}.
+     *
+     * @return the index of the result holding the uri of the voicemail in the results of {@link
+     *     #apply()}.
+     */
+    public int insert(Voicemail voicemail) {
+      operations.add(VoicemailDatabaseUtil.newInsert(context, voicemail));
+      return operations.size() - 1;
+    }
+
+    public int size() {
+      return operations.size();
+    }
+
+    private ContentProviderOperation.Builder newUpdate(Voicemail voicemail) {
+      return ContentProviderOperation.newUpdate(
+          ContentUris.withAppendedId(sourceUri, voicemail.getId()));
+    }
+
+    /**
+     * Applies the writes in order, in as few calls as possible. The operations are not applied
+     * atomically, a failure leaves the ones already applied in place.
+     *
+     * @return the result of each operation, or null if the provider failed.
+     */
+    @Nullable
+    public ContentProviderResult[] apply() {
+      ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+      for (int start = 0; start < operations.size(); start += MAX_OPERATIONS_PER_CALL) {
+        ArrayList<ContentProviderOperation> chunk =
+            new ArrayList<>(
+                operations.subList(
+                    start, Math.min(start + MAX_OPERATIONS_PER_CALL, operations.size())));
+        providerCalls++;
+        try {
+          ContentProviderResult[] chunkResults =
+              contentResolver.applyBatch(VoicemailContract.AUTHORITY, chunk);
+          System.arraycopy(chunkResults, 0, results, start, chunkResults.length);
+        } catch (RemoteException | OperationApplicationException e) {
+          VvmLog.e(TAG, "applying " + chunk.size() + " operations failed", e);
+          return null;
+        }
+      }
+      return results;
+    }
+  }
 }
@@ -22,14 +22,13 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.SystemClock;
-import android.support.annotation.Nullable;
 import android.telecom.PhoneAccountHandle;
+import android.util.ArrayMap;
 import android.util.Pair;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.backoff.ExponentialBaseCalculator;
 import com.android.dialer.common.concurrent.DialerExecutor.Worker;
 import com.android.dialer.common.concurrent.DialerExecutorComponent;
-import com.android.dialer.common.concurrent.ThreadUtil;
 import com.android.dialer.logging.DialerImpression;
 import com.android.dialer.logging.Logger;
 import com.android.voicemail.impl.VvmLog;
@@ -38,26 +37,35 @@ import com.android.voicemail.impl.transcribe.grpc.TranscriptionClient;
 import com.android.voicemail.impl.transcribe.grpc.TranscriptionClientFactory;
 import com.google.internal.communications.voicemailtranscription.v1.GetTranscriptRequest;
 import com.google.internal.communications.voicemailtranscription.v1.TranscriptionStatus;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * This class uses the AlarmManager to poll for the result of a voicemail transcription request.
+ * This class uses the AlarmManager to poll for the results of voicemail transcription requests.
  * Initially it waits for the estimated transcription time, and if the result is not available then
  * it polls using an exponential backoff scheme.
+ *
+ * <p>The transcriptions being polled are kept in a {@link TranscriptPollQueue}, and a single alarm
+ * fires for the earliest one that is due. Every due transcription is then polled in the same pass
+ * over one channel, so a backlog of uploaded voicemails doesn't have to be polled one at a time.
  */
 public class GetTranscriptReceiver extends BroadcastReceiver {
   private static final String TAG = "GetTranscriptReceiver";
-  static final String EXTRA_IS_INITIAL_ESTIMATED_WAIT = "extra_is_initial_estimated_wait";
-  static final String EXTRA_VOICEMAIL_URI = "extra_voicemail_uri";
   static final String EXTRA_TRANSCRIPT_ID = "extra_transcript_id";
-  static final String EXTRA_DELAY_MILLIS = "extra_delay_millis";
-  static final String EXTRA_BASE_MULTIPLIER = "extra_base_multiplier";
-  static final String EXTRA_REMAINING_ATTEMPTS = "extra_remaining_attempts";
+  static final String EXTRA_VOICEMAIL_URI = "extra_voicemail_uri";
   static final String EXTRA_PHONE_ACCOUNT = "extra_phone_account";
   static final String POLL_ALARM_ACTION =
       "com.android.voicemail.impl.transcribe.GetTranscriptReceiver.POLL_ALARM";
 
-  // Schedule an initial alarm to begin checking for a voicemail transcription result.
+  /** Transcriptions due within this time of a poll are polled with it, saving an alarm. */
+  private static final long POLL_WINDOW_MILLIS = 1000;
+
+  /** Set while a poll is running, since the alarm may fire again before it completes. */
+  private static final AtomicBoolean isPolling = new AtomicBoolean();
+
+  // Add a transcription to the polling queue, to be checked after the estimated transcription time.
   static void beginPolling(
       Context context,
       Uri voicemailUri,
@@ -65,45 +73,41 @@ public class GetTranscriptReceiver extends BroadcastReceiver {
       long estimatedTranscriptionTimeMillis,
       TranscriptionConfigProvider configProvider,
       PhoneAccountHandle account) {
-    Assert.checkState(!hasPendingAlarm(context));
     long initialDelayMillis = configProvider.getInitialGetTranscriptPollDelayMillis();
     long maxBackoffMillis = configProvider.getMaxGetTranscriptPollTimeMillis();
     int maxAttempts = configProvider.getMaxGetTranscriptPolls();
     double baseMultiplier =
         ExponentialBaseCalculator.findBase(initialDelayMillis, maxBackoffMillis, maxAttempts);
-    Intent intent =
-        makeAlarmIntent(
-            context,
-            voicemailUri,
-            transcriptId,
-            initialDelayMillis,
-            baseMultiplier,
-            maxAttempts,
-            account);
-    // Add an extra to distinguish this initial estimated transcription wait from subsequent backoff
-    // waits
-    intent.putExtra(EXTRA_IS_INITIAL_ESTIMATED_WAIT, true);
+    long now = System.currentTimeMillis();
     VvmLog.i(
         TAG,
         String.format(
             "beginPolling, check in %d millis, for: %s",
             estimatedTranscriptionTimeMillis, transcriptId));
-    scheduleAlarm(context, estimatedTranscriptionTimeMillis, intent);
-  }
-
-  static boolean hasPendingAlarm(Context context) {
-    Intent intent = makeBaseAlarmIntent(context);
-    return getPendingIntent(context, intent, PendingIntent.FLAG_NO_CREATE) != null;
+    synchronized (TranscriptPollQueue.LOCK) {
+      TranscriptPollQueue.put(
+          context,
+          new TranscriptPollQueue.Entry(
+              transcriptId,
+              voicemailUri,
+              account,
+              now,
+              now + estimatedTranscriptionTimeMillis,
+              initialDelayMillis,
+              baseMultiplier,
+              maxAttempts,
+              true /* isInitialEstimatedWait */));
+      scheduleNextPoll(context, TranscriptPollQueue.getAll(context));
+    }
   }
 
-  // Alarm fired, poll for transcription result on a background thread
+  // Alarm fired, poll for transcription results on a background thread
   @Override
   public void onReceive(Context context, Intent intent) {
     if (intent == null || !POLL_ALARM_ACTION.equals(intent.getAction())) {
       return;
     }
-    String transcriptId = intent.getStringExtra(EXTRA_TRANSCRIPT_ID);
-    VvmLog.i(TAG, "onReceive, for transcript id: " + transcriptId);
+    VvmLog.i(TAG, "onReceive");
     DialerExecutorComponent.get(context)
         .dialerExecutorFactory()
         .createNonUiTaskBuilder(new PollWorker(context))
@@ -121,44 +125,27 @@ public class GetTranscriptReceiver extends BroadcastReceiver {
     VvmLog.e(TAG, "onFailure", t);
   }
 
-  private static void scheduleAlarm(Context context, long delayMillis, Intent intent) {
+  /** Schedules the alarm for the earliest entry, or cancels it if there are none. */
+  private static void scheduleNextPoll(Context context, List<TranscriptPollQueue.Entry> entries) {
+    Intent intent = makeBaseAlarmIntent(context);
+    if (entries.isEmpty()) {
+      PendingIntent alarmIntent = getPendingIntent(context, intent, PendingIntent.FLAG_NO_CREATE);
+      if (alarmIntent != null) {
+        context.getSystemService(AlarmManager.class).cancel(alarmIntent);
+        alarmIntent.cancel();
+      }
+      return;
+    }
+    long delayMillis =
+        Math.max(0, TranscriptPollQueue.getNextPollMillis(entries) - System.currentTimeMillis());
     PendingIntent alarmIntent =
         getPendingIntent(context, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-    AlarmManager alarmMgr = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-    alarmMgr.set(
-        AlarmManager.ELAPSED_REALTIME_WAKEUP,
-        SystemClock.elapsedRealtime() + delayMillis,
-        alarmIntent);
-  }
-
-  private static boolean cancelAlarm(Context context, Intent intent) {
-    PendingIntent alarmIntent = getPendingIntent(context, intent, PendingIntent.FLAG_NO_CREATE);
-    if (alarmIntent != null) {
-      AlarmManager alarmMgr = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-      alarmMgr.cancel(alarmIntent);
-      alarmIntent.cancel();
-      return true;
-    } else {
-      return false;
-    }
-  }
-
-  private static Intent makeAlarmIntent(
-      Context context,
-      Uri voicemailUri,
-      String transcriptId,
-      long delayMillis,
-      double baseMultiplier,
-      int remainingAttempts,
-      PhoneAccountHandle account) {
-    Intent intent = makeBaseAlarmIntent(context);
-    intent.putExtra(EXTRA_VOICEMAIL_URI, voicemailUri);
-    intent.putExtra(EXTRA_TRANSCRIPT_ID, transcriptId);
-    intent.putExtra(EXTRA_DELAY_MILLIS, delayMillis);
-    intent.putExtra(EXTRA_BASE_MULTIPLIER, baseMultiplier);
-    intent.putExtra(EXTRA_REMAINING_ATTEMPTS, remainingAttempts);
-    intent.putExtra(EXTRA_PHONE_ACCOUNT, account);
-    return intent;
+    context
+        .getSystemService(AlarmManager.class)
+        .set(
+            AlarmManager.ELAPSED_REALTIME_WAKEUP,
+            SystemClock.elapsedRealtime() + delayMillis,
+            alarmIntent);
   }
 
   private static Intent makeBaseAlarmIntent(Context context) {
@@ -180,83 +167,126 @@ public class GetTranscriptReceiver extends BroadcastReceiver {
 
     @Override
     public Void doInBackground(Intent intent) {
+      // The transcription of a legacy alarm is only in its intent, so it is queued even if another
+      // poll is running.
+      migrateLegacyAlarm(intent);
+      if (!isPolling.compareAndSet(false, true)) {
+        // The running poll schedules the next alarm once it is done.
+        VvmLog.i(TAG, "doInBackground, already polling");
+        return null;
+      }
+      try {
+        poll();
+      } finally {
+        isPolling.set(false);
+      }
+      return null;
+    }
+
+    /** Adds the transcription polled by an alarm set before polls were queued. */
+    private void migrateLegacyAlarm(Intent intent) {
       String transcriptId = intent.getStringExtra(EXTRA_TRANSCRIPT_ID);
-      VvmLog.i(TAG, "doInBackground, for transcript id: " + transcriptId);
-      Pair<String, TranscriptionStatus> result = pollForTranscription(transcriptId);
-      if (result.first == null && result.second == null) {
-        // No result, try again if possible
-        Intent nextIntent = getNextAlarmIntent(intent);
-        if (nextIntent == null) {
-          VvmLog.i(TAG, "doInBackground, too many failures for: " + transcriptId);
-          result = new Pair<>(null, TranscriptionStatus.FAILED_NO_RETRY);
-        } else {
-          long nextDelayMillis = nextIntent.getLongExtra(EXTRA_DELAY_MILLIS, 0L);
-          VvmLog.i(
-              TAG,
-              String.format(
-                  "doInBackground, check again in %d, for: %s", nextDelayMillis, transcriptId));
-          scheduleAlarm(context, nextDelayMillis, nextIntent);
-          return null;
+      if (transcriptId == null) {
+        return;
+      }
+      VvmLog.i(TAG, "migrateLegacyAlarm, for transcript id: " + transcriptId);
+      beginPolling(
+          context,
+          intent.getParcelableExtra(EXTRA_VOICEMAIL_URI),
+          transcriptId,
+          0,
+          new TranscriptionConfigProvider(context),
+          intent.getParcelableExtra(EXTRA_PHONE_ACCOUNT));
+    }
+
+    private void poll() {
+      List<TranscriptPollQueue.Entry> due = new ArrayList<>();
+      synchronized (TranscriptPollQueue.LOCK) {
+        long dueMillis = System.currentTimeMillis() + POLL_WINDOW_MILLIS;
+        for (TranscriptPollQueue.Entry entry : TranscriptPollQueue.getAll(context)) {
+          if (entry.nextPollMillis <= dueMillis) {
+            due.add(entry);
+          }
         }
       }
+      VvmLog.i(TAG, "poll, polling " + due.size() + " transcriptions");
 
-      // Got transcript or failed too many times
-      Uri voicemailUri = intent.getParcelableExtra(EXTRA_VOICEMAIL_URI);
-      TranscriptionDbHelper dbHelper = new TranscriptionDbHelper(context, voicemailUri);
-      TranscriptionTask.recordResult(context, result, dbHelper);
+      // Poll without holding the lock, so that uploads can add transcriptions meanwhile.
+      Map<String, Pair<String, TranscriptionStatus>> results = new ArrayMap<>();
+      if (!due.isEmpty()) {
+        TranscriptionClientFactory factory = getTranscriptionClientFactory(context);
+        try {
+          TranscriptionClient client = factory.getClient();
+          for (TranscriptPollQueue.Entry entry : due) {
+            results.put(entry.transcriptId, pollForTranscription(client, entry.transcriptId));
+          }
+        } catch (RuntimeException e) {
+          // The transcriptions without a result back off below, so they are neither dropped nor
+          // polled again right away.
+          VvmLog.e(TAG, "poll, failed", e);
+        } finally {
+          factory.shutdown();
+        }
+      }
 
-      // Check if there are other pending transcriptions
-      PhoneAccountHandle account = intent.getParcelableExtra(EXTRA_PHONE_ACCOUNT);
-      processPendingTranscriptions(account);
-      return null;
-    }
+      synchronized (TranscriptPollQueue.LOCK) {
+        try {
+          long now = System.currentTimeMillis();
+          for (TranscriptPollQueue.Entry entry : due) {
+            Pair<String, TranscriptionStatus> result = results.get(entry.transcriptId);
+            if (result == null || (result.first == null && result.second == null)) {
+              // No result, try again if possible
+              if (entry.backoff(now)) {
+                VvmLog.i(
+                    TAG,
+                    String.format(
+                        "poll, check again in %d, for: %s", entry.delayMillis, entry.transcriptId));
+                TranscriptPollQueue.put(context, entry);
+                continue;
+              }
+              VvmLog.i(TAG, "poll, too many failures for: " + entry.transcriptId);
+              result = new Pair<>(null, TranscriptionStatus.FAILED_NO_RETRY);
+            }
 
-    private void processPendingTranscriptions(PhoneAccountHandle account) {
-      TranscriptionDbHelper dbHelper = new TranscriptionDbHelper(context);
-      List<Uri> inProgress = dbHelper.getTranscribingVoicemails();
-      if (!inProgress.isEmpty()) {
-        Uri uri = inProgress.get(0);
-        VvmLog.i(TAG, "getPendingTranscription, found pending transcription " + uri);
-        if (hasPendingAlarm(context)) {
-          // Cancel the current alarm so that the next transcription task won't be postponed
-          cancelAlarm(context, makeBaseAlarmIntent(context));
+            // Got transcript or failed too many times
+            VvmLog.i(
+                TAG,
+                String.format(
+                    "poll, finished %s after %d millis",
+                    entry.transcriptId, now - entry.enqueuedMillis));
+            TranscriptionTask.recordResult(
+                context, result, new TranscriptionDbHelper(context, entry.voicemailUri));
+            TranscriptPollQueue.remove(context, entry.transcriptId);
+          }
+        } finally {
+          // Even if recording a result failed, the transcriptions still queued must be polled.
+          List<TranscriptPollQueue.Entry> remaining = TranscriptPollQueue.getAll(context);
+          if (remaining.isEmpty()) {
+            VvmLog.i(TAG, "poll, no more pending transcriptions");
+          }
+          scheduleNextPoll(context, remaining);
         }
-        ThreadUtil.postOnUiThread(
-            () -> {
-              TranscriptionService.scheduleNewVoicemailTranscriptionJob(
-                  context, uri, account, true);
-            });
-      } else {
-        VvmLog.i(TAG, "getPendingTranscription, no more pending transcriptions");
       }
     }
 
-    private Pair<String, TranscriptionStatus> pollForTranscription(String transcriptId) {
+    private Pair<String, TranscriptionStatus> pollForTranscription(
+        TranscriptionClient client, String transcriptId) {
       VvmLog.i(TAG, "pollForTranscription, transcript id: " + transcriptId);
       GetTranscriptRequest request = getGetTranscriptRequest(transcriptId);
-      TranscriptionClientFactory factory = null;
-      try {
-        factory = getTranscriptionClientFactory(context);
-        TranscriptionClient client = factory.getClient();
-        Logger.get(context).logImpression(DialerImpression.Type.VVM_TRANSCRIPTION_POLL_REQUEST);
-        GetTranscriptResponseAsync response = client.sendGetTranscriptRequest(request);
-        if (response == null) {
-          VvmLog.i(TAG, "pollForTranscription, no transcription result.");
-          return new Pair<>(null, null);
-        } else if (response.isTranscribing()) {
-          VvmLog.i(TAG, "pollForTranscription, transcribing");
-          return new Pair<>(null, null);
-        } else if (response.hasFatalError()) {
-          VvmLog.i(TAG, "pollForTranscription, fail. " + response.getErrorDescription());
-          return new Pair<>(null, response.getTranscriptionStatus());
-        } else {
-          VvmLog.i(TAG, "pollForTranscription, got transcription");
-          return new Pair<>(response.getTranscript(), TranscriptionStatus.SUCCESS);
-        }
-      } finally {
-        if (factory != null) {
-          factory.shutdown();
-        }
+      Logger.get(context).logImpression(DialerImpression.Type.VVM_TRANSCRIPTION_POLL_REQUEST);
+      GetTranscriptResponseAsync response = client.sendGetTranscriptRequest(request);
+      if (response == null) {
+        VvmLog.i(TAG, "pollForTranscription, no transcription result.");
+        return new Pair<>(null, null);
+      } else if (response.isTranscribing()) {
+        VvmLog.i(TAG, "pollForTranscription, transcribing");
+        return new Pair<>(null, null);
+      } else if (response.hasFatalError()) {
+        VvmLog.i(TAG, "pollForTranscription, fail. " + response.getErrorDescription());
+        return new Pair<>(null, response.getTranscriptionStatus());
+      } else {
+        VvmLog.i(TAG, "pollForTranscription, got transcription");
+        return new Pair<>(response.getTranscript(), TranscriptionStatus.SUCCESS);
       }
     }
 
@@ -264,29 +294,6 @@ public class GetTranscriptReceiver extends BroadcastReceiver {
       Assert.checkArgument(transcriptionId != null);
       return GetTranscriptRequest.newBuilder().setTranscriptionId(transcriptionId).build();
     }
-
-    private @Nullable Intent getNextAlarmIntent(Intent previous) {
-      int remainingAttempts = previous.getIntExtra(EXTRA_REMAINING_ATTEMPTS, 0);
-      double baseMultiplier = previous.getDoubleExtra(EXTRA_BASE_MULTIPLIER, 0);
-      long nextDelay = previous.getLongExtra(EXTRA_DELAY_MILLIS, 0);
-      if (!previous.getBooleanExtra(EXTRA_IS_INITIAL_ESTIMATED_WAIT, false)) {
-        // After waiting the estimated transcription time, start decrementing the remaining attempts
-        // and incrementing the backoff time delay
-        remainingAttempts--;
-        if (remainingAttempts <= 0) {
-          return null;
-        }
-        nextDelay = (long) (nextDelay * baseMultiplier);
-      }
-      return makeAlarmIntent(
-          context,
-          previous.getParcelableExtra(EXTRA_VOICEMAIL_URI),
-          previous.getStringExtra(EXTRA_TRANSCRIPT_ID),
-          nextDelay,
-          baseMultiplier,
-          remainingAttempts,
-          previous.getParcelableExtra(EXTRA_PHONE_ACCOUNT));
-    }
   }
 
   private static TranscriptionClientFactory transcriptionClientFactoryForTesting;
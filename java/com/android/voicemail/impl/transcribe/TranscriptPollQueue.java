@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package com.android.voicemail.impl.transcribe;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.support.annotation.Nullable;
+import android.telecom.PhoneAccountHandle;
+import com.android.voicemail.impl.VvmLog;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The transcriptions which have been uploaded and whose results are polled by {@link
+ * GetTranscriptReceiver}. Entries are persisted so that a single alarm can drive the polling of all
+ * of them, even if the process dies between two polls.
+ *
+ * <p>All methods must be called while holding {@link #LOCK}.
+ */
+final class TranscriptPollQueue {
+  private static final String TAG = "TranscriptPollQueue";
+  private static final String PREFERENCES_NAME = "transcript_poll_queue";
+
+  static final Object LOCK = new Object();
+
+  private static final String KEY_VOICEMAIL_URI = "voicemail_uri";
+  private static final String KEY_ACCOUNT_COMPONENT = "account_component";
+  private static final String KEY_ACCOUNT_ID = "account_id";
+  private static final String KEY_ENQUEUED_MILLIS = "enqueued_millis";
+  private static final String KEY_NEXT_POLL_MILLIS = "next_poll_millis";
+  private static final String KEY_DELAY_MILLIS = "delay_millis";
+  private static final String KEY_BASE_MULTIPLIER = "base_multiplier";
+  private static final String KEY_REMAINING_ATTEMPTS = "remaining_attempts";
+  private static final String KEY_IS_INITIAL_ESTIMATED_WAIT = "is_initial_estimated_wait";
+
+  /** The polling state of a single transcription. Times are wall clock times. */
+  static final class Entry {
+    final String transcriptId;
+    final Uri voicemailUri;
+    @Nullable final PhoneAccountHandle account;
+    final long enqueuedMillis;
+    long nextPollMillis;
+    long delayMillis;
+    final double baseMultiplier;
+    int remainingAttempts;
+    boolean isInitialEstimatedWait;
+
+    Entry(
+        String transcriptId,
+        Uri voicemailUri,
+        @Nullable PhoneAccountHandle account,
+        long enqueuedMillis,
+        long nextPollMillis,
+        long delayMillis,
+        double baseMultiplier,
+        int remainingAttempts,
+        boolean isInitialEstimatedWait) {
+      this.transcriptId = transcriptId;
+      this.voicemailUri = voicemailUri;
+      this.account = account;
+      this.enqueuedMillis = enqueuedMillis;
+      this.nextPollMillis = nextPollMillis;
+      this.delayMillis = delayMillis;
+      this.baseMultiplier = baseMultiplier;
+      this.remainingAttempts = remainingAttempts;
+      this.isInitialEstimatedWait = isInitialEstimatedWait;
+    }
+
+    /**
+     * Schedules the next poll after one that didn't return a result. After waiting the estimated
+     * transcription time, every poll decrements the remaining attempts and increases the delay.
+     *
+     * @return false if there are no attempts left.
+     */
+    boolean backoff(long nowMillis) {
+      if (isInitialEstimatedWait) {
+        isInitialEstimatedWait = false;
+      } else {
+        remainingAttempts--;
+        if (remainingAttempts <= 0) {
+          return false;
+        }
+        delayMillis = (long) (delayMillis * baseMultiplier);
+      }
+      nextPollMillis = nowMillis + delayMillis;
+      return true;
+    }
+  }
+
+  private TranscriptPollQueue() {}
+
+  static List<Entry> getAll(Context context) {
+    List<Entry> entries = new ArrayList<>();
+    for (Map.Entry<String, ?> stored : getPreferences(context).getAll().entrySet()) {
+      Entry entry = fromJson(stored.getKey(), String.valueOf(stored.getValue()));
+      if (entry != null) {
+        entries.add(entry);
+      }
+    }
+    return entries;
+  }
+
+  @Nullable
+  static Entry get(Context context, String transcriptId) {
+    String json = getPreferences(context).getString(transcriptId, null);
+    return json == null ? null : fromJson(transcriptId, json);
+  }
+
+  static void put(Context context, Entry entry) {
+    getPreferences(context).edit().putString(entry.transcriptId, toJson(entry)).apply();
+  }
+
+  static void remove(Context context, String transcriptId) {
+    getPreferences(context).edit().remove(transcriptId).apply();
+  }
+
+  /** Returns the time of the earliest poll, or {@link Long#MAX_VALUE} if the queue is empty. */
+  static long getNextPollMillis(List<Entry> entries) {
+    long next = Long.MAX_VALUE;
+    for (Entry entry : entries) {
+      next = Math.min(next, entry.nextPollMillis);
+    }
+    return next;
+  }
+
+  private static SharedPreferences getPreferences(Context context) {
+    return context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, 0);
+  }
+
+  private static String toJson(Entry entry) {
+    try {
+      JSONObject json = new JSONObject();
+      json.put(KEY_VOICEMAIL_URI, entry.voicemailUri.toString());
+      if (entry.account != null) {
+        json.put(KEY_ACCOUNT_COMPONENT, entry.account.getComponentName().flattenToString());
+        json.put(KEY_ACCOUNT_ID, entry.account.getId());
+      }
+      json.put(KEY_ENQUEUED_MILLIS, entry.enqueuedMillis);
+      json.put(KEY_NEXT_POLL_MILLIS, entry.nextPollMillis);
+      json.put(KEY_DELAY_MILLIS, entry.delayMillis);
+      json.put(KEY_BASE_MULTIPLIER, entry.baseMultiplier);
+      json.put(KEY_REMAINING_ATTEMPTS, entry.remainingAttempts);
+      json.put(KEY_IS_INITIAL_ESTIMATED_WAIT, entry.isInitialEstimatedWait);
+      return json.toString();
+    } catch (JSONException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Nullable
+  private static Entry fromJson(String transcriptId, String value) {
+    try {
+      JSONObject json = new JSONObject(value);
+      PhoneAccountHandle account = null;
+      if (json.has(KEY_ACCOUNT_COMPONENT)) {
+        account =
+            new PhoneAccountHandle(
+                ComponentName.unflattenFromString(json.getString(KEY_ACCOUNT_COMPONENT)),
+                json.getString(KEY_ACCOUNT_ID));
+      }
+      return new Entry(
+          transcriptId,
+          Uri.parse(json.getString(KEY_VOICEMAIL_URI)),
+          account,
+          json.getLong(KEY_ENQUEUED_MILLIS),
+          json.getLong(KEY_NEXT_POLL_MILLIS),
+          json.getLong(KEY_DELAY_MILLIS),
+          json.getDouble(KEY_BASE_MULTIPLIER),
+          json.getInt(KEY_REMAINING_ATTEMPTS),
+          json.getBoolean(KEY_IS_INITIAL_ESTIMATED_WAIT));
+    } catch (JSONException e) {
+      VvmLog.e(TAG, "fromJson, dropping corrupt entry for: " + transcriptId, e);
+      return null;
+    }
+  }
+}
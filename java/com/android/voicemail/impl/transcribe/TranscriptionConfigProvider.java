@@ -67,6 +67,19 @@ public class TranscriptionConfigProvider {
         .getBoolean("voicemail_transcription_server_use_sync_api", false);
   }
 
+  public boolean shouldUseLocalServer() {
+    return ConfigProviderComponent.get(context)
+        .getConfigProvider()
+        .getBoolean("voicemail_transcription_use_local_server", false);
+  }
+
+  public int getMaxConcurrentTranscriptions() {
+    return (int)
+        ConfigProviderComponent.get(context)
+            .getConfigProvider()
+            .getLong("voicemail_transcription_max_concurrent_transcriptions", 3L);
+  }
+
   public long getMaxTranscriptionRetries() {
     return ConfigProviderComponent.get(context)
         .getConfigProvider()
@@ -111,13 +124,15 @@ public class TranscriptionConfigProvider {
   @Override
   public String toString() {
     return String.format(
-        "{ address: %s, api key: %s, auth token: %s, plaintext: %b, sync: %b, retries: %d, polls:"
-            + " %d, poll ms: %d }",
+        "{ address: %s, api key: %s, auth token: %s, plaintext: %b, sync: %b, local: %b,"
+            + " concurrent: %d, retries: %d, polls: %d, poll ms: %d }",
         getServerAddress(),
         getApiKey(),
         getAuthToken(),
         shouldUsePlaintext(),
         shouldUseSyncApi(),
+        shouldUseLocalServer(),
+        getMaxConcurrentTranscriptions(),
         getMaxTranscriptionRetries(),
         getMaxGetTranscriptPolls(),
         getMaxGetTranscriptPollTimeMillis());
@@ -25,10 +25,12 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Build;
+import android.os.SystemClock;
 import android.support.annotation.MainThread;
 import android.support.annotation.VisibleForTesting;
 import android.telecom.PhoneAccountHandle;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import com.android.dialer.common.Assert;
 import com.android.dialer.common.LogUtil;
 import com.android.dialer.constants.ScheduledJobIds;
@@ -38,6 +40,7 @@ import com.android.voicemail.CarrierConfigKeys;
 import com.android.voicemail.VoicemailClient;
 import com.android.voicemail.VoicemailComponent;
 import com.android.voicemail.impl.transcribe.grpc.TranscriptionClientFactory;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -45,6 +48,9 @@ import java.util.concurrent.Executors;
  * Job scheduler callback for launching voicemail transcription tasks. The transcription tasks will
  * run in the background and will typically last for approximately the length of the voicemail audio
  * (since thats how long the backend transcription service takes to do the transcription).
+ *
+ * <p>Up to {@link TranscriptionConfigProvider#getMaxConcurrentTranscriptions()} tasks run at the
+ * same time, so that a backlog of voicemails, such as after activation, is uploaded in parallel.
  */
 public class TranscriptionService extends JobService {
   @VisibleForTesting static final String EXTRA_VOICEMAIL_URI = "extra_voicemail_uri";
@@ -54,9 +60,14 @@ public class TranscriptionService extends JobService {
   private JobParameters jobParameters;
   private TranscriptionClientFactory clientFactory;
   private TranscriptionConfigProvider configProvider;
-  private TranscriptionTask activeTask;
+  private final Map<JobWorkItem, TranscriptionTask> activeTasks = new ArrayMap<>();
   private boolean stopped;
 
+  /** When the current batch of work items started, to log how long the backlog took to drain. */
+  private long batchStartMillis;
+
+  private int batchCompletedCount;
+
   /** Callback used by a task to indicate it has finished processing its work item */
   interface JobCallback {
     void onWorkCompleted(JobWorkItem completedWorkItem);
@@ -167,7 +178,7 @@ public class TranscriptionService extends JobService {
     LogUtil.i("TranscriptionService.onStopJob", "params: " + params);
     stopped = true;
     Logger.get(this).logImpression(DialerImpression.Type.VVM_TRANSCRIPTION_JOB_STOPPED);
-    if (activeTask != null) {
+    for (TranscriptionTask activeTask : activeTasks.values()) {
       LogUtil.i("TranscriptionService.onStopJob", "cancelling active task");
       activeTask.cancel();
       Logger.get(this).logImpression(DialerImpression.Type.VVM_TRANSCRIPTION_TASK_CANCELLED);
@@ -194,6 +205,11 @@ public class TranscriptionService extends JobService {
     }
   }
 
+  /**
+   * Starts tasks for the queued work items until the maximum number of tasks is running.
+   *
+   * @return whether any task is running.
+   */
   @MainThread
   private boolean checkForWork() {
     Assert.isMainThread();
@@ -201,20 +217,33 @@ public class TranscriptionService extends JobService {
       LogUtil.i("TranscriptionService.checkForWork", "stopped");
       return false;
     }
-    JobWorkItem workItem = jobParameters.dequeueWork();
-    if (workItem != null) {
-      Assert.checkState(activeTask == null);
-      activeTask =
+    int maxTasks = Math.max(1, getConfigProvider().getMaxConcurrentTranscriptions());
+    while (activeTasks.size() < maxTasks) {
+      JobWorkItem workItem = jobParameters.dequeueWork();
+      if (workItem == null) {
+        break;
+      }
+      if (activeTasks.isEmpty() && batchCompletedCount == 0) {
+        batchStartMillis = SystemClock.elapsedRealtime();
+      }
+      TranscriptionTask task =
           configProvider.shouldUseSyncApi()
               ? new TranscriptionTaskSync(
                   this, new Callback(), workItem, getClientFactory(), configProvider)
               : new TranscriptionTaskAsync(
                   this, new Callback(), workItem, getClientFactory(), configProvider);
-      getExecutorService().execute(activeTask);
-      return true;
-    } else {
-      return false;
+      activeTasks.put(workItem, task);
+      getExecutorService().execute(task);
+    }
+    if (activeTasks.isEmpty() && batchCompletedCount > 0) {
+      LogUtil.i(
+          "TranscriptionService.checkForWork",
+          "processed %d work items in %d millis",
+          batchCompletedCount,
+          SystemClock.elapsedRealtime() - batchStartMillis);
+      batchCompletedCount = 0;
     }
+    return !activeTasks.isEmpty();
   }
 
   static Uri getVoicemailUri(JobWorkItem workItem) {
@@ -227,10 +256,12 @@ public class TranscriptionService extends JobService {
 
   private ExecutorService getExecutorService() {
     if (executorService == null) {
-      // The common use case is transcribing a single voicemail so just use a single thread executor
       // The reason we're not using DialerExecutor here is because the transcription task can be
-      // very long running (ie. multiple minutes).
-      executorService = Executors.newSingleThreadExecutor();
+      // very long running (ie. multiple minutes). Threads are only created for tasks that are
+      // started, so transcribing a single voicemail still uses a single thread.
+      executorService =
+          Executors.newFixedThreadPool(
+              Math.max(1, getConfigProvider().getMaxConcurrentTranscriptions()));
     }
     return executorService;
   }
@@ -241,7 +272,8 @@ public class TranscriptionService extends JobService {
     public void onWorkCompleted(JobWorkItem completedWorkItem) {
       Assert.isMainThread();
       LogUtil.i("TranscriptionService.Callback.onWorkCompleted", completedWorkItem.toString());
-      activeTask = null;
+      activeTasks.remove(completedWorkItem);
+      batchCompletedCount++;
       if (stopped) {
         LogUtil.i("TranscriptionService.Callback.onWorkCompleted", "stopped");
       } else {
@@ -39,8 +39,9 @@ import com.google.internal.communications.voicemailtranscription.v1.Transcriptio
  *   <li>client waits appropriate amount of time then begins polling for the result
  * </ol>
  *
- * This implementation blocks until the response or an error is received, even though it is using
- * the asynchronous server API.
+ * This implementation blocks until the upload response or an error is received, then hands the
+ * transcription-id to {@link GetTranscriptReceiver}, which polls the results of all uploaded
+ * voicemails together. Several of these tasks may run at the same time.
  */
 public class TranscriptionTaskAsync extends TranscriptionTask {
   private static final String TAG = "TranscriptionTaskAsync";
@@ -58,14 +59,6 @@ public class TranscriptionTaskAsync extends TranscriptionTask {
   protected Pair<String, TranscriptionStatus> getTranscription() {
     VvmLog.i(TAG, "getTranscription");
 
-    if (GetTranscriptReceiver.hasPendingAlarm(context)) {
-      // Don't start a transcription while another is still active
-      VvmLog.i(
-          TAG,
-          "getTranscription, pending transcription, postponing transcription of: " + voicemailUri);
-      return new Pair<>(null, null);
-    }
-
     TranscribeVoicemailAsyncRequest uploadRequest = getUploadRequest();
     VvmLog.i(
         TAG,
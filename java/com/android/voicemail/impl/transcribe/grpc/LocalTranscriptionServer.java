@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2018 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package com.android.voicemail.impl.transcribe.grpc;
+
+import android.os.SystemClock;
+import com.android.dialer.common.LogUtil;
+import com.google.internal.communications.voicemailtranscription.v1.GetTranscriptRequest;
+import com.google.internal.communications.voicemailtranscription.v1.GetTranscriptResponse;
+import com.google.internal.communications.voicemailtranscription.v1.SendTranscriptionFeedbackRequest;
+import com.google.internal.communications.voicemailtranscription.v1.SendTranscriptionFeedbackResponse;
+import com.google.internal.communications.voicemailtranscription.v1.TranscribeVoicemailAsyncRequest;
+import com.google.internal.communications.voicemailtranscription.v1.TranscribeVoicemailAsyncResponse;
+import com.google.internal.communications.voicemailtranscription.v1.TranscribeVoicemailRequest;
+import com.google.internal.communications.voicemailtranscription.v1.TranscribeVoicemailResponse;
+import com.google.internal.communications.voicemailtranscription.v1.TranscriptionStatus;
+import com.google.internal.communications.voicemailtranscription.v1.VoicemailTranscriptionServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in for the transcription server, which transcribes every voicemail after a fixed
+ * delay. Used instead of the real server when {@link
+ * com.android.voicemail.impl.transcribe.TranscriptionConfigProvider#shouldUseLocalServer()} is set,
+ * to measure how long a backlog of voicemails takes to drain without network or server variance.
+ */
+public final class LocalTranscriptionServer
+    extends VoicemailTranscriptionServiceGrpc.VoicemailTranscriptionServiceImplBase {
+
+  private static final String SERVER_NAME = "local-voicemail-transcription";
+  private static final String TRANSCRIPT = "Local transcription server transcript";
+
+  /** Time taken to receive an upload. */
+  private static final long UPLOAD_MILLIS = 200;
+
+  /** Time taken to transcribe a voicemail, after which polls return its transcript. */
+  private static final long TRANSCRIPTION_MILLIS = TimeUnit.SECONDS.toMillis(3);
+
+  private static Server server;
+
+  /** Times at which the uploaded transcriptions are ready, by transcription-id. */
+  private final Map<String, Long> readyTimes = new ConcurrentHashMap<>();
+
+  private LocalTranscriptionServer() {}
+
+  /** Returns a channel to the local server, starting it if necessary. */
+  static synchronized ManagedChannel newChannel() {
+    if (server == null) {
+      try {
+        server =
+            InProcessServerBuilder.forName(SERVER_NAME)
+                .addService(new LocalTranscriptionServer())
+                .build()
+                .start();
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to start local transcription server", e);
+      }
+      LogUtil.i("LocalTranscriptionServer.newChannel", "started");
+    }
+    return InProcessChannelBuilder.forName(SERVER_NAME).build();
+  }
+
+  @Override
+  public void transcribeVoicemail(
+      TranscribeVoicemailRequest request,
+      StreamObserver<TranscribeVoicemailResponse> responseObserver) {
+    SystemClock.sleep(UPLOAD_MILLIS + TRANSCRIPTION_MILLIS);
+    responseObserver.onNext(
+        TranscribeVoicemailResponse.newBuilder().setTranscript(TRANSCRIPT).build());
+    responseObserver.onCompleted();
+  }
+
+  @Override
+  public void transcribeVoicemailAsync(
+      TranscribeVoicemailAsyncRequest request,
+      StreamObserver<TranscribeVoicemailAsyncResponse> responseObserver) {
+    SystemClock.sleep(UPLOAD_MILLIS);
+    String transcriptionId =
+        request.hasTranscriptionId()
+            ? request.getTranscriptionId()
+            : UUID.randomUUID().toString();
+    if (readyTimes.putIfAbsent(
+            transcriptionId, SystemClock.elapsedRealtime() + TRANSCRIPTION_MILLIS)
+        != null) {
+      responseObserver.onError(Status.ALREADY_EXISTS.asRuntimeException());
+      return;
+    }
+    responseObserver.onNext(
+        TranscribeVoicemailAsyncResponse.newBuilder()
+            .setTranscriptionId(transcriptionId)
+            .setEstimatedWaitSecs(TimeUnit.MILLISECONDS.toSeconds(TRANSCRIPTION_MILLIS))
+            .build());
+    responseObserver.onCompleted();
+  }
+
+  @Override
+  public void getTranscript(
+      GetTranscriptRequest request, StreamObserver<GetTranscriptResponse> responseObserver) {
+    Long readyTime = readyTimes.get(request.getTranscriptionId());
+    GetTranscriptResponse.Builder response = GetTranscriptResponse.newBuilder();
+    if (readyTime == null) {
+      response.setStatus(TranscriptionStatus.FAILED_NO_RETRY);
+    } else if (SystemClock.elapsedRealtime() < readyTime) {
+      response.setStatus(TranscriptionStatus.PENDING);
+    } else {
+      response.setStatus(TranscriptionStatus.SUCCESS).setTranscript(TRANSCRIPT);
+    }
+    responseObserver.onNext(response.build());
+    responseObserver.onCompleted();
+  }
+
+  @Override
+  public void sendTranscriptionFeedback(
+      SendTranscriptionFeedbackRequest request,
+      StreamObserver<SendTranscriptionFeedbackResponse> responseObserver) {
+    responseObserver.onNext(SendTranscriptionFeedbackResponse.getDefaultInstance());
+    responseObserver.onCompleted();
+  }
+}
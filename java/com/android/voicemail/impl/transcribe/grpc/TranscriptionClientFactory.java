@@ -82,6 +82,9 @@ public class TranscriptionClientFactory {
   }
 
   private static ManagedChannel getManagedChannel(TranscriptionConfigProvider configProvider) {
+    if (configProvider.shouldUseLocalServer()) {
+      return LocalTranscriptionServer.newChannel();
+    }
     ManagedChannelBuilder<OkHttpChannelBuilder> builder =
         OkHttpChannelBuilder.forTarget(configProvider.getServerAddress());
     // Only use plaintext for debugging
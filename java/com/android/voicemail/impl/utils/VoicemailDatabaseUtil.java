@@ -16,6 +16,7 @@
 
 package com.android.voicemail.impl.utils;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
@@ -57,6 +58,16 @@ public class VoicemailDatabaseUtil {
     return voicemails.size();
   }
 
+  /**
+   * Returns the operation inserting {@code voicemail} into the voicemail content provider, for a
+   * batch of operations.
+   */
+  public static ContentProviderOperation newInsert(Context context, Voicemail voicemail) {
+    return ContentProviderOperation.newInsert(Voicemails.buildSourceUri(context.getPackageName()))
+        .withValues(getContentValues(voicemail))
+        .build();
+  }
+
   /** Maps structured {@link Voicemail} to {@link ContentValues} in content provider. */
   private static ContentValues getContentValues(Voicemail voicemail) {
     ContentValues contentValues = new ContentValues();